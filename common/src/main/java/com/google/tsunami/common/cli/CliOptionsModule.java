@@ -22,27 +22,30 @@ import com.beust.jcommander.ParameterException;
 import com.google.common.collect.ImmutableList;
 import com.google.common.flogger.GoogleLogger;
 import com.google.inject.AbstractModule;
-import io.github.classgraph.ClassInfo;
+import com.google.tsunami.common.reflection.TsunamiClassIndex;
 import io.github.classgraph.ScanResult;
 import java.lang.reflect.Constructor;
 
 /**
  * A Guice module that parses CLI arguments for all {@link CliOption} implementations at runtime.
  *
- * <p>This module relies on the {@link io.github.classgraph.ClassGraph} scan results to identify all
- * {@link CliOption} implementations at runtime. Each implementation is bound to a singleton object
+ * <p>This module relies on the {@link TsunamiClassIndex} to identify all {@link CliOption}
+ * implementations at runtime. Each implementation is bound to a singleton object
  * of that impl and registered to JCommander for CLI parsing.
  */
 public final class CliOptionsModule extends AbstractModule {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
-  private static final String CLI_OPTION_INTERFACE = "com.google.tsunami.common.cli.CliOption";
 
-  private final ScanResult scanResult;
+  private final TsunamiClassIndex classIndex;
   private final String[] args;
   private final JCommander jCommander;
 
   public CliOptionsModule(ScanResult scanResult, String programName, String[] args) {
-    this.scanResult = checkNotNull(scanResult);
+    this(TsunamiClassIndex.fromScanResult(scanResult), programName, args);
+  }
+
+  public CliOptionsModule(TsunamiClassIndex classIndex, String programName, String[] args) {
+    this.classIndex = checkNotNull(classIndex);
     this.args = checkNotNull(args);
     this.jCommander = new JCommander();
 
@@ -54,13 +57,10 @@ public final class CliOptionsModule extends AbstractModule {
     // For each CliOption installed at runtime, bind a singleton instance and register the instance
     // to JCommander for parsing.
     ImmutableList.Builder<CliOption> cliOptions = ImmutableList.builder();
-    for (ClassInfo classInfo :
-        scanResult
-            .getClassesImplementing(CLI_OPTION_INTERFACE)
-            .filter(classInfo -> !classInfo.isInterface())) {
-      logger.atInfo().log("Found CliOption: %s", classInfo.getName());
+    for (Class<?> cliOptionClass : classIndex.getCliOptionClasses()) {
+      logger.atInfo().log("Found CliOption: %s", cliOptionClass.getName());
 
-      CliOption cliOption = bindCliOption(classInfo.loadClass(CliOption.class));
+      CliOption cliOption = bindCliOption(cliOptionClass.asSubclass(CliOption.class));
       jCommander.addObject(cliOption);
       cliOptions.add(cliOption);
     }
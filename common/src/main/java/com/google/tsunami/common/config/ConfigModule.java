@@ -19,27 +19,29 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.flogger.GoogleLogger;
 import com.google.inject.AbstractModule;
-import io.github.classgraph.ClassInfo;
+import com.google.tsunami.common.config.annotations.ConfigProperties;
+import com.google.tsunami.common.reflection.TsunamiClassIndex;
 import io.github.classgraph.ScanResult;
 
 /**
  * A Guice module that binds all Tsunami config objects at runtime.
  *
- * <p>This module relies on the {@link io.github.classgraph.ClassGraph} scan results to identify all
- * Tsunami config objects annotated by the {@link
- * com.google.tsunami.common.config.annotations.ConfigProperties} annotation. Each config class is
+ * <p>This module relies on the {@link TsunamiClassIndex} to identify all Tsunami config objects
+ * annotated by the {@link ConfigProperties} annotation. Each config class is
  * bound to a singleton object whose fields are populated from the Tsunami config file.
  */
 public final class ConfigModule extends AbstractModule {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
-  private static final String CONFIG_PROPERTIES_ANNOTATION =
-      "com.google.tsunami.common.config.annotations.ConfigProperties";
 
-  private final ScanResult scanResult;
+  private final TsunamiClassIndex classIndex;
   private final TsunamiConfig tsunamiConfig;
 
   public ConfigModule(ScanResult scanResult, TsunamiConfig tsunamiConfig) {
-    this.scanResult = checkNotNull(scanResult);
+    this(TsunamiClassIndex.fromScanResult(scanResult), tsunamiConfig);
+  }
+
+  public ConfigModule(TsunamiClassIndex classIndex, TsunamiConfig tsunamiConfig) {
+    this.classIndex = checkNotNull(classIndex);
     this.tsunamiConfig = checkNotNull(tsunamiConfig);
   }
 
@@ -47,13 +49,10 @@ public final class ConfigModule extends AbstractModule {
   protected void configure() {
     bind(TsunamiConfig.class).toInstance(tsunamiConfig);
 
-    for (ClassInfo configClass :
-        scanResult
-            .getClassesWithAnnotation(CONFIG_PROPERTIES_ANNOTATION)
-            .filter(classInfo -> !classInfo.isAbstract())) {
+    for (Class<?> configClass : classIndex.getConfigPropertiesClasses()) {
       logger.atInfo().log("Found Tsunami config class: %s", configClass.getName());
 
-      bindConfigClass(getConfigPrefix(configClass), configClass.loadClass());
+      bindConfigClass(getConfigPrefix(configClass), configClass);
     }
   }
 
@@ -62,16 +61,15 @@ public final class ConfigModule extends AbstractModule {
     bind(configClass).toInstance(configObject);
   }
 
-  private static String getConfigPrefix(ClassInfo configClass) {
-    Object configPrefix =
-        configClass
-            .getAnnotationInfo(CONFIG_PROPERTIES_ANNOTATION)
-            .getParameterValues()
-            .getValue("value");
-    if (!(configPrefix instanceof String)) {
-      throw new AssertionError("SHOULD NEVER HAPPEN, ConfigProperties value is not a string.");
+  private static String getConfigPrefix(Class<?> configClass) {
+    ConfigProperties configProperties = configClass.getAnnotation(ConfigProperties.class);
+    if (configProperties == null) {
+      throw new AssertionError(
+          String.format(
+              "SHOULD NEVER HAPPEN, config class '%s' is not annotated by ConfigProperties.",
+              configClass.getName()));
     }
 
-    return (String) configPrefix;
+    return configProperties.value();
   }
 }
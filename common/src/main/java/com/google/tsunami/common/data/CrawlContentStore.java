@@ -0,0 +1,289 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.data;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import com.google.tsunami.proto.CrawlContent;
+import com.google.tsunami.proto.CrawlResult;
+import com.google.tsunami.proto.NetworkService;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A content-addressed store for the content of crawled web resources.
+ *
+ * <p>Crawl results put in the store only carry the hash of their content, so that a page shared by
+ * many network services, detectors and RPC payloads is held once. Detectors resolve the content on
+ * demand with {@link #getContent(CrawlResult)}.
+ *
+ * <p>Contents are kept on the heap until they reach a total size threshold, after which they are
+ * appended to a temporary spill file and served from memory-mapped regions of it. Each {@link
+ * #put(ByteString)} must be matched by a {@link #release(String)} once the scan that stored the
+ * content is done. A new spill file is started once the current one reaches a size threshold, and
+ * a spill file is deleted as soon as all of its contents are released, so that the space of
+ * finished scans is reclaimed while other scans are still running.
+ */
+@Singleton
+public final class CrawlContentStore implements Closeable {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  private static final long DEFAULT_MAX_HEAP_BYTES = 64L * 1024 * 1024;
+  private static final long DEFAULT_MAX_SPILL_FILE_BYTES = 64L * 1024 * 1024;
+
+  private final long maxHeapBytes;
+  private final long maxSpillFileBytes;
+
+  // Guarded by this.
+  private final Map<String, Entry> entries = new HashMap<>();
+  private final Set<SpillFile> spillFiles = new LinkedHashSet<>();
+  private long heapBytes;
+  // The spill file new contents are appended to.
+  private SpillFile spillFile;
+
+  @Inject
+  CrawlContentStore() {
+    this(DEFAULT_MAX_HEAP_BYTES);
+  }
+
+  /**
+   * @param maxHeapBytes the total size of the contents kept on the heap, larger contents spill to a
+   *     memory-mapped temporary file.
+   */
+  public CrawlContentStore(long maxHeapBytes) {
+    this(maxHeapBytes, DEFAULT_MAX_SPILL_FILE_BYTES);
+  }
+
+  @VisibleForTesting
+  CrawlContentStore(long maxHeapBytes, long maxSpillFileBytes) {
+    checkArgument(maxHeapBytes >= 0, "Max heap bytes must not be negative.");
+    checkArgument(maxSpillFileBytes > 0, "Max spill file bytes must be positive.");
+    this.maxHeapBytes = maxHeapBytes;
+    this.maxSpillFileBytes = maxSpillFileBytes;
+  }
+
+  /** Returns the hex encoded SHA-256 hash identifying the given content. */
+  public static String hash(ByteString content) {
+    return Hashing.sha256().hashBytes(content.asReadOnlyByteBuffer()).toString();
+  }
+
+  /**
+   * Stores the given content, unless the same content is already stored.
+   *
+   * @return the hash of the content.
+   */
+  public String put(ByteString content) {
+    checkNotNull(content);
+    String hash = hash(content);
+    synchronized (this) {
+      Entry entry = entries.get(hash);
+      if (entry == null) {
+        entry = store(content);
+        entries.put(hash, entry);
+      }
+      entry.references++;
+    }
+    return hash;
+  }
+
+  /** Gets the content with the given hash, empty if it is not stored. */
+  public synchronized Optional<ByteString> get(String hash) {
+    Entry entry = entries.get(hash);
+    return entry == null ? Optional.empty() : Optional.of(entry.content);
+  }
+
+  /** Releases one reference to the content with the given hash, dropping it after the last one. */
+  public synchronized void release(String hash) {
+    Entry entry = entries.get(hash);
+    if (entry != null && --entry.references == 0) {
+      entries.remove(hash);
+      if (entry.spillFile == null) {
+        heapBytes -= entry.content.size();
+      } else if (--entry.spillFile.entries == 0) {
+        closeSpillFile(entry.spillFile);
+      }
+    }
+  }
+
+  /** Moves the content of the given crawl result to this store, leaving only its hash. */
+  public CrawlResult toReference(CrawlResult crawlResult) {
+    if (crawlResult.getContent().isEmpty()) {
+      return crawlResult;
+    }
+    return crawlResult.toBuilder()
+        .clearContent()
+        .setContentHash(put(crawlResult.getContent()))
+        .build();
+  }
+
+  /**
+   * Gets the content of the given crawl result, either embedded in it or held by this store. Empty
+   * when the result has no content or when the content was already released.
+   */
+  public ByteString getContent(CrawlResult crawlResult) {
+    if (!crawlResult.getContent().isEmpty() || crawlResult.getContentHash().isEmpty()) {
+      return crawlResult.getContent();
+    }
+    return get(crawlResult.getContentHash()).orElse(ByteString.EMPTY);
+  }
+
+  /** Gets the stored contents referenced by the crawl results of the given services. */
+  public ImmutableList<CrawlContent> getCrawlContents(Iterable<NetworkService> networkServices) {
+    ImmutableList.Builder<CrawlContent> crawlContents = ImmutableList.builder();
+    for (String hash : getContentHashes(networkServices)) {
+      get(hash)
+          .ifPresent(
+              content ->
+                  crawlContents.add(
+                      CrawlContent.newBuilder().setHash(hash).setContent(content).build()));
+    }
+    return crawlContents.build();
+  }
+
+  /** Gets the distinct content hashes referenced by the crawl results of the given services. */
+  public static ImmutableSet<String> getContentHashes(Iterable<NetworkService> networkServices) {
+    ImmutableSet.Builder<String> hashes = ImmutableSet.builder();
+    for (NetworkService networkService : networkServices) {
+      for (CrawlResult crawlResult :
+          networkService.getServiceContext().getWebServiceContext().getCrawlResultsList()) {
+        if (!crawlResult.getContentHash().isEmpty()) {
+          hashes.add(crawlResult.getContentHash());
+        }
+      }
+    }
+    return hashes.build();
+  }
+
+  @VisibleForTesting
+  synchronized int size() {
+    return entries.size();
+  }
+
+  /** Returns the total size of the spill files not deleted yet. */
+  @VisibleForTesting
+  synchronized long getSpillFileSize() {
+    return spillFiles.stream().mapToLong(file -> file.size).sum();
+  }
+
+  @Override
+  public synchronized void close() {
+    entries.clear();
+    heapBytes = 0;
+    for (SpillFile file : new ArrayList<>(spillFiles)) {
+      closeSpillFile(file);
+    }
+  }
+
+  // Called with the lock held. Contents already handed out stay readable, as the mappings outlive
+  // the deleted file until they are garbage collected.
+  private void closeSpillFile(SpillFile file) {
+    try {
+      file.channel.close();
+    } catch (IOException e) {
+      logger.atWarning().withCause(e).log("Unable to delete the crawl content spill file.");
+    }
+    spillFiles.remove(file);
+    if (file == spillFile) {
+      spillFile = null;
+    }
+  }
+
+  // Called with the lock held.
+  private Entry store(ByteString content) {
+    if (heapBytes + content.size() <= maxHeapBytes) {
+      heapBytes += content.size();
+      return new Entry(content, null);
+    }
+    try {
+      return spill(content);
+    } catch (IOException e) {
+      // The content is still served, only the memory bound is lost.
+      logger.atWarning().withCause(e).log("Unable to spill crawl content to disk.");
+      heapBytes += content.size();
+      return new Entry(content, null);
+    }
+  }
+
+  // Called with the lock held.
+  private Entry spill(ByteString content) throws IOException {
+    if (spillFile == null || spillFile.size >= maxSpillFileBytes) {
+      // A full spill file is deleted once the scans still referencing it release their contents.
+      spillFile =
+          new SpillFile(
+              FileChannel.open(
+                  Files.createTempFile("tsunami-crawl-content", ".bin"),
+                  StandardOpenOption.READ,
+                  StandardOpenOption.WRITE,
+                  StandardOpenOption.DELETE_ON_CLOSE));
+      spillFiles.add(spillFile);
+    }
+    long position = spillFile.size;
+    ByteBuffer buffer = content.asReadOnlyByteBuffer();
+    long written = 0;
+    while (buffer.hasRemaining()) {
+      written += spillFile.channel.write(buffer, position + written);
+    }
+    spillFile.size += content.size();
+    spillFile.entries++;
+    // The mapping stays valid after the channel is closed, until it is garbage collected.
+    return new Entry(
+        UnsafeByteOperations.unsafeWrap(
+            spillFile.channel.map(FileChannel.MapMode.READ_ONLY, position, content.size())),
+        spillFile);
+  }
+
+  private static final class Entry {
+    private final ByteString content;
+    // The spill file holding the content, null when the content is on the heap.
+    @Nullable private final SpillFile spillFile;
+    private int references;
+
+    Entry(ByteString content, @Nullable SpillFile spillFile) {
+      this.content = content;
+      this.spillFile = spillFile;
+    }
+  }
+
+  private static final class SpillFile {
+    private final FileChannel channel;
+    private long size;
+    private int entries;
+
+    SpillFile(FileChannel channel) {
+      this.channel = channel;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.base.Ascii;
 import com.google.common.collect.ImmutableMap;
+import com.google.tsunami.common.net.TsunamiDns;
 import com.google.tsunami.proto.AddressFamily;
 import com.google.tsunami.proto.Hostname;
 import com.google.tsunami.proto.IpAddress;
@@ -79,9 +80,21 @@ public final class NetworkServiceUtils {
   }
 
   public static NetworkService buildUriNetworkService(String uriString) {
+    return buildUriNetworkService(uriString, TsunamiDns.getDefault());
+  }
+
+  /**
+   * Builds the web {@link NetworkService} of a URI, resolving its host with the given resolver.
+   *
+   * @param uriString the http or https URI of the service.
+   * @param tsunamiDns the resolver of the URI host.
+   * @return the network service of the URI.
+   */
+  public static NetworkService buildUriNetworkService(String uriString, TsunamiDns tsunamiDns) {
+    checkNotNull(tsunamiDns);
     try {
       URI uri = new URI(uriString);
-      NetworkEndpoint uriEndPoint = buildUriNetworkEndPoint(uri);
+      NetworkEndpoint uriEndPoint = buildUriNetworkEndPoint(uri, tsunamiDns);
 
       return NetworkService.newBuilder()
           .setNetworkEndpoint(uriEndPoint)
@@ -99,7 +112,7 @@ public final class NetworkServiceUtils {
     }
   }
 
-  private static NetworkEndpoint buildUriNetworkEndPoint(URI uri) {
+  private static NetworkEndpoint buildUriNetworkEndPoint(URI uri, TsunamiDns tsunamiDns) {
     try {
       String hostname = uri.getHost();
       String scheme = uri.getScheme();
@@ -112,8 +125,8 @@ public final class NetworkServiceUtils {
         port = scheme.equals("http") ? 80 : 443;
       }
 
-      String ipAddress = InetAddress.getByName(hostname).getHostAddress();
-      InetAddress inetAddress = InetAddress.getByName(uri.getHost());
+      InetAddress inetAddress = tsunamiDns.lookupFirst(hostname);
+      String ipAddress = inetAddress.getHostAddress();
       checkArgument(
           (inetAddress instanceof Inet4Address) || (inetAddress instanceof Inet6Address),
           "Invalid address family");
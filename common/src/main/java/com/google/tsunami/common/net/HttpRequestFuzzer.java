@@ -0,0 +1,429 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Ascii;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Streams;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.protobuf.ByteString;
+import com.google.tsunami.common.net.http.HttpHeaders;
+import com.google.tsunami.common.net.http.HttpRequest;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Generates fuzzed variants of an HTTP request lazily.
+ *
+ * <p>The request is parsed once into its fuzzing points, i.e. the GET parameters, the form or JSON
+ * body values and the configured headers. Fuzzed requests are then built on demand for each point
+ * and payload, so that only the requests about to be sent are held in memory. The returned {@link
+ * Iterable} plugs straight into {@link
+ * com.google.tsunami.common.net.http.HttpClient#sendAllAsync}.
+ *
+ * <pre>{@code
+ * HttpRequestFuzzer fuzzer =
+ *     HttpRequestFuzzer.builder()
+ *         .addLocation(FuzzingLocation.QUERY_PARAMETERS)
+ *         .addLocation(FuzzingLocation.JSON_VALUES)
+ *         .addHeaderName("X-Forwarded-For")
+ *         .build();
+ * httpClient.sendAllAsync(fuzzer.fuzz(request, payloads), 8, responseHandler);
+ * }</pre>
+ */
+@AutoValue
+public abstract class HttpRequestFuzzer {
+
+  /** Parts of a request whose values get fuzzed. */
+  public enum FuzzingLocation {
+    /** The parameters of the URL query. */
+    QUERY_PARAMETERS,
+    /** The parameters of an {@code application/x-www-form-urlencoded} body. */
+    FORM_PARAMETERS,
+    /** The primitive values of a JSON body, at any depth. */
+    JSON_VALUES
+  }
+
+  abstract ImmutableSet<FuzzingLocation> locations();
+
+  abstract ImmutableSet<String> headerNames();
+
+  abstract Optional<String> defaultQueryParameter();
+
+  abstract boolean expectingPathValues();
+
+  public static Builder builder() {
+    return new AutoValue_HttpRequestFuzzer.Builder().setExpectingPathValues(false);
+  }
+
+  /** Builder for {@link HttpRequestFuzzer}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    abstract ImmutableSet.Builder<FuzzingLocation> locationsBuilder();
+
+    abstract ImmutableSet.Builder<String> headerNamesBuilder();
+
+    /** Fuzzes the values found at the given location of the request. */
+    public Builder addLocation(FuzzingLocation location) {
+      locationsBuilder().add(location);
+      return this;
+    }
+
+    /** Fuzzes the given header, which is added to requests that don't have it. */
+    public Builder addHeaderName(String headerName) {
+      headerNamesBuilder().add(headerName);
+      return this;
+    }
+
+    /** Adds a GET parameter with this name to fuzz when the URL has none. */
+    public abstract Builder setDefaultQueryParameter(String defaultQueryParameter);
+
+    /**
+     * Whether the fuzzed values are expected to be paths. If so, file extensions and path prefixes
+     * of the original values are kept around the payload in additional requests. Query and form
+     * parameter values are percent-decoded first, so that e.g. {@code ..%2Fetc%2Fa.txt} is
+     * fuzzed with the {@code ../etc/} prefix.
+     */
+    public abstract Builder setExpectingPathValues(boolean expectingPathValues);
+
+    public abstract HttpRequestFuzzer build();
+  }
+
+  /**
+   * Fuzzes the given request with each of the payloads.
+   *
+   * @param request the request to fuzz.
+   * @param payloads the payloads, iterated once per fuzzing point of the request.
+   * @return the fuzzed requests, grouped by fuzzing point and generated while iterating.
+   */
+  public Iterable<HttpRequest> fuzz(HttpRequest request, Iterable<String> payloads) {
+    ImmutableList<FuzzingPoint> fuzzingPoints = findFuzzingPoints(checkNotNull(request));
+    checkNotNull(payloads);
+    return () -> new FuzzedRequestIterator(fuzzingPoints, payloads);
+  }
+
+  /** Same as {@link #fuzz(HttpRequest, Iterable)}, as a sequential stream. */
+  public Stream<HttpRequest> stream(HttpRequest request, Iterable<String> payloads) {
+    return Streams.stream(fuzz(request, payloads));
+  }
+
+  private ImmutableList<FuzzingPoint> findFuzzingPoints(HttpRequest request) {
+    ImmutableList.Builder<FuzzingPoint> fuzzingPoints = ImmutableList.builder();
+    if (locations().contains(FuzzingLocation.QUERY_PARAMETERS)) {
+      addQueryFuzzingPoints(request, fuzzingPoints);
+    }
+    Optional<String> contentType =
+        request.headers().get(CONTENT_TYPE).map(value -> Ascii.toLowerCase(value));
+    if (request.requestBody().isPresent() && contentType.isPresent()) {
+      String body = request.requestBody().get().toStringUtf8();
+      if (locations().contains(FuzzingLocation.FORM_PARAMETERS)
+          && contentType.get().startsWith("application/x-www-form-urlencoded")) {
+        for (ParameterSlot slot : ParameterSlot.parseAll(body)) {
+          fuzzingPoints.add(
+              new FuzzingPoint(
+                  slot.decodedValue(),
+                  value ->
+                      request.toBuilder()
+                          .setRequestBody(ByteString.copyFromUtf8(slot.replace(value)))
+                          .build()));
+        }
+      } else if (locations().contains(FuzzingLocation.JSON_VALUES)
+          && contentType.get().contains("json")) {
+        addJsonFuzzingPoints(request, body, fuzzingPoints);
+      }
+    }
+    for (String headerName : headerNames()) {
+      addHeaderFuzzingPoint(request, headerName, fuzzingPoints);
+    }
+    return fuzzingPoints.build();
+  }
+
+  private void addQueryFuzzingPoints(
+      HttpRequest request, ImmutableList.Builder<FuzzingPoint> fuzzingPoints) {
+    String url = request.url();
+    int fragmentStart = url.indexOf('#');
+    String fragment = fragmentStart == -1 ? "" : url.substring(fragmentStart);
+    String urlWithoutFragment = fragmentStart == -1 ? url : url.substring(0, fragmentStart);
+    int queryStart = urlWithoutFragment.indexOf('?');
+    String base =
+        queryStart == -1 ? urlWithoutFragment : urlWithoutFragment.substring(0, queryStart);
+    String query = queryStart == -1 ? "" : urlWithoutFragment.substring(queryStart + 1);
+
+    ImmutableList<ParameterSlot> slots = ParameterSlot.parseAll(query);
+    if (slots.isEmpty()) {
+      defaultQueryParameter()
+          .ifPresent(
+              name ->
+                  fuzzingPoints.add(
+                      new FuzzingPoint(
+                          "",
+                          value ->
+                              request.toBuilder()
+                                  .setUrl(base + "?" + name + "=" + value + fragment)
+                                  .build())));
+      return;
+    }
+    for (ParameterSlot slot : slots) {
+      fuzzingPoints.add(
+          new FuzzingPoint(
+              slot.decodedValue(),
+              value ->
+                  request.toBuilder()
+                      .setUrl(base + "?" + slot.replace(value) + fragment)
+                      .build()));
+    }
+  }
+
+  private static void addJsonFuzzingPoints(
+      HttpRequest request, String body, ImmutableList.Builder<FuzzingPoint> fuzzingPoints) {
+    JsonElement root;
+    try {
+      root = JsonParser.parseString(body);
+    } catch (JsonParseException e) {
+      return;
+    }
+    List<ImmutableList<Object>> leafPaths = new ArrayList<>();
+    collectJsonLeafPaths(root, ImmutableList.of(), leafPaths);
+    for (ImmutableList<Object> leafPath : leafPaths) {
+      if (leafPath.isEmpty()) {
+        // A primitive document has nothing to keep around the payload.
+        continue;
+      }
+      JsonElement leaf = getJsonElement(root, leafPath);
+      String originalValue = leaf.isJsonPrimitive() ? leaf.getAsString() : "";
+      fuzzingPoints.add(
+          new FuzzingPoint(
+              originalValue,
+              value -> {
+                JsonElement fuzzedRoot = root.deepCopy();
+                JsonElement parent =
+                    getJsonElement(fuzzedRoot, leafPath.subList(0, leafPath.size() - 1));
+                Object key = leafPath.get(leafPath.size() - 1);
+                if (key instanceof String) {
+                  parent.getAsJsonObject().add((String) key, new JsonPrimitive(value));
+                } else {
+                  parent.getAsJsonArray().set((Integer) key, new JsonPrimitive(value));
+                }
+                return request.toBuilder()
+                    .setRequestBody(ByteString.copyFromUtf8(fuzzedRoot.toString()))
+                    .build();
+              }));
+    }
+  }
+
+  private static void collectJsonLeafPaths(
+      JsonElement element, ImmutableList<Object> path, List<ImmutableList<Object>> leafPaths) {
+    if (element.isJsonObject()) {
+      for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+        collectJsonLeafPaths(entry.getValue(), append(path, entry.getKey()), leafPaths);
+      }
+    } else if (element.isJsonArray()) {
+      JsonArray array = element.getAsJsonArray();
+      for (int i = 0; i < array.size(); i++) {
+        collectJsonLeafPaths(array.get(i), append(path, i), leafPaths);
+      }
+    } else {
+      leafPaths.add(path);
+    }
+  }
+
+  private static ImmutableList<Object> append(ImmutableList<Object> path, Object key) {
+    return ImmutableList.builder().addAll(path).add(key).build();
+  }
+
+  private static JsonElement getJsonElement(JsonElement root, List<Object> path) {
+    JsonElement element = root;
+    for (Object key : path) {
+      element =
+          key instanceof String
+              ? ((JsonObject) element).get((String) key)
+              : ((JsonArray) element).get((Integer) key);
+    }
+    return element;
+  }
+
+  private static void addHeaderFuzzingPoint(
+      HttpRequest request, String headerName, ImmutableList.Builder<FuzzingPoint> fuzzingPoints) {
+    HttpHeaders.Builder otherHeaders = HttpHeaders.builder();
+    for (String name : request.headers().names()) {
+      if (!Ascii.equalsIgnoreCase(name, headerName)) {
+        request.headers().getAll(name).forEach(value -> otherHeaders.addHeader(name, value, false));
+      }
+    }
+    HttpHeaders headersWithoutFuzzedHeader = otherHeaders.build();
+    fuzzingPoints.add(
+        new FuzzingPoint(
+            request.headers().get(headerName).orElse(""),
+            value -> {
+              HttpHeaders.Builder fuzzedHeaders = HttpHeaders.builder();
+              for (String name : headersWithoutFuzzedHeader.names()) {
+                headersWithoutFuzzedHeader
+                    .getAll(name)
+                    .forEach(headerValue -> fuzzedHeaders.addHeader(name, headerValue, false));
+              }
+              // Not validated, so that payloads with control characters still get generated.
+              fuzzedHeaders.addHeader(headerName, value, false);
+              return request.toBuilder().setHeaders(fuzzedHeaders.build()).build();
+            }));
+  }
+
+  /**
+   * Returns the values to inject for a payload: the payload itself, and if the values are expected
+   * to be paths, the payload with the file extension and the path prefix of the original value.
+   */
+  private ImmutableList<String> fuzzedValues(String originalValue, String payload) {
+    if (!expectingPathValues()) {
+      return ImmutableList.of(payload);
+    }
+    ImmutableList.Builder<String> values = ImmutableList.<String>builder().add(payload);
+    int dotLocation = originalValue.lastIndexOf('.');
+    if (dotLocation != -1) {
+      values.add(payload + "%00" + originalValue.substring(dotLocation));
+    }
+    int slashLocation = originalValue.lastIndexOf('/');
+    if (slashLocation != -1) {
+      values.add(originalValue.substring(0, slashLocation + 1) + payload);
+    }
+    if (dotLocation != -1 && slashLocation != -1 && slashLocation < dotLocation) {
+      values.add(
+          originalValue.substring(0, slashLocation + 1)
+              + payload
+              + "%00"
+              + originalValue.substring(dotLocation));
+    }
+    return values.build();
+  }
+
+  /** A place of the request to inject fuzzed values into. */
+  private static final class FuzzingPoint {
+    private final String originalValue;
+    private final ValueInjector injector;
+
+    FuzzingPoint(String originalValue, ValueInjector injector) {
+      this.originalValue = originalValue;
+      this.injector = injector;
+    }
+  }
+
+  private interface ValueInjector {
+    HttpRequest inject(String value);
+  }
+
+  /**
+   * A {@code name=value} parameter of a query or form body, kept as offsets into the original
+   * string so that all other parameters are reproduced verbatim. Empty parameters, e.g. between
+   * {@code &&}, are fuzzed as well.
+   */
+  private static final class ParameterSlot {
+    private final String parameters;
+    private final int valueStart;
+    private final int end;
+    private final String prefix;
+    private final String value;
+
+    private ParameterSlot(String parameters, int start, int end) {
+      this.parameters = parameters;
+      this.end = end;
+      int equalPosition = parameters.indexOf('=', start);
+      if (equalPosition != -1 && equalPosition < end) {
+        this.valueStart = equalPosition + 1;
+        this.prefix = parameters.substring(0, valueStart);
+      } else {
+        this.valueStart = end;
+        this.prefix = parameters.substring(0, end) + "=";
+      }
+      this.value = parameters.substring(valueStart, end);
+    }
+
+    static ImmutableList<ParameterSlot> parseAll(String parameters) {
+      ImmutableList.Builder<ParameterSlot> slots = ImmutableList.builder();
+      if (parameters.isEmpty()) {
+        return slots.build();
+      }
+      int start = 0;
+      while (true) {
+        int end = parameters.indexOf('&', start);
+        if (end == -1) {
+          slots.add(new ParameterSlot(parameters, start, parameters.length()));
+          return slots.build();
+        }
+        slots.add(new ParameterSlot(parameters, start, end));
+        start = end + 1;
+      }
+    }
+
+    /** Returns the percent-decoded value, or the raw value if it is not validly encoded. */
+    String decodedValue() {
+      try {
+        // '+' is kept as is, like URI#getQuery does.
+        return URLDecoder.decode(value.replace("+", "%2B"), UTF_8);
+      } catch (IllegalArgumentException e) {
+        return value;
+      }
+    }
+
+    /** Returns the parameters string with the value of this parameter replaced. */
+    String replace(String newValue) {
+      return prefix + newValue + parameters.substring(end);
+    }
+  }
+
+  /** Walks the fuzzing points, the payloads and the values of each payload, lazily. */
+  private final class FuzzedRequestIterator extends AbstractIterator<HttpRequest> {
+    private final Iterator<FuzzingPoint> fuzzingPoints;
+    private final Iterable<String> payloads;
+    private FuzzingPoint fuzzingPoint;
+    private Iterator<String> payloadIterator = ImmutableList.<String>of().iterator();
+    private Iterator<String> valueIterator = ImmutableList.<String>of().iterator();
+
+    FuzzedRequestIterator(ImmutableList<FuzzingPoint> fuzzingPoints, Iterable<String> payloads) {
+      this.fuzzingPoints = fuzzingPoints.iterator();
+      this.payloads = payloads;
+    }
+
+    @Override
+    protected HttpRequest computeNext() {
+      while (!valueIterator.hasNext()) {
+        while (!payloadIterator.hasNext()) {
+          if (!fuzzingPoints.hasNext()) {
+            return endOfData();
+          }
+          fuzzingPoint = fuzzingPoints.next();
+          payloadIterator = payloads.iterator();
+        }
+        valueIterator = fuzzedValues(fuzzingPoint.originalValue, payloadIterator.next()).iterator();
+      }
+      return fuzzingPoint.injector.inject(valueIterator.next());
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.Security;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A caching DNS resolver shared by the scanner.
+ *
+ * <p>Successful and failed lookups are cached for a positive and a negative TTL respectively, and
+ * concurrent lookups of the same hostname are coalesced into one resolution. The JDK resolver does
+ * not expose the TTL of DNS records, so the TTLs default to the JVM's {@code
+ * networkaddress.cache.ttl} and {@code networkaddress.cache.negative.ttl} security properties.
+ *
+ * <p>Hostnames can be pinned to static addresses, hosts-file style, e.g. to keep a scan on the
+ * addresses a target resolved to when the scan started.
+ */
+public final class TsunamiDns {
+  private static final Duration DEFAULT_POSITIVE_TTL = Duration.ofSeconds(30);
+  private static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(10);
+  private static final int MAX_CACHED_HOSTNAMES = 10_000;
+  private static final TsunamiDns DEFAULT_INSTANCE =
+      new TsunamiDns(defaultPositiveTtl(), defaultNegativeTtl(), ImmutableMap.of());
+
+  private final Resolver resolver;
+  private final Ticker ticker;
+  private final long positiveTtlNanos;
+  private final long negativeTtlNanos;
+  private final Map<String, ImmutableList<InetAddress>> pinnedAddresses;
+  private final Cache<String, Resolution> resolutions;
+  private final LongAdder lookupCount = new LongAdder();
+  private final LongAdder cacheHitCount = new LongAdder();
+  private final LongAdder resolutionCount = new LongAdder();
+  private final LongAdder failedResolutionCount = new LongAdder();
+
+  /** Resolves a hostname to its addresses. */
+  @VisibleForTesting
+  interface Resolver {
+    InetAddress[] resolve(String hostname) throws UnknownHostException;
+  }
+
+  /**
+   * @param positiveTtl duration to cache successful lookups, zero to disable caching.
+   * @param negativeTtl duration to cache failed lookups, zero to disable caching.
+   * @param pinnedAddresses static addresses keyed by hostname, never resolved nor expired.
+   */
+  public TsunamiDns(
+      Duration positiveTtl,
+      Duration negativeTtl,
+      Map<String, ? extends Collection<InetAddress>> pinnedAddresses) {
+    this(InetAddress::getAllByName, Ticker.systemTicker(), positiveTtl, negativeTtl);
+    pinnedAddresses.forEach(this::pin);
+  }
+
+  @VisibleForTesting
+  TsunamiDns(Resolver resolver, Ticker ticker, Duration positiveTtl, Duration negativeTtl) {
+    checkArgument(!positiveTtl.isNegative(), "Positive TTL cannot be negative.");
+    checkArgument(!negativeTtl.isNegative(), "Negative TTL cannot be negative.");
+    this.resolver = checkNotNull(resolver);
+    this.ticker = checkNotNull(ticker);
+    this.positiveTtlNanos = positiveTtl.toNanos();
+    this.negativeTtlNanos = negativeTtl.toNanos();
+    this.pinnedAddresses = new ConcurrentHashMap<>();
+    this.resolutions =
+        CacheBuilder.newBuilder().maximumSize(MAX_CACHED_HOSTNAMES).ticker(ticker).build();
+  }
+
+  /** Returns a shared instance with the default TTLs and no pinned addresses. */
+  public static TsunamiDns getDefault() {
+    return DEFAULT_INSTANCE;
+  }
+
+  /** Returns the positive TTL used when none is configured. */
+  public static Duration defaultPositiveTtl() {
+    return ttlFromSecurityProperty("networkaddress.cache.ttl", DEFAULT_POSITIVE_TTL);
+  }
+
+  /** Returns the negative TTL used when none is configured. */
+  public static Duration defaultNegativeTtl() {
+    return ttlFromSecurityProperty("networkaddress.cache.negative.ttl", DEFAULT_NEGATIVE_TTL);
+  }
+
+  /**
+   * Looks up all addresses of a hostname. IP address literals are returned as is.
+   *
+   * @param hostname the hostname to look up.
+   * @return the addresses of the hostname, never empty.
+   * @throws UnknownHostException if the hostname cannot be resolved.
+   */
+  public ImmutableList<InetAddress> lookup(String hostname) throws UnknownHostException {
+    checkNotNull(hostname);
+    if (InetAddresses.isInetAddress(hostname)) {
+      return ImmutableList.of(InetAddresses.forString(hostname));
+    }
+    if (InetAddresses.isUriInetAddress(hostname)) {
+      return ImmutableList.of(InetAddresses.forUriString(hostname));
+    }
+    String key = Ascii.toLowerCase(hostname);
+    lookupCount.increment();
+    ImmutableList<InetAddress> pinned = pinnedAddresses.get(key);
+    if (pinned != null) {
+      cacheHitCount.increment();
+      return pinned;
+    }
+
+    Resolution resolution = resolutions.getIfPresent(key);
+    if (resolution != null && resolution.isExpired(ticker.read())) {
+      resolutions.asMap().remove(key, resolution);
+      resolution = null;
+    }
+    if (resolution == null) {
+      AtomicBoolean resolved = new AtomicBoolean();
+      try {
+        // Concurrent loads of the same key wait for the first one, coalescing the lookups.
+        resolution =
+            resolutions.get(
+                key,
+                () -> {
+                  resolved.set(true);
+                  return resolve(hostname);
+                });
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        throw new IllegalStateException("Unexpected failure of DNS lookup.", e.getCause());
+      }
+      if (!resolved.get()) {
+        cacheHitCount.increment();
+      }
+    } else {
+      cacheHitCount.increment();
+    }
+
+    if (resolution.failureMessage() != null) {
+      throw new UnknownHostException(resolution.failureMessage());
+    }
+    return resolution.addresses();
+  }
+
+  /**
+   * Looks up the first address of a hostname, like {@link InetAddress#getByName}.
+   *
+   * @param hostname the hostname to look up.
+   * @return the first address of the hostname.
+   * @throws UnknownHostException if the hostname cannot be resolved.
+   */
+  public InetAddress lookupFirst(String hostname) throws UnknownHostException {
+    return lookup(hostname).get(0);
+  }
+
+  /**
+   * Pins a hostname to static addresses for the lifetime of this resolver.
+   *
+   * @param hostname the hostname to pin.
+   * @param addresses the addresses returned for the hostname.
+   */
+  public void pin(String hostname, Collection<InetAddress> addresses) {
+    checkArgument(!addresses.isEmpty(), "Addresses of pinned host %s cannot be empty.", hostname);
+    pinnedAddresses.put(Ascii.toLowerCase(hostname), ImmutableList.copyOf(addresses));
+  }
+
+  /** Returns a snapshot of the lookup counters of this resolver. */
+  public Stats getStats() {
+    return new AutoValue_TsunamiDns_Stats(
+        lookupCount.sum(),
+        cacheHitCount.sum(),
+        resolutionCount.sum(),
+        failedResolutionCount.sum());
+  }
+
+  private Resolution resolve(String hostname) {
+    resolutionCount.increment();
+    long now = ticker.read();
+    try {
+      InetAddress[] addresses = resolver.resolve(hostname);
+      if (addresses.length == 0) {
+        throw new UnknownHostException(hostname);
+      }
+      return Resolution.create(ImmutableList.copyOf(addresses), null, now + positiveTtlNanos);
+    } catch (UnknownHostException e) {
+      failedResolutionCount.increment();
+      String message = e.getMessage() == null ? hostname : e.getMessage();
+      return Resolution.create(ImmutableList.of(), message, now + negativeTtlNanos);
+    }
+  }
+
+  private static Duration ttlFromSecurityProperty(String name, Duration defaultTtl) {
+    String value = Security.getProperty(name);
+    if (value == null) {
+      return defaultTtl;
+    }
+    try {
+      long seconds = Long.parseLong(value.trim());
+      // A negative value means caching forever in the JVM, bounded here by the default.
+      return seconds < 0 ? defaultTtl : Duration.ofSeconds(seconds);
+    } catch (NumberFormatException e) {
+      return defaultTtl;
+    }
+  }
+
+  /** The cached outcome of resolving a hostname. */
+  @AutoValue
+  abstract static class Resolution {
+    abstract ImmutableList<InetAddress> addresses();
+
+    @Nullable
+    abstract String failureMessage();
+
+    abstract long expiresAtNanos();
+
+    boolean isExpired(long nowNanos) {
+      return nowNanos - expiresAtNanos() >= 0;
+    }
+
+    static Resolution create(
+        ImmutableList<InetAddress> addresses,
+        @Nullable String failureMessage,
+        long expiresAtNanos) {
+      return new AutoValue_TsunamiDns_Resolution(addresses, failureMessage, expiresAtNanos);
+    }
+  }
+
+  /** Counters of the lookups made through a {@link TsunamiDns}. */
+  @AutoValue
+  public abstract static class Stats {
+    /** The number of hostname lookups, excluding IP address literals. */
+    public abstract long lookupCount();
+
+    /** The number of lookups answered from the cache or the pinned addresses. */
+    public abstract long cacheHitCount();
+
+    /** The number of lookups that went to the system resolver. */
+    public abstract long resolutionCount();
+
+    /** The number of resolutions that failed, whose failure was then cached. */
+    public abstract long failedResolutionCount();
+  }
+}
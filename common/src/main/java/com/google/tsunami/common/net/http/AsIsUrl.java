@@ -0,0 +1,83 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Ascii;
+import java.net.MalformedURLException;
+
+/** The parts of a URL needed to send a request as is, without any canonicalization. */
+@AutoValue
+abstract class AsIsUrl {
+  abstract boolean tls();
+
+  abstract String host();
+
+  abstract int port();
+
+  /** The authority as written in the URL, without user info. */
+  abstract String authority();
+
+  /** The path and query as written in the URL. */
+  abstract String requestTarget();
+
+  static AsIsUrl parse(String url) throws MalformedURLException {
+    int schemeEnd = url.indexOf("://");
+    if (schemeEnd == -1) {
+      throw new MalformedURLException("Missing scheme in URL: " + url);
+    }
+    String scheme = Ascii.toLowerCase(url.substring(0, schemeEnd));
+    if (!scheme.equals("http") && !scheme.equals("https")) {
+      throw new MalformedURLException("Unsupported scheme in URL: " + url);
+    }
+    boolean tls = scheme.equals("https");
+
+    int authorityStart = schemeEnd + 3;
+    int authorityEnd = authorityStart;
+    while (authorityEnd < url.length() && "/?#".indexOf(url.charAt(authorityEnd)) == -1) {
+      authorityEnd++;
+    }
+    String authority = url.substring(authorityStart, authorityEnd);
+    authority = authority.substring(authority.lastIndexOf('@') + 1);
+    String host = authority;
+    int port = tls ? 443 : 80;
+    int portSeparator = authority.lastIndexOf(':');
+    if (portSeparator != -1 && portSeparator > authority.lastIndexOf(']')) {
+      host = authority.substring(0, portSeparator);
+      try {
+        port = Integer.parseInt(authority.substring(portSeparator + 1));
+      } catch (NumberFormatException e) {
+        throw new MalformedURLException("Invalid port in URL: " + url);
+      }
+    }
+    if (host.startsWith("[") && host.endsWith("]")) {
+      host = host.substring(1, host.length() - 1);
+    }
+    if (host.isEmpty()) {
+      throw new MalformedURLException("Missing host in URL: " + url);
+    }
+
+    String requestTarget = url.substring(authorityEnd);
+    int fragmentStart = requestTarget.indexOf('#');
+    if (fragmentStart != -1) {
+      requestTarget = requestTarget.substring(0, fragmentStart);
+    }
+    if (!requestTarget.startsWith("/")) {
+      requestTarget = "/" + requestTarget;
+    }
+    return new AutoValue_AsIsUrl(tls, host, port, authority, requestTarget);
+  }
+}
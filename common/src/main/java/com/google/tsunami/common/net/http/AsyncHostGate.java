@@ -0,0 +1,57 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import okhttp3.Request;
+
+/**
+ * A per-host limit applied to asynchronous calls before they are handed to OkHttp's {@link
+ * okhttp3.Dispatcher}.
+ *
+ * <p>Interceptors run on the thread executing the call. For enqueued calls that is a dispatcher
+ * thread holding one of the dispatcher's global request slots, so waiting for a host inside an
+ * interceptor would starve the calls to every other host. Interceptors implementing this interface
+ * therefore only wait for synchronous calls, while {@link OkHttpHttpClient} waits for the
+ * admission of asynchronous calls without blocking any thread and {@link #markAdmitted marks} them
+ * before enqueueing them.
+ */
+interface AsyncHostGate {
+
+  /**
+   * Admits an asynchronous call to the given host.
+   *
+   * @param host the lower case hostname or IP address of the request.
+   * @return a future completing with the callback releasing the admission once the call may be
+   *     dispatched. Cancelling the future gives up waiting.
+   */
+  ListenableFuture<Runnable> admit(String host);
+
+  /** Marks the request of a call admitted by every gate of its client. */
+  static Request markAdmitted(Request request) {
+    return request.newBuilder().tag(Admitted.class, Admitted.INSTANCE).build();
+  }
+
+  /** Whether the request belongs to a call admitted before it was enqueued. */
+  static boolean isAdmitted(Request request) {
+    return request.tag(Admitted.class) != null;
+  }
+
+  /** Tag of the requests of admitted calls. */
+  enum Admitted {
+    INSTANCE
+  }
+}
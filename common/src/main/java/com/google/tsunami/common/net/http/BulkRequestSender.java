@@ -0,0 +1,217 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Sends a sequence of requests with at most a fixed number of them in flight.
+ *
+ * <p>Requests are pulled from the iterator only when a slot frees up, so lazily generated requests
+ * are never all held in memory. Outcomes are handed to the {@link Handler} one at a time, which can
+ * stop the run; stopping or cancelling the run cancels the requests in flight.
+ *
+ * @param <T> the type of the tasks, each sending one request.
+ */
+final class BulkRequestSender<T> {
+  private final Iterator<T> tasks;
+  private final int maxConcurrency;
+  private final Function<T, ListenableFuture<HttpResponse>> sendFunction;
+  private final Handler<T> handler;
+  private final SettableFuture<Void> completion = SettableFuture.create();
+  private final Object handlerLock = new Object();
+
+  // Guarded by this.
+  private final Set<ListenableFuture<HttpResponse>> inFlightRequests = new HashSet<>();
+  private boolean sending;
+  private boolean stopped;
+  private boolean exhausted;
+
+  /** Receives the outcome of each task, never called concurrently. */
+  interface Handler<T> {
+    /** Returns whether the remaining tasks should still be sent. */
+    boolean onResponse(T task, HttpResponse httpResponse);
+
+    /** Returns whether the remaining tasks should still be sent. */
+    boolean onFailure(T task, Throwable throwable);
+  }
+
+  BulkRequestSender(
+      Iterator<T> tasks,
+      int maxConcurrency,
+      Function<T, ListenableFuture<HttpResponse>> sendFunction,
+      Handler<T> handler) {
+    checkArgument(maxConcurrency > 0, "Max concurrency must be positive.");
+    this.tasks = checkNotNull(tasks);
+    this.maxConcurrency = maxConcurrency;
+    this.sendFunction = checkNotNull(sendFunction);
+    this.handler = checkNotNull(handler);
+  }
+
+  /**
+   * Starts sending the requests.
+   *
+   * @return the future completed once all outcomes were handled or the run was stopped, failed if
+   *     the iterator or the handler threw. Cancelling it cancels the requests in flight.
+   */
+  ListenableFuture<Void> start() {
+    completion.addListener(
+        () -> {
+          if (completion.isCancelled()) {
+            stop();
+          }
+        },
+        directExecutor());
+    sendMore();
+    return completion;
+  }
+
+  private void sendMore() {
+    synchronized (this) {
+      // Responses completing within sendFunction call back into this method, the outer call keeps
+      // sending instead of recursing.
+      if (sending) {
+        return;
+      }
+      sending = true;
+    }
+    try {
+      while (true) {
+        T task;
+        synchronized (this) {
+          if (!stopped && inFlightRequests.size() < maxConcurrency && tasks.hasNext()) {
+            task = tasks.next();
+          } else {
+            // Cleared in the same critical section as the last check, so that a slot freed by a
+            // concurrent response is never missed.
+            exhausted = stopped || !tasks.hasNext();
+            sending = false;
+            break;
+          }
+        }
+        ListenableFuture<HttpResponse> request = sendFunction.apply(task);
+        boolean stoppedWhileSending;
+        synchronized (this) {
+          inFlightRequests.add(request);
+          stoppedWhileSending = stopped;
+        }
+        if (stoppedWhileSending) {
+          request.cancel(true);
+        }
+        Futures.addCallback(request, new TaskCallback(task, request), directExecutor());
+      }
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        exhausted = true;
+        sending = false;
+      }
+      fail(e);
+    }
+    maybeComplete();
+  }
+
+  private void onDone(ListenableFuture<HttpResponse> request, boolean keepSending) {
+    if (!keepSending) {
+      stop();
+    }
+    synchronized (this) {
+      inFlightRequests.remove(request);
+    }
+    sendMore();
+  }
+
+  private void stop() {
+    ImmutableList<ListenableFuture<HttpResponse>> toCancel;
+    synchronized (this) {
+      if (stopped) {
+        return;
+      }
+      stopped = true;
+      toCancel = ImmutableList.copyOf(inFlightRequests);
+    }
+    toCancel.forEach(request -> request.cancel(true));
+  }
+
+  private void maybeComplete() {
+    synchronized (this) {
+      if (sending || !exhausted || !inFlightRequests.isEmpty()) {
+        return;
+      }
+    }
+    completion.set(null);
+  }
+
+  private void fail(Throwable t) {
+    stop();
+    completion.setException(t);
+  }
+
+  private final class TaskCallback implements FutureCallback<HttpResponse> {
+    private final T task;
+    private final ListenableFuture<HttpResponse> request;
+
+    TaskCallback(T task, ListenableFuture<HttpResponse> request) {
+      this.task = task;
+      this.request = request;
+    }
+
+    @Override
+    public void onSuccess(HttpResponse httpResponse) {
+      handle(() -> handler.onResponse(task, httpResponse));
+    }
+
+    @Override
+    public void onFailure(Throwable t) {
+      if (t instanceof CancellationException && isStopped()) {
+        // Cancelled by this sender, not an outcome the handler needs to know about.
+        onDone(request, false);
+        return;
+      }
+      handle(() -> handler.onFailure(task, t));
+    }
+
+    private void handle(BooleanSupplier handlerCall) {
+      boolean keepSending;
+      try {
+        synchronized (handlerLock) {
+          keepSending = !isStopped() && handlerCall.getAsBoolean();
+        }
+      } catch (Throwable t) {
+        fail(t);
+        keepSending = false;
+      }
+      onDone(request, keepSending);
+    }
+  }
+
+  private synchronized boolean isStopped() {
+    return stopped;
+  }
+}
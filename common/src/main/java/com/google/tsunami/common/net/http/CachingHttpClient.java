@@ -0,0 +1,378 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.nonCancellationPropagating;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.Ascii;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.ByteString;
+import com.google.tsunami.proto.NetworkEndpoint;
+import com.google.tsunami.proto.NetworkService;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An {@link HttpClient} that caches the responses of GET and HEAD requests sent by the wrapped
+ * client, and coalesces concurrent identical requests into a single in-flight request.
+ *
+ * <p>Responses are keyed by the request method, URL and headers as well as by the endpoint of the
+ * target {@link NetworkService}, so entries are never shared between scan targets. The cache is
+ * bounded by the total size of the cached responses and evicts the least recently used entries.
+ * Requests marked as not {@link HttpRequest#cacheable()} always go over the wire.
+ *
+ * <p>Clients derived via {@link #modify()} share the cache of the client they were derived from.
+ * Settings changing the responses, e.g. whether redirects are followed, partition the shared cache,
+ * so clients built with identical settings share their entries.
+ *
+ * <p>Every caller of a coalesced request may cancel its own future without affecting the others,
+ * and the request itself is only cancelled once all of its callers cancelled.
+ */
+final class CachingHttpClient extends HttpClient {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  // Rough size of a cache entry without its body, used when weighing entries.
+  private static final int ENTRY_OVERHEAD_BYTES = 512;
+
+  private final HttpClient delegate;
+  private final ResponseStore responseStore;
+  private final ClientSettings clientSettings;
+
+  CachingHttpClient(
+      HttpClient delegate,
+      ClientSettings clientSettings,
+      long maxCacheBytes,
+      Duration cacheExpiration) {
+    this(delegate, clientSettings, new ResponseStore(maxCacheBytes, cacheExpiration));
+  }
+
+  private CachingHttpClient(
+      HttpClient delegate, ClientSettings clientSettings, ResponseStore responseStore) {
+    this.delegate = checkNotNull(delegate);
+    this.clientSettings = checkNotNull(clientSettings);
+    this.responseStore = checkNotNull(responseStore);
+  }
+
+  @Override
+  public String getLogId() {
+    return delegate.getLogId();
+  }
+
+  @Override
+  public HttpResponse sendAsIs(HttpRequest httpRequest) throws IOException {
+    return delegate.sendAsIs(httpRequest);
+  }
+
+  @Override
+  public ListenableFuture<HttpResponse> sendAsIsAsync(HttpRequest httpRequest) {
+    return delegate.sendAsIsAsync(httpRequest);
+  }
+
+  @Override
+  public HttpResponse send(HttpRequest httpRequest) throws IOException {
+    return send(httpRequest, null);
+  }
+
+  @Override
+  public HttpResponse send(HttpRequest httpRequest, @Nullable NetworkService networkService)
+      throws IOException {
+    Optional<CacheKey> cacheKey = buildCacheKey(httpRequest, networkService);
+    if (cacheKey.isEmpty()) {
+      return delegate.send(httpRequest, networkService);
+    }
+
+    ListenableFuture<HttpResponse> responseFuture =
+        sendCached(
+            cacheKey.get(),
+            () -> {
+              try {
+                return immediateFuture(delegate.send(httpRequest, networkService));
+              } catch (IOException | RuntimeException e) {
+                return immediateFailedFuture(e);
+              }
+            });
+    try {
+      return responseFuture.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a coalesced HTTP request.");
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IOException(e.getCause());
+    }
+  }
+
+  @Override
+  public StreamingHttpResponse sendStreaming(
+      HttpRequest httpRequest, @Nullable NetworkService networkService) throws IOException {
+    // Streamed bodies are consumed by the caller, so they are never cached.
+    return delegate.sendStreaming(httpRequest, networkService);
+  }
+
+  @Override
+  public ListenableFuture<HttpResponse> sendAsync(HttpRequest httpRequest) {
+    return sendAsync(httpRequest, null);
+  }
+
+  @Override
+  public ListenableFuture<HttpResponse> sendAsync(
+      HttpRequest httpRequest, @Nullable NetworkService networkService) {
+    Optional<CacheKey> cacheKey = buildCacheKey(httpRequest, networkService);
+    if (cacheKey.isEmpty()) {
+      return delegate.sendAsync(httpRequest, networkService);
+    }
+    return sendCached(cacheKey.get(), () -> delegate.sendAsync(httpRequest, networkService));
+  }
+
+  private ListenableFuture<HttpResponse> sendCached(
+      CacheKey cacheKey, Supplier<ListenableFuture<HttpResponse>> responseSender) {
+    HttpResponse cachedResponse = responseStore.responses.getIfPresent(cacheKey);
+    if (cachedResponse != null) {
+      logger.atFine().log("Serving cached HTTP response for '%s'.", cacheKey.url());
+      return immediateFuture(cachedResponse);
+    }
+
+    while (true) {
+      InFlightResponse newInFlightResponse = new InFlightResponse();
+      InFlightResponse inFlightResponse =
+          responseStore.inFlightResponses.putIfAbsent(cacheKey, newInFlightResponse);
+      if (inFlightResponse == null) {
+        return sendInFlight(cacheKey, newInFlightResponse, responseSender);
+      }
+      Optional<ListenableFuture<HttpResponse>> joinedResponse = inFlightResponse.join();
+      if (joinedResponse.isPresent()) {
+        logger.atFine().log("Joining in-flight HTTP request for '%s'.", cacheKey.url());
+        return joinedResponse.get();
+      }
+      // All callers of the in-flight request cancelled it, so it can no longer be joined.
+      responseStore.inFlightResponses.remove(cacheKey, inFlightResponse);
+    }
+  }
+
+  private ListenableFuture<HttpResponse> sendInFlight(
+      CacheKey cacheKey,
+      InFlightResponse inFlightResponse,
+      Supplier<ListenableFuture<HttpResponse>> responseSender) {
+    Futures.addCallback(
+        inFlightResponse.response,
+        new FutureCallback<HttpResponse>() {
+          @Override
+          public void onSuccess(HttpResponse httpResponse) {
+            responseStore.responses.put(cacheKey, httpResponse);
+            responseStore.inFlightResponses.remove(cacheKey, inFlightResponse);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            responseStore.inFlightResponses.remove(cacheKey, inFlightResponse);
+          }
+        },
+        directExecutor());
+    // A new in-flight response can always be joined.
+    ListenableFuture<HttpResponse> responseFuture = inFlightResponse.join().get();
+    inFlightResponse.response.setFuture(responseSender.get());
+    return responseFuture;
+  }
+
+  private Optional<CacheKey> buildCacheKey(
+      HttpRequest httpRequest, @Nullable NetworkService networkService) {
+    if (!httpRequest.cacheable()
+        || !(httpRequest.method().equals(HttpMethod.GET)
+            || httpRequest.method().equals(HttpMethod.HEAD))) {
+      return Optional.empty();
+    }
+    // The user agent is always overridden by the client, so it never changes the response.
+    ImmutableListMultimap<String, String> headers =
+        ImmutableListMultimap.copyOf(
+            Multimaps.filterKeys(
+                httpRequest.headers().rawHeaders(),
+                headerName -> !Ascii.equalsIgnoreCase(headerName, HttpHeaders.USER_AGENT)));
+    return Optional.of(
+        new AutoValue_CachingHttpClient_CacheKey(
+            clientSettings,
+            httpRequest.method(),
+            httpRequest.url(),
+            headers,
+            networkService == null
+                ? Optional.empty()
+                : Optional.of(networkService.getNetworkEndpoint())));
+  }
+
+  @Override
+  @SuppressWarnings("unchecked") // safe covariant cast
+  public Builder<CachingHttpClient> modify() {
+    return new CachingHttpClientBuilder(delegate.modify(), clientSettings, responseStore);
+  }
+
+  /** The settings of a client that change the responses it receives. */
+  @AutoValue
+  abstract static class ClientSettings {
+    abstract boolean followRedirects();
+
+    abstract boolean trustAllCertificates();
+
+    abstract @Nullable Duration connectTimeout();
+
+    static ClientSettings create(
+        boolean followRedirects, boolean trustAllCertificates, @Nullable Duration connectTimeout) {
+      return new AutoValue_CachingHttpClient_ClientSettings(
+          followRedirects, trustAllCertificates, connectTimeout);
+    }
+  }
+
+  @AutoValue
+  abstract static class CacheKey {
+    abstract ClientSettings clientSettings();
+
+    abstract HttpMethod method();
+
+    abstract String url();
+
+    abstract ImmutableListMultimap<String, String> headers();
+
+    abstract Optional<NetworkEndpoint> networkEndpoint();
+  }
+
+  /** The cached and in-flight responses shared by a caching client and its modified clients. */
+  private static final class ResponseStore {
+    private final Cache<CacheKey, HttpResponse> responses;
+    private final ConcurrentMap<CacheKey, InFlightResponse> inFlightResponses =
+        new ConcurrentHashMap<>();
+
+    ResponseStore(long maxCacheBytes, Duration cacheExpiration) {
+      checkArgument(maxCacheBytes > 0, "Max cache size must be positive.");
+      this.responses =
+          CacheBuilder.newBuilder()
+              .maximumWeight(maxCacheBytes)
+              .weigher(
+                  (CacheKey cacheKey, HttpResponse httpResponse) ->
+                      ENTRY_OVERHEAD_BYTES
+                          + cacheKey.url().length()
+                          + httpResponse.bodyBytes().map(ByteString::size).orElse(0))
+              .expireAfterWrite(checkNotNull(cacheExpiration))
+              .build();
+    }
+  }
+
+  /**
+   * A request sent on behalf of all the callers that joined it. Each caller gets its own future,
+   * and the request is cancelled once every caller cancelled its future.
+   */
+  private static final class InFlightResponse {
+    private final SettableFuture<HttpResponse> response = SettableFuture.create();
+
+    // Guarded by this.
+    private int waiters;
+
+    /** Joins the request, unless it was already cancelled by all its previous callers. */
+    synchronized Optional<ListenableFuture<HttpResponse>> join() {
+      if (response.isCancelled()) {
+        return Optional.empty();
+      }
+      waiters++;
+      ListenableFuture<HttpResponse> waiterResponse = nonCancellationPropagating(response);
+      waiterResponse.addListener(
+          () -> {
+            if (waiterResponse.isCancelled()) {
+              leave();
+            }
+          },
+          directExecutor());
+      return Optional.of(waiterResponse);
+    }
+
+    private synchronized void leave() {
+      if (!response.isDone() && --waiters == 0) {
+        response.cancel(true);
+      }
+    }
+  }
+
+  private static final class CachingHttpClientBuilder extends Builder<CachingHttpClient> {
+    private final Builder<?> delegateBuilder;
+    private final ResponseStore responseStore;
+    private boolean followRedirects;
+    private boolean trustAllCertificates;
+    private Duration connectTimeout;
+
+    CachingHttpClientBuilder(
+        Builder<?> delegateBuilder, ClientSettings clientSettings, ResponseStore responseStore) {
+      this.delegateBuilder = checkNotNull(delegateBuilder);
+      this.responseStore = checkNotNull(responseStore);
+      this.followRedirects = clientSettings.followRedirects();
+      this.trustAllCertificates = clientSettings.trustAllCertificates();
+      this.connectTimeout = clientSettings.connectTimeout();
+    }
+
+    @Override
+    public CachingHttpClientBuilder setFollowRedirects(boolean followRedirects) {
+      delegateBuilder.setFollowRedirects(followRedirects);
+      this.followRedirects = followRedirects;
+      return this;
+    }
+
+    @Override
+    public CachingHttpClientBuilder setTrustAllCertificates(boolean trustAllCertificates) {
+      delegateBuilder.setTrustAllCertificates(trustAllCertificates);
+      this.trustAllCertificates = trustAllCertificates;
+      return this;
+    }
+
+    @Override
+    public CachingHttpClientBuilder setLogId(String logId) {
+      delegateBuilder.setLogId(logId);
+      return this;
+    }
+
+    @Override
+    public CachingHttpClientBuilder setConnectTimeout(Duration connectionTimeout) {
+      delegateBuilder.setConnectTimeout(connectionTimeout);
+      this.connectTimeout = connectionTimeout;
+      return this;
+    }
+
+    @Override
+    public CachingHttpClient build() {
+      return new CachingHttpClient(
+          delegateBuilder.build(),
+          ClientSettings.create(followRedirects, trustAllCertificates, connectTimeout),
+          responseStore);
+    }
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.net.HostAndPort;
+import com.google.common.net.InetAddresses;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * An OkHttp {@link Interceptor} that stops sending requests to endpoints that went dark.
+ *
+ * <p>Circuits are kept per host and port, so that a closed port refusing connections does not cut
+ * off the other services of its host. The circuit of an endpoint opens after a number of
+ * consecutive connection failures or timeouts. While it is open, requests to the endpoint fail
+ * right away with a {@link HostUnreachableException} instead of waiting for the connect and read
+ * timeouts. Once the open duration elapsed, the circuit is half-open and a single trial request is
+ * let through: the circuit closes if the endpoint answers and opens again otherwise.
+ *
+ * <p>The breaker is a singleton shared with the scanning workflow, which skips the remaining
+ * detectors of a service whose circuit is open.
+ */
+@Singleton
+public final class HostCircuitBreaker implements Interceptor {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  private static final int DEFAULT_FAILURE_THRESHOLD = 10;
+  private static final Duration DEFAULT_OPEN_DURATION = Duration.ofMinutes(5);
+  // States of hosts that haven't been requested for a while are dropped, so that memory usage stays
+  // bounded when scanning many hosts.
+  private static final Duration IDLE_HOST_EXPIRATION = Duration.ofMinutes(30);
+
+  private final int failureThreshold;
+  private final long openDurationNanos;
+  private final Ticker ticker;
+  private final Cache<HostAndPort, HostState> hostStates;
+
+  @Inject
+  HostCircuitBreaker(
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    this(
+        getFailureThreshold(httpClientCliOptions, httpClientConfigProperties),
+        getOpenDuration(httpClientConfigProperties),
+        Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  HostCircuitBreaker(int failureThreshold, Duration openDuration, Ticker ticker) {
+    checkArgument(failureThreshold >= 0, "Failure threshold cannot be negative.");
+    checkArgument(!openDuration.isNegative(), "Open duration cannot be negative.");
+    this.failureThreshold = failureThreshold;
+    this.openDurationNanos = openDuration.toNanos();
+    this.ticker = checkNotNull(ticker);
+    this.hostStates =
+        CacheBuilder.newBuilder().expireAfterAccess(IDLE_HOST_EXPIRATION).ticker(ticker).build();
+  }
+
+  private static int getFailureThreshold(
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    if (httpClientCliOptions.circuitBreakerFailureThreshold != null) {
+      return httpClientCliOptions.circuitBreakerFailureThreshold;
+    }
+    if (httpClientConfigProperties.circuitBreakerFailureThreshold != null) {
+      return httpClientConfigProperties.circuitBreakerFailureThreshold;
+    }
+    return DEFAULT_FAILURE_THRESHOLD;
+  }
+
+  private static Duration getOpenDuration(HttpClientConfigProperties httpClientConfigProperties) {
+    if (httpClientConfigProperties.circuitBreakerOpenSeconds != null) {
+      return Duration.ofSeconds(httpClientConfigProperties.circuitBreakerOpenSeconds);
+    }
+    return DEFAULT_OPEN_DURATION;
+  }
+
+  /** Whether the breaker is active, a zero failure threshold disables it. */
+  boolean isEnabled() {
+    return failureThreshold > 0;
+  }
+
+  /**
+   * Checks whether the circuit of an endpoint is open, i.e. requests to the endpoint currently fail
+   * fast. A half-open circuit, waiting for its trial request, is not open.
+   *
+   * @param host the hostname or IP address of the endpoint.
+   * @param port the port of the endpoint.
+   * @return true if the endpoint is considered unreachable.
+   */
+  public boolean isOpen(String host, int port) {
+    HostState hostState = hostStates.getIfPresent(toEndpoint(checkNotNull(host), port));
+    return hostState != null && hostState.isOpen();
+  }
+
+  /** Returns the endpoints whose circuit is currently open. */
+  public ImmutableSet<HostAndPort> getOpenEndpoints() {
+    return hostStates.asMap().entrySet().stream()
+        .filter(entry -> entry.getValue().isOpen())
+        .map(Map.Entry::getKey)
+        .collect(toImmutableSet());
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    if (!isEnabled()) {
+      return chain.proceed(chain.request());
+    }
+    HostAndPort endpoint = toEndpoint(chain.request().url().host(), chain.request().url().port());
+    HostState hostState = hostStates.getIfPresent(endpoint);
+    boolean trial = hostState != null && hostState.acquirePermission(endpoint);
+    try {
+      Response response = chain.proceed(chain.request());
+      recordSuccess(endpoint);
+      return response;
+    } catch (IOException e) {
+      if (chain.call().isCanceled()) {
+        // Cancelled calls, e.g. plugins stopped at their deadline, say nothing about the host.
+        throw e;
+      }
+      if (isConnectivityFailure(e)) {
+        recordFailure(endpoint);
+      } else if (!Thread.currentThread().isInterrupted()) {
+        // Any other error, e.g. a TLS or protocol error, still means the endpoint is reachable.
+        recordSuccess(endpoint);
+      }
+      throw e;
+    } finally {
+      if (trial) {
+        hostState.releaseTrial();
+      }
+    }
+  }
+
+  @VisibleForTesting
+  void recordSuccess(HostAndPort endpoint) {
+    HostState hostState = hostStates.getIfPresent(endpoint);
+    if (hostState != null) {
+      hostState.onSuccess();
+    }
+  }
+
+  @VisibleForTesting
+  void recordFailure(HostAndPort endpoint) {
+    try {
+      hostStates.get(endpoint, HostState::new).onFailure(endpoint);
+    } catch (ExecutionException e) {
+      throw new AssertionError("HostState creation never fails.", e);
+    }
+  }
+
+  /**
+   * Normalizes a hostname or IP address, so that e.g. the IPv6 addresses of OkHttp URLs and of
+   * network endpoints match regardless of their brackets and zero compression.
+   */
+  @VisibleForTesting
+  static String normalizeHost(String host) {
+    String unbracketedHost =
+        host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+    return InetAddresses.isInetAddress(unbracketedHost)
+        ? InetAddresses.toAddrString(InetAddresses.forString(unbracketedHost))
+        : Ascii.toLowerCase(host);
+  }
+
+  @VisibleForTesting
+  static HostAndPort toEndpoint(String host, int port) {
+    return HostAndPort.fromParts(normalizeHost(host), port);
+  }
+
+  private static boolean isConnectivityFailure(IOException e) {
+    // Both call and socket timeouts are reported as InterruptedIOException by OkHttp. Interrupted
+    // threads, e.g. plugins cancelled at their deadline, don't say anything about the host.
+    return e instanceof ConnectException
+        || e instanceof NoRouteToHostException
+        || (e instanceof InterruptedIOException && !Thread.currentThread().isInterrupted());
+  }
+
+  /** The circuit state of a single endpoint. */
+  private final class HostState {
+    private int consecutiveFailures;
+    private boolean open;
+    private long openedAtNanos;
+    private boolean trialInFlight;
+
+    synchronized boolean isOpen() {
+      return open && ticker.read() - openedAtNanos < openDurationNanos;
+    }
+
+    /**
+     * Throws if the circuit is open, returns whether the caller was granted the half-open trial.
+     */
+    synchronized boolean acquirePermission(HostAndPort endpoint) throws HostUnreachableException {
+      if (!open) {
+        return false;
+      }
+      if (trialInFlight || isOpen()) {
+        throw new HostUnreachableException(endpoint.toString());
+      }
+      trialInFlight = true;
+      return true;
+    }
+
+    synchronized void releaseTrial() {
+      trialInFlight = false;
+    }
+
+    synchronized void onSuccess() {
+      consecutiveFailures = 0;
+      open = false;
+    }
+
+    synchronized void onFailure(HostAndPort endpoint) {
+      consecutiveFailures++;
+      if (open || consecutiveFailures >= failureThreshold) {
+        if (!open) {
+          logger.atWarning().log(
+              "Endpoint '%s' failed %d consecutive requests, failing fast for %s.",
+              endpoint, consecutiveFailures, Duration.ofNanos(openDurationNanos));
+        }
+        open = true;
+        openedAtNanos = ticker.read();
+      }
+    }
+  }
+}
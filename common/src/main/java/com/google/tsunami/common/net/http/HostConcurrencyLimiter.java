@@ -0,0 +1,265 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * An OkHttp {@link Interceptor} that limits the number of concurrent requests to each host.
+ *
+ * <p>OkHttp's {@link okhttp3.Dispatcher} only supports a single per-host limit for asynchronous
+ * calls. This interceptor applies a limit for each host to all calls, using either the default
+ * per-host limit or the override configured for the host.
+ *
+ * <p>In adaptive mode, the limit of a host grows by one after a window of successful requests as
+ * long as the latency of the host stays flat, i.e. within {@link #LATENCY_TOLERANCE} times the
+ * lowest latency observed. The limit is halved whenever a request to the host times out or the
+ * host answers with 429 or 503.
+ *
+ * <p>Synchronous calls wait for a slot in the interceptor, asynchronous calls are queued per host
+ * by {@link #admit} and only enqueued once a slot freed, see {@link AsyncHostGate}.
+ */
+final class HostConcurrencyLimiter implements Interceptor, AsyncHostGate {
+  private static final double LATENCY_TOLERANCE = 2.0;
+  // Limits of hosts that haven't been requested for a while are dropped, so that memory usage stays
+  // bounded when scanning many hosts.
+  private static final Duration IDLE_HOST_EXPIRATION = Duration.ofMinutes(10);
+
+  private final int defaultMaxRequestsPerHost;
+  private final ImmutableMap<String, Integer> maxRequestsPerHostOverrides;
+  private final boolean adaptive;
+  private final int adaptiveMaxRequestsPerHost;
+  private final Ticker ticker;
+  private final LoadingCache<String, HostLimit> hostLimits;
+
+  HostConcurrencyLimiter(
+      int defaultMaxRequestsPerHost,
+      Map<String, Integer> maxRequestsPerHostOverrides,
+      boolean adaptive,
+      int adaptiveMaxRequestsPerHost) {
+    this(
+        defaultMaxRequestsPerHost,
+        maxRequestsPerHostOverrides,
+        adaptive,
+        adaptiveMaxRequestsPerHost,
+        Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  HostConcurrencyLimiter(
+      int defaultMaxRequestsPerHost,
+      Map<String, Integer> maxRequestsPerHostOverrides,
+      boolean adaptive,
+      int adaptiveMaxRequestsPerHost,
+      Ticker ticker) {
+    checkArgument(defaultMaxRequestsPerHost > 0, "Max requests per host must be positive.");
+    checkArgument(
+        maxRequestsPerHostOverrides.values().stream().allMatch(limit -> limit > 0),
+        "Max requests per host overrides must be positive, got %s.",
+        maxRequestsPerHostOverrides);
+    checkArgument(
+        adaptiveMaxRequestsPerHost > 0, "Adaptive max requests per host must be positive.");
+    this.defaultMaxRequestsPerHost = defaultMaxRequestsPerHost;
+    ImmutableMap.Builder<String, Integer> overridesBuilder = ImmutableMap.builder();
+    maxRequestsPerHostOverrides.forEach(
+        (host, limit) -> overridesBuilder.put(Ascii.toLowerCase(host), limit));
+    this.maxRequestsPerHostOverrides = overridesBuilder.build();
+    this.adaptive = adaptive;
+    this.adaptiveMaxRequestsPerHost = adaptiveMaxRequestsPerHost;
+    this.ticker = checkNotNull(ticker);
+    this.hostLimits =
+        CacheBuilder.newBuilder()
+            .expireAfterAccess(IDLE_HOST_EXPIRATION)
+            .build(CacheLoader.from(this::newHostLimit));
+  }
+
+  /** Whether this limiter needs to be installed on top of the dispatcher's per-host limit. */
+  boolean isEnabled() {
+    return adaptive || !maxRequestsPerHostOverrides.isEmpty();
+  }
+
+  /** The per-host limit the dispatcher must allow so that it never undercuts this limiter. */
+  int getDispatcherMaxRequestsPerHost() {
+    int maxOverride =
+        maxRequestsPerHostOverrides.values().stream().mapToInt(Integer::intValue).max().orElse(0);
+    int maxRequestsPerHost = Math.max(defaultMaxRequestsPerHost, maxOverride);
+    return adaptive ? Math.max(maxRequestsPerHost, adaptiveMaxRequestsPerHost) : maxRequestsPerHost;
+  }
+
+  @VisibleForTesting
+  int getMaxRequests(String host) {
+    return hostLimits.getUnchecked(Ascii.toLowerCase(host)).getLimit();
+  }
+
+  private HostLimit newHostLimit(String host) {
+    int limit = maxRequestsPerHostOverrides.getOrDefault(host, defaultMaxRequestsPerHost);
+    return new HostLimit(limit, adaptive ? Math.max(limit, adaptiveMaxRequestsPerHost) : limit);
+  }
+
+  @Override
+  public ListenableFuture<Runnable> admit(String host) {
+    return hostLimits.getUnchecked(Ascii.toLowerCase(host)).acquireAsync();
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    HostLimit hostLimit =
+        hostLimits.getUnchecked(Ascii.toLowerCase(chain.request().url().host()));
+    // Admitted calls already hold a slot, released by the client once the call completes.
+    boolean admitted = AsyncHostGate.isAdmitted(chain.request());
+    if (!admitted) {
+      hostLimit.acquire();
+    }
+    long startNanos = ticker.read();
+    try {
+      Response response = chain.proceed(chain.request());
+      if (adaptive) {
+        hostLimit.onResponse(response.code(), ticker.read() - startNanos);
+        hostLimit.admitAsyncWaiters();
+      }
+      return response;
+    } catch (InterruptedIOException e) {
+      // Both call and socket timeouts are reported as InterruptedIOException by OkHttp.
+      if (adaptive) {
+        hostLimit.onTimeout();
+      }
+      throw e;
+    } finally {
+      if (!admitted) {
+        hostLimit.release();
+      }
+    }
+  }
+
+  /** The concurrency state of a single host. */
+  private static final class HostLimit {
+    private final int maxLimit;
+    private int limit;
+    private int inFlightRequests;
+    private int windowSuccesses;
+    private long minLatencyNanos = Long.MAX_VALUE;
+    private final Queue<SettableFuture<Runnable>> asyncWaiters = new ArrayDeque<>();
+
+    HostLimit(int limit, int maxLimit) {
+      this.limit = limit;
+      this.maxLimit = maxLimit;
+    }
+
+    synchronized int getLimit() {
+      return limit;
+    }
+
+    synchronized void acquire() throws InterruptedIOException {
+      while (inFlightRequests >= limit) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("Interrupted while waiting for a request slot.");
+        }
+      }
+      inFlightRequests++;
+    }
+
+    synchronized ListenableFuture<Runnable> acquireAsync() {
+      if (inFlightRequests < limit && asyncWaiters.isEmpty()) {
+        inFlightRequests++;
+        return immediateFuture(this::release);
+      }
+      SettableFuture<Runnable> asyncWaiter = SettableFuture.create();
+      asyncWaiters.add(asyncWaiter);
+      return asyncWaiter;
+    }
+
+    void release() {
+      synchronized (this) {
+        inFlightRequests--;
+        notifyAll();
+      }
+      admitAsyncWaiters();
+    }
+
+    /** Hands the free slots to the queued asynchronous calls. */
+    void admitAsyncWaiters() {
+      while (true) {
+        SettableFuture<Runnable> asyncWaiter;
+        synchronized (this) {
+          if (inFlightRequests >= limit || asyncWaiters.isEmpty()) {
+            return;
+          }
+          asyncWaiter = asyncWaiters.remove();
+          inFlightRequests++;
+        }
+        // Completed outside of the lock as it enqueues the waiting call. A cancelled call gives
+        // its slot back.
+        if (!asyncWaiter.set(this::release)) {
+          synchronized (this) {
+            inFlightRequests--;
+            notifyAll();
+          }
+        }
+      }
+    }
+
+    synchronized void onResponse(int statusCode, long latencyNanos) {
+      if (statusCode == HttpStatus.TOO_MANY_REQUESTS.code()
+          || statusCode == HttpStatus.SERVICE_UNAVAILABLE.code()) {
+        decrease();
+        return;
+      }
+      minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+      if (latencyNanos > minLatencyNanos * LATENCY_TOLERANCE) {
+        windowSuccesses = 0;
+        return;
+      }
+      windowSuccesses++;
+      if (windowSuccesses >= limit && limit < maxLimit) {
+        limit++;
+        windowSuccesses = 0;
+        notifyAll();
+      }
+    }
+
+    synchronized void onTimeout() {
+      decrease();
+    }
+
+    private void decrease() {
+      limit = Math.max(1, limit / 2);
+      windowSuccesses = 0;
+    }
+  }
+}
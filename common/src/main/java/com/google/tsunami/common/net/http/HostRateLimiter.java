@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * An OkHttp {@link Interceptor} that limits the rate of requests sent to each host.
+ *
+ * <p>Each host gets a token bucket refilled at either the default per-host rate or the override
+ * configured for the host, holding at most one second worth of requests.
+ *
+ * <p>Synchronous calls wait for a token in the interceptor, asynchronous calls are queued per host
+ * by {@link #admit} and only enqueued once they got a token, see {@link AsyncHostGate}.
+ */
+final class HostRateLimiter implements Interceptor, AsyncHostGate {
+  // Granularity of the wait for a token, so that interrupted callers stop waiting quickly.
+  private static final Duration MAX_SLEEP = Duration.ofMillis(50);
+  // Buckets of hosts that haven't been requested for a while are dropped, so that memory usage
+  // stays bounded when scanning many hosts.
+  private static final Duration IDLE_HOST_EXPIRATION = Duration.ofMinutes(10);
+  // Admissions of rate limited calls hold nothing to release.
+  private static final Runnable NO_RELEASE = () -> {};
+
+  private final Optional<Integer> defaultRequestsPerSecond;
+  private final ImmutableMap<String, Integer> requestsPerSecondOverrides;
+  private final LoadingCache<String, Optional<HostBucket>> hostBuckets;
+  // Hands out the tokens of queued asynchronous calls, its thread only starts with the first one.
+  private final ScheduledExecutorService admissionScheduler;
+
+  /**
+   * @param defaultRequestsPerSecond the rate of each host without an override, empty for no limit.
+   * @param requestsPerSecondOverrides the rates keyed by hostname or IP address.
+   */
+  HostRateLimiter(
+      Optional<Integer> defaultRequestsPerSecond, Map<String, Integer> requestsPerSecondOverrides) {
+    checkArgument(
+        defaultRequestsPerSecond.map(rate -> rate > 0).orElse(true),
+        "Max requests per second must be positive.");
+    checkArgument(
+        requestsPerSecondOverrides.values().stream().allMatch(rate -> rate > 0),
+        "Max requests per second overrides must be positive, got %s.",
+        requestsPerSecondOverrides);
+    this.defaultRequestsPerSecond = defaultRequestsPerSecond;
+    ImmutableMap.Builder<String, Integer> overridesBuilder = ImmutableMap.builder();
+    requestsPerSecondOverrides.forEach(
+        (host, rate) -> overridesBuilder.put(Ascii.toLowerCase(host), rate));
+    this.requestsPerSecondOverrides = overridesBuilder.build();
+    this.hostBuckets =
+        CacheBuilder.newBuilder()
+            .expireAfterAccess(IDLE_HOST_EXPIRATION)
+            .build(CacheLoader.from(this::newHostBucket));
+    this.admissionScheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("tsunami-host-rate-limiter-%d")
+                .build());
+  }
+
+  /** Whether any host is rate limited. */
+  boolean isEnabled() {
+    return defaultRequestsPerSecond.isPresent() || !requestsPerSecondOverrides.isEmpty();
+  }
+
+  @VisibleForTesting
+  Optional<Double> getRequestsPerSecond(String host) {
+    return hostBuckets
+        .getUnchecked(Ascii.toLowerCase(host))
+        .map(hostBucket -> hostBucket.rateLimiter.getRate());
+  }
+
+  private Optional<HostBucket> newHostBucket(String host) {
+    Integer rate = requestsPerSecondOverrides.get(host);
+    if (rate == null) {
+      rate = defaultRequestsPerSecond.orElse(null);
+    }
+    return rate == null ? Optional.empty() : Optional.of(new HostBucket(RateLimiter.create(rate)));
+  }
+
+  @Override
+  public ListenableFuture<Runnable> admit(String host) {
+    Optional<HostBucket> hostBucket = hostBuckets.getUnchecked(Ascii.toLowerCase(host));
+    return hostBucket.isPresent() ? hostBucket.get().acquireAsync() : immediateFuture(NO_RELEASE);
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    Optional<HostBucket> hostBucket =
+        hostBuckets.getUnchecked(Ascii.toLowerCase(chain.request().url().host()));
+    // Admitted calls already got their token before they were enqueued.
+    if (hostBucket.isPresent() && !AsyncHostGate.isAdmitted(chain.request())) {
+      acquire(hostBucket.get().rateLimiter);
+    }
+    return chain.proceed(chain.request());
+  }
+
+  private static void acquire(RateLimiter rateLimiter) throws InterruptedIOException {
+    // RateLimiter#acquire() sleeps uninterruptibly, so wait for the token in interruptible steps.
+    while (!rateLimiter.tryAcquire()) {
+      try {
+        Thread.sleep(getRetryMillis(rateLimiter));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a request token.");
+      }
+    }
+  }
+
+  private static long getRetryMillis(RateLimiter rateLimiter) {
+    return Math.min(MAX_SLEEP.toMillis(), (long) (1000 / rateLimiter.getRate()) + 1);
+  }
+
+  /** The token bucket of a single host and its queue of asynchronous calls. */
+  private final class HostBucket {
+    private final RateLimiter rateLimiter;
+    // Guarded by this.
+    private final Queue<SettableFuture<Runnable>> asyncWaiters = new ArrayDeque<>();
+    private boolean admissionScheduled;
+
+    HostBucket(RateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+    }
+
+    synchronized ListenableFuture<Runnable> acquireAsync() {
+      if (asyncWaiters.isEmpty() && rateLimiter.tryAcquire()) {
+        return immediateFuture(NO_RELEASE);
+      }
+      SettableFuture<Runnable> asyncWaiter = SettableFuture.create();
+      asyncWaiters.add(asyncWaiter);
+      scheduleAdmission();
+      return asyncWaiter;
+    }
+
+    private void scheduleAdmission() {
+      if (!admissionScheduled) {
+        admissionScheduled = true;
+        admissionScheduler.schedule(
+            this::admitAsyncWaiters, getRetryMillis(rateLimiter), MILLISECONDS);
+      }
+    }
+
+    private void admitAsyncWaiters() {
+      List<SettableFuture<Runnable>> admittedWaiters = new ArrayList<>();
+      synchronized (this) {
+        admissionScheduled = false;
+        while (!asyncWaiters.isEmpty()) {
+          if (asyncWaiters.peek().isCancelled()) {
+            asyncWaiters.remove();
+          } else if (rateLimiter.tryAcquire()) {
+            admittedWaiters.add(asyncWaiters.remove());
+          } else {
+            scheduleAdmission();
+            break;
+          }
+        }
+      }
+      // Completed outside of the lock as they enqueue the waiting calls.
+      admittedWaiters.forEach(asyncWaiter -> asyncWaiter.set(NO_RELEASE));
+    }
+  }
+}
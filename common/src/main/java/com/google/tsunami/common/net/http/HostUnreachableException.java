@@ -0,0 +1,38 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+/**
+ * Thrown without sending a request when the {@link HostCircuitBreaker} of the target endpoint is
+ * open, i.e. the endpoint recently failed too many consecutive connection attempts.
+ */
+public final class HostUnreachableException extends IOException {
+  private final String host;
+
+  public HostUnreachableException(String host) {
+    super(String.format("Host '%s' is unreachable, request not sent.", checkNotNull(host)));
+    this.host = host;
+  }
+
+  /** Returns the host and port the request was meant for. */
+  public String getHost() {
+    return host;
+  }
+}
@@ -15,10 +15,22 @@
  */
 package com.google.tsunami.common.net.http;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.ByteString;
 import com.google.tsunami.proto.NetworkService;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** A client library that communicates with remote servers via the HTTP protocol. */
@@ -44,6 +56,23 @@ public abstract class HttpClient {
    */
   public abstract HttpResponse sendAsIs(HttpRequest httpRequest) throws IOException;
 
+  /**
+   * Sends the given HTTP request as is asynchronously, without any URL canonicalization.
+   *
+   * <p>By default the request is sent by {@link #sendAsIs(HttpRequest)} before the future is
+   * returned. Implementations should override this with a non-blocking transport.
+   *
+   * @param httpRequest the HTTP request to be sent by this client.
+   * @return the future for the response to be returned from the HTTP server.
+   */
+  public ListenableFuture<HttpResponse> sendAsIsAsync(HttpRequest httpRequest) {
+    try {
+      return Futures.immediateFuture(sendAsIs(httpRequest));
+    } catch (IOException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+  }
+
   /**
    * Sends the given HTTP request using this client, blocking until full response is received.
    *
@@ -66,6 +95,39 @@ public abstract class HttpClient {
   public abstract HttpResponse send(
       HttpRequest httpRequest, @Nullable NetworkService networkService) throws IOException;
 
+  /**
+   * Sends the given HTTP request using this client, returning a response whose body is streamed
+   * from the server as the caller reads it.
+   *
+   * @param httpRequest the HTTP request to be sent by this client.
+   * @return the response returned from the HTTP server, must be closed by the caller.
+   * @throws IOException if an I/O error occurs during the HTTP request.
+   */
+  public StreamingHttpResponse sendStreaming(HttpRequest httpRequest) throws IOException {
+    return sendStreaming(httpRequest, null);
+  }
+
+  /**
+   * Sends the given HTTP request using this client, returning a response whose body is streamed
+   * from the server as the caller reads it. If {@code networkService} is not null, the host header
+   * is set according to the service's header field even if it resolves to a different ip.
+   *
+   * <p>By default the full response is received by {@link #send(HttpRequest, NetworkService)}
+   * before it is returned. Implementations should override this with true streaming.
+   *
+   * @param httpRequest the HTTP request to be sent by this client.
+   * @param networkService the {@link NetworkService} proto to be used for the HOST header.
+   * @return the response returned from the HTTP server, must be closed by the caller.
+   * @throws IOException if an I/O error occurs during the HTTP request.
+   */
+  public StreamingHttpResponse sendStreaming(
+      HttpRequest httpRequest, @Nullable NetworkService networkService) throws IOException {
+    HttpResponse httpResponse = send(httpRequest, networkService);
+    InputStream body = httpResponse.bodyBytes().orElse(ByteString.EMPTY).newInput();
+    return new StreamingHttpResponse(
+        httpResponse.status(), httpResponse.headers(), httpResponse.responseUrl(), body, body);
+  }
+
   /**
    * Sends the given HTTP request using this client asynchronously.
    *
@@ -86,8 +148,152 @@ public abstract class HttpClient {
   public abstract ListenableFuture<HttpResponse> sendAsync(
       HttpRequest httpRequest, @Nullable NetworkService networkService);
 
+  /**
+   * Sends the given HTTP requests asynchronously, with at most {@code maxConcurrency} of them in
+   * flight at any time.
+   *
+   * @param httpRequests the HTTP requests to be sent by this client.
+   * @param maxConcurrency the maximum number of requests in flight.
+   * @return the futures for the responses, in the order of the requests. Cancelling a future
+   *     cancels its request, or skips it if it was not sent yet.
+   */
+  public ImmutableList<ListenableFuture<HttpResponse>> sendAllAsync(
+      Iterable<HttpRequest> httpRequests, int maxConcurrency) {
+    return sendAllAsync(httpRequests, null, maxConcurrency);
+  }
+
+  /**
+   * Sends the given HTTP requests asynchronously, with at most {@code maxConcurrency} of them in
+   * flight at any time. If {@code networkService} is not null, the host header is set according to
+   * the service's header field even if it resolves to a different ip.
+   *
+   * @param httpRequests the HTTP requests to be sent by this client.
+   * @param networkService the {@link NetworkService} proto to be used for the HOST header.
+   * @param maxConcurrency the maximum number of requests in flight.
+   * @return the futures for the responses, in the order of the requests. Cancelling a future
+   *     cancels its request, or skips it if it was not sent yet.
+   */
+  public ImmutableList<ListenableFuture<HttpResponse>> sendAllAsync(
+      Iterable<HttpRequest> httpRequests,
+      @Nullable NetworkService networkService,
+      int maxConcurrency) {
+    ImmutableList<HttpRequest> requests = ImmutableList.copyOf(httpRequests);
+    ImmutableList<SettableFuture<HttpResponse>> responses =
+        Stream.generate(SettableFuture::<HttpResponse>create)
+            .limit(requests.size())
+            .collect(toImmutableList());
+    // Requests whose future was cancelled before their turn are never sent.
+    Iterator<Integer> pendingIndexes =
+        Iterators.filter(
+            IntStream.range(0, requests.size()).iterator(), i -> !responses.get(i).isDone());
+    new BulkRequestSender<Integer>(
+            pendingIndexes,
+            maxConcurrency,
+            i -> {
+              responses.get(i).setFuture(sendAsync(requests.get(i), networkService));
+              return responses.get(i);
+            },
+            new BulkRequestSender.Handler<Integer>() {
+              @Override
+              public boolean onResponse(Integer i, HttpResponse httpResponse) {
+                return true;
+              }
+
+              @Override
+              public boolean onFailure(Integer i, Throwable throwable) {
+                return true;
+              }
+            })
+        .start();
+    return ImmutableList.copyOf(responses);
+  }
+
+  /**
+   * Sends the given HTTP requests asynchronously, with at most {@code maxConcurrency} of them in
+   * flight at any time, handing each response to {@code responseHandler} as soon as it completes.
+   *
+   * <p>Requests are taken from {@code httpRequests} only when a slot frees up, so a lazily
+   * generated {@link Iterable} is never fully materialized.
+   *
+   * @param httpRequests the HTTP requests to be sent by this client.
+   * @param maxConcurrency the maximum number of requests in flight.
+   * @param responseHandler the handler of the responses, can stop the remaining requests.
+   * @return the future completed once all responses were handled or the handler stopped the
+   *     requests, failed if the handler threw. Cancelling it cancels the requests in flight.
+   */
+  public ListenableFuture<Void> sendAllAsync(
+      Iterable<HttpRequest> httpRequests, int maxConcurrency, ResponseHandler responseHandler) {
+    return sendAllAsync(httpRequests, null, maxConcurrency, responseHandler);
+  }
+
+  /**
+   * Sends the given HTTP requests asynchronously, with at most {@code maxConcurrency} of them in
+   * flight at any time, handing each response to {@code responseHandler} as soon as it completes.
+   * If {@code networkService} is not null, the host header is set according to the service's header
+   * field even if it resolves to a different ip.
+   *
+   * <p>Requests are taken from {@code httpRequests} only when a slot frees up, so a lazily
+   * generated {@link Iterable} is never fully materialized.
+   *
+   * @param httpRequests the HTTP requests to be sent by this client.
+   * @param networkService the {@link NetworkService} proto to be used for the HOST header.
+   * @param maxConcurrency the maximum number of requests in flight.
+   * @param responseHandler the handler of the responses, can stop the remaining requests.
+   * @return the future completed once all responses were handled or the handler stopped the
+   *     requests, failed if the handler threw. Cancelling it cancels the requests in flight.
+   */
+  public ListenableFuture<Void> sendAllAsync(
+      Iterable<HttpRequest> httpRequests,
+      @Nullable NetworkService networkService,
+      int maxConcurrency,
+      ResponseHandler responseHandler) {
+    checkNotNull(responseHandler);
+    return new BulkRequestSender<HttpRequest>(
+            httpRequests.iterator(),
+            maxConcurrency,
+            httpRequest -> sendAsync(httpRequest, networkService),
+            new BulkRequestSender.Handler<HttpRequest>() {
+              @Override
+              public boolean onResponse(HttpRequest httpRequest, HttpResponse httpResponse) {
+                return responseHandler.onResponse(httpRequest, httpResponse);
+              }
+
+              @Override
+              public boolean onFailure(HttpRequest httpRequest, Throwable throwable) {
+                return responseHandler.onFailure(httpRequest, throwable);
+              }
+            })
+        .start();
+  }
+
   public abstract <T extends HttpClient> Builder<T> modify();
 
+  /**
+   * Handles the responses of {@link #sendAllAsync(Iterable, int, ResponseHandler)} in the order
+   * they complete. The handler is never called concurrently.
+   */
+  public interface ResponseHandler {
+    /**
+     * Handles the response to one of the requests.
+     *
+     * @param httpRequest the request that was sent.
+     * @param httpResponse the response to the request.
+     * @return true to keep sending the remaining requests, false to cancel them.
+     */
+    boolean onResponse(HttpRequest httpRequest, HttpResponse httpResponse);
+
+    /**
+     * Handles the failure of one of the requests. By default failures are ignored.
+     *
+     * @param httpRequest the request that failed.
+     * @param throwable the cause of the failure.
+     * @return true to keep sending the remaining requests, false to cancel them.
+     */
+    default boolean onFailure(HttpRequest httpRequest, Throwable throwable) {
+      return true;
+    }
+  }
+
   /** Base builder for implementations of HttpClient */
   public abstract static class Builder<T extends HttpClient> {
 
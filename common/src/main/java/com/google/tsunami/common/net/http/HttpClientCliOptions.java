@@ -18,7 +18,13 @@ package com.google.tsunami.common.net.http;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.InetAddresses;
 import com.google.tsunami.common.cli.CliOption;
+import java.net.InetAddress;
+import java.util.List;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** Command line argument for {@link HttpClient}. */
@@ -59,15 +65,201 @@ public final class HttpClientCliOptions implements CliOption {
               + " --http-client-connect-timeout-seconds.")
   Integer writeTimeoutSeconds;
 
+  @Parameter(
+      names = "--http-client-max-requests",
+      description = "The maximum number of HTTP requests to execute concurrently across all hosts.")
+  Integer maxRequests;
+
+  @Parameter(
+      names = "--http-client-max-requests-per-host",
+      description = "The maximum number of HTTP requests to execute concurrently for each host.")
+  Integer maxRequestsPerHost;
+
+  @Parameter(
+      names = "--http-client-max-requests-per-host-overrides",
+      description =
+          "Comma separated host=limit pairs overriding --http-client-max-requests-per-host for the"
+              + " given hostnames or IP addresses, e.g. 10.0.0.1=1,example.com=16.")
+  List<String> maxRequestsPerHostOverrides;
+
+  @Parameter(
+      names = "--http-client-adaptive-concurrency",
+      description =
+          "Whether the concurrency of each host grows while its latency stays flat and shrinks on"
+              + " timeouts or 429 and 503 responses.")
+  Boolean adaptiveConcurrency;
+
+  @Parameter(
+      names = "--http-client-adaptive-max-requests-per-host",
+      description = "The upper bound of the per-host concurrency in adaptive mode.")
+  Integer adaptiveMaxRequestsPerHost;
+
+  @Parameter(
+      names = "--http-client-connection-pool-max-idle",
+      description = "The maximum number of idle connections to keep in the connection pool.")
+  Integer connectionPoolMaxIdle;
+
+  @Parameter(
+      names = "--http-client-connection-pool-keep-alive-seconds",
+      description = "The duration in seconds to keep an idle connection alive in the pool.")
+  Integer connectionPoolKeepAliveSeconds;
+
+  @Parameter(
+      names = "--http-client-response-cache",
+      description =
+          "Whether responses to GET and HEAD requests are cached and identical in-flight requests"
+              + " are coalesced during the scan.")
+  Boolean responseCache;
+
+  @Parameter(
+      names = "--http-client-response-cache-max-megabytes",
+      description = "The maximum total size in megabytes of the cached HTTP responses.")
+  Integer responseCacheMaxMegabytes;
+
+  @Parameter(
+      names = "--http-client-max-response-body-bytes",
+      description =
+          "The maximum size in bytes of an HTTP response body. Larger bodies are truncated.")
+  Integer maxResponseBodyBytes;
+
+  @Parameter(
+      names = "--http-client-max-requests-per-second-per-host",
+      description = "The maximum number of HTTP requests per second sent to each host.")
+  Integer maxRequestsPerSecondPerHost;
+
+  @Parameter(
+      names = "--http-client-max-requests-per-second-per-host-overrides",
+      description =
+          "Comma separated host=rate pairs overriding"
+              + " --http-client-max-requests-per-second-per-host for the given hostnames or IP"
+              + " addresses, e.g. 10.0.0.1=5,example.com=50.")
+  List<String> maxRequestsPerSecondPerHostOverrides;
+
+  @Parameter(
+      names = "--http-client-circuit-breaker-failure-threshold",
+      description =
+          "The number of consecutive connection failures or timeouts after which requests to a"
+              + " host and port fail fast. Zero disables the circuit breaker.")
+  Integer circuitBreakerFailureThreshold;
+
+  @Parameter(
+      names = "--http-client-dns-cache-ttl-seconds",
+      description = "The duration in seconds to cache successful DNS lookups.")
+  Integer dnsCacheTtlSeconds;
+
+  @Parameter(
+      names = "--http-client-dns-overrides",
+      description =
+          "Comma separated host=ip pairs pinning the DNS resolution of the given hostnames, e.g."
+              + " example.com=10.0.0.1. Repeat a host to pin it to several addresses.")
+  List<String> dnsOverrides;
+
   @Override
   public void validate() {
-    validateTimeout("--http-client-call-timeout-seconds", callTimeoutSeconds);
-    validateTimeout("--http-client-connect-timeout-seconds", connectTimeoutSeconds);
-    validateTimeout("--http-client-read-timeout-seconds", readTimeoutSeconds);
-    validateTimeout("--http-client-write-timeout-seconds", writeTimeoutSeconds);
+    validateNonNegative("--http-client-call-timeout-seconds", callTimeoutSeconds);
+    validateNonNegative("--http-client-connect-timeout-seconds", connectTimeoutSeconds);
+    validateNonNegative("--http-client-read-timeout-seconds", readTimeoutSeconds);
+    validateNonNegative("--http-client-write-timeout-seconds", writeTimeoutSeconds);
+    validatePositive("--http-client-max-requests", maxRequests);
+    validatePositive("--http-client-max-requests-per-host", maxRequestsPerHost);
+    validatePositive(
+        "--http-client-adaptive-max-requests-per-host", adaptiveMaxRequestsPerHost);
+    validatePositive("--http-client-connection-pool-max-idle", connectionPoolMaxIdle);
+    validateNonNegative(
+        "--http-client-connection-pool-keep-alive-seconds", connectionPoolKeepAliveSeconds);
+    validatePositive("--http-client-response-cache-max-megabytes", responseCacheMaxMegabytes);
+    validatePositive("--http-client-max-response-body-bytes", maxResponseBodyBytes);
+    validatePositive(
+        "--http-client-max-requests-per-second-per-host", maxRequestsPerSecondPerHost);
+    validateNonNegative(
+        "--http-client-circuit-breaker-failure-threshold", circuitBreakerFailureThreshold);
+    validateNonNegative("--http-client-dns-cache-ttl-seconds", dnsCacheTtlSeconds);
+    try {
+      getMaxRequestsPerHostOverrides();
+    } catch (IllegalArgumentException e) {
+      throw new ParameterException(
+          String.format(
+              "Invalid --http-client-max-requests-per-host-overrides: %s", e.getMessage()),
+          e);
+    }
+    try {
+      getMaxRequestsPerSecondPerHostOverrides();
+    } catch (IllegalArgumentException e) {
+      throw new ParameterException(
+          String.format(
+              "Invalid --http-client-max-requests-per-second-per-host-overrides: %s",
+              e.getMessage()),
+          e);
+    }
+    try {
+      getDnsOverrides();
+    } catch (IllegalArgumentException e) {
+      throw new ParameterException(
+          String.format("Invalid --http-client-dns-overrides: %s", e.getMessage()), e);
+    }
+  }
+
+  /** Parses the host=ip pairs of --http-client-dns-overrides. */
+  ImmutableListMultimap<String, InetAddress> getDnsOverrides() {
+    if (dnsOverrides == null) {
+      return ImmutableListMultimap.of();
+    }
+    ImmutableListMultimap.Builder<String, InetAddress> overrides = ImmutableListMultimap.builder();
+    for (String override : dnsOverrides) {
+      List<String> hostAndIp = Splitter.on('=').trimResults().splitToList(override);
+      if (hostAndIp.size() != 2 || hostAndIp.get(0).isEmpty()) {
+        throw new IllegalArgumentException(String.format("'%s' is not a host=ip pair.", override));
+      }
+      overrides.put(hostAndIp.get(0), InetAddresses.forString(hostAndIp.get(1)));
+    }
+    return overrides.build();
+  }
+
+  /** Parses the host=limit pairs of --http-client-max-requests-per-host-overrides. */
+  ImmutableMap<String, Integer> getMaxRequestsPerHostOverrides() {
+    return parseHostLimits(maxRequestsPerHostOverrides);
+  }
+
+  /** Parses the host=rate pairs of --http-client-max-requests-per-second-per-host-overrides. */
+  ImmutableMap<String, Integer> getMaxRequestsPerSecondPerHostOverrides() {
+    return parseHostLimits(maxRequestsPerSecondPerHostOverrides);
+  }
+
+  private static ImmutableMap<String, Integer> parseHostLimits(@Nullable List<String> pairs) {
+    if (pairs == null) {
+      return ImmutableMap.of();
+    }
+    ImmutableMap.Builder<String, Integer> overrides = ImmutableMap.builder();
+    for (String override : pairs) {
+      List<String> hostAndLimit = Splitter.on('=').trimResults().splitToList(override);
+      if (hostAndLimit.size() != 2 || hostAndLimit.get(0).isEmpty()) {
+        throw new IllegalArgumentException(
+            String.format("'%s' is not a host=limit pair.", override));
+      }
+      int limit;
+      try {
+        limit = Integer.parseInt(hostAndLimit.get(1));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(
+            String.format("'%s' has a non-numeric limit.", override), e);
+      }
+      if (limit <= 0) {
+        throw new IllegalArgumentException(
+            String.format("'%s' must have a positive limit.", override));
+      }
+      overrides.put(hostAndLimit.get(0), limit);
+    }
+    return overrides.build();
+  }
+
+  private static void validatePositive(String flagName, @Nullable Integer value) {
+    if (value != null && value <= 0) {
+      throw new ParameterException(
+          String.format("%s must be a positive number, received %d.", flagName, value));
+    }
   }
 
-  private static void validateTimeout(String flagName, @Nullable Integer value) {
+  private static void validateNonNegative(String flagName, @Nullable Integer value) {
     if (value != null && value < 0) {
       throw new ParameterException(
           String.format("%s cannot be a negative number, received %d.", flagName, value));
@@ -16,6 +16,7 @@
 package com.google.tsunami.common.net.http;
 
 import com.google.tsunami.common.config.annotations.ConfigProperties;
+import java.util.Map;
 
 /** Configuration properties for {@link HttpClient}. */
 @ConfigProperties("common.net.http")
@@ -50,4 +51,82 @@ public final class HttpClientConfigProperties {
    * more details.
    */
   Integer writeTimeoutSeconds;
+
+  /** The maximum number of HTTP requests to execute concurrently across all hosts. */
+  Integer maxRequests;
+
+  /** The maximum number of HTTP requests to execute concurrently for each host. */
+  Integer maxRequestsPerHost;
+
+  /**
+   * Overrides of {@link #maxRequestsPerHost} keyed by the hostname or IP address of the target,
+   * e.g. to be gentle with fragile targets.
+   */
+  Map<String, Integer> maxRequestsPerHostOverrides;
+
+  /**
+   * Whether the concurrency of each host adapts to its responses. When enabled, the per-host limit
+   * grows while the latency of a host stays flat and shrinks on timeouts or 429 and 503 responses.
+   */
+  Boolean adaptiveConcurrency;
+
+  /** The upper bound of the per-host concurrency when {@link #adaptiveConcurrency} is enabled. */
+  Integer adaptiveMaxRequestsPerHost;
+
+  /** The maximum number of idle connections to keep in the connection pool. */
+  Integer connectionPoolMaxIdle;
+
+  /** The duration in seconds to keep an idle connection alive in the connection pool. */
+  Integer connectionPoolKeepAliveSeconds;
+
+  /**
+   * Whether responses to GET and HEAD requests are cached and identical in-flight requests are
+   * coalesced, so that plugins fetching the same URLs of a service only hit the target once.
+   */
+  Boolean responseCache;
+
+  /** The maximum total size in megabytes of the cached responses. */
+  Integer responseCacheMaxMegabytes;
+
+  /** The duration in seconds after which a cached response expires. */
+  Integer responseCacheExpirationSeconds;
+
+  /**
+   * The maximum size in bytes of a response body. Larger bodies are truncated and flagged by {@link
+   * HttpResponse#bodyTruncated()}.
+   */
+  Integer maxResponseBodyBytes;
+
+  /** The maximum number of HTTP requests per second sent to each host, unlimited by default. */
+  Integer maxRequestsPerSecondPerHost;
+
+  /**
+   * Overrides of {@link #maxRequestsPerSecondPerHost} keyed by the hostname or IP address of the
+   * target.
+   */
+  Map<String, Integer> maxRequestsPerSecondPerHostOverrides;
+
+  /**
+   * The number of consecutive connection failures or timeouts after which requests to a host and
+   * port fail fast. Zero disables the circuit breaker.
+   */
+  Integer circuitBreakerFailureThreshold;
+
+  /**
+   * The duration in seconds requests to a host and port fail fast before a trial request is let
+   * through.
+   */
+  Integer circuitBreakerOpenSeconds;
+
+  /** The duration in seconds to cache successful DNS lookups. */
+  Integer dnsCacheTtlSeconds;
+
+  /** The duration in seconds to cache failed DNS lookups. */
+  Integer dnsNegativeCacheTtlSeconds;
+
+  /**
+   * Static DNS resolutions, hosts-file style, keyed by hostname. Values are comma separated IP
+   * addresses, e.g. {@code example.com: "10.0.0.1,10.0.0.2"}.
+   */
+  Map<String, String> dnsOverrides;
 }
@@ -17,20 +17,29 @@ package com.google.tsunami.common.net.http;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+import com.google.common.base.Splitter;
+import com.google.common.net.InetAddresses;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.google.tsunami.common.net.TsunamiDns;
 import com.google.tsunami.common.net.http.javanet.ConnectionFactory;
 import com.google.tsunami.common.net.http.javanet.DefaultConnectionFactory;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.net.InetAddress;
 import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 import javax.inject.Qualifier;
 import javax.inject.Singleton;
 import javax.net.ssl.SSLContext;
@@ -57,8 +66,11 @@ public final class HttpClientModule extends AbstractModule {
           return new X509Certificate[0];
         }
       };
-  // Maximum number of requests for each host (URL's host name) to execute concurrently.
-  private static final int OKHTTPCLIENT_MAX_REQUESTS_PER_HOST = 5;
+  // Bodies above this size are truncated so that a huge or endless response can't exhaust memory.
+  private static final int DEFAULT_MAX_RESPONSE_BODY_BYTES = 64 * 1024 * 1024;
+  private static final int DEFAULT_RESPONSE_CACHE_MAX_MEGABYTES = 64;
+  // Cached responses are only meant to be reused within a single scan.
+  private static final Duration DEFAULT_RESPONSE_CACHE_EXPIRATION = Duration.ofMinutes(10);
 
   // Maximum number of idle connections to each to keep in the pool.
   private final int connectionPoolMaxIdle;
@@ -66,6 +78,8 @@ public final class HttpClientModule extends AbstractModule {
   private final Duration connectionPoolKeepAliveDuration;
   // Maximum number of requests to execute concurrently.
   private final int maxRequests;
+  // Maximum number of requests for each host (URL's host name) to execute concurrently.
+  private final int maxRequestsPerHost;
   // Whether or not to follow redirect from server.
   private final boolean followRedirects;
   // A log ID to print in front of the logs.
@@ -76,33 +90,154 @@ public final class HttpClientModule extends AbstractModule {
     this.connectionPoolMaxIdle = builder.connectionPoolMaxIdle;
     this.connectionPoolKeepAliveDuration = builder.connectionPoolKeepAliveDuration;
     this.maxRequests = builder.maxRequests;
+    this.maxRequestsPerHost = builder.maxRequestsPerHost;
     this.followRedirects = builder.followRedirects;
     this.logId = builder.logId;
   }
 
   @Provides
   @Singleton
-  ConnectionPool provideConnectionPool() {
-    return new ConnectionPool(
-        connectionPoolMaxIdle, connectionPoolKeepAliveDuration.toMillis(), MILLISECONDS);
+  ConnectionPool provideConnectionPool(
+      @ConnectionPoolKeepAlive Duration keepAliveDuration,
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    int maxIdle = connectionPoolMaxIdle;
+    if (httpClientCliOptions.connectionPoolMaxIdle != null) {
+      maxIdle = httpClientCliOptions.connectionPoolMaxIdle;
+    } else if (httpClientConfigProperties.connectionPoolMaxIdle != null) {
+      maxIdle = httpClientConfigProperties.connectionPoolMaxIdle;
+    }
+    return new ConnectionPool(maxIdle, keepAliveDuration.toMillis(), MILLISECONDS);
+  }
+
+  @Provides
+  @ConnectionPoolKeepAlive
+  Duration provideConnectionPoolKeepAlive(
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    if (httpClientCliOptions.connectionPoolKeepAliveSeconds != null) {
+      return Duration.ofSeconds(httpClientCliOptions.connectionPoolKeepAliveSeconds);
+    }
+    if (httpClientConfigProperties.connectionPoolKeepAliveSeconds != null) {
+      return Duration.ofSeconds(httpClientConfigProperties.connectionPoolKeepAliveSeconds);
+    }
+    return connectionPoolKeepAliveDuration;
   }
 
   @Provides
   @Singleton
-  Dispatcher provideDispatcher() {
+  Dispatcher provideDispatcher(
+      @MaxRequests int maxRequests, HostConcurrencyLimiter hostConcurrencyLimiter) {
     Dispatcher dispatcher = new Dispatcher();
     dispatcher.setMaxRequests(maxRequests);
-    dispatcher.setMaxRequestsPerHost(OKHTTPCLIENT_MAX_REQUESTS_PER_HOST);
+    dispatcher.setMaxRequestsPerHost(hostConcurrencyLimiter.getDispatcherMaxRequestsPerHost());
     return dispatcher;
   }
 
   @Provides
   @Singleton
-  @TrustAllCertsSocketFactory
-  SSLSocketFactory provideTrustAllCertsSocketFactory() throws GeneralSecurityException {
+  HostConcurrencyLimiter provideHostConcurrencyLimiter(
+      @MaxRequestsPerHost int maxRequestsPerHost,
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    // Per-host overrides from the command line take precedence over the ones from the config.
+    Map<String, Integer> maxRequestsPerHostOverrides = new HashMap<>();
+    if (httpClientConfigProperties.maxRequestsPerHostOverrides != null) {
+      maxRequestsPerHostOverrides.putAll(httpClientConfigProperties.maxRequestsPerHostOverrides);
+    }
+    maxRequestsPerHostOverrides.putAll(httpClientCliOptions.getMaxRequestsPerHostOverrides());
+
+    boolean adaptiveConcurrency = false;
+    if (httpClientCliOptions.adaptiveConcurrency != null) {
+      adaptiveConcurrency = httpClientCliOptions.adaptiveConcurrency;
+    } else if (httpClientConfigProperties.adaptiveConcurrency != null) {
+      adaptiveConcurrency = httpClientConfigProperties.adaptiveConcurrency;
+    }
+
+    // By default adaptive mode may grow the per-host concurrency up to 4 times the static limit.
+    int adaptiveMaxRequestsPerHost = maxRequestsPerHost * 4;
+    if (httpClientCliOptions.adaptiveMaxRequestsPerHost != null) {
+      adaptiveMaxRequestsPerHost = httpClientCliOptions.adaptiveMaxRequestsPerHost;
+    } else if (httpClientConfigProperties.adaptiveMaxRequestsPerHost != null) {
+      adaptiveMaxRequestsPerHost = httpClientConfigProperties.adaptiveMaxRequestsPerHost;
+    }
+
+    return new HostConcurrencyLimiter(
+        maxRequestsPerHost,
+        maxRequestsPerHostOverrides,
+        adaptiveConcurrency,
+        adaptiveMaxRequestsPerHost);
+  }
+
+  @Provides
+  @Singleton
+  HostRateLimiter provideHostRateLimiter(
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    Optional<Integer> requestsPerSecond = Optional.empty();
+    if (httpClientCliOptions.maxRequestsPerSecondPerHost != null) {
+      requestsPerSecond = Optional.of(httpClientCliOptions.maxRequestsPerSecondPerHost);
+    } else if (httpClientConfigProperties.maxRequestsPerSecondPerHost != null) {
+      requestsPerSecond = Optional.of(httpClientConfigProperties.maxRequestsPerSecondPerHost);
+    }
+
+    // Per-host overrides from the command line take precedence over the ones from the config.
+    Map<String, Integer> requestsPerSecondOverrides = new HashMap<>();
+    if (httpClientConfigProperties.maxRequestsPerSecondPerHostOverrides != null) {
+      requestsPerSecondOverrides.putAll(
+          httpClientConfigProperties.maxRequestsPerSecondPerHostOverrides);
+    }
+    requestsPerSecondOverrides.putAll(
+        httpClientCliOptions.getMaxRequestsPerSecondPerHostOverrides());
+    return new HostRateLimiter(requestsPerSecond, requestsPerSecondOverrides);
+  }
+
+  @Provides
+  @Singleton
+  @TrustAllCertsSslContext
+  SSLContext provideTrustAllCertsSslContext() throws GeneralSecurityException {
     SSLContext sslContext = SSLContext.getInstance("TLS");
     sslContext.init(null, new TrustManager[] {TRUST_ALL_CERTS_MANAGER}, new SecureRandom());
-    return sslContext.getSocketFactory();
+    return sslContext;
+  }
+
+  @Provides
+  @Singleton
+  @TrustAllCertsSocketFactory
+  SSLSocketFactory provideTrustAllCertsSocketFactory(
+      @TrustAllCertsSslContext SSLContext trustAllCertsSslContext) {
+    return trustAllCertsSslContext.getSocketFactory();
+  }
+
+  @Provides
+  @Singleton
+  TsunamiDns provideTsunamiDns(
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    Duration positiveTtl = TsunamiDns.defaultPositiveTtl();
+    if (httpClientCliOptions.dnsCacheTtlSeconds != null) {
+      positiveTtl = Duration.ofSeconds(httpClientCliOptions.dnsCacheTtlSeconds);
+    } else if (httpClientConfigProperties.dnsCacheTtlSeconds != null) {
+      positiveTtl = Duration.ofSeconds(httpClientConfigProperties.dnsCacheTtlSeconds);
+    }
+    Duration negativeTtl = TsunamiDns.defaultNegativeTtl();
+    if (httpClientConfigProperties.dnsNegativeCacheTtlSeconds != null) {
+      negativeTtl = Duration.ofSeconds(httpClientConfigProperties.dnsNegativeCacheTtlSeconds);
+    }
+
+    // Overrides from the command line take precedence over the ones from the config.
+    Map<String, Collection<InetAddress>> pinnedAddresses = new HashMap<>();
+    if (httpClientConfigProperties.dnsOverrides != null) {
+      httpClientConfigProperties.dnsOverrides.forEach(
+          (hostname, addresses) ->
+              pinnedAddresses.put(
+                  hostname,
+                  Splitter.on(',').trimResults().omitEmptyStrings().splitToList(addresses).stream()
+                      .map(InetAddresses::forString)
+                      .collect(toImmutableList())));
+    }
+    pinnedAddresses.putAll(httpClientCliOptions.getDnsOverrides().asMap());
+    return new TsunamiDns(positiveTtl, negativeTtl, pinnedAddresses);
   }
 
   // Missing features:
@@ -112,6 +247,10 @@ public final class HttpClientModule extends AbstractModule {
   OkHttpClient provideOkHttpClient(
       ConnectionPool connectionPool,
       Dispatcher dispatcher,
+      HostConcurrencyLimiter hostConcurrencyLimiter,
+      HostRateLimiter hostRateLimiter,
+      HostCircuitBreaker hostCircuitBreaker,
+      TsunamiDns tsunamiDns,
       @TrustAllCertsSocketFactory SSLSocketFactory trustAllCertsSocketFactory,
       @TrustAllCertificates boolean trustAllCertificates,
       @ConnectTimeoutSeconds int connectTimeoutSeconds) {
@@ -123,7 +262,18 @@ public final class HttpClientModule extends AbstractModule {
             .writeTimeout(Duration.ofSeconds(connectTimeoutSeconds))
             .connectionPool(connectionPool)
             .dispatcher(dispatcher)
+            .dns(tsunamiDns::lookup)
             .followRedirects(followRedirects);
+    // The circuit breaker goes first so that requests to dead hosts never wait for a token or slot.
+    if (hostCircuitBreaker.isEnabled()) {
+      clientBuilder.addInterceptor(hostCircuitBreaker);
+    }
+    if (hostRateLimiter.isEnabled()) {
+      clientBuilder.addInterceptor(hostRateLimiter);
+    }
+    if (hostConcurrencyLimiter.isEnabled()) {
+      clientBuilder.addInterceptor(hostConcurrencyLimiter);
+    }
     if (trustAllCertificates) {
       clientBuilder
           .sslSocketFactory(trustAllCertsSocketFactory, TRUST_ALL_CERTS_MANAGER)
@@ -138,10 +288,53 @@ public final class HttpClientModule extends AbstractModule {
       OkHttpClient okHttpClient,
       @TrustAllCertificates boolean trustAllCertificates,
       ConnectionFactory connectionFactory,
+      NioHttpTransport nioHttpTransport,
       @LogId String logId,
-      @ConnectTimeout Duration connectTimeout) {
-    return new OkHttpHttpClient(
-        okHttpClient, trustAllCertificates, connectionFactory, logId, connectTimeout);
+      @ConnectTimeout Duration connectTimeout,
+      @MaxResponseBodyBytes int maxResponseBodyBytes,
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    HttpClient httpClient =
+        new OkHttpHttpClient(
+            okHttpClient,
+            trustAllCertificates,
+            connectionFactory,
+            nioHttpTransport,
+            logId,
+            connectTimeout,
+            maxResponseBodyBytes);
+    if (!shouldCacheResponses(httpClientCliOptions, httpClientConfigProperties)) {
+      return httpClient;
+    }
+
+    int maxMegabytes = DEFAULT_RESPONSE_CACHE_MAX_MEGABYTES;
+    if (httpClientCliOptions.responseCacheMaxMegabytes != null) {
+      maxMegabytes = httpClientCliOptions.responseCacheMaxMegabytes;
+    } else if (httpClientConfigProperties.responseCacheMaxMegabytes != null) {
+      maxMegabytes = httpClientConfigProperties.responseCacheMaxMegabytes;
+    }
+    Duration expiration = DEFAULT_RESPONSE_CACHE_EXPIRATION;
+    if (httpClientConfigProperties.responseCacheExpirationSeconds != null) {
+      expiration = Duration.ofSeconds(httpClientConfigProperties.responseCacheExpirationSeconds);
+    }
+    return new CachingHttpClient(
+        httpClient,
+        CachingHttpClient.ClientSettings.create(
+            okHttpClient.followRedirects(), trustAllCertificates, connectTimeout),
+        maxMegabytes * 1024L * 1024L,
+        expiration);
+  }
+
+  private static boolean shouldCacheResponses(
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    if (httpClientCliOptions.responseCache != null) {
+      return httpClientCliOptions.responseCache;
+    }
+    if (httpClientConfigProperties.responseCache != null) {
+      return httpClientConfigProperties.responseCache;
+    }
+    return false;
   }
 
   @Provides
@@ -158,6 +351,27 @@ public final class HttpClientModule extends AbstractModule {
         Duration.ofSeconds(readTimeoutSeconds));
   }
 
+  @Provides
+  @Singleton
+  NioHttpTransport provideNioHttpTransport(
+      TsunamiDns tsunamiDns,
+      @TrustAllCertificates boolean trustAllCertificates,
+      @TrustAllCertsSslContext SSLContext trustAllCertsSslContext,
+      @ConnectTimeoutSeconds int connectTimeoutSeconds,
+      @ReadTimeoutSeconds int readTimeoutSeconds,
+      @MaxRequestsPerHost int maxRequestsPerHost,
+      @ConnectionPoolKeepAlive Duration keepAliveDuration)
+      throws GeneralSecurityException {
+    return new NioHttpTransport(
+        tsunamiDns,
+        trustAllCertificates ? trustAllCertsSslContext : SSLContext.getDefault(),
+        !trustAllCertificates,
+        Duration.ofSeconds(connectTimeoutSeconds),
+        Duration.ofSeconds(readTimeoutSeconds),
+        maxRequestsPerHost,
+        keepAliveDuration);
+  }
+
   @Provides
   @TrustAllCertificates
   boolean shouldTrustAllCertificates(
@@ -186,10 +400,46 @@ public final class HttpClientModule extends AbstractModule {
 
   @Provides
   @MaxRequests
-  int provideMaxRequests() {
+  int provideMaxRequests(
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    if (httpClientCliOptions.maxRequests != null) {
+      return httpClientCliOptions.maxRequests;
+    }
+    if (httpClientConfigProperties.maxRequests != null) {
+      return httpClientConfigProperties.maxRequests;
+    }
     return maxRequests;
   }
 
+  @Provides
+  @MaxRequestsPerHost
+  int provideMaxRequestsPerHost(
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    if (httpClientCliOptions.maxRequestsPerHost != null) {
+      return httpClientCliOptions.maxRequestsPerHost;
+    }
+    if (httpClientConfigProperties.maxRequestsPerHost != null) {
+      return httpClientConfigProperties.maxRequestsPerHost;
+    }
+    return maxRequestsPerHost;
+  }
+
+  @Provides
+  @MaxResponseBodyBytes
+  int provideMaxResponseBodyBytes(
+      HttpClientCliOptions httpClientCliOptions,
+      HttpClientConfigProperties httpClientConfigProperties) {
+    if (httpClientCliOptions.maxResponseBodyBytes != null) {
+      return httpClientCliOptions.maxResponseBodyBytes;
+    }
+    if (httpClientConfigProperties.maxResponseBodyBytes != null) {
+      return httpClientConfigProperties.maxResponseBodyBytes;
+    }
+    return DEFAULT_MAX_RESPONSE_BODY_BYTES;
+  }
+
   @Provides
   @CallTimeoutSeconds
   int provideCallTimeoutSeconds(
@@ -270,6 +520,11 @@ public final class HttpClientModule extends AbstractModule {
   @Target({ElementType.PARAMETER, ElementType.METHOD, ElementType.FIELD})
   @interface TrustAllCertsSocketFactory {}
 
+  @Qualifier
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.PARAMETER, ElementType.METHOD, ElementType.FIELD})
+  @interface TrustAllCertsSslContext {}
+
   @Qualifier
   @Retention(RetentionPolicy.RUNTIME)
   @Target({ElementType.PARAMETER, ElementType.METHOD, ElementType.FIELD})
@@ -310,18 +565,35 @@ public final class HttpClientModule extends AbstractModule {
   @Target({ElementType.PARAMETER, ElementType.METHOD, ElementType.FIELD})
   @interface MaxRequests {}
 
+  @Qualifier
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.PARAMETER, ElementType.METHOD, ElementType.FIELD})
+  @interface MaxRequestsPerHost {}
+
+  @Qualifier
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.PARAMETER, ElementType.METHOD, ElementType.FIELD})
+  @interface MaxResponseBodyBytes {}
+
+  @Qualifier
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.PARAMETER, ElementType.METHOD, ElementType.FIELD})
+  @interface ConnectionPoolKeepAlive {}
+
   /** Builder for {@link HttpClientModule}. */
   public static final class Builder {
     private static final int DEFAULT_CONNECTION_POOL_MAX_IDLE = 5;
     private static final Duration DEFAULT_CONNECTION_POOL_KEEP_ALIVE_DURATION =
         Duration.ofMinutes(5);
     private static final int DEFAULT_MAX_REQUESTS = 64;
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
     private static final boolean DEFAULT_FOLLOW_REDIRECTS = true;
     private static final String DEFAULT_LOG_ID = "";
 
     private int connectionPoolMaxIdle = DEFAULT_CONNECTION_POOL_MAX_IDLE;
     private Duration connectionPoolKeepAliveDuration = DEFAULT_CONNECTION_POOL_KEEP_ALIVE_DURATION;
     private int maxRequests = DEFAULT_MAX_REQUESTS;
+    private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
     private boolean followRedirects = DEFAULT_FOLLOW_REDIRECTS;
     private String logId = DEFAULT_LOG_ID;
 
@@ -362,6 +634,18 @@ public final class HttpClientModule extends AbstractModule {
       return this;
     }
 
+    /**
+     * Sets the maximum number of requests for each host to execute concurrently.
+     *
+     * @param maxRequestsPerHost the maximum number of concurrent requests for each host.
+     * @return the {@link Builder} instance itself.
+     */
+    public Builder setMaxRequestsPerHost(int maxRequestsPerHost) {
+      checkArgument(maxRequestsPerHost > 0);
+      this.maxRequestsPerHost = maxRequestsPerHost;
+      return this;
+    }
+
     /**
      * Sets whether or not to follow redirect from server. If unset, by default redirects will be
      * followed.
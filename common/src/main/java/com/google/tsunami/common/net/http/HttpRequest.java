@@ -37,6 +37,13 @@ public abstract class HttpRequest {
   public abstract HttpHeaders headers();
   public abstract Optional<ByteString> requestBody();
 
+  /**
+   * Whether the response to this request may be served from and stored into the response cache
+   * when caching is enabled. Only GET and HEAD requests are ever cached. Stateful probes, e.g.
+   * requests whose response depends on a previous request, should disable caching.
+   */
+  public abstract boolean cacheable();
+
   public abstract Builder toBuilder();
 
   /**
@@ -45,7 +52,7 @@ public abstract class HttpRequest {
    * @return a {@link Builder} instance for the {@link HttpRequest} object.
    */
   public static Builder builder() {
-    return new AutoValue_HttpRequest.Builder();
+    return new AutoValue_HttpRequest.Builder().setCacheable(true);
   }
 
   /**
@@ -170,6 +177,7 @@ public abstract class HttpRequest {
     public abstract Builder setHeaders(HttpHeaders httpHeaders);
     public abstract Builder setRequestBody(ByteString requestBody);
     public abstract Builder setRequestBody(Optional<ByteString> requestBody);
+    public abstract Builder setCacheable(boolean cacheable);
 
     public Builder withEmptyHeaders() {
       setHeaders(HttpHeaders.builder().build());
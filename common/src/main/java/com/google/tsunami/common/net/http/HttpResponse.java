@@ -38,6 +38,8 @@ public abstract class HttpResponse {
   // The URL that produced this response.
   // TODO(b/173574468): Provide the full redirection request not just the Url.
   public abstract Optional<HttpUrl> responseUrl();
+  // Whether the body was cut off because it exceeded the maximum body size of the client.
+  public abstract boolean bodyTruncated();
 
   /**
    * Gets the body of the HTTP response as a UTF-8 encoded String.
@@ -81,7 +83,7 @@ public abstract class HttpResponse {
   }
 
   public static Builder builder() {
-    return new AutoValue_HttpResponse.Builder();
+    return new AutoValue_HttpResponse.Builder().setBodyTruncated(false);
   }
 
   /** Builder for {@link HttpResponse}. */
@@ -93,6 +95,7 @@ public abstract class HttpResponse {
     public abstract Builder setBodyBytes(Optional<ByteString> bodyBytes);
     public abstract Builder setResponseUrl(HttpUrl url);
     public abstract Builder setResponseUrl(Optional<HttpUrl> url);
+    public abstract Builder setBodyTruncated(boolean bodyTruncated);
 
     public abstract HttpResponse build();
   }
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import com.google.common.base.Ascii;
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayOutputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * An incremental parser for HTTP/1.1 responses, fed with bytes as they arrive from a connection.
+ *
+ * <p>The parser consumes exactly the bytes of one response, so that the bytes of pipelined
+ * responses following it stay in the buffer for the next parser. Interim 1xx responses are
+ * skipped.
+ */
+final class HttpResponseParser {
+  private static final int MAX_LINE_BYTES = 64 * 1024;
+  private static final int MAX_HEADER_LINES = 512;
+
+  private enum State {
+    STATUS_LINE,
+    HEADERS,
+    FIXED_LENGTH_BODY,
+    CHUNK_SIZE,
+    CHUNK_DATA,
+    CHUNK_DATA_END,
+    TRAILERS,
+    BODY_UNTIL_CLOSE,
+    DONE
+  }
+
+  private final boolean headRequest;
+  private final int maxBodyBytes;
+  private final boolean retainBody;
+  private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+  private State state = State.STATUS_LINE;
+  private int statusCode;
+  private boolean http10;
+  private HttpHeaders.Builder headersBuilder = HttpHeaders.builder();
+  private HttpHeaders headers;
+  private int headerLines;
+  private long remainingBytes;
+  private long bodyLength;
+  private boolean bodyTruncated;
+  private boolean keepAlive;
+
+  /**
+   * @param headRequest whether the response is to a HEAD request, which never has a body.
+   * @param maxBodyBytes bodies above this size are truncated, ending the response early.
+   * @param retainBody whether to keep the body bytes, otherwise they are only counted.
+   */
+  HttpResponseParser(boolean headRequest, int maxBodyBytes, boolean retainBody) {
+    checkArgument(maxBodyBytes >= 0, "Max body size cannot be negative.");
+    this.headRequest = headRequest;
+    this.maxBodyBytes = maxBodyBytes;
+    this.retainBody = retainBody;
+  }
+
+  /**
+   * Consumes bytes of the response from {@code input}.
+   *
+   * @param input buffer in read mode, left positioned after the last consumed byte.
+   * @return whether the response is complete.
+   * @throws ProtocolException if the bytes are not a valid HTTP/1.x response.
+   */
+  boolean parse(ByteBuffer input) throws ProtocolException {
+    while (state != State.DONE && input.hasRemaining()) {
+      switch (state) {
+        case STATUS_LINE:
+          Optional<String> statusLine = readLine(input);
+          if (statusLine.isPresent()) {
+            parseStatusLine(statusLine.get());
+          }
+          break;
+        case HEADERS:
+          Optional<String> headerLine = readLine(input);
+          if (headerLine.isPresent()) {
+            parseHeaderLine(headerLine.get());
+          }
+          break;
+        case FIXED_LENGTH_BODY:
+          readBody(input);
+          if (remainingBytes == 0) {
+            state = State.DONE;
+          }
+          break;
+        case CHUNK_SIZE:
+          Optional<String> chunkSizeLine = readLine(input);
+          if (chunkSizeLine.isPresent()) {
+            remainingBytes = parseChunkSize(chunkSizeLine.get());
+            state = remainingBytes == 0 ? State.TRAILERS : State.CHUNK_DATA;
+          }
+          break;
+        case CHUNK_DATA:
+          readBody(input);
+          if (remainingBytes == 0) {
+            state = State.CHUNK_DATA_END;
+          }
+          break;
+        case CHUNK_DATA_END:
+          if (readLine(input).isPresent()) {
+            state = State.CHUNK_SIZE;
+          }
+          break;
+        case TRAILERS:
+          // Trailers are dropped, the response ends with the first empty line.
+          Optional<String> trailerLine = readLine(input);
+          if (trailerLine.isPresent() && trailerLine.get().isEmpty()) {
+            state = State.DONE;
+          }
+          break;
+        case BODY_UNTIL_CLOSE:
+          remainingBytes = input.remaining();
+          readBody(input);
+          break;
+        case DONE:
+          break;
+      }
+      if (bodyTruncated) {
+        // The rest of the body is never read, so the connection cannot be reused.
+        keepAlive = false;
+        state = State.DONE;
+      }
+    }
+    return state == State.DONE;
+  }
+
+  /**
+   * Signals that the connection was closed by the server.
+   *
+   * @return whether the response is complete, i.e. its body was delimited by the end of stream.
+   */
+  boolean onEndOfStream() {
+    if (state == State.BODY_UNTIL_CLOSE) {
+      state = State.DONE;
+    }
+    return state == State.DONE;
+  }
+
+  /** Whether any byte of the response was consumed. */
+  boolean hasStarted() {
+    return state != State.STATUS_LINE || line.size() > 0;
+  }
+
+  /** Whether the connection can be reused for another request after this response. */
+  boolean isKeepAlive() {
+    checkState(state == State.DONE, "Response is incomplete.");
+    return keepAlive;
+  }
+
+  int getStatusCode() {
+    checkState(state == State.DONE, "Response is incomplete.");
+    return statusCode;
+  }
+
+  HttpHeaders getHeaders() {
+    checkState(state == State.DONE, "Response is incomplete.");
+    return headers;
+  }
+
+  /** The length of the body as received, including the bytes that were not retained. */
+  long getBodyLength() {
+    checkState(state == State.DONE, "Response is incomplete.");
+    return bodyLength;
+  }
+
+  boolean isBodyTruncated() {
+    checkState(state == State.DONE, "Response is incomplete.");
+    return bodyTruncated;
+  }
+
+  /** Builds the {@link HttpResponse}, with a body unless the response is to a HEAD request. */
+  HttpResponse toHttpResponse() {
+    checkState(state == State.DONE, "Response is incomplete.");
+    HttpResponse.Builder builder =
+        HttpResponse.builder()
+            .setStatus(HttpStatus.fromCode(statusCode))
+            .setHeaders(headers)
+            .setBodyTruncated(bodyTruncated);
+    if (!headRequest) {
+      builder.setBodyBytes(ByteString.copyFrom(body.toByteArray()));
+    }
+    return builder.build();
+  }
+
+  private void parseStatusLine(String statusLine) throws ProtocolException {
+    // Status line: HTTP-version SP status-code SP [reason-phrase]
+    if (!statusLine.startsWith("HTTP/1.") || statusLine.length() < 12) {
+      throw new ProtocolException("Invalid status line: " + statusLine);
+    }
+    http10 = statusLine.startsWith("HTTP/1.0");
+    try {
+      statusCode = Integer.parseInt(statusLine.substring(9, 12));
+    } catch (NumberFormatException e) {
+      throw new ProtocolException("Invalid status line: " + statusLine);
+    }
+    state = State.HEADERS;
+  }
+
+  private void parseHeaderLine(String headerLine) throws ProtocolException {
+    if (!headerLine.isEmpty()) {
+      if (++headerLines > MAX_HEADER_LINES) {
+        throw new ProtocolException("Too many response headers.");
+      }
+      int colon = headerLine.indexOf(':');
+      if (colon <= 0) {
+        throw new ProtocolException("Invalid header line: " + headerLine);
+      }
+      headersBuilder.addHeader(
+          headerLine.substring(0, colon).trim(), headerLine.substring(colon + 1).trim());
+      return;
+    }
+
+    HttpHeaders parsedHeaders = headersBuilder.build();
+    if (statusCode >= 100 && statusCode < 200) {
+      // Interim response, the final response follows.
+      resetForNextResponse();
+      return;
+    }
+    headers = parsedHeaders;
+    String connection = headers.get(com.google.common.net.HttpHeaders.CONNECTION).orElse("");
+    keepAlive =
+        http10
+            ? Ascii.equalsIgnoreCase(connection, "keep-alive")
+            : !Ascii.equalsIgnoreCase(connection, "close");
+
+    Optional<String> transferEncoding =
+        headers.get(com.google.common.net.HttpHeaders.TRANSFER_ENCODING);
+    Optional<String> contentLength = headers.get(com.google.common.net.HttpHeaders.CONTENT_LENGTH);
+    if (headRequest || statusCode == 204 || statusCode == 304) {
+      state = State.DONE;
+    } else if (transferEncoding.isPresent()
+        && Ascii.toLowerCase(transferEncoding.get()).endsWith("chunked")) {
+      state = State.CHUNK_SIZE;
+    } else if (contentLength.isPresent()) {
+      try {
+        remainingBytes = Long.parseLong(contentLength.get());
+      } catch (NumberFormatException e) {
+        throw new ProtocolException("Invalid Content-Length: " + contentLength.get());
+      }
+      if (remainingBytes < 0) {
+        throw new ProtocolException("Invalid Content-Length: " + contentLength.get());
+      }
+      state = remainingBytes == 0 ? State.DONE : State.FIXED_LENGTH_BODY;
+    } else {
+      keepAlive = false;
+      state = State.BODY_UNTIL_CLOSE;
+    }
+  }
+
+  private void resetForNextResponse() {
+    headersBuilder = HttpHeaders.builder();
+    headerLines = 0;
+    state = State.STATUS_LINE;
+  }
+
+  private static long parseChunkSize(String chunkSizeLine) throws ProtocolException {
+    int extension = chunkSizeLine.indexOf(';');
+    String chunkSize =
+        (extension == -1 ? chunkSizeLine : chunkSizeLine.substring(0, extension)).trim();
+    try {
+      long size = Long.parseLong(chunkSize, 16);
+      if (size < 0) {
+        throw new ProtocolException("Invalid chunk size: " + chunkSizeLine);
+      }
+      return size;
+    } catch (NumberFormatException e) {
+      throw new ProtocolException("Invalid chunk size: " + chunkSizeLine);
+    }
+  }
+
+  private void readBody(ByteBuffer input) {
+    int count = (int) Math.min(input.remaining(), remainingBytes);
+    int retained = (int) Math.min(count, Math.max(0, maxBodyBytes - bodyLength));
+    if (retainBody) {
+      body.write(input.array(), input.arrayOffset() + input.position(), retained);
+    }
+    input.position(input.position() + retained);
+    bodyLength += retained;
+    remainingBytes -= retained;
+    if (retained < count) {
+      bodyTruncated = true;
+    }
+  }
+
+  /** Reads a CRLF or LF terminated line, or returns empty if the line is incomplete. */
+  private Optional<String> readLine(ByteBuffer input) throws ProtocolException {
+    while (input.hasRemaining()) {
+      byte b = input.get();
+      if (b == '\n') {
+        byte[] lineBytes = line.toByteArray();
+        line.reset();
+        int length = lineBytes.length;
+        if (length > 0 && lineBytes[length - 1] == '\r') {
+          length--;
+        }
+        return Optional.of(new String(lineBytes, 0, length, ISO_8859_1));
+      }
+      if (line.size() >= MAX_LINE_BYTES) {
+        throw new ProtocolException("Response line exceeds " + MAX_LINE_BYTES + " bytes.");
+      }
+      line.write(b);
+    }
+    return Optional.empty();
+  }
+}
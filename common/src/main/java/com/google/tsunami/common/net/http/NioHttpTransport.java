@@ -0,0 +1,702 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.tsunami.common.net.TsunamiDns;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A small non-blocking HTTP/1.1 client over NIO {@link SocketChannel}s, for requests that must be
+ * written byte-for-byte.
+ *
+ * <p>All connections are served by a single selector thread. Connections are kept alive and reused
+ * per {@link Endpoint}, and TLS is implemented with an {@link SSLEngine}. Requests sent as one
+ * batch are written back-to-back on the same connection and their responses parsed in order.
+ *
+ * <p>Response futures are completed on the selector thread, so their listeners must not block.
+ */
+final class NioHttpTransport {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  private static final int READ_BUFFER_SIZE = 16 * 1024;
+  private static final long SWEEP_INTERVAL_MILLIS = 100;
+  private static final ByteBuffer[] NO_BUFFERS = new ByteBuffer[0];
+
+  private final TsunamiDns tsunamiDns;
+  private final SSLContext sslContext;
+  private final boolean verifyHostnames;
+  private final long connectTimeoutNanos;
+  private final long readTimeoutNanos;
+  private final int maxConnectionsPerEndpoint;
+  private final long keepAliveNanos;
+  private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+  // The following state is only accessed by the selector thread.
+  private final Map<Endpoint, EndpointConnections> endpointConnections = new HashMap<>();
+  private final Set<Connection> connections = new HashSet<>();
+  private long lastSweepNanos;
+
+  private volatile Selector selector;
+
+  /**
+   * @param tsunamiDns the resolver of endpoint hosts.
+   * @param sslContext the context creating the {@link SSLEngine} of TLS connections.
+   * @param verifyHostnames whether to verify that certificates match the endpoint hostname.
+   * @param connectTimeout timeout for establishing a connection, including the TLS handshake.
+   * @param readTimeout maximum time without any data from the server while awaiting responses.
+   * @param maxConnectionsPerEndpoint maximum number of connections opened to each endpoint, also
+   *     bounding the number of idle connections kept alive.
+   * @param keepAlive duration to keep an idle connection alive before closing it.
+   */
+  NioHttpTransport(
+      TsunamiDns tsunamiDns,
+      SSLContext sslContext,
+      boolean verifyHostnames,
+      Duration connectTimeout,
+      Duration readTimeout,
+      int maxConnectionsPerEndpoint,
+      Duration keepAlive) {
+    checkArgument(maxConnectionsPerEndpoint > 0, "Max connections per endpoint must be positive.");
+    this.tsunamiDns = checkNotNull(tsunamiDns);
+    this.sslContext = checkNotNull(sslContext);
+    this.verifyHostnames = verifyHostnames;
+    this.connectTimeoutNanos = connectTimeout.toNanos();
+    this.readTimeoutNanos = readTimeout.toNanos();
+    this.maxConnectionsPerEndpoint = maxConnectionsPerEndpoint;
+    this.keepAliveNanos = keepAlive.toNanos();
+  }
+
+  /**
+   * Sends a request to the endpoint.
+   *
+   * @param endpoint the endpoint to send the request to.
+   * @param request the bytes of the request, written as is.
+   * @param parser the parser of the response.
+   * @return the future for the parser, completed once it parsed the full response.
+   */
+  ListenableFuture<HttpResponseParser> send(
+      Endpoint endpoint, byte[] request, HttpResponseParser parser) {
+    return sendPipelined(endpoint, ImmutableList.of(new Exchange(request, parser))).get(0);
+  }
+
+  /**
+   * Sends a batch of requests back-to-back over one connection to the endpoint. Requests whose
+   * responses could not be received because the server closed the connection, e.g. after
+   * answering a part of the batch, are retried on a new connection.
+   *
+   * @param endpoint the endpoint to send the requests to.
+   * @param exchanges the requests and the parsers of their responses.
+   * @return the futures for the parsers, in the order of the requests.
+   */
+  ImmutableList<ListenableFuture<HttpResponseParser>> sendPipelined(
+      Endpoint endpoint, ImmutableList<Exchange> exchanges) {
+    checkNotNull(endpoint);
+    checkArgument(!exchanges.isEmpty(), "At least one request is required.");
+    ImmutableList<ListenableFuture<HttpResponseParser>> futures =
+        exchanges.stream().map(exchange -> exchange.future).collect(toImmutableList());
+    InetAddress address;
+    try {
+      // Resolved by the calling thread so that DNS lookups never block the selector thread.
+      address = tsunamiDns.lookupFirst(endpoint.connectHost());
+      ensureStarted();
+    } catch (IOException e) {
+      exchanges.forEach(exchange -> exchange.future.setException(e));
+      return futures;
+    }
+    InetSocketAddress socketAddress = new InetSocketAddress(address, endpoint.port());
+    List<Exchange> batch = new ArrayList<>(exchanges);
+    runOnSelectorThread(() -> dispatch(endpoint, socketAddress, batch));
+    for (Exchange exchange : exchanges) {
+      exchange.future.addListener(
+          () -> {
+            if (exchange.future.isCancelled()) {
+              runOnSelectorThread(() -> cancel(exchange));
+            }
+          },
+          directExecutor());
+    }
+    return futures;
+  }
+
+  private synchronized void ensureStarted() throws IOException {
+    if (selector != null) {
+      return;
+    }
+    selector = Selector.open();
+    Thread selectorThread = new Thread(this::runEventLoop, "tsunami-nio-http");
+    selectorThread.setDaemon(true);
+    selectorThread.start();
+  }
+
+  private void runOnSelectorThread(Runnable task) {
+    pendingTasks.add(task);
+    selector.wakeup();
+  }
+
+  private void runEventLoop() {
+    while (true) {
+      try {
+        selector.select(SWEEP_INTERVAL_MILLIS);
+        for (Runnable task = pendingTasks.poll(); task != null; task = pendingTasks.poll()) {
+          task.run();
+        }
+        Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+        while (selectedKeys.hasNext()) {
+          SelectionKey key = selectedKeys.next();
+          selectedKeys.remove();
+          ((Connection) key.attachment()).onSelected();
+        }
+        long now = System.nanoTime();
+        if (now - lastSweepNanos >= SWEEP_INTERVAL_MILLIS * 1_000_000) {
+          lastSweepNanos = now;
+          sweep(now);
+        }
+      } catch (Throwable t) {
+        logger.atSevere().withCause(t).log("Unexpected error in the NIO HTTP event loop.");
+      }
+    }
+  }
+
+  /** Closes timed out connections and idle connections past their keep-alive duration. */
+  private void sweep(long now) {
+    for (Connection connection : new ArrayList<>(connections)) {
+      if (connection.exchanges.isEmpty()) {
+        if (now - connection.lastActivityNanos > keepAliveNanos) {
+          connection.close(null, false);
+        }
+      } else if (now - connection.lastActivityNanos > connection.timeoutNanos()) {
+        connection.close(
+            new SocketTimeoutException(
+                String.format("Timed out waiting for %s.", connection.endpoint)),
+            false);
+      }
+    }
+  }
+
+  private void dispatch(Endpoint endpoint, InetSocketAddress address, List<Exchange> batch) {
+    batch.removeIf(exchange -> exchange.future.isDone());
+    if (batch.isEmpty()) {
+      return;
+    }
+    EndpointConnections endpointState =
+        endpointConnections.computeIfAbsent(endpoint, unused -> new EndpointConnections(address));
+    Connection idleConnection = endpointState.idle.pollFirst();
+    if (idleConnection != null) {
+      idleConnection.start(batch);
+    } else if (endpointState.openCount < maxConnectionsPerEndpoint) {
+      openConnection(endpoint, endpointState, batch);
+    } else {
+      endpointState.waiting.add(batch);
+    }
+  }
+
+  private void openConnection(
+      Endpoint endpoint, EndpointConnections endpointState, List<Exchange> batch) {
+    try {
+      Connection connection = new Connection(endpoint, endpointState.address);
+      endpointState.openCount++;
+      connections.add(connection);
+      connection.start(batch);
+    } catch (IOException e) {
+      failToOpen(endpoint, endpointState, batch, e);
+    } catch (RuntimeException e) {
+      // E.g. an unsupported address type or an unusable SSLContext.
+      failToOpen(endpoint, endpointState, batch, new IOException(e));
+    }
+  }
+
+  private void failToOpen(
+      Endpoint endpoint,
+      EndpointConnections endpointState,
+      List<Exchange> batch,
+      IOException cause) {
+    batch.forEach(exchange -> exchange.future.setException(cause));
+    // The connection for this batch was never opened, so the next waiting batch takes its place.
+    openWaitingOrRemove(endpoint, endpointState);
+  }
+
+  private void openWaitingOrRemove(Endpoint endpoint, EndpointConnections endpointState) {
+    List<Exchange> waitingBatch = endpointState.waiting.poll();
+    if (waitingBatch != null) {
+      openConnection(endpoint, endpointState, waitingBatch);
+    } else if (endpointState.openCount == 0) {
+      endpointConnections.remove(endpoint);
+    }
+  }
+
+  private void cancel(Exchange exchange) {
+    for (Connection connection : connections) {
+      if (connection.exchanges.contains(exchange)) {
+        // Requests may already be written and responses partially read, so the connection keeps
+        // parsing the responses in order and the one to the cancelled request is discarded. It is
+        // only abandoned once every request it awaits is cancelled.
+        if (connection.exchanges.stream().allMatch(pending -> pending.future.isDone())) {
+          connection.close(null, false);
+        }
+        return;
+      }
+    }
+  }
+
+  /** A request and the parser of its response. */
+  static final class Exchange {
+    private final ByteBuffer request;
+    private final HttpResponseParser parser;
+    private final SettableFuture<HttpResponseParser> future = SettableFuture.create();
+
+    Exchange(byte[] request, HttpResponseParser parser) {
+      this.request = ByteBuffer.wrap(checkNotNull(request));
+      this.parser = checkNotNull(parser);
+    }
+  }
+
+  /** The endpoint connections are made to. */
+  @AutoValue
+  abstract static class Endpoint {
+    abstract boolean tls();
+
+    /** The hostname used for SNI and certificate verification, and for pooling connections. */
+    abstract String host();
+
+    /** The IP address or hostname to connect to. */
+    abstract String connectHost();
+
+    abstract int port();
+
+    static Endpoint create(boolean tls, String host, int port) {
+      return create(tls, host, host, port);
+    }
+
+    static Endpoint create(boolean tls, String host, String connectHost, int port) {
+      return new AutoValue_NioHttpTransport_Endpoint(tls, host, connectHost, port);
+    }
+
+    @Override
+    public final String toString() {
+      return String.format("%s://%s:%d", tls() ? "https" : "http", host(), port());
+    }
+  }
+
+  /** The connections to one endpoint. */
+  private static final class EndpointConnections {
+    private final InetSocketAddress address;
+    // Most recently used first.
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    private final Queue<List<Exchange>> waiting = new ArrayDeque<>();
+    private int openCount;
+
+    EndpointConnections(InetSocketAddress address) {
+      this.address = address;
+    }
+  }
+
+  /** A connection, only accessed by the selector thread. */
+  private final class Connection {
+    private final Endpoint endpoint;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    @Nullable private final SSLEngine sslEngine;
+    // Requests not yet fully written, in read mode.
+    private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+    // Requests awaiting their responses, in order.
+    private final Deque<Exchange> exchanges = new ArrayDeque<>();
+    // Decrypted or plain response bytes, in write mode.
+    private ByteBuffer inbound = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    // Encrypted bytes for TLS connections, in write mode.
+    private ByteBuffer netInbound;
+    private ByteBuffer netOutbound;
+    private boolean connected;
+    private boolean established;
+    private boolean closed;
+    private boolean peerClosed;
+    // Whether the current batch was sent over a connection that served earlier responses.
+    private boolean reused;
+    private int responsesInBatch;
+    private long lastActivityNanos = System.nanoTime();
+
+    Connection(Endpoint endpoint, InetSocketAddress address) throws IOException {
+      this.endpoint = endpoint;
+      this.channel = SocketChannel.open();
+      try {
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        if (endpoint.tls()) {
+          sslEngine = sslContext.createSSLEngine(endpoint.host(), endpoint.port());
+          sslEngine.setUseClientMode(true);
+          if (verifyHostnames) {
+            SSLParameters sslParameters = sslEngine.getSSLParameters();
+            sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+            sslEngine.setSSLParameters(sslParameters);
+          }
+          netInbound = ByteBuffer.allocate(sslEngine.getSession().getPacketBufferSize());
+          netOutbound = ByteBuffer.allocate(sslEngine.getSession().getPacketBufferSize());
+        } else {
+          sslEngine = null;
+        }
+        connected = channel.connect(address);
+        key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    long timeoutNanos() {
+      return established ? readTimeoutNanos : connectTimeoutNanos;
+    }
+
+    void start(List<Exchange> batch) {
+      for (Exchange exchange : batch) {
+        outbound.add(exchange.request.duplicate());
+        exchanges.add(exchange);
+      }
+      responsesInBatch = 0;
+      lastActivityNanos = System.nanoTime();
+      if (connected) {
+        onConnected();
+      }
+    }
+
+    void onSelected() {
+      try {
+        if (!key.isValid()) {
+          return;
+        }
+        if (!connected && key.isConnectable()) {
+          connected = channel.finishConnect();
+          if (!connected) {
+            return;
+          }
+          onConnected();
+        } else {
+          process();
+        }
+      } catch (IOException e) {
+        close(e, true);
+      } catch (RuntimeException e) {
+        close(new IOException(e), true);
+      }
+    }
+
+    private void onConnected() {
+      try {
+        if (sslEngine != null && !established) {
+          sslEngine.beginHandshake();
+        } else {
+          established = true;
+        }
+        process();
+      } catch (IOException e) {
+        close(e, true);
+      } catch (RuntimeException e) {
+        close(new IOException(e), true);
+      }
+    }
+
+    private void process() throws IOException {
+      boolean progress;
+      do {
+        progress = sslEngine != null && wrap();
+        progress |= flush();
+        int read;
+        if (sslEngine != null) {
+          netInbound = ensureRemaining(netInbound);
+          read = channel.read(netInbound);
+        } else {
+          inbound = ensureRemaining(inbound);
+          read = channel.read(inbound);
+        }
+        if (read > 0) {
+          lastActivityNanos = System.nanoTime();
+          progress = true;
+        }
+        if (sslEngine != null) {
+          progress |= unwrap();
+        }
+        deliverResponses();
+        if (closed) {
+          return;
+        }
+        if (read == -1 || peerClosed) {
+          onEndOfStream();
+          return;
+        }
+      } while (progress);
+      key.interestOps(
+          hasPendingOutput() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    private boolean hasPendingOutput() {
+      if (sslEngine == null) {
+        return !outbound.isEmpty();
+      }
+      return netOutbound.position() > 0
+          || sslEngine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP
+          || (established && !outbound.isEmpty());
+    }
+
+    private boolean flush() throws IOException {
+      long written;
+      if (sslEngine == null) {
+        written = channel.write(outbound.toArray(NO_BUFFERS));
+        outbound.removeIf(buffer -> !buffer.hasRemaining());
+      } else {
+        netOutbound.flip();
+        written = channel.write(netOutbound);
+        netOutbound.compact();
+      }
+      if (written > 0) {
+        lastActivityNanos = System.nanoTime();
+      }
+      return written > 0;
+    }
+
+    private boolean wrap() throws IOException {
+      boolean progress = false;
+      while (true) {
+        HandshakeStatus handshakeStatus = sslEngine.getHandshakeStatus();
+        if (handshakeStatus == HandshakeStatus.NEED_TASK) {
+          runDelegatedTasks();
+          progress = true;
+          continue;
+        }
+        boolean handshaking =
+            handshakeStatus != HandshakeStatus.NOT_HANDSHAKING
+                && handshakeStatus != HandshakeStatus.FINISHED;
+        if (handshaking ? handshakeStatus != HandshakeStatus.NEED_WRAP : outbound.isEmpty()) {
+          return progress;
+        }
+        SSLEngineResult result =
+            sslEngine.wrap(handshaking ? NO_BUFFERS : outbound.toArray(NO_BUFFERS), netOutbound);
+        outbound.removeIf(buffer -> !buffer.hasRemaining());
+        updateEstablished(result);
+        switch (result.getStatus()) {
+          case BUFFER_OVERFLOW:
+            if (netOutbound.position() > 0) {
+              // Flushes the pending bytes first.
+              return progress;
+            }
+            netOutbound = enlarge(netOutbound, sslEngine.getSession().getPacketBufferSize());
+            continue;
+          case CLOSED:
+            throw new SSLException("TLS connection closed.");
+          default:
+            break;
+        }
+        if (result.bytesConsumed() == 0 && result.bytesProduced() == 0) {
+          return progress;
+        }
+        progress = true;
+      }
+    }
+
+    private boolean unwrap() throws IOException {
+      boolean progress = false;
+      netInbound.flip();
+      try {
+        while (true) {
+          HandshakeStatus handshakeStatus = sslEngine.getHandshakeStatus();
+          if (handshakeStatus == HandshakeStatus.NEED_TASK) {
+            runDelegatedTasks();
+            progress = true;
+            continue;
+          }
+          if (handshakeStatus == HandshakeStatus.NEED_WRAP
+              || (!netInbound.hasRemaining()
+                  && handshakeStatus != HandshakeStatus.NEED_UNWRAP_AGAIN)) {
+            return progress;
+          }
+          SSLEngineResult result = sslEngine.unwrap(netInbound, inbound);
+          updateEstablished(result);
+          switch (result.getStatus()) {
+            case BUFFER_UNDERFLOW:
+              return progress;
+            case BUFFER_OVERFLOW:
+              inbound = enlarge(inbound, sslEngine.getSession().getApplicationBufferSize());
+              continue;
+            case CLOSED:
+              // The server sent close_notify, handled like the end of the stream.
+              peerClosed = true;
+              return true;
+            default:
+              break;
+          }
+          if (result.bytesConsumed() == 0 && result.bytesProduced() == 0) {
+            return progress;
+          }
+          progress = true;
+        }
+      } finally {
+        netInbound.compact();
+      }
+    }
+
+    private void updateEstablished(SSLEngineResult result) {
+      if (result.getHandshakeStatus() == HandshakeStatus.FINISHED) {
+        established = true;
+      }
+    }
+
+    private void runDelegatedTasks() {
+      for (Runnable task = sslEngine.getDelegatedTask();
+          task != null;
+          task = sslEngine.getDelegatedTask()) {
+        task.run();
+      }
+    }
+
+    private void deliverResponses() throws IOException {
+      inbound.flip();
+      try {
+        while (!exchanges.isEmpty() && inbound.hasRemaining()) {
+          Exchange exchange = exchanges.peekFirst();
+          if (!exchange.parser.parse(inbound)) {
+            break;
+          }
+          exchanges.removeFirst();
+          responsesInBatch++;
+          exchange.future.set(exchange.parser);
+          if (!exchange.parser.isKeepAlive()) {
+            close(null, true);
+            return;
+          }
+        }
+      } finally {
+        inbound.compact();
+      }
+      if (exchanges.isEmpty()) {
+        if (inbound.position() > 0) {
+          // The server sent more than the responses to the requests.
+          close(null, false);
+        } else {
+          release();
+        }
+      }
+    }
+
+    private void onEndOfStream() {
+      Exchange exchange = exchanges.peekFirst();
+      if (exchange != null && exchange.parser.onEndOfStream()) {
+        exchanges.removeFirst();
+        responsesInBatch++;
+        exchange.future.set(exchange.parser);
+      }
+      close(new IOException(String.format("Connection closed by %s.", endpoint)), true);
+    }
+
+    /** Reuses this connection for a waiting batch, or keeps it in the pool of idle connections. */
+    private void release() {
+      EndpointConnections endpointState = endpointConnections.get(endpoint);
+      reused = true;
+      List<Exchange> batch = endpointState.waiting.poll();
+      if (batch != null) {
+        start(batch);
+        return;
+      }
+      if (!endpointState.idle.contains(this)) {
+        endpointState.idle.addFirst(this);
+      }
+    }
+
+    /**
+     * Closes the connection. Pending requests are retried on a new connection if the connection
+     * could have been closed by the server as part of keep-alive handling, otherwise they fail.
+     *
+     * @param cause the failure of pending requests, if any.
+     * @param retryable whether pending requests may be retried.
+     */
+    void close(@Nullable IOException cause, boolean retryable) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      key.cancel();
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.atFine().withCause(e).log("Failed to close connection to %s.", endpoint);
+      }
+      connections.remove(this);
+      EndpointConnections endpointState = endpointConnections.get(endpoint);
+      endpointState.openCount--;
+      endpointState.idle.remove(this);
+
+      List<Exchange> pending = new ArrayList<>(exchanges);
+      exchanges.clear();
+      pending.removeIf(exchange -> exchange.future.isDone());
+      if (!pending.isEmpty()) {
+        boolean responseStarted = pending.get(0).parser.hasStarted();
+        if (retryable && (reused || responsesInBatch > 0) && !responseStarted) {
+          dispatch(endpoint, endpointState.address, pending);
+        } else {
+          IOException failure =
+              cause != null
+                  ? cause
+                  : new IOException(String.format("Connection to %s was closed.", endpoint));
+          pending.forEach(exchange -> exchange.future.setException(failure));
+        }
+      }
+      openWaitingOrRemove(endpoint, endpointState);
+    }
+  }
+
+  private static ByteBuffer ensureRemaining(ByteBuffer buffer) {
+    return buffer.hasRemaining() ? buffer : enlarge(buffer, READ_BUFFER_SIZE);
+  }
+
+  private static ByteBuffer enlarge(ByteBuffer buffer, int minimumIncrease) {
+    ByteBuffer enlarged =
+        ByteBuffer.allocate(buffer.capacity() + Math.max(minimumIncrease, buffer.capacity()));
+    buffer.flip();
+    enlarged.put(buffer);
+    return enlarged;
+  }
+}
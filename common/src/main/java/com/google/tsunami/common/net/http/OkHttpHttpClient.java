@@ -15,29 +15,44 @@
  */
 package com.google.tsunami.common.net.http;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.net.HttpHeaders.USER_AGENT;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.base.Ascii;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.flogger.GoogleLogger;
 import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import com.google.tsunami.common.net.http.javanet.ConnectionFactory;
 import com.google.tsunami.proto.NetworkService;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 import javax.net.ssl.HttpsURLConnection;
 import okhttp3.Call;
 import okhttp3.Callback;
-import okhttp3.Dns;
 import okhttp3.Headers;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -45,6 +60,7 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.BufferedSource;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
@@ -53,24 +69,47 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  */
 final class OkHttpHttpClient extends HttpClient {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  // Bounds of the cache of clients that use a service's hostname as proxy. Cached clients share
+  // the connection pool and the dispatcher of okHttpClient, so each entry is cheap.
+  private static final int MAX_HOSTNAME_AS_PROXY_CLIENTS = 1024;
+  private static final Duration HOSTNAME_AS_PROXY_CLIENT_EXPIRATION = Duration.ofMinutes(10);
 
   private final OkHttpClient okHttpClient;
   private final boolean trustAllCertificates;
   private final ConnectionFactory connectionFactory;
+  private final NioHttpTransport nioHttpTransport;
   private final String logId;
   private final Duration connectionTimeout;
+  private final int maxResponseBodyBytes;
+  private final LoadingCache<HostnameAndIp, OkHttpClient> hostnameAsProxyClients;
+  private final ImmutableList<AsyncHostGate> asyncHostGates;
 
   OkHttpHttpClient(
       OkHttpClient okHttpClient,
       boolean trustAllCertificates,
       ConnectionFactory connectionFactory,
+      NioHttpTransport nioHttpTransport,
       String logId,
-      Duration connectionTimeout) {
+      Duration connectionTimeout,
+      int maxResponseBodyBytes) {
+    checkArgument(maxResponseBodyBytes >= 0, "Max response body size cannot be negative.");
     this.okHttpClient = checkNotNull(okHttpClient);
     this.trustAllCertificates = trustAllCertificates;
     this.connectionFactory = checkNotNull(connectionFactory);
+    this.nioHttpTransport = checkNotNull(nioHttpTransport);
     this.logId = logId;
     this.connectionTimeout = connectionTimeout;
+    this.maxResponseBodyBytes = maxResponseBodyBytes;
+    this.hostnameAsProxyClients =
+        CacheBuilder.newBuilder()
+            .maximumSize(MAX_HOSTNAME_AS_PROXY_CLIENTS)
+            .expireAfterAccess(HOSTNAME_AS_PROXY_CLIENT_EXPIRATION)
+            .build(CacheLoader.from(this::newClientWithHostnameAsProxy));
+    this.asyncHostGates =
+        okHttpClient.interceptors().stream()
+            .filter(AsyncHostGate.class::isInstance)
+            .map(AsyncHostGate.class::cast)
+            .collect(toImmutableList());
   }
 
   /**
@@ -127,11 +166,93 @@ final class OkHttpHttpClient extends HttpClient {
         }
       }
     }
-    return HttpResponse.builder()
-        .setStatus(HttpStatus.fromCode(responseCode))
-        .setHeaders(responseHeadersBuilder.build())
-        .setBodyBytes(ByteString.readFrom(connection.getInputStream()))
-        .build();
+    HttpResponse.Builder httpResponseBuilder =
+        HttpResponse.builder()
+            .setStatus(HttpStatus.fromCode(responseCode))
+            .setHeaders(responseHeadersBuilder.build());
+    try (InputStream bodyStream = connection.getInputStream()) {
+      // Reads one extra byte to tell whether the body exceeds the size limit.
+      byte[] body =
+          ByteStreams.toByteArray(ByteStreams.limit(bodyStream, maxResponseBodyBytes + 1L));
+      setBody(
+          httpResponseBuilder, body, body.length > maxResponseBodyBytes, httpRequest.url());
+    }
+    return httpResponseBuilder.build();
+  }
+
+  /**
+   * Sends the given HTTP request as is asynchronously. The request line is written byte-for-byte
+   * over a non-blocking connection, so no thread is blocked while waiting for the server.
+   *
+   * <p>Unlike {@link #sendAsIs(HttpRequest)}, redirects are never followed.
+   *
+   * @param httpRequest the HTTP request to be sent by this client.
+   * @return the future for the response to be returned from the HTTP server.
+   */
+  @Override
+  public ListenableFuture<HttpResponse> sendAsIsAsync(HttpRequest httpRequest) {
+    logger.atInfo().log(
+        "%sSending async HTTP '%s' request as is to '%s'.",
+        logId, httpRequest.method(), httpRequest.url());
+    AsIsUrl asIsUrl;
+    try {
+      asIsUrl = AsIsUrl.parse(httpRequest.url());
+    } catch (MalformedURLException e) {
+      return Futures.immediateFailedFuture(e);
+    }
+    HttpResponseParser responseParser =
+        new HttpResponseParser(
+            httpRequest.method().equals(HttpMethod.HEAD), maxResponseBodyBytes, true);
+    return Futures.transform(
+        nioHttpTransport.send(
+            NioHttpTransport.Endpoint.create(asIsUrl.tls(), asIsUrl.host(), asIsUrl.port()),
+            encodeAsIsRequest(httpRequest, asIsUrl),
+            responseParser),
+        parser -> {
+          if (parser.isBodyTruncated()) {
+            logger.atWarning().log(
+                "%sResponse body from '%s' exceeds %d bytes and is truncated.",
+                logId, httpRequest.url(), maxResponseBodyBytes);
+          }
+          return parser.toHttpResponse();
+        },
+        directExecutor());
+  }
+
+  private static byte[] encodeAsIsRequest(HttpRequest httpRequest, AsIsUrl asIsUrl) {
+    StringBuilder requestHead =
+        new StringBuilder()
+            .append(httpRequest.method())
+            .append(' ')
+            .append(asIsUrl.requestTarget())
+            .append(" HTTP/1.1\r\n");
+    boolean hasHost = false;
+    boolean hasContentLength = false;
+    for (String headerName : httpRequest.headers().names()) {
+      if (Ascii.equalsIgnoreCase(headerName, USER_AGENT)) {
+        continue;
+      }
+      hasHost |= Ascii.equalsIgnoreCase(headerName, com.google.common.net.HttpHeaders.HOST);
+      hasContentLength |=
+          Ascii.equalsIgnoreCase(headerName, com.google.common.net.HttpHeaders.CONTENT_LENGTH);
+      for (String headerValue : httpRequest.headers().getAll(headerName)) {
+        requestHead.append(headerName).append(": ").append(headerValue).append("\r\n");
+      }
+    }
+    if (!hasHost) {
+      requestHead.append("Host: ").append(asIsUrl.authority()).append("\r\n");
+    }
+    requestHead.append(USER_AGENT).append(": ").append(TSUNAMI_USER_AGENT).append("\r\n");
+    ByteString requestBody = httpRequest.requestBody().orElse(ByteString.EMPTY);
+    boolean sendsBody =
+        !requestBody.isEmpty()
+            || ImmutableSet.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.DELETE)
+                .contains(httpRequest.method());
+    if (sendsBody && !hasContentLength) {
+      requestHead.append("Content-Length: ").append(requestBody.size()).append("\r\n");
+    }
+    requestHead.append("\r\n");
+    return ByteString.copyFrom(requestHead.toString(), UTF_8).concat(requestBody).toByteArray();
   }
 
   /**
@@ -169,6 +290,37 @@ final class OkHttpHttpClient extends HttpClient {
     }
   }
 
+  /**
+   * Sends the given HTTP request using this client, returning as soon as the response headers are
+   * received. The response body is read from the connection as the caller consumes it.
+   *
+   * @param httpRequest the HTTP request to be sent by this client.
+   * @param networkService the {@link NetworkService} proto to be used for the HOST header.
+   * @return the response returned from the HTTP server, must be closed by the caller.
+   * @throws IOException if an I/O error occurs during the HTTP request.
+   */
+  @Override
+  public StreamingHttpResponse sendStreaming(
+      HttpRequest httpRequest, @Nullable NetworkService networkService) throws IOException {
+    logger.atInfo().log(
+        "%sSending streaming HTTP '%s' request to '%s'.",
+        logId, httpRequest.method(), httpRequest.url());
+
+    OkHttpClient callHttpClient = clientWithHostnameAsProxy(networkService);
+    Response okHttpResponse = callHttpClient.newCall(buildOkHttpRequest(httpRequest)).execute();
+    ResponseBody responseBody = okHttpResponse.body();
+    InputStream bodyStream =
+        responseBody == null || httpRequest.method().equals(HttpMethod.HEAD)
+            ? ByteSource.empty().openStream()
+            : responseBody.byteStream();
+    return new StreamingHttpResponse(
+        HttpStatus.fromCode(okHttpResponse.code()),
+        convertHeaders(okHttpResponse.headers()),
+        Optional.of(okHttpResponse.request().url()),
+        bodyStream,
+        okHttpResponse);
+  }
+
   /**
    * Sends the given HTTP request using this client asynchronously.
    *
@@ -197,18 +349,85 @@ final class OkHttpHttpClient extends HttpClient {
         logId, httpRequest.method(), httpRequest.url());
     OkHttpClient callHttpClient = clientWithHostnameAsProxy(networkService);
     SettableFuture<HttpResponse> responseFuture = SettableFuture.create();
-    Call requestCall = callHttpClient.newCall(buildOkHttpRequest(httpRequest));
+    Request okRequest = AsyncHostGate.markAdmitted(buildOkHttpRequest(httpRequest));
+    Call requestCall = callHttpClient.newCall(okRequest);
+
+    // Makes sure cancellation state is propagated to OkHttp.
+    responseFuture.addListener(
+        () -> {
+          if (responseFuture.isCancelled()) {
+            requestCall.cancel();
+          }
+        },
+        directExecutor());
+    admitAsyncCall(
+        Ascii.toLowerCase(okRequest.url().host()),
+        0,
+        ImmutableList.of(),
+        responseFuture,
+        releases -> enqueue(requestCall, releases, responseFuture));
+    return responseFuture;
+  }
+
+  /**
+   * Waits for the admission of a call by each {@link AsyncHostGate} in turn without blocking, then
+   * runs the call. Admissions are released right away when the response future completed in the
+   * meantime, e.g. because it was cancelled.
+   */
+  private void admitAsyncCall(
+      String host,
+      int gateIndex,
+      ImmutableList<Runnable> releases,
+      SettableFuture<HttpResponse> responseFuture,
+      Consumer<ImmutableList<Runnable>> call) {
+    if (responseFuture.isDone()) {
+      releases.forEach(Runnable::run);
+      return;
+    }
+    if (gateIndex == asyncHostGates.size()) {
+      call.accept(releases);
+      return;
+    }
+    ListenableFuture<Runnable> admission = asyncHostGates.get(gateIndex).admit(host);
+    responseFuture.addListener(() -> admission.cancel(false), directExecutor());
+    Futures.addCallback(
+        admission,
+        new FutureCallback<Runnable>() {
+          @Override
+          public void onSuccess(Runnable release) {
+            admitAsyncCall(
+                host,
+                gateIndex + 1,
+                ImmutableList.<Runnable>builder().addAll(releases).add(release).build(),
+                responseFuture,
+                call);
+          }
 
+          @Override
+          public void onFailure(Throwable t) {
+            releases.forEach(Runnable::run);
+            responseFuture.setException(t);
+          }
+        },
+        directExecutor());
+  }
+
+  private void enqueue(
+      Call requestCall,
+      ImmutableList<Runnable> releases,
+      SettableFuture<HttpResponse> responseFuture) {
     try {
       requestCall.enqueue(
           new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
+              releases.forEach(Runnable::run);
               responseFuture.setException(e);
             }
 
             @Override
             public void onResponse(Call call, Response response) {
+              releases.forEach(Runnable::run);
               try (ResponseBody unused = response.body()) {
                 responseFuture.set(parseResponse(response));
               } catch (Throwable t) {
@@ -217,31 +436,35 @@ final class OkHttpHttpClient extends HttpClient {
             }
           });
     } catch (Throwable t) {
+      releases.forEach(Runnable::run);
       responseFuture.setException(t);
     }
-
-    // Makes sure cancellation state is propagated to OkHttp.
-    responseFuture.addListener(
-        () -> {
-          if (responseFuture.isCancelled()) {
-            requestCall.cancel();
-          }
-        },
-        directExecutor());
-    return responseFuture;
   }
 
   /*
    * Returns a modified HTTP client that's configured to connect to the {@code networkService}'s IP
    * and use its hostname in the host header, when both a hostname and an IP address is specified.
    * Returns an unmodified HTTP client otherwise.
+   *
+   * <p>Modified clients are cached per hostname and IP. Besides saving the allocations, reusing the
+   * same client keeps the DNS and hostname verifier of OkHttp's route identical across requests, so
+   * that pooled connections to the service are actually reused.
    */
-  private OkHttpClient clientWithHostnameAsProxy(NetworkService networkService) {
+  private OkHttpClient clientWithHostnameAsProxy(@Nullable NetworkService networkService) {
     if (networkService == null) {
       return this.okHttpClient;
     }
     String serviceIp = networkService.getNetworkEndpoint().getIpAddress().getAddress();
     String serviceHostname = networkService.getNetworkEndpoint().getHostname().getName();
+    if (serviceIp.isEmpty() || serviceHostname.isEmpty()) {
+      return this.okHttpClient;
+    }
+    return hostnameAsProxyClients.getUnchecked(HostnameAndIp.create(serviceHostname, serviceIp));
+  }
+
+  private OkHttpClient newClientWithHostnameAsProxy(HostnameAndIp hostnameAndIp) {
+    String serviceIp = hostnameAndIp.ip();
+    String serviceHostname = hostnameAndIp.hostname();
     return this.okHttpClient
         .newBuilder()
         .dns(
@@ -249,7 +472,7 @@ final class OkHttpHttpClient extends HttpClient {
               if (hostname.equals(serviceHostname)) {
                 hostname = serviceIp;
               }
-              return Dns.SYSTEM.lookup(hostname);
+              return okHttpClient.dns().lookup(hostname);
             })
         .hostnameVerifier(
             (hostname, session) -> {
@@ -264,6 +487,17 @@ final class OkHttpHttpClient extends HttpClient {
         .build();
   }
 
+  @AutoValue
+  abstract static class HostnameAndIp {
+    abstract String hostname();
+
+    abstract String ip();
+
+    static HostnameAndIp create(String hostname, String ip) {
+      return new AutoValue_OkHttpHttpClient_HostnameAndIp(hostname, ip);
+    }
+  }
+
   private static Request buildOkHttpRequest(HttpRequest httpRequest) {
     Request.Builder okRequestBuilder = new Request.Builder().url(httpRequest.url());
 
@@ -306,7 +540,7 @@ final class OkHttpHttpClient extends HttpClient {
         mediaType, httpRequest.requestBody().orElse(ByteString.EMPTY).toByteArray());
   }
 
-  private static HttpResponse parseResponse(Response okResponse) throws IOException {
+  private HttpResponse parseResponse(Response okResponse) throws IOException {
     logger.atInfo().log(
         "Received HTTP response with code '%d' for request to '%s'.",
         okResponse.code(), okResponse.request().url());
@@ -318,11 +552,32 @@ final class OkHttpHttpClient extends HttpClient {
             .setResponseUrl(okResponse.request().url());
     if (!okResponse.request().method().equals(HttpMethod.HEAD.name())
         && okResponse.body() != null) {
-      httpResponseBuilder.setBodyBytes(ByteString.copyFrom(okResponse.body().bytes()));
+      BufferedSource bodySource = okResponse.body().source();
+      // Buffers one extra byte to tell whether the body exceeds the size limit. Any remaining bytes
+      // are never read, the transfer is aborted when the response gets closed.
+      boolean truncated = bodySource.request(maxResponseBodyBytes + 1L);
+      byte[] body =
+          truncated ? bodySource.readByteArray(maxResponseBodyBytes) : bodySource.readByteArray();
+      setBody(httpResponseBuilder, body, truncated, okResponse.request().url().toString());
     }
     return httpResponseBuilder.build();
   }
 
+  private void setBody(
+      HttpResponse.Builder httpResponseBuilder, byte[] body, boolean truncated, String url) {
+    if (truncated) {
+      logger.atWarning().log(
+          "%sResponse body from '%s' exceeds %d bytes and is truncated.",
+          logId, url, maxResponseBodyBytes);
+    }
+    // The body array is never exposed elsewhere, so it is safe to wrap it without copying.
+    httpResponseBuilder
+        .setBodyBytes(
+            UnsafeByteOperations.unsafeWrap(
+                body, 0, truncated ? maxResponseBodyBytes : body.length))
+        .setBodyTruncated(truncated);
+  }
+
   private static HttpHeaders convertHeaders(Headers headers) {
     HttpHeaders.Builder headersBuilder = HttpHeaders.builder();
     for (int i = 0; i < headers.size(); i++) {
@@ -350,16 +605,20 @@ final class OkHttpHttpClient extends HttpClient {
     private boolean followRedirects;
     private boolean trustAllCertificates;
     private final ConnectionFactory connectionFactory;
+    private final NioHttpTransport nioHttpTransport;
     private String logId;
     private Duration connectionTimeout;
+    private final int maxResponseBodyBytes;
 
     private OkHttpHttpClientBuilder(OkHttpHttpClient okHttpHttpClient) {
       this.okHttpClient = okHttpHttpClient.okHttpClient;
       this.followRedirects = okHttpClient.followRedirects();
       this.trustAllCertificates = okHttpHttpClient.trustAllCertificates;
       this.connectionFactory = okHttpHttpClient.connectionFactory;
+      this.nioHttpTransport = okHttpHttpClient.nioHttpTransport;
       this.logId = okHttpHttpClient.logId;
       this.connectionTimeout = okHttpHttpClient.connectionTimeout;
+      this.maxResponseBodyBytes = okHttpHttpClient.maxResponseBodyBytes;
     }
 
     @Override
@@ -392,8 +651,10 @@ final class OkHttpHttpClient extends HttpClient {
           okHttpClient.newBuilder().followRedirects(followRedirects).build(),
           trustAllCertificates,
           connectionFactory,
+          nioHttpTransport,
           logId,
-          connectionTimeout);
+          connectionTimeout,
+          maxResponseBodyBytes);
     }
   }
 }
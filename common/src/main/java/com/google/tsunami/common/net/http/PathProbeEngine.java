@@ -0,0 +1,328 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.tsunami.common.data.NetworkServiceUtils;
+import com.google.tsunami.common.net.http.HttpClientModule.MaxResponseBodyBytes;
+import com.google.tsunami.proto.NetworkEndpoint;
+import com.google.tsunami.proto.NetworkService;
+import java.net.MalformedURLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import javax.inject.Inject;
+
+/**
+ * Probes long lists of paths on a web service, e.g. for exposed files or admin panels.
+ *
+ * <p>Probes are sent over a few persistent connections to the service. Once the service proved to
+ * keep connections alive, requests are pipelined, i.e. several requests are written to a
+ * connection before reading their responses. If pipelining fails, the remaining paths are probed
+ * one request at a time. Only the status, body length and selected headers of each response are
+ * kept, unless bodies are explicitly retained.
+ *
+ * <p>Paths are sent as is relative to the root URL of the web application, see {@link
+ * NetworkServiceUtils#buildWebApplicationRootUrl}. Redirects are not followed.
+ */
+public final class PathProbeEngine {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  private final NioHttpTransport nioHttpTransport;
+  private final int maxResponseBodyBytes;
+
+  @Inject
+  PathProbeEngine(
+      NioHttpTransport nioHttpTransport, @MaxResponseBodyBytes int maxResponseBodyBytes) {
+    this.nioHttpTransport = checkNotNull(nioHttpTransport);
+    this.maxResponseBodyBytes = maxResponseBodyBytes;
+  }
+
+  /**
+   * Probes all paths with the default {@link ProbeOptions}, blocking until all are done.
+   *
+   * @param networkService the web service to probe.
+   * @param paths the paths to probe, relative to the root URL of the web application.
+   * @return the results of the probes that received a response, in completion order.
+   * @throws InterruptedException if interrupted while waiting for responses.
+   */
+  public ImmutableList<PathProbeResult> probeAll(
+      NetworkService networkService, Iterable<String> paths) throws InterruptedException {
+    ImmutableList.Builder<PathProbeResult> results = ImmutableList.builder();
+    probe(networkService, paths, ProbeOptions.builder().build(), results::add);
+    return results.build();
+  }
+
+  /**
+   * Probes all paths, passing each result to {@code resultConsumer} on the calling thread as soon
+   * as it is received. Paths are pulled from {@code paths} lazily, so a large wordlist can be
+   * streamed. Probes failing with an I/O error are logged and produce no result.
+   *
+   * @param networkService the web service to probe.
+   * @param paths the paths to probe, relative to the root URL of the web application.
+   * @param options the options of the probes.
+   * @param resultConsumer the consumer of the results, in completion order.
+   * @throws InterruptedException if interrupted while waiting for responses.
+   */
+  public void probe(
+      NetworkService networkService,
+      Iterable<String> paths,
+      ProbeOptions options,
+      Consumer<PathProbeResult> resultConsumer)
+      throws InterruptedException {
+    checkNotNull(resultConsumer);
+    new ProbeRun(networkService, options, resultConsumer).run(paths.iterator());
+  }
+
+  /** The state of one {@link #probe} call, only accessed by the calling thread. */
+  private final class ProbeRun {
+    private final ProbeOptions options;
+    private final Consumer<PathProbeResult> resultConsumer;
+    private final NioHttpTransport.Endpoint endpoint;
+    private final AsIsUrl rootUrl;
+    private final BlockingQueue<List<Probe>> completedBatches = new LinkedBlockingQueue<>();
+    // Paths of failed pipelined batches, probed again one request at a time.
+    private final Queue<String> retryPaths = new ArrayDeque<>();
+    private final List<Probe> pendingProbes = new ArrayList<>();
+    // Unknown until the first response tells whether the service keeps connections alive.
+    private Optional<Boolean> pipelining = Optional.empty();
+    private int batchesInFlight;
+
+    ProbeRun(
+        NetworkService networkService,
+        ProbeOptions options,
+        Consumer<PathProbeResult> resultConsumer) {
+      this.options = checkNotNull(options);
+      this.resultConsumer = resultConsumer;
+      String webApplicationRootUrl = NetworkServiceUtils.buildWebApplicationRootUrl(networkService);
+      try {
+        this.rootUrl = AsIsUrl.parse(webApplicationRootUrl);
+      } catch (MalformedURLException e) {
+        throw new IllegalArgumentException(e);
+      }
+      this.endpoint = buildEndpoint(networkService, this.rootUrl);
+    }
+
+    void run(Iterator<String> paths) throws InterruptedException {
+      try {
+        while (true) {
+          while (batchesInFlight < options.connections() && sendNextBatch(paths)) {
+            batchesInFlight++;
+          }
+          if (batchesInFlight == 0) {
+            return;
+          }
+          List<Probe> completedBatch = completedBatches.take();
+          batchesInFlight--;
+          pendingProbes.removeAll(completedBatch);
+          handleCompletedBatch(completedBatch);
+        }
+      } finally {
+        // Abandons the remaining probes if interrupted or if the consumer threw.
+        pendingProbes.forEach(probe -> probe.response.cancel(false));
+      }
+    }
+
+    private boolean sendNextBatch(Iterator<String> paths) {
+      int batchSize = pipelining.orElse(false) ? options.pipelineDepth() : 1;
+      List<String> batchPaths = new ArrayList<>();
+      if (!retryPaths.isEmpty()) {
+        batchPaths.add(retryPaths.remove());
+      } else {
+        while (batchPaths.size() < batchSize && paths.hasNext()) {
+          batchPaths.add(paths.next());
+        }
+      }
+      if (batchPaths.isEmpty()) {
+        return false;
+      }
+
+      ImmutableList<NioHttpTransport.Exchange> exchanges =
+          batchPaths.stream()
+              .map(
+                  path ->
+                      new NioHttpTransport.Exchange(
+                          encodeRequest(path),
+                          new HttpResponseParser(
+                              options.method().equals(HttpMethod.HEAD),
+                              maxResponseBodyBytes,
+                              options.retainBodies())))
+              .collect(toImmutableList());
+      ImmutableList<ListenableFuture<HttpResponseParser>> responses =
+          nioHttpTransport.sendPipelined(endpoint, exchanges);
+      List<Probe> batch = new ArrayList<>();
+      for (int i = 0; i < batchPaths.size(); i++) {
+        batch.add(new Probe(batchPaths.get(i), responses.get(i)));
+      }
+      pendingProbes.addAll(batch);
+      Futures.whenAllComplete(responses).run(() -> completedBatches.add(batch), directExecutor());
+      return true;
+    }
+
+    private void handleCompletedBatch(List<Probe> batch) throws InterruptedException {
+      for (Probe probe : batch) {
+        HttpResponseParser parser;
+        try {
+          parser = Futures.getDone(probe.response);
+        } catch (ExecutionException e) {
+          if (batch.size() > 1) {
+            // The service accepted keep-alive connections but failed on pipelined requests.
+            logger.atInfo().withCause(e.getCause()).log(
+                "Pipelined probe of '%s' failed on %s, disabling pipelining.",
+                probe.path, endpoint);
+            pipelining = Optional.of(false);
+            retryPaths.add(probe.path);
+          } else {
+            logger.atWarning().withCause(e.getCause()).log(
+                "Probe of '%s' failed on %s.", probe.path, endpoint);
+          }
+          continue;
+        }
+        if (!pipelining.isPresent()) {
+          pipelining = Optional.of(parser.isKeepAlive());
+        }
+        resultConsumer.accept(toResult(probe.path, parser));
+      }
+    }
+
+    private PathProbeResult toResult(String path, HttpResponseParser parser) {
+      HttpHeaders.Builder selectedHeaders = HttpHeaders.builder();
+      HttpHeaders headers = parser.getHeaders();
+      for (String headerName : options.headers()) {
+        headers.getAll(headerName).forEach(value -> selectedHeaders.addHeader(headerName, value));
+      }
+      return PathProbeResult.create(
+          path,
+          HttpStatus.fromCode(parser.getStatusCode()),
+          parser.getBodyLength(),
+          selectedHeaders.build(),
+          options.retainBodies()
+              ? parser.toHttpResponse().bodyBytes()
+              : Optional.empty());
+    }
+
+    private byte[] encodeRequest(String path) {
+      String relativePath = path.startsWith("/") ? path.substring(1) : path;
+      String request =
+          options.method()
+              + " "
+              + rootUrl.requestTarget()
+              + relativePath
+              + " HTTP/1.1\r\nHost: "
+              + rootUrl.authority()
+              + "\r\n"
+              + com.google.common.net.HttpHeaders.USER_AGENT
+              + ": "
+              + HttpClient.TSUNAMI_USER_AGENT
+              + "\r\n\r\n";
+      return request.getBytes(UTF_8);
+    }
+  }
+
+  private static NioHttpTransport.Endpoint buildEndpoint(
+      NetworkService networkService, AsIsUrl rootUrl) {
+    NetworkEndpoint networkEndpoint = networkService.getNetworkEndpoint();
+    String ip = networkEndpoint.getIpAddress().getAddress();
+    // Connects to the scanned IP while still using the hostname for the Host header and TLS.
+    String connectHost =
+        networkEndpoint.hasHostname() && !ip.isEmpty() ? ip : rootUrl.host();
+    return NioHttpTransport.Endpoint.create(
+        rootUrl.tls(), rootUrl.host(), connectHost, rootUrl.port());
+  }
+
+  /** A path being probed. */
+  private static final class Probe {
+    private final String path;
+    private final ListenableFuture<HttpResponseParser> response;
+
+    Probe(String path, ListenableFuture<HttpResponseParser> response) {
+      this.path = path;
+      this.response = response;
+    }
+  }
+
+  /** Options of a {@link PathProbeEngine#probe} call. */
+  @AutoValue
+  public abstract static class ProbeOptions {
+    /** The method of the probes, either GET or HEAD. */
+    public abstract HttpMethod method();
+
+    /** The number of connections probing the service concurrently. */
+    public abstract int connections();
+
+    /** The maximum number of requests pipelined on a connection. */
+    public abstract int pipelineDepth();
+
+    /** The names of the response headers kept in the results. */
+    public abstract ImmutableSet<String> headers();
+
+    /** Whether to keep the response bodies in the results. */
+    public abstract boolean retainBodies();
+
+    public static Builder builder() {
+      return new AutoValue_PathProbeEngine_ProbeOptions.Builder()
+          .setMethod(HttpMethod.GET)
+          .setConnections(4)
+          .setPipelineDepth(8)
+          .setHeaders(ImmutableSet.of())
+          .setRetainBodies(false);
+    }
+
+    /** Builder for {@link ProbeOptions}. */
+    @AutoValue.Builder
+    public abstract static class Builder {
+      public abstract Builder setMethod(HttpMethod method);
+
+      public abstract Builder setConnections(int connections);
+
+      public abstract Builder setPipelineDepth(int pipelineDepth);
+
+      public abstract Builder setHeaders(ImmutableSet<String> headers);
+
+      public abstract Builder setRetainBodies(boolean retainBodies);
+
+      abstract ProbeOptions autoBuild();
+
+      public ProbeOptions build() {
+        ProbeOptions options = autoBuild();
+        checkArgument(
+            options.method().equals(HttpMethod.GET) || options.method().equals(HttpMethod.HEAD),
+            "Only GET and HEAD probes are supported.");
+        checkArgument(options.connections() > 0, "Connections must be positive.");
+        checkArgument(options.pipelineDepth() > 0, "Pipeline depth must be positive.");
+        return options;
+      }
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import com.google.auto.value.AutoValue;
+import com.google.protobuf.ByteString;
+import java.util.Optional;
+
+/** The compact result of probing a path with the {@link PathProbeEngine}. */
+@AutoValue
+public abstract class PathProbeResult {
+  /** The probed path, as given to the engine. */
+  public abstract String path();
+
+  public abstract HttpStatus status();
+
+  /** The length of the response body, up to the max response body size. */
+  public abstract long bodyLength();
+
+  /** The response headers selected by {@link PathProbeEngine.ProbeOptions#headers()}. */
+  public abstract HttpHeaders headers();
+
+  /** The response body, only present if bodies are retained. */
+  public abstract Optional<ByteString> bodyBytes();
+
+  static PathProbeResult create(
+      String path,
+      HttpStatus status,
+      long bodyLength,
+      HttpHeaders headers,
+      Optional<ByteString> bodyBytes) {
+    return new AutoValue_PathProbeResult(path, status, bodyLength, headers, bodyBytes);
+  }
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches a compiled set of literal and regex signatures against HTTP response bodies in a single
+ * pass, stopping as soon as any signature matches.
+ *
+ * <p>Literal signatures are matched over the raw body bytes using an Aho-Corasick automaton, so
+ * the cost of a pass doesn't grow with the number of literals. Regex signatures are matched over
+ * the UTF-8 decoded body, using a sliding window of the last {@link Builder#setRegexWindowChars}
+ * characters so that matches can span reads. Regex matches longer than the window may be missed.
+ * Anchors keep their meaning over the whole body: {@code ^} and {@code \A} only match at its start,
+ * and a match that more of the body could still undo, e.g. one ending at {@code $}, is only
+ * reported once more of the body was read or the body ended.
+ *
+ * <p>When matching a streamed body, e.g. from {@link HttpClient#sendStreaming}, the rest of the
+ * body is never read once a signature matched or the scan limit is reached. Closing the response
+ * then aborts the transfer:
+ *
+ * <pre>{@code
+ * try (StreamingHttpResponse response = httpClient.sendStreaming(request, networkService)) {
+ *   if (response.status().isSuccess() && SIGNATURES.match(response.body()).matched()) {
+ *     ...
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>Instances are immutable and safe to share between threads.
+ */
+public final class SignatureMatcher {
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  private final LiteralAutomaton literalAutomaton;
+  private final ImmutableList<Pattern> regexes;
+  private final long maxScanBytes;
+  private final int regexWindowChars;
+
+  private SignatureMatcher(Builder builder) {
+    this.literalAutomaton = new LiteralAutomaton(builder.literals);
+    this.regexes = builder.regexes.build();
+    this.maxScanBytes = builder.maxScanBytes;
+    this.regexWindowChars = builder.regexWindowChars;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Matches the signatures against a fully received body.
+   *
+   * @param body the body to scan.
+   * @return the result of the match.
+   */
+  public MatchResult match(ByteString body) {
+    checkNotNull(body);
+    try {
+      return match(body.newInput());
+    } catch (IOException e) {
+      throw new AssertionError("SHOULD NEVER HAPPEN, reading a ByteString failed.", e);
+    }
+  }
+
+  /**
+   * Matches the signatures against a body stream, reading no further than the first match or the
+   * scan limit.
+   *
+   * @param body the stream of the body to scan, not closed by this method.
+   * @return the result of the match.
+   * @throws IOException if reading the body failed.
+   */
+  public MatchResult match(InputStream body) throws IOException {
+    checkNotNull(body);
+    MatchState state = new MatchState();
+    byte[] buffer = new byte[READ_BUFFER_SIZE];
+    while (state.bytesScanned < maxScanBytes) {
+      int read =
+          body.read(buffer, 0, (int) Math.min(buffer.length, maxScanBytes - state.bytesScanned));
+      if (read == -1) {
+        return state.finish(true).orElseGet(() -> MatchResult.noMatch(state.bytesScanned, false));
+      }
+      Optional<MatchResult> matchResult = state.scan(buffer, read);
+      if (matchResult.isPresent()) {
+        return matchResult.get();
+      }
+    }
+    return state.finish(false).orElseGet(() -> MatchResult.noMatch(state.bytesScanned, true));
+  }
+
+  /** Per-call state of a match. */
+  private final class MatchState {
+    private final CharsetDecoder decoder =
+        UTF_8
+            .newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // Bytes of an incomplete UTF-8 sequence at the end of the last read.
+    private ByteBuffer undecodedBytes = ByteBuffer.allocate(0);
+    private final StringBuilder regexWindow = new StringBuilder();
+    // Whether the start of the body was dropped from the regex window. The first character of a
+    // trimmed window is then only kept as context, e.g. for anchors and lookbehinds.
+    private boolean regexWindowTrimmed;
+    private int literalState = LiteralAutomaton.ROOT;
+    private long bytesScanned;
+
+    Optional<MatchResult> scan(byte[] bytes, int length) {
+      for (int i = 0; i < length; i++) {
+        literalState = literalAutomaton.next(literalState, bytes[i]);
+        Optional<String> matchedLiteral = literalAutomaton.output(literalState);
+        if (matchedLiteral.isPresent()) {
+          return Optional.of(MatchResult.match(matchedLiteral.get(), bytesScanned + i + 1));
+        }
+      }
+      bytesScanned += length;
+      if (regexes.isEmpty()) {
+        return Optional.empty();
+      }
+
+      ByteBuffer input = ByteBuffer.allocate(undecodedBytes.remaining() + length);
+      input.put(undecodedBytes).put(bytes, 0, length).flip();
+      decodeAndAppend(input, false);
+      undecodedBytes = input.slice();
+      return matchRegexes(false, false);
+    }
+
+    /**
+     * Matches the regexes against the rest of the scanned bytes.
+     *
+     * @param endOfBody whether the whole body was scanned, rather than stopping at the scan limit.
+     */
+    Optional<MatchResult> finish(boolean endOfBody) {
+      if (regexes.isEmpty()) {
+        return Optional.empty();
+      }
+      decodeAndAppend(undecodedBytes, true);
+      return matchRegexes(true, endOfBody);
+    }
+
+    private void decodeAndAppend(ByteBuffer input, boolean endOfInput) {
+      CharBuffer output = CharBuffer.allocate((int) (input.remaining() * 1.1) + 4);
+      decoder.decode(input, output, endOfInput);
+      if (endOfInput) {
+        decoder.flush(output);
+      }
+      output.flip();
+      regexWindow.append(output);
+    }
+
+    private Optional<MatchResult> matchRegexes(boolean finished, boolean endOfBody) {
+      for (Pattern regex : regexes) {
+        Matcher matcher =
+            regex
+                .matcher(regexWindow)
+                .region(regexWindowTrimmed ? 1 : 0, regexWindow.length())
+                .useAnchoringBounds(false)
+                .useTransparentBounds(true);
+        if (!matcher.find()) {
+          continue;
+        }
+        // A match that reached the end of the window might not hold once more input is read.
+        boolean decided = finished ? endOfBody || !matcher.requireEnd() : !matcher.hitEnd();
+        if (decided) {
+          return Optional.of(MatchResult.match(regex.pattern(), bytesScanned));
+        }
+      }
+      if (regexWindow.length() > regexWindowChars + 1) {
+        regexWindow.delete(0, regexWindow.length() - regexWindowChars - 1);
+        regexWindowTrimmed = true;
+      }
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * An Aho-Corasick automaton over bytes. Transitions are stored as sorted arrays per state to keep
+   * the automaton compact for large signature sets.
+   */
+  private static final class LiteralAutomaton {
+    static final int ROOT = 0;
+
+    private final byte[][] transitionBytes;
+    private final int[][] transitionTargets;
+    private final int[] failureLinks;
+    // The literal matched when reaching a state, including via failure links, or null.
+    private final String[] outputs;
+
+    LiteralAutomaton(List<String> literals) {
+      List<TreeMap<Byte, Integer>> trie = new ArrayList<>();
+      List<String> stateOutputs = new ArrayList<>();
+      trie.add(new TreeMap<>());
+      stateOutputs.add(null);
+      for (String literal : literals) {
+        int state = ROOT;
+        for (byte b : literal.getBytes(UTF_8)) {
+          Integer nextState = trie.get(state).get(b);
+          if (nextState == null) {
+            nextState = trie.size();
+            trie.get(state).put(b, nextState);
+            trie.add(new TreeMap<>());
+            stateOutputs.add(null);
+          }
+          state = nextState;
+        }
+        if (stateOutputs.get(state) == null) {
+          stateOutputs.set(state, literal);
+        }
+      }
+
+      int stateCount = trie.size();
+      this.transitionBytes = new byte[stateCount][];
+      this.transitionTargets = new int[stateCount][];
+      for (int state = 0; state < stateCount; state++) {
+        Map<Byte, Integer> transitions = trie.get(state);
+        transitionBytes[state] = new byte[transitions.size()];
+        transitionTargets[state] = new int[transitions.size()];
+        int i = 0;
+        // TreeMap iterates in signed byte order, which is what Arrays.binarySearch expects.
+        for (Map.Entry<Byte, Integer> transition : transitions.entrySet()) {
+          transitionBytes[state][i] = transition.getKey();
+          transitionTargets[state][i] = transition.getValue();
+          i++;
+        }
+      }
+
+      // Breadth-first computation of the failure links and merged outputs.
+      this.failureLinks = new int[stateCount];
+      this.outputs = stateOutputs.toArray(new String[0]);
+      Queue<Integer> queue = new ArrayDeque<>();
+      for (int child : transitionTargets[ROOT]) {
+        failureLinks[child] = ROOT;
+        queue.add(child);
+      }
+      while (!queue.isEmpty()) {
+        int state = queue.remove();
+        for (int i = 0; i < transitionBytes[state].length; i++) {
+          int child = transitionTargets[state][i];
+          failureLinks[child] = next(failureLinks[state], transitionBytes[state][i]);
+          if (outputs[child] == null) {
+            outputs[child] = outputs[failureLinks[child]];
+          }
+          queue.add(child);
+        }
+      }
+    }
+
+    int next(int state, byte b) {
+      while (true) {
+        int i = Arrays.binarySearch(transitionBytes[state], b);
+        if (i >= 0) {
+          return transitionTargets[state][i];
+        }
+        if (state == ROOT) {
+          return ROOT;
+        }
+        state = failureLinks[state];
+      }
+    }
+
+    Optional<String> output(int state) {
+      return Optional.ofNullable(outputs[state]);
+    }
+  }
+
+  /** The result of matching signatures against a body. */
+  @AutoValue
+  public abstract static class MatchResult {
+    /** The literal or regex pattern of the first signature that matched, if any. */
+    public abstract Optional<String> matchedSignature();
+
+    /** The number of body bytes that were read before the match was decided. */
+    public abstract long bytesScanned();
+
+    /** Whether matching stopped at the scan limit before reaching the end of the body. */
+    public abstract boolean scanLimitReached();
+
+    public boolean matched() {
+      return matchedSignature().isPresent();
+    }
+
+    static MatchResult match(String signature, long bytesScanned) {
+      return new AutoValue_SignatureMatcher_MatchResult(
+          Optional.of(signature), bytesScanned, false);
+    }
+
+    static MatchResult noMatch(long bytesScanned, boolean scanLimitReached) {
+      return new AutoValue_SignatureMatcher_MatchResult(
+          Optional.empty(), bytesScanned, scanLimitReached);
+    }
+  }
+
+  /** Builder for {@link SignatureMatcher}. */
+  public static final class Builder {
+    private static final int DEFAULT_REGEX_WINDOW_CHARS = 4096;
+
+    private final List<String> literals = new ArrayList<>();
+    private final ImmutableList.Builder<Pattern> regexes = ImmutableList.builder();
+    private long maxScanBytes = Long.MAX_VALUE;
+    private int regexWindowChars = DEFAULT_REGEX_WINDOW_CHARS;
+
+    private Builder() {}
+
+    /**
+     * Adds a literal signature, matched against the UTF-8 encoded bytes of the body.
+     *
+     * @param literal the literal string to look for.
+     * @return the {@link Builder} instance itself.
+     */
+    public Builder addLiteral(String literal) {
+      checkArgument(!literal.isEmpty(), "Literal signatures cannot be empty.");
+      literals.add(literal);
+      return this;
+    }
+
+    /**
+     * Adds a regex signature, found anywhere in the UTF-8 decoded body.
+     *
+     * @param regex the compiled regex to look for.
+     * @return the {@link Builder} instance itself.
+     */
+    public Builder addRegex(Pattern regex) {
+      regexes.add(checkNotNull(regex));
+      return this;
+    }
+
+    /**
+     * Adds a regex signature, found anywhere in the UTF-8 decoded body.
+     *
+     * @param regex the regex to look for.
+     * @return the {@link Builder} instance itself.
+     */
+    public Builder addRegex(String regex) {
+      return addRegex(Pattern.compile(regex));
+    }
+
+    /**
+     * Sets the maximum number of body bytes to scan. If no signature matched within the limit,
+     * the body is ruled out without reading any further. Unlimited by default.
+     *
+     * @param maxScanBytes the maximum number of bytes to scan.
+     * @return the {@link Builder} instance itself.
+     */
+    public Builder setMaxScanBytes(long maxScanBytes) {
+      checkArgument(maxScanBytes > 0, "Max scan bytes must be positive.");
+      this.maxScanBytes = maxScanBytes;
+      return this;
+    }
+
+    /**
+     * Sets the number of trailing characters kept between reads for regex matching, which bounds
+     * the length of regex matches spanning reads.
+     *
+     * @param regexWindowChars the number of characters kept between reads.
+     * @return the {@link Builder} instance itself.
+     */
+    public Builder setRegexWindowChars(int regexWindowChars) {
+      checkArgument(regexWindowChars > 0, "Regex window must be positive.");
+      this.regexWindowChars = regexWindowChars;
+      return this;
+    }
+
+    public SignatureMatcher build() {
+      return new SignatureMatcher(this);
+    }
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Optional;
+import okhttp3.HttpUrl;
+
+/**
+ * An HTTP response whose body is read from the server as the caller consumes it.
+ *
+ * <p>Unlike {@link HttpResponse}, the body is never buffered in memory, so callers can stop reading
+ * as soon as they have seen what they need. The response holds on to its connection until it is
+ * closed, so it must always be closed, e.g. using a try-with-resources statement. Closing the
+ * response before the body is fully read aborts the transfer.
+ */
+public final class StreamingHttpResponse implements Closeable {
+  private final HttpStatus status;
+  private final HttpHeaders headers;
+  private final Optional<HttpUrl> responseUrl;
+  private final InputStream body;
+  private final Closeable connection;
+
+  public StreamingHttpResponse(
+      HttpStatus status,
+      HttpHeaders headers,
+      Optional<HttpUrl> responseUrl,
+      InputStream body,
+      Closeable connection) {
+    this.status = checkNotNull(status);
+    this.headers = checkNotNull(headers);
+    this.responseUrl = checkNotNull(responseUrl);
+    this.body = checkNotNull(body);
+    this.connection = checkNotNull(connection);
+  }
+
+  public HttpStatus status() {
+    return status;
+  }
+
+  public HttpHeaders headers() {
+    return headers;
+  }
+
+  // The URL that produced this response.
+  public Optional<HttpUrl> responseUrl() {
+    return responseUrl;
+  }
+
+  /**
+   * Gets the body of the response as a stream. The stream is only valid until this response is
+   * closed.
+   *
+   * @return the stream of the HTTP response body.
+   */
+  public InputStream body() {
+    return body;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      body.close();
+    } finally {
+      connection.close();
+    }
+  }
+}
@@ -17,19 +17,35 @@ package com.google.tsunami.common.reflection;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import io.github.classgraph.ScanResult;
 
 /** Guice module for providing ClassGraph bindings. */
 public final class ClassGraphModule extends AbstractModule {
-  private final ScanResult scanResult;
+  private final Supplier<ScanResult> scanResultSupplier;
 
   public ClassGraphModule(ScanResult scanResult) {
-    this.scanResult = checkNotNull(scanResult);
+    checkNotNull(scanResult);
+    this.scanResultSupplier = () -> scanResult;
+  }
+
+  /**
+   * Creates a module whose {@link ScanResult} binding is only computed when first requested, so
+   * that the classpath scan is skipped entirely when nothing depends on it.
+   *
+   * @param scanResultSupplier supplier of the {@link ScanResult}, called at most once.
+   */
+  public ClassGraphModule(Supplier<ScanResult> scanResultSupplier) {
+    this.scanResultSupplier = Suppliers.memoize(checkNotNull(scanResultSupplier));
   }
 
   @Override
   protected void configure() {
-    bind(ScanResult.class).annotatedWith(RuntimeClassGraphScanResult.class).toInstance(scanResult);
+    bind(ScanResult.class)
+        .annotatedWith(RuntimeClassGraphScanResult.class)
+        .toProvider((Provider<ScanResult>) scanResultSupplier::get);
   }
 }
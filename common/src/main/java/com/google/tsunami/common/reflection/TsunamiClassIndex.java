@@ -0,0 +1,304 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.reflection;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.GoogleLogger;
+import io.github.classgraph.ClassGraph;
+import io.github.classgraph.ClassInfo;
+import io.github.classgraph.ScanResult;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Index of the classes Tsunami discovers at runtime: Tsunami plugins, config classes annotated by
+ * {@link com.google.tsunami.common.config.annotations.ConfigProperties} and {@link
+ * com.google.tsunami.common.cli.CliOption} implementations.
+ *
+ * <p>The index is either built from a ClassGraph {@link ScanResult}, or loaded from the {@code
+ * META-INF/tsunami/class-index} resources written by {@code ClassIndexProcessor} at build time.
+ * When loading, only the classpath elements without such a resource are scanned.
+ */
+public final class TsunamiClassIndex {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+
+  // Names below must be kept in sync with ClassIndexProcessor.
+  public static final String INDEX_RESOURCE = "META-INF/tsunami/class-index";
+  private static final String PLUGIN_KIND = "plugin";
+  private static final String CONFIG_PROPERTIES_KIND = "config_properties";
+  private static final String CLI_OPTION_KIND = "cli_option";
+
+  private static final String TSUNAMI_PLUGIN_INTERFACE = "com.google.tsunami.plugin.TsunamiPlugin";
+  private static final String REMOTE_VULN_DETECTOR_INTERFACE =
+      "com.google.tsunami.plugin.RemoteVulnDetector";
+  private static final String CLI_OPTION_INTERFACE = "com.google.tsunami.common.cli.CliOption";
+  private static final String CONFIG_PROPERTIES_ANNOTATION =
+      "com.google.tsunami.common.config.annotations.ConfigProperties";
+  private static final Splitter ENTRY_SPLITTER = Splitter.on(' ').trimResults().omitEmptyStrings();
+
+  private final ClassLoader classLoader;
+  private final ImmutableSet<String> pluginClasses;
+  private final ImmutableSet<String> configPropertiesClasses;
+  private final ImmutableSet<String> cliOptionClasses;
+
+  private TsunamiClassIndex(
+      ClassLoader classLoader,
+      ImmutableSet<String> pluginClasses,
+      ImmutableSet<String> configPropertiesClasses,
+      ImmutableSet<String> cliOptionClasses) {
+    this.classLoader = checkNotNull(classLoader);
+    this.pluginClasses = checkNotNull(pluginClasses);
+    this.configPropertiesClasses = checkNotNull(configPropertiesClasses);
+    this.cliOptionClasses = checkNotNull(cliOptionClasses);
+  }
+
+  /** Gets all non-interface Tsunami plugin classes, except for remote vuln detectors. */
+  public ImmutableList<Class<?>> getPluginClasses() {
+    return loadClasses(pluginClasses);
+  }
+
+  /** Gets all non-abstract classes annotated by {@code ConfigProperties}. */
+  public ImmutableList<Class<?>> getConfigPropertiesClasses() {
+    return loadClasses(configPropertiesClasses);
+  }
+
+  /** Gets all non-interface {@code CliOption} implementations. */
+  public ImmutableList<Class<?>> getCliOptionClasses() {
+    return loadClasses(cliOptionClasses);
+  }
+
+  private ImmutableList<Class<?>> loadClasses(ImmutableSet<String> classNames) {
+    return classNames.stream().map(this::loadClass).collect(toImmutableList());
+  }
+
+  private Class<?> loadClass(String className) {
+    try {
+      return Class.forName(className, false, classLoader);
+    } catch (ClassNotFoundException e) {
+      throw new LinkageError(String.format("Indexed class '%s' not found.", className), e);
+    }
+  }
+
+  /**
+   * Builds the index from the given ClassGraph scan results.
+   *
+   * @param scanResult the scan results of the classes to index, must include class and annotation
+   *     info.
+   * @return the index of all the matching classes in the scan results.
+   */
+  public static TsunamiClassIndex fromScanResult(ScanResult scanResult) {
+    checkNotNull(scanResult);
+    return new TsunamiClassIndex(
+        TsunamiClassIndex.class.getClassLoader(),
+        getClassNames(
+            scanResult
+                .getClassesImplementing(TSUNAMI_PLUGIN_INTERFACE)
+                .filter(
+                    classInfo ->
+                        !classInfo.isInterface()
+                            && !classInfo.implementsInterface(REMOTE_VULN_DETECTOR_INTERFACE))),
+        getClassNames(
+            scanResult
+                .getClassesWithAnnotation(CONFIG_PROPERTIES_ANNOTATION)
+                .filter(classInfo -> !classInfo.isAbstract())),
+        getClassNames(
+            scanResult
+                .getClassesImplementing(CLI_OPTION_INTERFACE)
+                .filter(classInfo -> !classInfo.isInterface())));
+  }
+
+  private static ImmutableSet<String> getClassNames(List<ClassInfo> classInfos) {
+    return classInfos.stream().map(ClassInfo::getName).collect(ImmutableSet.toImmutableSet());
+  }
+
+  /**
+   * Loads the index for all classes visible to the given {@link ClassLoader}.
+   *
+   * <p>The index resources of all classpath elements are merged. Classpath elements without an
+   * index resource, e.g. plugin jars built without {@code ClassIndexProcessor}, are scanned by
+   * ClassGraph together with the elements defining the Tsunami types, so that class hierarchies
+   * can be resolved.
+   *
+   * @param classLoader the {@link ClassLoader} of the classes to index.
+   * @param excludedPackages packages whose classes are never indexed, e.g. testing packages.
+   * @return the index of all the matching classes visible to {@code classLoader}.
+   */
+  public static TsunamiClassIndex load(ClassLoader classLoader, String... excludedPackages) {
+    checkNotNull(classLoader);
+    checkNotNull(excludedPackages);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+
+    IndexBuilder indexBuilder = new IndexBuilder(excludedPackages);
+    Set<Path> indexedClasspathElements = new LinkedHashSet<>();
+    try {
+      Enumeration<URL> indexResources = classLoader.getResources(INDEX_RESOURCE);
+      while (indexResources.hasMoreElements()) {
+        URL indexResource = indexResources.nextElement();
+        indexBuilder.addIndexResource(indexResource);
+        getClasspathElement(indexResource).ifPresent(indexedClasspathElements::add);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read Tsunami class index.", e);
+    }
+
+    ImmutableList<File> unindexedClasspathElements =
+        new ClassGraph()
+            .overrideClassLoaders(classLoader)
+            .getClasspathFiles().stream()
+                .filter(file -> !indexedClasspathElements.contains(normalize(file.toPath())))
+                .collect(toImmutableList());
+    if (!unindexedClasspathElements.isEmpty()) {
+      logger.atInfo().log(
+          "Scanning %d classpath element(s) without Tsunami class index.",
+          unindexedClasspathElements.size());
+      Set<File> classpathToScan = new LinkedHashSet<>(unindexedClasspathElements);
+      for (String tsunamiType :
+          ImmutableList.of(
+              TSUNAMI_PLUGIN_INTERFACE, CLI_OPTION_INTERFACE, CONFIG_PROPERTIES_ANNOTATION)) {
+        URL classFile = classLoader.getResource(tsunamiType.replace('.', '/') + ".class");
+        if (classFile != null) {
+          getClasspathElement(classFile, tsunamiType.replace('.', '/') + ".class")
+              .ifPresent(classpathElement -> classpathToScan.add(classpathElement.toFile()));
+        }
+      }
+      try (ScanResult scanResult =
+          new ClassGraph()
+              .overrideClasspath(classpathToScan)
+              .enableClassInfo()
+              .enableAnnotationInfo()
+              .blacklistPackages(excludedPackages)
+              .scan()) {
+        indexBuilder.addScanResult(fromScanResult(scanResult));
+      }
+    }
+
+    TsunamiClassIndex classIndex = indexBuilder.build(classLoader);
+    logger.atInfo().log("Loading Tsunami class index took %s.", stopwatch.stop());
+    return classIndex;
+  }
+
+  private static Optional<Path> getClasspathElement(URL indexResource) {
+    return getClasspathElement(indexResource, INDEX_RESOURCE);
+  }
+
+  /** Gets the jar file or directory that contains the given resource. */
+  private static Optional<Path> getClasspathElement(URL resource, String resourceName) {
+    try {
+      switch (resource.getProtocol()) {
+        case "jar":
+          String jarUrl = resource.getPath();
+          return Optional.of(
+              normalize(Paths.get(new URL(jarUrl.substring(0, jarUrl.indexOf("!/"))).toURI())));
+        case "file":
+          Path resourcePath = Paths.get(resource.toURI());
+          return Optional.of(
+              normalize(
+                  resourcePath.getRoot().resolve(
+                      resourcePath.subpath(
+                          0,
+                          resourcePath.getNameCount()
+                              - Paths.get(resourceName).getNameCount()))));
+        default:
+          return Optional.empty();
+      }
+    } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+      logger.atWarning().withCause(e).log("Unable to locate classpath element of %s.", resource);
+      return Optional.empty();
+    }
+  }
+
+  private static Path normalize(Path path) {
+    return path.toAbsolutePath().normalize();
+  }
+
+  private static final class IndexBuilder {
+    private final ImmutableList<String> excludedPackagePrefixes;
+    private final ImmutableSet.Builder<String> pluginClasses = ImmutableSet.builder();
+    private final ImmutableSet.Builder<String> configPropertiesClasses = ImmutableSet.builder();
+    private final ImmutableSet.Builder<String> cliOptionClasses = ImmutableSet.builder();
+
+    IndexBuilder(String... excludedPackages) {
+      this.excludedPackagePrefixes =
+          ImmutableList.copyOf(excludedPackages).stream()
+              .map(excludedPackage -> excludedPackage + ".")
+              .collect(toImmutableList());
+    }
+
+    void addIndexResource(URL indexResource) throws IOException {
+      try (BufferedReader reader =
+          new BufferedReader(new InputStreamReader(indexResource.openStream(), UTF_8))) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          List<String> entry = ENTRY_SPLITTER.splitToList(line);
+          if (entry.size() != 2 || isExcluded(entry.get(1))) {
+            continue;
+          }
+          switch (entry.get(0)) {
+            case PLUGIN_KIND:
+              pluginClasses.add(entry.get(1));
+              break;
+            case CONFIG_PROPERTIES_KIND:
+              configPropertiesClasses.add(entry.get(1));
+              break;
+            case CLI_OPTION_KIND:
+              cliOptionClasses.add(entry.get(1));
+              break;
+            default:
+              logger.atWarning().log(
+                  "Unknown entry '%s' in Tsunami class index %s.", line, indexResource);
+          }
+        }
+      }
+    }
+
+    void addScanResult(TsunamiClassIndex scannedIndex) {
+      pluginClasses.addAll(scannedIndex.pluginClasses);
+      configPropertiesClasses.addAll(scannedIndex.configPropertiesClasses);
+      cliOptionClasses.addAll(scannedIndex.cliOptionClasses);
+    }
+
+    private boolean isExcluded(String className) {
+      return excludedPackagePrefixes.stream().anyMatch(className::startsWith);
+    }
+
+    TsunamiClassIndex build(ClassLoader classLoader) {
+      return new TsunamiClassIndex(
+          classLoader,
+          pluginClasses.build(),
+          configPropertiesClasses.build(),
+          cliOptionClasses.build());
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.data;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import com.google.tsunami.proto.CrawlContent;
+import com.google.tsunami.proto.CrawlResult;
+import com.google.tsunami.proto.NetworkService;
+import com.google.tsunami.proto.ServiceContext;
+import com.google.tsunami.proto.WebServiceContext;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CrawlContentStore}. */
+@RunWith(JUnit4.class)
+public final class CrawlContentStoreTest {
+  private static final ByteString SMALL_CONTENT = ByteString.copyFromUtf8("small page");
+  private static final ByteString LARGE_CONTENT = ByteString.copyFromUtf8("a much larger page");
+
+  private final CrawlContentStore crawlContentStore = new CrawlContentStore(16);
+
+  @After
+  public void tearDown() {
+    crawlContentStore.close();
+  }
+
+  @Test
+  public void put_whenSameContent_storesContentOnce() {
+    String hash = crawlContentStore.put(SMALL_CONTENT);
+
+    assertThat(crawlContentStore.put(ByteString.copyFromUtf8("small page"))).isEqualTo(hash);
+    assertThat(crawlContentStore.size()).isEqualTo(1);
+    assertThat(crawlContentStore.get(hash)).hasValue(SMALL_CONTENT);
+  }
+
+  @Test
+  public void put_whenHeapThresholdExceeded_spillsToFile() {
+    String smallHash = crawlContentStore.put(SMALL_CONTENT);
+    String largeHash = crawlContentStore.put(LARGE_CONTENT);
+
+    assertThat(crawlContentStore.getSpillFileSize()).isEqualTo(LARGE_CONTENT.size());
+    assertThat(crawlContentStore.get(smallHash)).hasValue(SMALL_CONTENT);
+    assertThat(crawlContentStore.get(largeHash)).hasValue(LARGE_CONTENT);
+  }
+
+  @Test
+  public void release_afterLastReference_dropsContent() {
+    String hash = crawlContentStore.put(SMALL_CONTENT);
+    crawlContentStore.put(SMALL_CONTENT);
+
+    crawlContentStore.release(hash);
+    assertThat(crawlContentStore.get(hash)).isPresent();
+    crawlContentStore.release(hash);
+
+    assertThat(crawlContentStore.get(hash)).isEmpty();
+  }
+
+  @Test
+  public void release_afterLastSpilledContent_reclaimsSpillFile() {
+    String largeHash = crawlContentStore.put(LARGE_CONTENT);
+    String otherLargeHash = crawlContentStore.put(ByteString.copyFromUtf8("another larger page"));
+    ByteString largeContent = crawlContentStore.get(largeHash).get();
+
+    crawlContentStore.release(largeHash);
+    assertThat(crawlContentStore.getSpillFileSize()).isGreaterThan(0L);
+    crawlContentStore.release(otherLargeHash);
+
+    assertThat(crawlContentStore.getSpillFileSize()).isEqualTo(0);
+    assertThat(largeContent).isEqualTo(LARGE_CONTENT);
+    crawlContentStore.put(LARGE_CONTENT);
+    assertThat(crawlContentStore.getSpillFileSize()).isEqualTo(LARGE_CONTENT.size());
+  }
+
+  @Test
+  public void release_withOverlappingScans_reclaimsSpillFilesOfFinishedScans() {
+    // Every spill file is full after a single content.
+    CrawlContentStore store = new CrawlContentStore(0, 1);
+    try {
+      String firstScanHash = store.put(LARGE_CONTENT);
+      String secondScanHash = store.put(SMALL_CONTENT);
+
+      store.release(firstScanHash);
+      assertThat(store.getSpillFileSize()).isEqualTo(SMALL_CONTENT.size());
+      String thirdScanHash = store.put(LARGE_CONTENT);
+      store.release(secondScanHash);
+
+      assertThat(store.getSpillFileSize()).isEqualTo(LARGE_CONTENT.size());
+      assertThat(store.get(thirdScanHash)).hasValue(LARGE_CONTENT);
+    } finally {
+      store.close();
+    }
+  }
+
+  @Test
+  public void toReference_always_movesContentToStore() {
+    CrawlResult crawlResult =
+        crawlContentStore.toReference(CrawlResult.newBuilder().setContent(SMALL_CONTENT).build());
+
+    assertThat(crawlResult.getContent().isEmpty()).isTrue();
+    assertThat(crawlResult.getContentHash()).isEqualTo(CrawlContentStore.hash(SMALL_CONTENT));
+    assertThat(crawlContentStore.getContent(crawlResult)).isEqualTo(SMALL_CONTENT);
+  }
+
+  @Test
+  public void getContent_whenContentEmbedded_returnsEmbeddedContent() {
+    assertThat(
+            crawlContentStore.getContent(
+                CrawlResult.newBuilder().setContent(SMALL_CONTENT).build()))
+        .isEqualTo(SMALL_CONTENT);
+  }
+
+  @Test
+  public void getCrawlContents_always_returnsEachReferencedContentOnce() {
+    CrawlResult crawlResult =
+        crawlContentStore.toReference(CrawlResult.newBuilder().setContent(SMALL_CONTENT).build());
+    NetworkService networkService =
+        NetworkService.newBuilder()
+            .setServiceContext(
+                ServiceContext.newBuilder()
+                    .setWebServiceContext(
+                        WebServiceContext.newBuilder()
+                            .addCrawlResults(crawlResult)
+                            .addCrawlResults(crawlResult)))
+            .build();
+
+    assertThat(crawlContentStore.getCrawlContents(ImmutableList.of(networkService, networkService)))
+        .containsExactly(
+            CrawlContent.newBuilder()
+                .setHash(crawlResult.getContentHash())
+                .setContent(SMALL_CONTENT)
+                .build());
+  }
+}
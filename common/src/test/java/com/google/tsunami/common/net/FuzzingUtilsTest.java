@@ -128,6 +128,23 @@ public final class FuzzingUtilsTest {
         .doesNotContain(requestWithFuzzedGetParameterWithPathPrefixAndFileExtension);
   }
 
+  @Test
+  public void
+      fuzzGetParametersExpectingPathValues_whenGetParameterValueIsEncoded_usesDecodedPathPrefix() {
+    HttpRequest requestWithEncodedPath =
+        HttpRequest.get("https://google.com?key=..%2Fetc%2Fvalue.txt").withEmptyHeaders().build();
+
+    assertThat(
+            FuzzingUtils.fuzzGetParametersExpectingPathValues(requestWithEncodedPath, "<payload>"))
+        .containsExactly(
+            HttpRequest.get("https://google.com?key=<payload>").withEmptyHeaders().build(),
+            HttpRequest.get("https://google.com?key=<payload>%00.txt").withEmptyHeaders().build(),
+            HttpRequest.get("https://google.com?key=../etc/<payload>").withEmptyHeaders().build(),
+            HttpRequest.get("https://google.com?key=../etc/<payload>%00.txt")
+                .withEmptyHeaders()
+                .build());
+  }
+
   @Test
   public void fuzzGetParameters_whenNoGetParameters_returnsEmptyList() {
     assertThat(FuzzingUtils.fuzzGetParameters(REQUEST_WITHOUT_GET_PARAMETERS, "<payload>"))
@@ -148,4 +165,22 @@ public final class FuzzingUtilsTest {
     assertThat(FuzzingUtils.fuzzGetParameters(REQUEST_WITH_GET_PARAMETERS, "<payload>"))
         .containsAtLeastElementsIn(requestsWithFuzzedGetParameters);
   }
+
+  @Test
+  public void fuzzGetParameters_whenEmptyGetParameter_fuzzesEmptyParameter() {
+    HttpRequest requestWithEmptyParameter =
+        HttpRequest.get("https://google.com?key=value&&other=test").withEmptyHeaders().build();
+
+    assertThat(FuzzingUtils.fuzzGetParameters(requestWithEmptyParameter, "<payload>"))
+        .containsExactly(
+            HttpRequest.get("https://google.com?key=<payload>&&other=test")
+                .withEmptyHeaders()
+                .build(),
+            HttpRequest.get("https://google.com?key=value&=<payload>&other=test")
+                .withEmptyHeaders()
+                .build(),
+            HttpRequest.get("https://google.com?key=value&&other=<payload>")
+                .withEmptyHeaders()
+                .build());
+  }
 }
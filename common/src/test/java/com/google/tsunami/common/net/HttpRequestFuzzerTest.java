@@ -0,0 +1,193 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.ByteString;
+import com.google.tsunami.common.net.HttpRequestFuzzer.FuzzingLocation;
+import com.google.tsunami.common.net.http.HttpHeaders;
+import com.google.tsunami.common.net.http.HttpRequest;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HttpRequestFuzzer}. */
+@RunWith(JUnit4.class)
+public final class HttpRequestFuzzerTest {
+  private static final ImmutableList<String> PAYLOADS = ImmutableList.of("<p1>", "<p2>");
+
+  @Test
+  public void fuzz_withQueryParameters_fuzzesEachParameterWithEachPayload() {
+    HttpRequestFuzzer fuzzer =
+        HttpRequestFuzzer.builder().addLocation(FuzzingLocation.QUERY_PARAMETERS).build();
+    HttpRequest request =
+        HttpRequest.get("https://google.com/a?key=value&flag&enc=a%20b#frag")
+            .withEmptyHeaders()
+            .build();
+
+    assertThat(urls(fuzzer.fuzz(request, PAYLOADS)))
+        .containsExactly(
+            "https://google.com/a?key=<p1>&flag&enc=a%20b#frag",
+            "https://google.com/a?key=<p2>&flag&enc=a%20b#frag",
+            "https://google.com/a?key=value&flag=<p1>&enc=a%20b#frag",
+            "https://google.com/a?key=value&flag=<p2>&enc=a%20b#frag",
+            "https://google.com/a?key=value&flag&enc=<p1>#frag",
+            "https://google.com/a?key=value&flag&enc=<p2>#frag")
+        .inOrder();
+  }
+
+  @Test
+  public void fuzz_withDefaultQueryParameterAndNoQuery_addsDefaultParameter() {
+    HttpRequestFuzzer fuzzer =
+        HttpRequestFuzzer.builder()
+            .addLocation(FuzzingLocation.QUERY_PARAMETERS)
+            .setDefaultQueryParameter("q")
+            .build();
+    HttpRequest request = HttpRequest.get("https://google.com/a#frag").withEmptyHeaders().build();
+
+    assertThat(urls(fuzzer.fuzz(request, PAYLOADS)))
+        .containsExactly("https://google.com/a?q=<p1>#frag", "https://google.com/a?q=<p2>#frag")
+        .inOrder();
+  }
+
+  @Test
+  public void fuzz_withFormParameters_fuzzesBody() {
+    HttpRequestFuzzer fuzzer =
+        HttpRequestFuzzer.builder().addLocation(FuzzingLocation.FORM_PARAMETERS).build();
+    HttpRequest request =
+        HttpRequest.post("https://google.com/login")
+            .setHeaders(
+                HttpHeaders.builder()
+                    .addHeader("Content-Type", "application/x-www-form-urlencoded")
+                    .build())
+            .setRequestBody(ByteString.copyFromUtf8("user=admin&pass=secret"))
+            .build();
+
+    assertThat(bodies(fuzzer.fuzz(request, ImmutableList.of("<p>"))))
+        .containsExactly("user=<p>&pass=secret", "user=admin&pass=<p>")
+        .inOrder();
+  }
+
+  @Test
+  public void fuzz_withJsonValues_fuzzesNestedPrimitives() {
+    HttpRequestFuzzer fuzzer =
+        HttpRequestFuzzer.builder().addLocation(FuzzingLocation.JSON_VALUES).build();
+    HttpRequest request =
+        HttpRequest.post("https://google.com/api")
+            .setHeaders(
+                HttpHeaders.builder().addHeader("Content-Type", "application/json").build())
+            .setRequestBody(ByteString.copyFromUtf8("{\"a\":1,\"b\":{\"c\":[\"x\",true]}}"))
+            .build();
+
+    assertThat(bodies(fuzzer.fuzz(request, ImmutableList.of("<p>"))))
+        .containsExactly(
+            "{\"a\":\"<p>\",\"b\":{\"c\":[\"x\",true]}}",
+            "{\"a\":1,\"b\":{\"c\":[\"<p>\",true]}}",
+            "{\"a\":1,\"b\":{\"c\":[\"x\",\"<p>\"]}}")
+        .inOrder();
+  }
+
+  @Test
+  public void fuzz_withFormLocationAndJsonBody_ignoresBody() {
+    HttpRequestFuzzer fuzzer =
+        HttpRequestFuzzer.builder().addLocation(FuzzingLocation.FORM_PARAMETERS).build();
+    HttpRequest request =
+        HttpRequest.post("https://google.com/api")
+            .setHeaders(
+                HttpHeaders.builder().addHeader("Content-Type", "application/json").build())
+            .setRequestBody(ByteString.copyFromUtf8("{\"a\":1}"))
+            .build();
+
+    assertThat(fuzzer.fuzz(request, PAYLOADS)).isEmpty();
+  }
+
+  @Test
+  public void fuzz_withHeaderName_replacesOrAddsHeader() {
+    HttpRequestFuzzer fuzzer =
+        HttpRequestFuzzer.builder().addHeaderName("User-Agent").addHeaderName("X-Test").build();
+    HttpRequest request =
+        HttpRequest.get("https://google.com")
+            .setHeaders(
+                HttpHeaders.builder()
+                    .addHeader("Accept", "*/*")
+                    .addHeader("User-Agent", "TsunamiSecurityScanner")
+                    .build())
+            .build();
+
+    ImmutableList<HttpRequest> fuzzedRequests =
+        ImmutableList.copyOf(fuzzer.fuzz(request, ImmutableList.of("<p>")));
+
+    assertThat(fuzzedRequests).hasSize(2);
+    assertThat(fuzzedRequests.get(0).headers().getAll("User-Agent")).containsExactly("<p>");
+    assertThat(fuzzedRequests.get(0).headers().get("Accept")).hasValue("*/*");
+    assertThat(fuzzedRequests.get(1).headers().get("X-Test")).hasValue("<p>");
+    assertThat(fuzzedRequests.get(1).headers().get("User-Agent"))
+        .hasValue("TsunamiSecurityScanner");
+  }
+
+  @Test
+  public void fuzz_withPathValues_keepsExtensionAndPrefix() {
+    HttpRequestFuzzer fuzzer =
+        HttpRequestFuzzer.builder()
+            .addLocation(FuzzingLocation.QUERY_PARAMETERS)
+            .setExpectingPathValues(true)
+            .build();
+    HttpRequest request =
+        HttpRequest.get("https://google.com?file=res/value.jpg").withEmptyHeaders().build();
+
+    assertThat(urls(fuzzer.fuzz(request, ImmutableList.of("<p>"))))
+        .containsExactly(
+            "https://google.com?file=<p>",
+            "https://google.com?file=<p>%00.jpg",
+            "https://google.com?file=res/<p>",
+            "https://google.com?file=res/<p>%00.jpg")
+        .inOrder();
+  }
+
+  @Test
+  public void fuzz_whenIterated_generatesRequestsLazily() {
+    HttpRequestFuzzer fuzzer =
+        HttpRequestFuzzer.builder().addLocation(FuzzingLocation.QUERY_PARAMETERS).build();
+    HttpRequest request =
+        HttpRequest.get("https://google.com?a=1&b=2").withEmptyHeaders().build();
+    AtomicInteger pulledPayloads = new AtomicInteger();
+    Iterable<String> payloads =
+        () -> PAYLOADS.stream().peek(payload -> pulledPayloads.incrementAndGet()).iterator();
+
+    Iterator<HttpRequest> fuzzedRequests = fuzzer.fuzz(request, payloads).iterator();
+
+    assertThat(pulledPayloads.get()).isEqualTo(0);
+    assertThat(fuzzedRequests.next().url()).isEqualTo("https://google.com?a=<p1>&b=2");
+    assertThat(pulledPayloads.get()).isEqualTo(1);
+    assertThat(fuzzer.stream(request, payloads).count()).isEqualTo(4);
+  }
+
+  private static ImmutableList<String> urls(Iterable<HttpRequest> requests) {
+    return ImmutableList.copyOf(requests).stream().map(HttpRequest::url).collect(toImmutableList());
+  }
+
+  private static ImmutableList<String> bodies(Iterable<HttpRequest> requests) {
+    return ImmutableList.copyOf(requests).stream()
+        .map(request -> request.requestBody().get().toStringUtf8())
+        .collect(toImmutableList());
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.InetAddresses;
+import com.google.common.testing.FakeTicker;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TsunamiDns}. */
+@RunWith(JUnit4.class)
+public final class TsunamiDnsTest {
+  private static final InetAddress ADDRESS = InetAddresses.forString("10.0.0.1");
+  private static final InetAddress OTHER_ADDRESS = InetAddresses.forString("10.0.0.2");
+  private static final Duration POSITIVE_TTL = Duration.ofSeconds(30);
+  private static final Duration NEGATIVE_TTL = Duration.ofSeconds(10);
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final AtomicInteger resolveCount = new AtomicInteger();
+  private TsunamiDns tsunamiDns;
+
+  @Before
+  public void setUp() {
+    tsunamiDns =
+        new TsunamiDns(
+            hostname -> {
+              resolveCount.incrementAndGet();
+              if (hostname.equals("unknown.test")) {
+                throw new UnknownHostException(hostname);
+              }
+              return new InetAddress[] {ADDRESS, OTHER_ADDRESS};
+            },
+            ticker,
+            POSITIVE_TTL,
+            NEGATIVE_TTL);
+  }
+
+  @Test
+  public void lookup_whenIpLiteral_returnsAddressWithoutResolving() throws UnknownHostException {
+    assertThat(tsunamiDns.lookup("10.0.0.1")).containsExactly(ADDRESS);
+    assertThat(tsunamiDns.lookup("[::1]")).containsExactly(InetAddresses.forString("::1"));
+    assertThat(resolveCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void lookup_whenRepeatedWithinTtl_resolvesOnce() throws UnknownHostException {
+    assertThat(tsunamiDns.lookup("example.test")).containsExactly(ADDRESS, OTHER_ADDRESS).inOrder();
+    assertThat(tsunamiDns.lookup("EXAMPLE.test")).containsExactly(ADDRESS, OTHER_ADDRESS).inOrder();
+    assertThat(tsunamiDns.lookupFirst("example.test")).isEqualTo(ADDRESS);
+
+    assertThat(resolveCount.get()).isEqualTo(1);
+    TsunamiDns.Stats stats = tsunamiDns.getStats();
+    assertThat(stats.lookupCount()).isEqualTo(3);
+    assertThat(stats.cacheHitCount()).isEqualTo(2);
+    assertThat(stats.resolutionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void lookup_whenTtlExpired_resolvesAgain() throws UnknownHostException {
+    tsunamiDns.lookup("example.test");
+    ticker.advance(POSITIVE_TTL);
+    tsunamiDns.lookup("example.test");
+
+    assertThat(resolveCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void lookup_whenResolutionFails_cachesFailureForNegativeTtl() {
+    assertThrows(UnknownHostException.class, () -> tsunamiDns.lookup("unknown.test"));
+    assertThrows(UnknownHostException.class, () -> tsunamiDns.lookup("unknown.test"));
+    assertThat(resolveCount.get()).isEqualTo(1);
+
+    ticker.advance(NEGATIVE_TTL);
+    assertThrows(UnknownHostException.class, () -> tsunamiDns.lookup("unknown.test"));
+    assertThat(resolveCount.get()).isEqualTo(2);
+    assertThat(tsunamiDns.getStats().failedResolutionCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void lookup_whenHostPinned_returnsPinnedAddresses() throws UnknownHostException {
+    tsunamiDns.pin("Pinned.test", ImmutableList.of(OTHER_ADDRESS));
+
+    assertThat(tsunamiDns.lookup("pinned.test")).containsExactly(OTHER_ADDRESS);
+    ticker.advance(Duration.ofDays(1));
+    assertThat(tsunamiDns.lookup("pinned.test")).containsExactly(OTHER_ADDRESS);
+    assertThat(resolveCount.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void lookup_whenConcurrentLookups_coalescesResolutions() throws Exception {
+    CountDownLatch resolutionStarted = new CountDownLatch(1);
+    CountDownLatch releaseResolution = new CountDownLatch(1);
+    TsunamiDns blockingDns =
+        new TsunamiDns(
+            hostname -> {
+              resolveCount.incrementAndGet();
+              resolutionStarted.countDown();
+              try {
+                releaseResolution.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return new InetAddress[] {ADDRESS};
+            },
+            ticker,
+            POSITIVE_TTL,
+            NEGATIVE_TTL);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<ImmutableList<InetAddress>>> lookups = new ArrayList<>();
+      lookups.add(executor.submit(() -> blockingDns.lookup("example.test")));
+      resolutionStarted.await();
+      for (int i = 0; i < 3; i++) {
+        lookups.add(executor.submit(() -> blockingDns.lookup("example.test")));
+      }
+      releaseResolution.countDown();
+
+      for (Future<ImmutableList<InetAddress>> lookup : lookups) {
+        assertThat(lookup.get(5, TimeUnit.SECONDS)).containsExactly(ADDRESS);
+      }
+      assertThat(resolveCount.get()).isEqualTo(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static com.google.tsunami.common.net.http.HttpRequest.get;
+import static com.google.tsunami.common.net.http.HttpRequest.post;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CachingHttpClient}. */
+@RunWith(JUnit4.class)
+public final class CachingHttpClientTest {
+  private MockWebServer mockWebServer;
+  private HttpClient httpClient;
+
+  @Before
+  public void setUp() throws IOException {
+    mockWebServer = new MockWebServer();
+    mockWebServer.start();
+    HttpClientCliOptions cliOptions = new HttpClientCliOptions();
+    HttpClientConfigProperties configProperties = new HttpClientConfigProperties();
+    configProperties.responseCache = true;
+    httpClient =
+        Guice.createInjector(
+                new AbstractModule() {
+                  @Override
+                  protected void configure() {
+                    install(new HttpClientModule.Builder().build());
+                    bind(HttpClientCliOptions.class).toInstance(cliOptions);
+                    bind(HttpClientConfigProperties.class).toInstance(configProperties);
+                  }
+                })
+            .getInstance(HttpClient.class);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    mockWebServer.shutdown();
+  }
+
+  @Test
+  public void send_whenSameGetRequestSentTwice_servesSecondResponseFromCache() throws IOException {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("1"));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("2"));
+    HttpRequest request = get(mockWebServer.url("/robots.txt")).withEmptyHeaders().build();
+
+    HttpResponse firstResponse = httpClient.send(request);
+    HttpResponse secondResponse = httpClient.send(request);
+
+    assertThat(httpClient).isInstanceOf(CachingHttpClient.class);
+    assertThat(firstResponse.bodyString()).hasValue("1");
+    assertThat(secondResponse).isEqualTo(firstResponse);
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void send_whenRequestNotCacheable_alwaysSendsRequest() throws IOException {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("1"));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("2"));
+    HttpRequest request =
+        get(mockWebServer.url("/login")).withEmptyHeaders().setCacheable(false).build();
+
+    httpClient.send(request);
+    HttpResponse secondResponse = httpClient.send(request);
+
+    assertThat(secondResponse.bodyString()).hasValue("2");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void send_whenPostRequest_alwaysSendsRequest() throws IOException {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("1"));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("2"));
+    HttpRequest request = post(mockWebServer.url("/login")).withEmptyHeaders().build();
+
+    httpClient.send(request);
+    httpClient.send(request);
+
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void send_whenHeadersDiffer_sendsBothRequests() throws IOException {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("1"));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("2"));
+
+    httpClient.send(get(mockWebServer.url("/")).withEmptyHeaders().build());
+    HttpResponse secondResponse =
+        httpClient.send(
+            get(mockWebServer.url("/"))
+                .setHeaders(HttpHeaders.builder().addHeader("Cookie", "session=1").build())
+                .build());
+
+    assertThat(secondResponse.bodyString()).hasValue("2");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void sendAsync_whenIdenticalRequestsInFlight_sendsSingleRequest()
+      throws ExecutionException, InterruptedException {
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setResponseCode(HttpStatus.OK.code())
+            .setBody("1")
+            .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("2"));
+    HttpRequest request = get(mockWebServer.url("/")).withEmptyHeaders().build();
+
+    ListenableFuture<HttpResponse> firstResponse = httpClient.sendAsync(request);
+    ListenableFuture<HttpResponse> secondResponse = httpClient.sendAsync(request);
+
+    assertThat(firstResponse.get().bodyString()).hasValue("1");
+    assertThat(secondResponse.get().bodyString()).hasValue("1");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void sendAsync_whenOneOfTwoCallersCancels_completesOtherCaller()
+      throws ExecutionException, InterruptedException {
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setResponseCode(HttpStatus.OK.code())
+            .setBody("1")
+            .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+    HttpRequest request = get(mockWebServer.url("/")).withEmptyHeaders().build();
+
+    ListenableFuture<HttpResponse> firstResponse = httpClient.sendAsync(request);
+    ListenableFuture<HttpResponse> secondResponse = httpClient.sendAsync(request);
+    firstResponse.cancel(true);
+
+    assertThat(secondResponse.get().bodyString()).hasValue("1");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void sendAsync_whenAllCallersCancel_cancelsInFlightRequest()
+      throws ExecutionException, InterruptedException {
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setResponseCode(HttpStatus.OK.code())
+            .setBody("1")
+            .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("2"));
+    HttpRequest request = get(mockWebServer.url("/")).withEmptyHeaders().build();
+
+    ListenableFuture<HttpResponse> cancelledResponse = httpClient.sendAsync(request);
+    mockWebServer.takeRequest();
+    cancelledResponse.cancel(true);
+    ListenableFuture<HttpResponse> nextResponse = httpClient.sendAsync(request);
+
+    // The cancelled request can no longer be joined, so the next caller sends its own request.
+    assertThat(nextResponse.get().bodyString()).hasValue("2");
+  }
+
+  @Test
+  public void modify_withSameSettings_sharesResponses() throws IOException {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("1"));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("2"));
+    HttpRequest request = get(mockWebServer.url("/")).withEmptyHeaders().build();
+    HttpClient firstClient = httpClient.modify().setFollowRedirects(false).build();
+    HttpClient secondClient = httpClient.modify().setFollowRedirects(false).build();
+
+    firstClient.send(request);
+    HttpResponse secondClientResponse = secondClient.send(request);
+
+    assertThat(secondClientResponse.bodyString()).hasValue("1");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void modify_withDifferentSettings_doesNotShareResponses() throws IOException {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("1"));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("2"));
+    HttpRequest request = get(mockWebServer.url("/")).withEmptyHeaders().build();
+    HttpClient modifiedClient = httpClient.modify().setFollowRedirects(false).build();
+
+    httpClient.send(request);
+    HttpResponse modifiedClientResponse = modifiedClient.send(request);
+
+    assertThat(modifiedClient).isInstanceOf(CachingHttpClient.class);
+    assertThat(modifiedClientResponse.bodyString()).hasValue("2");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(2);
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.net.HostAndPort;
+import com.google.common.testing.FakeTicker;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HostCircuitBreaker}. */
+@RunWith(JUnit4.class)
+public final class HostCircuitBreakerTest {
+  private static final Duration OPEN_DURATION = Duration.ofMinutes(1);
+
+  private final FakeTicker fakeTicker = new FakeTicker();
+  private final AtomicInteger sentRequests = new AtomicInteger();
+  // The outcome of requests reaching the network, null for a 200 response.
+  private final AtomicReference<IOException> failure = new AtomicReference<>();
+  private final AtomicBoolean cancelCall = new AtomicBoolean();
+  private HostCircuitBreaker circuitBreaker;
+  private OkHttpClient okHttpClient;
+
+  @Before
+  public void setUp() {
+    circuitBreaker = new HostCircuitBreaker(3, OPEN_DURATION, fakeTicker);
+    okHttpClient =
+        new OkHttpClient.Builder()
+            .addInterceptor(circuitBreaker)
+            .addInterceptor(
+                chain -> {
+                  sentRequests.incrementAndGet();
+                  if (cancelCall.get()) {
+                    chain.call().cancel();
+                    throw new IOException("Canceled");
+                  }
+                  if (failure.get() != null) {
+                    throw failure.get();
+                  }
+                  return new Response.Builder()
+                      .request(chain.request())
+                      .protocol(Protocol.HTTP_1_1)
+                      .code(200)
+                      .message("OK")
+                      .body(ResponseBody.create(MediaType.get("text/plain"), "ok"))
+                      .build();
+                })
+            .build();
+  }
+
+  @Test
+  public void intercept_whenConsecutiveFailuresReachThreshold_failsFast() throws IOException {
+    failure.set(new ConnectException("Connection refused"));
+    for (int i = 0; i < 3; i++) {
+      assertThrows(ConnectException.class, () -> send("http://dead.example.com/"));
+    }
+
+    HostUnreachableException exception =
+        assertThrows(HostUnreachableException.class, () -> send("http://DEAD.example.com/a"));
+
+    assertThat(exception.getHost()).isEqualTo("dead.example.com:80");
+    assertThat(sentRequests.get()).isEqualTo(3);
+    assertThat(circuitBreaker.isOpen("dead.example.com", 80)).isTrue();
+    assertThat(circuitBreaker.getOpenEndpoints())
+        .containsExactly(HostAndPort.fromParts("dead.example.com", 80));
+    failure.set(null);
+    assertThat(send("http://alive.example.com/").code()).isEqualTo(200);
+  }
+
+  @Test
+  public void intercept_whenFailuresInterleavedWithSuccesses_staysClosed() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      failure.set(new SocketTimeoutException("timeout"));
+      assertThrows(SocketTimeoutException.class, () -> send("http://flaky.example.com/"));
+      assertThrows(SocketTimeoutException.class, () -> send("http://flaky.example.com/"));
+      failure.set(null);
+      send("http://flaky.example.com/");
+    }
+
+    assertThat(circuitBreaker.isOpen("flaky.example.com", 80)).isFalse();
+  }
+
+  @Test
+  public void intercept_whenNonConnectivityError_doesNotCountFailure() {
+    failure.set(new IOException("Unexpected end of stream"));
+    for (int i = 0; i < 5; i++) {
+      assertThrows(IOException.class, () -> send("http://broken.example.com/"));
+    }
+
+    assertThat(circuitBreaker.isOpen("broken.example.com", 80)).isFalse();
+    assertThat(sentRequests.get()).isEqualTo(5);
+  }
+
+  @Test
+  public void intercept_whenCallCancelled_keepsFailureCount() {
+    failure.set(new ConnectException("Connection refused"));
+    for (int i = 0; i < 2; i++) {
+      assertThrows(ConnectException.class, () -> send("http://dead.example.com/"));
+    }
+    cancelCall.set(true);
+    assertThrows(IOException.class, () -> send("http://dead.example.com/"));
+    cancelCall.set(false);
+
+    assertThrows(ConnectException.class, () -> send("http://dead.example.com/"));
+
+    assertThat(circuitBreaker.isOpen("dead.example.com", 80)).isTrue();
+  }
+
+  @Test
+  public void isOpen_withIpv6Address_matchesAnyNotation() {
+    failure.set(new ConnectException("Connection refused"));
+    for (int i = 0; i < 3; i++) {
+      assertThrows(ConnectException.class, () -> send("http://[::1]/"));
+    }
+
+    assertThat(circuitBreaker.isOpen("0:0:0:0:0:0:0:1", 80)).isTrue();
+    assertThat(circuitBreaker.isOpen("[::1]", 80)).isTrue();
+  }
+
+  @Test
+  public void intercept_whenOpenDurationElapsedAndTrialSucceeds_closesCircuit() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      circuitBreaker.recordFailure(HostAndPort.fromParts("host.example.com", 80));
+    }
+    fakeTicker.advance(OPEN_DURATION);
+
+    assertThat(send("http://host.example.com/").code()).isEqualTo(200);
+    assertThat(circuitBreaker.isOpen("host.example.com", 80)).isFalse();
+  }
+
+  @Test
+  public void intercept_whenOpenDurationElapsedAndTrialFails_reopensCircuit() {
+    for (int i = 0; i < 3; i++) {
+      circuitBreaker.recordFailure(HostAndPort.fromParts("host.example.com", 80));
+    }
+    fakeTicker.advance(OPEN_DURATION);
+    failure.set(new ConnectException("Connection refused"));
+
+    assertThrows(ConnectException.class, () -> send("http://host.example.com/"));
+    assertThrows(HostUnreachableException.class, () -> send("http://host.example.com/"));
+    assertThat(sentRequests.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void isOpen_whenOpenDurationElapsed_returnsFalse() {
+    for (int i = 0; i < 3; i++) {
+      circuitBreaker.recordFailure(HostAndPort.fromParts("host.example.com", 80));
+    }
+    assertThat(circuitBreaker.isOpen("host.example.com", 80)).isTrue();
+
+    fakeTicker.advance(OPEN_DURATION);
+
+    assertThat(circuitBreaker.isOpen("host.example.com", 80)).isFalse();
+    assertThat(circuitBreaker.getOpenEndpoints()).isEmpty();
+  }
+
+  @Test
+  public void intercept_whenPortRefusesConnections_keepsOtherPortsOfHostClosed()
+      throws IOException {
+    failure.set(new ConnectException("Connection refused"));
+    for (int i = 0; i < 3; i++) {
+      assertThrows(ConnectException.class, () -> send("http://host.example.com:8080/"));
+    }
+    failure.set(null);
+
+    assertThat(send("http://host.example.com/").code()).isEqualTo(200);
+    assertThat(circuitBreaker.isOpen("host.example.com", 8080)).isTrue();
+    assertThat(circuitBreaker.isOpen("host.example.com", 80)).isFalse();
+  }
+
+  @Test
+  public void isEnabled_whenZeroThreshold_returnsFalse() {
+    assertThat(new HostCircuitBreaker(0, OPEN_DURATION, fakeTicker).isEnabled()).isFalse();
+  }
+
+  private Response send(String url) throws IOException {
+    return okHttpClient.newCall(new Request.Builder().url(url).build()).execute();
+  }
+}
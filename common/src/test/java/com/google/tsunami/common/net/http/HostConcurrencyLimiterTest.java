@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.testing.FakeTicker;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.IOException;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HostConcurrencyLimiter}. */
+@RunWith(JUnit4.class)
+public final class HostConcurrencyLimiterTest {
+  private final FakeTicker fakeTicker = new FakeTicker();
+  private MockWebServer mockWebServer;
+
+  @Before
+  public void setUp() throws IOException {
+    mockWebServer = new MockWebServer();
+    mockWebServer.start();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    mockWebServer.shutdown();
+  }
+
+  @Test
+  public void getMaxRequests_whenHostHasOverride_returnsOverride() {
+    HostConcurrencyLimiter limiter =
+        new HostConcurrencyLimiter(5, ImmutableMap.of("Fragile.Example.com", 1), false, 5);
+
+    assertThat(limiter.getMaxRequests("fragile.example.com")).isEqualTo(1);
+    assertThat(limiter.getMaxRequests("other.example.com")).isEqualTo(5);
+  }
+
+  @Test
+  public void getDispatcherMaxRequestsPerHost_always_returnsHighestLimit() {
+    assertThat(
+            new HostConcurrencyLimiter(5, ImmutableMap.of("a", 1, "b", 16), false, 5)
+                .getDispatcherMaxRequestsPerHost())
+        .isEqualTo(16);
+    assertThat(
+            new HostConcurrencyLimiter(5, ImmutableMap.of(), true, 20)
+                .getDispatcherMaxRequestsPerHost())
+        .isEqualTo(20);
+  }
+
+  @Test
+  public void isEnabled_whenNoOverridesAndNotAdaptive_returnsFalse() {
+    assertThat(new HostConcurrencyLimiter(5, ImmutableMap.of(), false, 5).isEnabled()).isFalse();
+  }
+
+  @Test
+  public void newHostConcurrencyLimiter_whenNonPositiveOverride_throwsIllegalArgumentException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new HostConcurrencyLimiter(5, ImmutableMap.of("a", 0), false, 5));
+  }
+
+  @Test
+  public void intercept_whenAdaptiveAndServiceUnavailable_halvesLimit() throws IOException {
+    HostConcurrencyLimiter limiter =
+        new HostConcurrencyLimiter(8, ImmutableMap.of(), true, 32, fakeTicker);
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(HttpStatus.SERVICE_UNAVAILABLE.code()));
+
+    sendRequest(limiter);
+
+    assertThat(limiter.getMaxRequests(mockWebServer.getHostName())).isEqualTo(4);
+  }
+
+  @Test
+  public void intercept_whenAdaptiveAndLatencyFlat_growsLimitAfterWindow() throws IOException {
+    HostConcurrencyLimiter limiter =
+        new HostConcurrencyLimiter(2, ImmutableMap.of(), true, 32, fakeTicker);
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()));
+
+    sendRequest(limiter);
+    assertThat(limiter.getMaxRequests(mockWebServer.getHostName())).isEqualTo(2);
+    sendRequest(limiter);
+
+    assertThat(limiter.getMaxRequests(mockWebServer.getHostName())).isEqualTo(3);
+  }
+
+  @Test
+  public void intercept_whenNotAdaptive_keepsLimit() throws IOException {
+    HostConcurrencyLimiter limiter =
+        new HostConcurrencyLimiter(8, ImmutableMap.of(), false, 32, fakeTicker);
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(HttpStatus.TOO_MANY_REQUESTS.code()));
+
+    sendRequest(limiter);
+
+    assertThat(limiter.getMaxRequests(mockWebServer.getHostName())).isEqualTo(8);
+  }
+
+  @Test
+  public void admit_whenHostAtLimit_queuesCallUntilSlotReleased() throws Exception {
+    HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1, ImmutableMap.of(), false, 1);
+
+    ListenableFuture<Runnable> firstAdmission = limiter.admit("a");
+    ListenableFuture<Runnable> secondAdmission = limiter.admit("a");
+    ListenableFuture<Runnable> otherHostAdmission = limiter.admit("b");
+
+    assertThat(firstAdmission.isDone()).isTrue();
+    assertThat(secondAdmission.isDone()).isFalse();
+    assertThat(otherHostAdmission.isDone()).isTrue();
+    firstAdmission.get().run();
+    assertThat(secondAdmission.isDone()).isTrue();
+  }
+
+  @Test
+  public void admit_whenQueuedCallCancelled_admitsNextCall() throws Exception {
+    HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(1, ImmutableMap.of(), false, 1);
+    ListenableFuture<Runnable> firstAdmission = limiter.admit("a");
+    ListenableFuture<Runnable> cancelledAdmission = limiter.admit("a");
+    ListenableFuture<Runnable> thirdAdmission = limiter.admit("a");
+
+    cancelledAdmission.cancel(false);
+    firstAdmission.get().run();
+
+    assertThat(thirdAdmission.isDone()).isTrue();
+  }
+
+  private void sendRequest(HostConcurrencyLimiter limiter) throws IOException {
+    OkHttpClient okHttpClient = new OkHttpClient.Builder().addInterceptor(limiter).build();
+    try (Response unused =
+        okHttpClient.newCall(new Request.Builder().url(mockWebServer.url("/")).build()).execute()) {
+      // Only the response status matters to the limiter.
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HostRateLimiter}. */
+@RunWith(JUnit4.class)
+public final class HostRateLimiterTest {
+  private MockWebServer mockWebServer;
+
+  @Before
+  public void setUp() throws IOException {
+    mockWebServer = new MockWebServer();
+    mockWebServer.start();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    mockWebServer.shutdown();
+  }
+
+  @Test
+  public void getRequestsPerSecond_whenHostHasOverride_returnsOverride() {
+    HostRateLimiter limiter =
+        new HostRateLimiter(Optional.of(10), ImmutableMap.of("Fragile.Example.com", 2));
+
+    assertThat(limiter.getRequestsPerSecond("fragile.example.com")).hasValue(2.0);
+    assertThat(limiter.getRequestsPerSecond("other.example.com")).hasValue(10.0);
+  }
+
+  @Test
+  public void getRequestsPerSecond_whenNoDefaultRate_returnsEmptyForHostsWithoutOverride() {
+    HostRateLimiter limiter = new HostRateLimiter(Optional.empty(), ImmutableMap.of("a", 2));
+
+    assertThat(limiter.isEnabled()).isTrue();
+    assertThat(limiter.getRequestsPerSecond("b")).isEmpty();
+  }
+
+  @Test
+  public void isEnabled_whenNoRates_returnsFalse() {
+    assertThat(new HostRateLimiter(Optional.empty(), ImmutableMap.of()).isEnabled()).isFalse();
+  }
+
+  @Test
+  public void newHostRateLimiter_whenNonPositiveRate_throwsIllegalArgumentException() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new HostRateLimiter(Optional.of(0), ImmutableMap.of()));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new HostRateLimiter(Optional.empty(), ImmutableMap.of("a", -1)));
+  }
+
+  @Test
+  public void admit_whenRateLimited_admitsQueuedCallsOverTime() throws Exception {
+    HostRateLimiter limiter = new HostRateLimiter(Optional.of(10), ImmutableMap.of());
+    Stopwatch stopwatch = Stopwatch.createStarted();
+
+    ListenableFuture<Runnable> firstAdmission = limiter.admit("a");
+    ListenableFuture<Runnable> secondAdmission = limiter.admit("a");
+    ListenableFuture<Runnable> otherHostAdmission = limiter.admit("b");
+
+    assertThat(firstAdmission.isDone()).isTrue();
+    assertThat(otherHostAdmission.isDone()).isTrue();
+    secondAdmission.get(5, SECONDS);
+    assertThat(stopwatch.elapsed()).isAtLeast(Duration.ofMillis(50));
+  }
+
+  @Test
+  public void intercept_whenRateLimited_spacesRequests() throws IOException {
+    OkHttpClient okHttpClient =
+        new OkHttpClient.Builder()
+            .addInterceptor(new HostRateLimiter(Optional.of(10), ImmutableMap.of()))
+            .build();
+    Stopwatch stopwatch = Stopwatch.createStarted();
+
+    for (int i = 0; i < 5; i++) {
+      mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+      okHttpClient
+          .newCall(new Request.Builder().url(mockWebServer.url("/")).build())
+          .execute()
+          .close();
+    }
+
+    // The first request is sent right away, the next ones 100ms apart.
+    assertThat(stopwatch.elapsed()).isAtLeast(Duration.ofMillis(350));
+  }
+}
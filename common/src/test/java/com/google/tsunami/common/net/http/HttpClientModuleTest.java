@@ -21,6 +21,8 @@ import static com.google.tsunami.common.net.http.HttpRequest.get;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -36,6 +38,7 @@ import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLHandshakeException;
 import javax.net.ssl.SSLSocketFactory;
+import okhttp3.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import org.junit.Test;
@@ -207,6 +210,39 @@ public final class HttpClientModuleTest {
         .isEqualTo(Duration.ofSeconds(10));
   }
 
+  @Test
+  public void setMaxRequests_whenSpecifiedUsingConfigProperties_setsValueToDispatcher() {
+    configProperties.maxRequests = 256;
+
+    Injector injector = Guice.createInjector(getTestingGuiceModuleWithConfigs());
+
+    assertThat(injector.getInstance(Dispatcher.class).getMaxRequests()).isEqualTo(256);
+  }
+
+  @Test
+  public void setMaxRequestsPerHost_whenBothCliAndConfigAreSet_cliTakesPrecedence() {
+    cliOptions.maxRequestsPerHost = 2;
+    configProperties.maxRequestsPerHost = 10;
+
+    Injector injector = Guice.createInjector(getTestingGuiceModuleWithConfigs());
+
+    assertThat(injector.getInstance(Dispatcher.class).getMaxRequestsPerHost()).isEqualTo(2);
+  }
+
+  @Test
+  public void setMaxRequestsPerHostOverrides_whenSpecified_appliesOverridesPerHost() {
+    cliOptions.maxRequestsPerHostOverrides = ImmutableList.of("10.0.0.1=1");
+    configProperties.maxRequestsPerHostOverrides = ImmutableMap.of("10.0.0.1", 3, "host.com", 12);
+
+    Injector injector = Guice.createInjector(getTestingGuiceModuleWithConfigs());
+    HostConcurrencyLimiter limiter = injector.getInstance(HostConcurrencyLimiter.class);
+
+    assertThat(limiter.getMaxRequests("10.0.0.1")).isEqualTo(1);
+    assertThat(limiter.getMaxRequests("host.com")).isEqualTo(12);
+    assertThat(limiter.getMaxRequests("other.com")).isEqualTo(5);
+    assertThat(injector.getInstance(Dispatcher.class).getMaxRequestsPerHost()).isEqualTo(12);
+  }
+
   private AbstractModule getTestingGuiceModuleWithConfigs() {
     return new AbstractModule() {
       @Override
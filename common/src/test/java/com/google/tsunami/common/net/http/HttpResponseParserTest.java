@@ -0,0 +1,175 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link HttpResponseParser}. */
+@RunWith(JUnit4.class)
+public final class HttpResponseParserTest {
+
+  @Test
+  public void parse_whenContentLengthResponse_returnsFullResponse() throws ProtocolException {
+    HttpResponseParser parser = new HttpResponseParser(false, 1024, true);
+
+    boolean complete =
+        parser.parse(buffer("HTTP/1.1 200 OK\r\nContent-Length: 5\r\nX-Test: a\r\n\r\nhello"));
+
+    assertThat(complete).isTrue();
+    assertThat(parser.isKeepAlive()).isTrue();
+    HttpResponse response = parser.toHttpResponse();
+    assertThat(response.status()).isEqualTo(HttpStatus.OK);
+    assertThat(response.headers().get("x-test")).hasValue("a");
+    assertThat(response.bodyString()).hasValue("hello");
+    assertThat(response.bodyTruncated()).isFalse();
+  }
+
+  @Test
+  public void parse_whenFedOneByteAtATime_returnsFullResponse() throws ProtocolException {
+    HttpResponseParser parser = new HttpResponseParser(false, 1024, true);
+    ByteBuffer input =
+        buffer("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\n0\r\n\r\n");
+
+    boolean complete = false;
+    for (int limit = 1; limit <= input.capacity() && !complete; limit++) {
+      input.limit(limit);
+      complete = parser.parse(input);
+    }
+
+    assertThat(complete).isTrue();
+    assertThat(input.hasRemaining()).isFalse();
+    assertThat(parser.toHttpResponse().bodyString()).hasValue("abc");
+  }
+
+  @Test
+  public void parse_whenChunkedResponseWithTrailers_returnsBody() throws ProtocolException {
+    HttpResponseParser parser = new HttpResponseParser(false, 1024, true);
+
+    boolean complete =
+        parser.parse(
+            buffer(
+                "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + "4;ext=1\r\nWiki\r\n5\r\npedia\r\n0\r\nX-Trailer: t\r\n\r\n"));
+
+    assertThat(complete).isTrue();
+    assertThat(parser.toHttpResponse().bodyString()).hasValue("Wikipedia");
+  }
+
+  @Test
+  public void parse_whenPipelinedResponses_leavesNextResponseInBuffer() throws ProtocolException {
+    ByteBuffer input =
+        buffer(
+            "HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n"
+                + "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok");
+    HttpResponseParser firstParser = new HttpResponseParser(false, 1024, true);
+    HttpResponseParser secondParser = new HttpResponseParser(false, 1024, true);
+
+    assertThat(firstParser.parse(input)).isTrue();
+    assertThat(secondParser.parse(input)).isTrue();
+
+    assertThat(firstParser.getStatusCode()).isEqualTo(404);
+    assertThat(secondParser.getStatusCode()).isEqualTo(200);
+    assertThat(secondParser.toHttpResponse().bodyString()).hasValue("ok");
+  }
+
+  @Test
+  public void parse_whenInterimResponse_skipsIt() throws ProtocolException {
+    HttpResponseParser parser = new HttpResponseParser(false, 1024, true);
+
+    boolean complete =
+        parser.parse(
+            buffer(
+                "HTTP/1.1 100 Continue\r\n\r\n"
+                    + "HTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n"));
+
+    assertThat(complete).isTrue();
+    assertThat(parser.getStatusCode()).isEqualTo(201);
+  }
+
+  @Test
+  public void parse_whenHeadRequest_ignoresContentLength() throws ProtocolException {
+    HttpResponseParser parser = new HttpResponseParser(true, 1024, true);
+
+    boolean complete = parser.parse(buffer("HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\n"));
+
+    assertThat(complete).isTrue();
+    assertThat(parser.toHttpResponse().bodyBytes()).isEmpty();
+  }
+
+  @Test
+  public void parse_whenBodyDelimitedByEndOfStream_completesOnEndOfStream()
+      throws ProtocolException {
+    HttpResponseParser parser = new HttpResponseParser(false, 1024, true);
+
+    assertThat(parser.parse(buffer("HTTP/1.0 200 OK\r\n\r\nbody"))).isFalse();
+    assertThat(parser.onEndOfStream()).isTrue();
+
+    assertThat(parser.isKeepAlive()).isFalse();
+    assertThat(parser.toHttpResponse().bodyString()).hasValue("body");
+  }
+
+  @Test
+  public void parse_whenConnectionClose_isNotKeepAlive() throws ProtocolException {
+    HttpResponseParser parser = new HttpResponseParser(false, 1024, true);
+
+    parser.parse(buffer("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 0\r\n\r\n"));
+
+    assertThat(parser.isKeepAlive()).isFalse();
+  }
+
+  @Test
+  public void parse_whenBodyExceedsMaxSize_truncatesBody() throws ProtocolException {
+    HttpResponseParser parser = new HttpResponseParser(false, 4, true);
+
+    boolean complete =
+        parser.parse(buffer("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n0123456789"));
+
+    assertThat(complete).isTrue();
+    assertThat(parser.isKeepAlive()).isFalse();
+    assertThat(parser.isBodyTruncated()).isTrue();
+    assertThat(parser.toHttpResponse().bodyString()).hasValue("0123");
+  }
+
+  @Test
+  public void parse_whenBodyNotRetained_countsBodyLength() throws ProtocolException {
+    HttpResponseParser parser = new HttpResponseParser(false, 1024, false);
+
+    parser.parse(buffer("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n0123456789"));
+
+    assertThat(parser.getBodyLength()).isEqualTo(10);
+    assertThat(parser.toHttpResponse().bodyString()).hasValue("");
+  }
+
+  @Test
+  public void parse_whenInvalidStatusLine_throws() {
+    HttpResponseParser parser = new HttpResponseParser(false, 1024, true);
+
+    assertThrows(ProtocolException.class, () -> parser.parse(buffer("SSH-2.0-OpenSSH_8.2\r\n")));
+  }
+
+  private static ByteBuffer buffer(String content) {
+    return ByteBuffer.wrap(content.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.Guice;
+import com.google.tsunami.common.net.TsunamiDns;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.net.ssl.SSLContext;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link NioHttpTransport}. */
+@RunWith(JUnit4.class)
+public final class NioHttpTransportTest {
+  private MockWebServer mockWebServer;
+  private NioHttpTransport.Endpoint endpoint;
+  @Inject private NioHttpTransport nioHttpTransport;
+
+  @Before
+  public void setUp() throws IOException {
+    mockWebServer = new MockWebServer();
+    mockWebServer.start(InetAddress.getLoopbackAddress(), 0);
+    endpoint =
+        NioHttpTransport.Endpoint.create(
+            false, InetAddress.getLoopbackAddress().getHostAddress(), mockWebServer.getPort());
+    Guice.createInjector(new HttpClientModule.Builder().build()).injectMembers(this);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    mockWebServer.shutdown();
+  }
+
+  @Test
+  public void sendPipelined_whenHeadRequestCancelled_discardsItsResponseOnSameConnection()
+      throws Exception {
+    mockWebServer.enqueue(
+        new MockResponse().setBody("first").setBodyDelay(200, TimeUnit.MILLISECONDS));
+    mockWebServer.enqueue(new MockResponse().setBody("second"));
+    mockWebServer.enqueue(new MockResponse().setBody("third"));
+
+    ImmutableList<ListenableFuture<HttpResponseParser>> responses =
+        nioHttpTransport.sendPipelined(
+            endpoint,
+            ImmutableList.of(
+                buildExchange("/first"), buildExchange("/second"), buildExchange("/third")));
+    mockWebServer.takeRequest();
+    responses.get(0).cancel(false);
+
+    assertThat(responses.get(1).get(5, TimeUnit.SECONDS).toHttpResponse().bodyString())
+        .hasValue("second");
+    assertThat(responses.get(2).get(5, TimeUnit.SECONDS).toHttpResponse().bodyString())
+        .hasValue("third");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(3);
+    assertThat(mockWebServer.takeRequest().getSequenceNumber()).isEqualTo(1);
+    assertThat(mockWebServer.takeRequest().getSequenceNumber()).isEqualTo(2);
+  }
+
+  @Test
+  public void send_afterEveryPendingRequestCancelled_opensNewConnection() throws Exception {
+    mockWebServer.enqueue(
+        new MockResponse().setBody("cancelled").setBodyDelay(200, TimeUnit.MILLISECONDS));
+    mockWebServer.enqueue(new MockResponse().setBody("next"));
+
+    ListenableFuture<HttpResponseParser> cancelled =
+        nioHttpTransport.send(endpoint, encodeRequest("/cancelled"), buildParser());
+    mockWebServer.takeRequest();
+    cancelled.cancel(false);
+    HttpResponseParser next =
+        nioHttpTransport
+            .send(endpoint, encodeRequest("/next"), buildParser())
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(next.toHttpResponse().bodyString()).hasValue("next");
+    assertThat(mockWebServer.takeRequest().getSequenceNumber()).isEqualTo(0);
+  }
+
+  @Test
+  public void send_whenOpeningConnectionThrowsRuntimeException_failsRequest() throws Exception {
+    // An uninitialized SSLContext cannot create the SSLEngine of a TLS connection.
+    NioHttpTransport transport =
+        new NioHttpTransport(
+            TsunamiDns.getDefault(),
+            SSLContext.getInstance("TLS"),
+            false,
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(5),
+            1,
+            Duration.ofSeconds(5));
+    NioHttpTransport.Endpoint tlsEndpoint =
+        NioHttpTransport.Endpoint.create(
+            true, InetAddress.getLoopbackAddress().getHostAddress(), mockWebServer.getPort());
+
+    ListenableFuture<HttpResponseParser> response =
+        transport.send(tlsEndpoint, encodeRequest("/"), buildParser());
+
+    ExecutionException exception =
+        assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+    assertThat(exception).hasCauseThat().isInstanceOf(IOException.class);
+    assertThat(exception).hasCauseThat().hasCauseThat().isInstanceOf(IllegalStateException.class);
+  }
+
+  private static NioHttpTransport.Exchange buildExchange(String path) {
+    return new NioHttpTransport.Exchange(encodeRequest(path), buildParser());
+  }
+
+  private static HttpResponseParser buildParser() {
+    return new HttpResponseParser(false, 1024, true);
+  }
+
+  private static byte[] encodeRequest(String path) {
+    return ("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(UTF_8);
+  }
+}
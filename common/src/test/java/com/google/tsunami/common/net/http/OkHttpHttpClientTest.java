@@ -17,6 +17,7 @@ package com.google.tsunami.common.net.http;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.nullToEmpty;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.net.HttpHeaders.ACCEPT;
 import static com.google.common.net.HttpHeaders.CONTENT_LENGTH;
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
@@ -29,10 +30,13 @@ import static com.google.tsunami.common.net.http.HttpRequest.get;
 import static com.google.tsunami.common.net.http.HttpRequest.head;
 import static com.google.tsunami.common.net.http.HttpRequest.post;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.junit.Assert.assertThrows;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.net.MediaType;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.io.ByteStreams;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.protobuf.ByteString;
@@ -43,8 +47,13 @@ import java.net.InetAddress;
 import java.net.URL;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 import javax.inject.Inject;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
@@ -229,6 +238,201 @@ public final class OkHttpHttpClientTest {
                 .build());
   }
 
+  @Test
+  public void send_whenBodyExceedsMaxSize_returnsTruncatedBody() throws IOException {
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("0123456789"));
+    mockWebServer.start();
+
+    HttpResponse response =
+        newHttpClientWithMaxResponseBodyBytes(4)
+            .send(get(mockWebServer.url("/")).withEmptyHeaders().build());
+
+    assertThat(response.bodyString()).hasValue("0123");
+    assertThat(response.bodyTruncated()).isTrue();
+  }
+
+  @Test
+  public void send_whenBodyEqualsMaxSize_returnsFullBody() throws IOException {
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("0123456789"));
+    mockWebServer.start();
+
+    HttpResponse response =
+        newHttpClientWithMaxResponseBodyBytes(10)
+            .send(get(mockWebServer.url("/")).withEmptyHeaders().build());
+
+    assertThat(response.bodyString()).hasValue("0123456789");
+    assertThat(response.bodyTruncated()).isFalse();
+  }
+
+  @Test
+  public void sendAsIs_whenBodyExceedsMaxSize_returnsTruncatedBody() throws IOException {
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("0123456789"));
+    mockWebServer.start();
+
+    HttpResponse response =
+        newHttpClientWithMaxResponseBodyBytes(4)
+            .sendAsIs(get(mockWebServer.url("/")).withEmptyHeaders().build());
+
+    assertThat(response.bodyString()).hasValue("0123");
+    assertThat(response.bodyTruncated()).isTrue();
+  }
+
+  @Test
+  public void sendAsIsAsync_always_sendsRequestTargetAsIs()
+      throws ExecutionException, InterruptedException, IOException {
+    mockWebServer.setDispatcher(new SendAsIsTestDispatcher());
+    mockWebServer.start();
+    String expectedResponseBody = SendAsIsTestDispatcher.buildBody("GET", "");
+    HttpUrl baseUrl = mockWebServer.url("/");
+    String requestUrl =
+        String.format(
+            "http://%s:%d/send-as-is/%%2e%%2e/%%2e%%2e/etc/passwd?a=%%2e#fragment",
+            baseUrl.host(), baseUrl.port());
+
+    HttpResponse response =
+        httpClient.sendAsIsAsync(get(requestUrl).withEmptyHeaders().build()).get();
+
+    RecordedRequest recordedRequest = mockWebServer.takeRequest();
+    assertThat(recordedRequest.getRequestLine())
+        .isEqualTo("GET /send-as-is/%2e%2e/%2e%2e/etc/passwd?a=%2e HTTP/1.1");
+    assertThat(recordedRequest.getHeader(USER_AGENT)).isEqualTo("TsunamiSecurityScanner");
+    assertThat(recordedRequest.getHeader(HOST))
+        .isEqualTo(String.format("%s:%d", baseUrl.host(), baseUrl.port()));
+    assertThat(response)
+        .isEqualTo(
+            HttpResponse.builder()
+                .setStatus(HttpStatus.OK)
+                .setHeaders(
+                    HttpHeaders.builder()
+                        .addHeader(CONTENT_TYPE, MediaType.PLAIN_TEXT_UTF_8.toString())
+                        .addHeader(CONTENT_LENGTH, String.valueOf(expectedResponseBody.length()))
+                        .build())
+                .setBodyBytes(ByteString.copyFrom(expectedResponseBody, UTF_8))
+                .build());
+  }
+
+  @Test
+  public void sendAsIsAsync_withPostRequest_sendsRequestBody()
+      throws ExecutionException, InterruptedException, IOException {
+    mockWebServer.setDispatcher(new SendAsIsTestDispatcher());
+    mockWebServer.start();
+    HttpUrl baseUrl = mockWebServer.url("/");
+    String requestUrl =
+        String.format("http://%s:%d/send-as-is/%%2e%%2e/path", baseUrl.host(), baseUrl.port());
+
+    HttpResponse response =
+        httpClient
+            .sendAsIsAsync(
+                post(requestUrl)
+                    .setRequestBody(ByteString.copyFrom("POST BODY", UTF_8))
+                    .withEmptyHeaders()
+                    .build())
+            .get();
+
+    assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/send-as-is/%2e%2e/path");
+    assertThat(response.bodyString())
+        .hasValue(SendAsIsTestDispatcher.buildBody("POST", "POST BODY"));
+  }
+
+  @Test
+  public void sendAsIsAsync_whenSentSequentially_reusesConnection()
+      throws ExecutionException, InterruptedException, IOException {
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("1"));
+    mockWebServer.enqueue(new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("2"));
+    mockWebServer.start();
+    String requestUrl = mockWebServer.url("/").toString();
+
+    HttpResponse firstResponse =
+        httpClient.sendAsIsAsync(get(requestUrl).withEmptyHeaders().build()).get();
+    HttpResponse secondResponse =
+        httpClient.sendAsIsAsync(get(requestUrl).withEmptyHeaders().build()).get();
+
+    assertThat(firstResponse.bodyString()).hasValue("1");
+    assertThat(secondResponse.bodyString()).hasValue("2");
+    assertThat(mockWebServer.takeRequest().getSequenceNumber()).isEqualTo(0);
+    // A sequence number above 0 means the request was sent over the first request's connection.
+    assertThat(mockWebServer.takeRequest().getSequenceNumber()).isEqualTo(1);
+  }
+
+  @Test
+  public void sendAsIsAsync_whenChunkedResponse_returnsFullBody()
+      throws ExecutionException, InterruptedException, IOException {
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(HttpStatus.OK.code()).setChunkedBody("0123456789", 3));
+    mockWebServer.start();
+
+    HttpResponse response =
+        httpClient
+            .sendAsIsAsync(get(mockWebServer.url("/").toString()).withEmptyHeaders().build())
+            .get();
+
+    assertThat(response.bodyString()).hasValue("0123456789");
+  }
+
+  @Test
+  public void sendAsIsAsync_whenConnectionRefused_returnsFailedFuture() throws IOException {
+    mockWebServer.start();
+    String requestUrl = mockWebServer.url("/").toString();
+    mockWebServer.shutdown();
+
+    ExecutionException exception =
+        assertThrows(
+            ExecutionException.class,
+            () -> httpClient.sendAsIsAsync(get(requestUrl).withEmptyHeaders().build()).get());
+
+    assertThat(exception).hasCauseThat().isInstanceOf(IOException.class);
+  }
+
+  @Test
+  public void sendAsIsAsync_whenInvalidCertificatesAreIgnored_getResponseWithoutException()
+      throws ExecutionException, GeneralSecurityException, InterruptedException, IOException {
+    MockWebServer mockWebServer = startMockWebServerWithSsl(InetAddress.getLoopbackAddress());
+    HttpUrl baseUrl = mockWebServer.url("/");
+    String requestUrl = String.format("https://%s:%d/%%2e%%2e/", baseUrl.host(), baseUrl.port());
+
+    HttpResponse response =
+        newHttpClientWithTrustAllCertificates(true)
+            .sendAsIsAsync(get(requestUrl).withEmptyHeaders().build())
+            .get();
+
+    assertThat(response.bodyString()).hasValue("body");
+    assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/%2e%2e/");
+    mockWebServer.shutdown();
+  }
+
+  @Test
+  public void sendAsIsAsync_whenInvalidCertificatesAreNotIgnored_returnsFailedFuture()
+      throws GeneralSecurityException, IOException {
+    MockWebServer mockWebServer = startMockWebServerWithSsl(InetAddress.getLoopbackAddress());
+    String requestUrl = mockWebServer.url("/").toString();
+    HttpClient httpClient = newHttpClientWithTrustAllCertificates(false);
+
+    ExecutionException exception =
+        assertThrows(
+            ExecutionException.class,
+            () -> httpClient.sendAsIsAsync(get(requestUrl).withEmptyHeaders().build()).get());
+
+    assertThat(exception).hasCauseThat().isInstanceOf(SSLException.class);
+    mockWebServer.shutdown();
+  }
+
+  @Test
+  public void sendStreaming_whenGetRequest_streamsBody() throws IOException {
+    mockWebServer.enqueue(
+        new MockResponse().setResponseCode(HttpStatus.OK.code()).setBody("streamed body"));
+    mockWebServer.start();
+
+    try (StreamingHttpResponse response =
+        httpClient.sendStreaming(get(mockWebServer.url("/")).withEmptyHeaders().build())) {
+      assertThat(response.status()).isEqualTo(HttpStatus.OK);
+      assertThat(new String(ByteStreams.toByteArray(response.body()), UTF_8))
+          .isEqualTo("streamed body");
+    }
+  }
+
   @Test
   public void send_whenHeadRequest_returnsHttpResponseWithoutBody() throws IOException {
     String responseBody = "test response";
@@ -610,6 +814,91 @@ public final class OkHttpHttpClientTest {
     assertThat(ex).hasCauseThat().isInstanceOf(IOException.class);
   }
 
+  @Test
+  public void sendAllAsync_always_returnsResponsesInRequestOrderWithinMaxConcurrency()
+      throws IOException, ExecutionException, InterruptedException {
+    PathEchoDispatcher dispatcher = new PathEchoDispatcher();
+    mockWebServer.setDispatcher(dispatcher);
+    mockWebServer.start();
+    ImmutableList<HttpRequest> requests =
+        IntStream.range(0, 8)
+            .mapToObj(i -> get(mockWebServer.url("/" + i).toString()).withEmptyHeaders().build())
+            .collect(toImmutableList());
+
+    ImmutableList<ListenableFuture<HttpResponse>> responses = httpClient.sendAllAsync(requests, 2);
+
+    for (int i = 0; i < requests.size(); i++) {
+      assertThat(responses.get(i).get().bodyString()).hasValue("/" + i);
+    }
+    assertThat(dispatcher.maxConcurrentRequests.get()).isAtMost(2);
+  }
+
+  @Test
+  public void sendAllAsync_whenFutureCancelledBeforeSent_skipsRequest()
+      throws IOException, ExecutionException, InterruptedException {
+    mockWebServer.setDispatcher(new PathEchoDispatcher());
+    mockWebServer.start();
+    ImmutableList<HttpRequest> requests =
+        IntStream.range(0, 4)
+            .mapToObj(i -> get(mockWebServer.url("/" + i).toString()).withEmptyHeaders().build())
+            .collect(toImmutableList());
+
+    ImmutableList<ListenableFuture<HttpResponse>> responses = httpClient.sendAllAsync(requests, 1);
+    responses.get(3).cancel(true);
+
+    assertThat(responses.get(2).get().bodyString()).hasValue("/2");
+    assertThat(responses.get(3).isCancelled()).isTrue();
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void sendAllAsync_whenHandlerStops_cancelsRemainingRequests()
+      throws IOException, ExecutionException, InterruptedException, TimeoutException {
+    mockWebServer.setDispatcher(new PathEchoDispatcher());
+    mockWebServer.start();
+    // Lazily generated, the iterable is only consumed as fast as responses come back.
+    Iterable<HttpRequest> requests =
+        () ->
+            IntStream.range(0, 1000)
+                .mapToObj(
+                    i -> get(mockWebServer.url("/" + i).toString()).withEmptyHeaders().build())
+                .iterator();
+    List<String> handledBodies = new ArrayList<>();
+
+    httpClient
+        .sendAllAsync(
+            requests,
+            4,
+            (httpRequest, httpResponse) -> {
+              handledBodies.add(httpResponse.bodyString().orElse(""));
+              return !httpResponse.bodyString().orElse("").equals("/10");
+            })
+        .get(10, SECONDS);
+
+    assertThat(handledBodies).contains("/10");
+    assertThat(handledBodies.size()).isLessThan(20);
+    assertThat(mockWebServer.getRequestCount()).isLessThan(20);
+  }
+
+  @Test
+  public void sendAllAsync_whenHandlerThrows_returnsFailedFuture() throws IOException {
+    mockWebServer.setDispatcher(new PathEchoDispatcher());
+    mockWebServer.start();
+    ImmutableList<HttpRequest> requests =
+        ImmutableList.of(get(mockWebServer.url("/").toString()).withEmptyHeaders().build());
+
+    ListenableFuture<Void> completion =
+        httpClient.sendAllAsync(
+            requests,
+            1,
+            (httpRequest, httpResponse) -> {
+              throw new IllegalStateException("handler failure");
+            });
+
+    ExecutionException ex = assertThrows(ExecutionException.class, completion::get);
+    assertThat(ex).hasCauseThat().isInstanceOf(IllegalStateException.class);
+  }
+
   @Test
   public void send_whenHostnameAndIpInRequest_useHostnameAsProxy() throws IOException {
     InetAddress loopbackAddress = InetAddress.getLoopbackAddress();
@@ -634,6 +923,31 @@ public final class OkHttpHttpClientTest {
     assertThat(response.status()).isEqualTo(HttpStatus.OK);
   }
 
+  @Test
+  public void send_whenHostnameAndIpInRequest_reusesConnection()
+      throws IOException, InterruptedException {
+    InetAddress loopbackAddress = InetAddress.getLoopbackAddress();
+    String host = "host.com";
+    mockWebServer.setDispatcher(new HostnameTestDispatcher(host));
+    mockWebServer.start(loopbackAddress, 0);
+    int port = mockWebServer.url("/").port();
+    NetworkService networkService =
+        NetworkService.newBuilder()
+            .setNetworkEndpoint(
+                NetworkEndpointUtils.forIpHostnameAndPort(
+                    loopbackAddress.getHostAddress(), host, port))
+            .build();
+    HttpRequest request =
+        get(String.format("http://host.com:%d/test/get", port)).withEmptyHeaders().build();
+
+    httpClient.send(request, networkService);
+    httpClient.send(request, networkService);
+
+    assertThat(mockWebServer.takeRequest().getSequenceNumber()).isEqualTo(0);
+    // A sequence number above 0 means the request was sent over the first request's connection.
+    assertThat(mockWebServer.takeRequest().getSequenceNumber()).isEqualTo(1);
+  }
+
   @Test
   public void send_whenInvalidCertificatesAreIgnored_getResponseWithoutException()
       throws GeneralSecurityException, IOException {
@@ -711,6 +1025,36 @@ public final class OkHttpHttpClientTest {
     mockWebServer.shutdown();
   }
 
+  private static HttpClient newHttpClientWithTrustAllCertificates(boolean trustAllCertificates) {
+    HttpClientCliOptions cliOptions = new HttpClientCliOptions();
+    HttpClientConfigProperties configProperties = new HttpClientConfigProperties();
+    cliOptions.trustAllCertificates = configProperties.trustAllCertificates = trustAllCertificates;
+    return Guice.createInjector(
+            new AbstractModule() {
+              @Override
+              protected void configure() {
+                install(new HttpClientModule.Builder().build());
+                bind(HttpClientCliOptions.class).toInstance(cliOptions);
+                bind(HttpClientConfigProperties.class).toInstance(configProperties);
+              }
+            })
+        .getInstance(HttpClient.class);
+  }
+
+  private static HttpClient newHttpClientWithMaxResponseBodyBytes(int maxResponseBodyBytes) {
+    HttpClientCliOptions cliOptions = new HttpClientCliOptions();
+    cliOptions.maxResponseBodyBytes = maxResponseBodyBytes;
+    return Guice.createInjector(
+            new AbstractModule() {
+              @Override
+              protected void configure() {
+                install(new HttpClientModule.Builder().build());
+                bind(HttpClientCliOptions.class).toInstance(cliOptions);
+              }
+            })
+        .getInstance(HttpClient.class);
+  }
+
   private MockWebServer startMockWebServerWithSsl(InetAddress serverAddress)
       throws GeneralSecurityException, IOException {
     MockWebServer mockWebServer = new MockWebServer();
@@ -757,6 +1101,24 @@ public final class OkHttpHttpClientTest {
     }
   }
 
+  static final class PathEchoDispatcher extends Dispatcher {
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+    @Override
+    public MockResponse dispatch(RecordedRequest recordedRequest) throws InterruptedException {
+      maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(20);
+        return new MockResponse()
+            .setResponseCode(HttpStatus.OK.code())
+            .setBody(recordedRequest.getPath());
+      } finally {
+        concurrentRequests.decrementAndGet();
+      }
+    }
+  }
+
   static final class UserAgentTestDispatcher extends Dispatcher {
     static final String USERAGENT_TEST_PATH = "/useragent-test";
 
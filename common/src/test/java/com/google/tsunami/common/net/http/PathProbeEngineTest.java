@@ -0,0 +1,217 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Guice;
+import com.google.protobuf.ByteString;
+import com.google.tsunami.common.data.NetworkEndpointUtils;
+import com.google.tsunami.proto.NetworkService;
+import com.google.tsunami.proto.ServiceContext;
+import com.google.tsunami.proto.WebServiceContext;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import javax.inject.Inject;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link PathProbeEngine}. */
+@RunWith(JUnit4.class)
+public final class PathProbeEngineTest {
+  private MockWebServer mockWebServer;
+  @Inject private PathProbeEngine pathProbeEngine;
+
+  @Before
+  public void setUp() throws IOException {
+    mockWebServer = new MockWebServer();
+    mockWebServer.start(InetAddress.getLoopbackAddress(), 0);
+    Guice.createInjector(new HttpClientModule.Builder().build()).injectMembers(this);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    mockWebServer.shutdown();
+  }
+
+  @Test
+  public void probeAll_always_returnsStatusAndLengthOfEachPath() throws InterruptedException {
+    mockWebServer.setDispatcher(new AdminPanelDispatcher(false));
+
+    ImmutableList<PathProbeResult> results =
+        pathProbeEngine.probeAll(
+            buildWebService(), ImmutableList.of("admin/", "/backup.zip", "robots.txt"));
+
+    assertThat(results)
+        .containsExactly(
+            PathProbeResult.create(
+                "admin/", HttpStatus.OK, 5, HttpHeaders.builder().build(), Optional.empty()),
+            PathProbeResult.create(
+                "/backup.zip",
+                HttpStatus.NOT_FOUND,
+                0,
+                HttpHeaders.builder().build(),
+                Optional.empty()),
+            PathProbeResult.create(
+                "robots.txt",
+                HttpStatus.NOT_FOUND,
+                0,
+                HttpHeaders.builder().build(),
+                Optional.empty()));
+  }
+
+  @Test
+  public void probe_whenServiceKeepsConnectionsAlive_pipelinesOverFewConnections()
+      throws InterruptedException {
+    mockWebServer.setDispatcher(new AdminPanelDispatcher(false));
+    ImmutableList<String> paths =
+        IntStream.range(0, 50).mapToObj(i -> "path" + i).collect(toImmutableList());
+    List<PathProbeResult> results = new ArrayList<>();
+
+    pathProbeEngine.probe(
+        buildWebService(),
+        paths,
+        PathProbeEngine.ProbeOptions.builder().setConnections(2).setPipelineDepth(10).build(),
+        results::add);
+
+    assertThat(results.stream().map(PathProbeResult::path).collect(toImmutableList()))
+        .containsExactlyElementsIn(paths);
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(50);
+    // Sequence numbers count the requests served over each connection.
+    int maxSequenceNumber = 0;
+    for (int i = 0; i < 50; i++) {
+      maxSequenceNumber =
+          Math.max(maxSequenceNumber, mockWebServer.takeRequest().getSequenceNumber());
+    }
+    assertThat(maxSequenceNumber).isAtLeast(24);
+  }
+
+  @Test
+  public void probe_whenServiceClosesConnections_probesAllPaths() throws InterruptedException {
+    mockWebServer.setDispatcher(new AdminPanelDispatcher(true));
+    ImmutableList<String> paths =
+        IntStream.range(0, 20).mapToObj(i -> "path" + i).collect(toImmutableList());
+    List<PathProbeResult> results = new ArrayList<>();
+
+    pathProbeEngine.probe(
+        buildWebService(),
+        paths,
+        PathProbeEngine.ProbeOptions.builder().setConnections(1).setPipelineDepth(5).build(),
+        results::add);
+
+    assertThat(results.stream().map(PathProbeResult::path).collect(toImmutableList()))
+        .containsExactlyElementsIn(paths);
+  }
+
+  @Test
+  public void probe_withSelectedHeadersAndBodies_returnsThem() throws InterruptedException {
+    mockWebServer.setDispatcher(new AdminPanelDispatcher(false));
+    List<PathProbeResult> results = new ArrayList<>();
+
+    pathProbeEngine.probe(
+        buildWebService(),
+        ImmutableList.of("admin/"),
+        PathProbeEngine.ProbeOptions.builder()
+            .setHeaders(ImmutableSet.of("X-Powered-By"))
+            .setRetainBodies(true)
+            .build(),
+        results::add);
+
+    PathProbeResult result = results.get(0);
+    assertThat(result.headers().get("X-Powered-By")).hasValue("Tomcat");
+    assertThat(result.headers().names()).containsExactly("X-Powered-By");
+    assertThat(result.bodyBytes()).hasValue(ByteString.copyFromUtf8("panel"));
+  }
+
+  @Test
+  public void probe_withHeadMethod_sendsHeadRequests() throws InterruptedException {
+    mockWebServer.setDispatcher(new AdminPanelDispatcher(false));
+    List<PathProbeResult> results = new ArrayList<>();
+
+    pathProbeEngine.probe(
+        buildWebService(),
+        ImmutableList.of("admin/", "other"),
+        PathProbeEngine.ProbeOptions.builder().setMethod(HttpMethod.HEAD).build(),
+        results::add);
+
+    assertThat(results).hasSize(2);
+    assertThat(mockWebServer.takeRequest().getMethod()).isEqualTo("HEAD");
+  }
+
+  @Test
+  public void probe_withApplicationRoot_probesRelativeToRoot() throws InterruptedException {
+    mockWebServer.setDispatcher(new AdminPanelDispatcher(false));
+    NetworkService networkService =
+        buildWebService().toBuilder()
+            .setServiceContext(
+                ServiceContext.newBuilder()
+                    .setWebServiceContext(
+                        WebServiceContext.newBuilder().setApplicationRoot("/app")))
+            .build();
+
+    pathProbeEngine.probeAll(networkService, ImmutableList.of("%2e%2e/admin/"));
+
+    assertThat(mockWebServer.takeRequest().getPath()).isEqualTo("/app/%2e%2e/admin/");
+  }
+
+  private NetworkService buildWebService() {
+    return NetworkService.newBuilder()
+        .setNetworkEndpoint(
+            NetworkEndpointUtils.forIpAndPort(
+                InetAddress.getLoopbackAddress().getHostAddress(), mockWebServer.getPort()))
+        .setServiceName("http")
+        .build();
+  }
+
+  private static final class AdminPanelDispatcher extends Dispatcher {
+    private final boolean disconnectAfterResponse;
+
+    AdminPanelDispatcher(boolean disconnectAfterResponse) {
+      this.disconnectAfterResponse = disconnectAfterResponse;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest recordedRequest) {
+      MockResponse response =
+          recordedRequest.getPath().endsWith("/admin/")
+              ? new MockResponse()
+                  .setResponseCode(HttpStatus.OK.code())
+                  .setHeader("X-Powered-By", "Tomcat")
+                  .setBody("panel")
+              : new MockResponse().setResponseCode(HttpStatus.NOT_FOUND.code());
+      if (disconnectAfterResponse) {
+        response.setSocketPolicy(SocketPolicy.DISCONNECT_AT_END);
+      }
+      return response;
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.net.http;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.protobuf.ByteString;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SignatureMatcher}. */
+@RunWith(JUnit4.class)
+public final class SignatureMatcherTest {
+
+  @Test
+  public void match_whenLiteralPresent_returnsMatchedLiteral() {
+    SignatureMatcher matcher =
+        SignatureMatcher.builder().addLiteral("root:x:0:0").addLiteral("[boot loader]").build();
+
+    SignatureMatcher.MatchResult result =
+        matcher.match(ByteString.copyFromUtf8("nobody:x:1:1\nroot:x:0:0:root:/root:/bin/bash"));
+
+    assertThat(result.matched()).isTrue();
+    assertThat(result.matchedSignature()).hasValue("root:x:0:0");
+    assertThat(result.bytesScanned()).isEqualTo(23);
+  }
+
+  @Test
+  public void match_whenLiteralsOverlap_followsFailureLinks() {
+    SignatureMatcher matcher =
+        SignatureMatcher.builder().addLiteral("hers").addLiteral("she").addLiteral("his").build();
+
+    SignatureMatcher.MatchResult result = matcher.match(ByteString.copyFromUtf8("ushers"));
+
+    assertThat(result.matchedSignature()).hasValue("she");
+    assertThat(result.bytesScanned()).isEqualTo(4);
+  }
+
+  @Test
+  public void match_whenNoSignaturePresent_returnsNoMatch() {
+    SignatureMatcher matcher =
+        SignatureMatcher.builder().addLiteral("secret").addRegex("token=[0-9a-f]{8}").build();
+
+    SignatureMatcher.MatchResult result =
+        matcher.match(ByteString.copyFromUtf8("nothing to see, token=xyz"));
+
+    assertThat(result.matched()).isFalse();
+    assertThat(result.scanLimitReached()).isFalse();
+    assertThat(result.bytesScanned()).isEqualTo(25);
+  }
+
+  @Test
+  public void match_whenLiteralSpansReads_returnsMatch() throws IOException {
+    SignatureMatcher matcher = SignatureMatcher.builder().addLiteral("<title>Jenkins").build();
+
+    SignatureMatcher.MatchResult result =
+        matcher.match(new ChunkedInputStream("<html><title>Jenkins</title></html>", 3));
+
+    assertThat(result.matchedSignature()).hasValue("<title>Jenkins");
+  }
+
+  @Test
+  public void match_whenRegexSpansReads_returnsMatchedPattern() throws IOException {
+    SignatureMatcher matcher =
+        SignatureMatcher.builder().addRegex("version\\s*=\\s*\"2\\.[0-9]+\"").build();
+
+    SignatureMatcher.MatchResult result =
+        matcher.match(new ChunkedInputStream("<meta version = \"2.31\">", 5));
+
+    assertThat(result.matchedSignature()).hasValue("version\\s*=\\s*\"2\\.[0-9]+\"");
+  }
+
+  @Test
+  public void match_whenMultiByteCharacterSpansReads_decodesForRegex() throws IOException {
+    SignatureMatcher matcher = SignatureMatcher.builder().addRegex("Überwachung").build();
+
+    SignatureMatcher.MatchResult result =
+        matcher.match(new ChunkedInputStream("Die Überwachung", 5));
+
+    assertThat(result.matched()).isTrue();
+  }
+
+  @Test
+  public void match_whenStartAnchoredRegexMatchesAtStartOfWindow_returnsNoMatch()
+      throws IOException {
+    SignatureMatcher matcher =
+        SignatureMatcher.builder().addRegex("^admin").setRegexWindowChars(5).build();
+
+    SignatureMatcher.MatchResult result =
+        matcher.match(new ChunkedInputStream("xxxxxadminyyyyy", 5));
+
+    assertThat(result.matched()).isFalse();
+  }
+
+  @Test
+  public void match_whenStartAnchoredRegexMatchesStartOfBody_returnsMatchedPattern()
+      throws IOException {
+    SignatureMatcher matcher = SignatureMatcher.builder().addRegex("\\A<html>").build();
+
+    SignatureMatcher.MatchResult result = matcher.match(new ChunkedInputStream("<html></html>", 2));
+
+    assertThat(result.matchedSignature()).hasValue("\\A<html>");
+  }
+
+  @Test
+  public void match_whenEndAnchoredRegexMatchesAtEndOfRead_returnsNoMatch() throws IOException {
+    SignatureMatcher matcher = SignatureMatcher.builder().addRegex("admin$").build();
+
+    SignatureMatcher.MatchResult result = matcher.match(new ChunkedInputStream("admin panel", 5));
+
+    assertThat(result.matched()).isFalse();
+  }
+
+  @Test
+  public void match_whenEndAnchoredRegexMatchesAtScanLimit_returnsNoMatch() throws IOException {
+    SignatureMatcher matcher =
+        SignatureMatcher.builder().addRegex("admin$").setMaxScanBytes(5).build();
+
+    SignatureMatcher.MatchResult result = matcher.match(new ChunkedInputStream("admin panel", 5));
+
+    assertThat(result.matched()).isFalse();
+    assertThat(result.scanLimitReached()).isTrue();
+  }
+
+  @Test
+  public void match_whenEndAnchoredRegexMatchesAtEndOfBody_returnsMatchedPattern()
+      throws IOException {
+    SignatureMatcher matcher = SignatureMatcher.builder().addRegex("panel\\z").build();
+
+    SignatureMatcher.MatchResult result = matcher.match(new ChunkedInputStream("admin panel", 5));
+
+    assertThat(result.matchedSignature()).hasValue("panel\\z");
+    assertThat(result.bytesScanned()).isEqualTo(11);
+  }
+
+  @Test
+  public void match_whenMatchFound_stopsReadingBody() throws IOException {
+    SignatureMatcher matcher = SignatureMatcher.builder().addLiteral("needle").build();
+    ChunkedInputStream body = new ChunkedInputStream("needle" + "x".repeat(100_000), 16);
+
+    SignatureMatcher.MatchResult result = matcher.match(body);
+
+    assertThat(result.matched()).isTrue();
+    assertThat(body.bytesRead).isEqualTo(16);
+  }
+
+  @Test
+  public void match_whenScanLimitReached_stopsReadingBody() throws IOException {
+    SignatureMatcher matcher =
+        SignatureMatcher.builder().addLiteral("needle").setMaxScanBytes(10).build();
+    ChunkedInputStream body = new ChunkedInputStream("x".repeat(100) + "needle", 4);
+
+    SignatureMatcher.MatchResult result = matcher.match(body);
+
+    assertThat(result.matched()).isFalse();
+    assertThat(result.scanLimitReached()).isTrue();
+    assertThat(result.bytesScanned()).isEqualTo(10);
+    assertThat(body.bytesRead).isEqualTo(10);
+  }
+
+  /** An {@link InputStream} returning at most {@code chunkSize} bytes per read. */
+  private static final class ChunkedInputStream extends InputStream {
+    private final InputStream delegate;
+    private final int chunkSize;
+    int bytesRead;
+
+    ChunkedInputStream(String content, int chunkSize) {
+      this.delegate = new ByteArrayInputStream(content.getBytes(UTF_8));
+      this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = delegate.read();
+      if (b != -1) {
+        bytesRead++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = delegate.read(b, off, Math.min(len, chunkSize));
+      if (read > 0) {
+        bytesRead += read;
+      }
+      return read;
+    }
+  }
+}
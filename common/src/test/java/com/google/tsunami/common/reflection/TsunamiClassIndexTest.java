@@ -0,0 +1,113 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.common.reflection;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.tsunami.common.cli.CliOption;
+import com.google.tsunami.common.config.annotations.ConfigProperties;
+import io.github.classgraph.ClassGraph;
+import io.github.classgraph.ScanResult;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TsunamiClassIndex}. */
+@RunWith(JUnit4.class)
+public final class TsunamiClassIndexTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void fromScanResult_always_indexesMatchingClasses() {
+    try (ScanResult scanResult =
+        new ClassGraph()
+            .enableAllInfo()
+            .whitelistClasses(
+                TestConfig.class.getTypeName(),
+                AbstractTestConfig.class.getTypeName(),
+                TestOption.class.getTypeName())
+            .scan()) {
+      TsunamiClassIndex classIndex = TsunamiClassIndex.fromScanResult(scanResult);
+
+      assertThat(classIndex.getConfigPropertiesClasses()).containsExactly(TestConfig.class);
+      assertThat(classIndex.getCliOptionClasses()).containsExactly(TestOption.class);
+      assertThat(classIndex.getPluginClasses()).isEmpty();
+    }
+  }
+
+  @Test
+  public void load_withIndexResource_loadsIndexedClasses() throws IOException {
+    File indexedDir = tempFolder.newFolder("indexed");
+    Path indexFile = indexedDir.toPath().resolve(TsunamiClassIndex.INDEX_RESOURCE);
+    Files.createDirectories(indexFile.getParent());
+    Files.write(
+        indexFile,
+        String.join(
+                "\n",
+                "config_properties " + TestConfig.class.getName(),
+                "cli_option " + TestOption.class.getName())
+            .getBytes(UTF_8));
+
+    try (URLClassLoader classLoader =
+        new URLClassLoader(
+            new URL[] {indexedDir.toURI().toURL()}, TsunamiClassIndexTest.class.getClassLoader())) {
+      TsunamiClassIndex classIndex = TsunamiClassIndex.load(classLoader);
+
+      assertThat(classIndex.getConfigPropertiesClasses()).contains(TestConfig.class);
+      assertThat(classIndex.getCliOptionClasses()).contains(TestOption.class);
+    }
+  }
+
+  @Test
+  public void load_withExcludedPackage_skipsExcludedClasses() throws IOException {
+    File indexedDir = tempFolder.newFolder("indexed");
+    Path indexFile = indexedDir.toPath().resolve(TsunamiClassIndex.INDEX_RESOURCE);
+    Files.createDirectories(indexFile.getParent());
+    Files.write(indexFile, ("cli_option " + TestOption.class.getName()).getBytes(UTF_8));
+
+    try (URLClassLoader classLoader =
+        new URLClassLoader(
+            new URL[] {indexedDir.toURI().toURL()}, TsunamiClassIndexTest.class.getClassLoader())) {
+      TsunamiClassIndex classIndex =
+          TsunamiClassIndex.load(classLoader, TestOption.class.getPackage().getName());
+
+      assertThat(classIndex.getCliOptionClasses()).doesNotContain(TestOption.class);
+      assertThat(classIndex.getConfigPropertiesClasses()).doesNotContain(TestConfig.class);
+    }
+  }
+
+  @ConfigProperties("test.config")
+  static final class TestConfig {
+    String value;
+  }
+
+  @ConfigProperties("test.abstract.config")
+  abstract static class AbstractTestConfig {}
+
+  static final class TestOption implements CliOption {
+    @Override
+    public void validate() {}
+  }
+}
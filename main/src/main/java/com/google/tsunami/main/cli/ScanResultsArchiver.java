@@ -23,6 +23,7 @@ import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
@@ -32,16 +33,21 @@ import com.google.tsunami.common.io.archiving.GoogleCloudStorageArchiver;
 import com.google.tsunami.common.io.archiving.RawFileArchiver;
 import com.google.tsunami.main.cli.option.OutputDataFormat;
 import com.google.tsunami.proto.ScanResults;
+import java.util.regex.Pattern;
 import javax.inject.Inject;
 
 class ScanResultsArchiver {
+  private static final String TARGET_PLACEHOLDER = "{target}";
+  private static final Pattern UNSAFE_FILENAME_CHARS = Pattern.compile("[^A-Za-z0-9._-]");
 
   @Parameters(separators = "=")
   static final class Options implements CliOption {
 
     @Parameter(
         names = "--scan-results-local-output-filename",
-        description = "The local output filename of the scanning results.")
+        description =
+            "The local output filename of the scanning results. For batch scans, a '{target}'"
+                + " placeholder in the filename is replaced by each scan target.")
     public String localOutputFilename;
 
     @Parameter(
@@ -88,15 +94,52 @@ class ScanResultsArchiver {
   }
 
   void archive(ScanResults scanResults) throws InvalidProtocolBufferException {
-    if (!Strings.isNullOrEmpty(options.localOutputFilename)) {
-      archive(rawFileArchiver, options.localOutputFilename, options.localOutputFormat, scanResults);
+    archive(scanResults, options.localOutputFilename, options.gcsOutputFileUrl);
+  }
+
+  /**
+   * Archives the scan results of one target of a batch scan. The configured output locations are
+   * used as templates: a {@code {target}} placeholder is replaced by the target identifier, and if
+   * the placeholder is absent the identifier is inserted right before the file extension.
+   */
+  void archive(ScanResults scanResults, String targetId) throws InvalidProtocolBufferException {
+    archive(
+        scanResults,
+        buildPerTargetLocation(options.localOutputFilename, targetId),
+        buildPerTargetLocation(options.gcsOutputFileUrl, targetId));
+  }
+
+  private void archive(ScanResults scanResults, String localOutputFilename, String gcsOutputFileUrl)
+      throws InvalidProtocolBufferException {
+    if (!Strings.isNullOrEmpty(localOutputFilename)) {
+      archive(rawFileArchiver, localOutputFilename, options.localOutputFormat, scanResults);
     }
 
-    if (!Strings.isNullOrEmpty(options.gcsOutputFileUrl)) {
+    if (!Strings.isNullOrEmpty(gcsOutputFileUrl)) {
       GoogleCloudStorageArchiver archiver =
           googleCloudStorageArchiverFactory.create(getGcsStorage());
-      archive(archiver, options.gcsOutputFileUrl, options.gcsOutputFormat, scanResults);
+      archive(archiver, gcsOutputFileUrl, options.gcsOutputFormat, scanResults);
+    }
+  }
+
+  @VisibleForTesting
+  static String buildPerTargetLocation(String location, String targetId) {
+    if (Strings.isNullOrEmpty(location)) {
+      return location;
+    }
+    String sanitizedTargetId = UNSAFE_FILENAME_CHARS.matcher(targetId).replaceAll("_");
+    if (location.contains(TARGET_PLACEHOLDER)) {
+      return location.replace(TARGET_PLACEHOLDER, sanitizedTargetId);
+    }
+    int lastSeparator = location.lastIndexOf('/');
+    int extensionStart = location.lastIndexOf('.');
+    if (extensionStart <= lastSeparator + 1) {
+      return location + "-" + sanitizedTargetId;
     }
+    return location.substring(0, extensionStart)
+        + "-"
+        + sanitizedTargetId
+        + location.substring(extensionStart);
   }
 
   private static void archive(
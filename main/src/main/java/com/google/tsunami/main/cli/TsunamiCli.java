@@ -16,17 +16,25 @@
 package com.google.tsunami.main.cli;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.tsunami.common.data.NetworkEndpointUtils.forHostname;
 import static com.google.tsunami.common.data.NetworkEndpointUtils.forIp;
 import static com.google.tsunami.common.data.NetworkEndpointUtils.forIpAndHostname;
 import static com.google.tsunami.common.data.NetworkServiceUtils.buildUriNetworkService;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Splitter;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.flogger.GoogleLogger;
+import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.FluentFuture;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -36,9 +44,12 @@ import com.google.tsunami.common.config.ConfigLoader;
 import com.google.tsunami.common.config.ConfigModule;
 import com.google.tsunami.common.config.TsunamiConfig;
 import com.google.tsunami.common.config.YamlConfigLoader;
+import com.google.tsunami.common.data.CrawlContentStore;
 import com.google.tsunami.common.io.archiving.GoogleCloudStorageArchiverModule;
+import com.google.tsunami.common.net.TsunamiDns;
 import com.google.tsunami.common.net.http.HttpClientModule;
 import com.google.tsunami.common.reflection.ClassGraphModule;
+import com.google.tsunami.common.reflection.TsunamiClassIndex;
 import com.google.tsunami.common.server.ServerPortCommand;
 import com.google.tsunami.common.time.SystemUtcClockModule;
 import com.google.tsunami.main.cli.option.MainCliOptions;
@@ -54,41 +65,66 @@ import com.google.tsunami.proto.ScanTarget;
 import com.google.tsunami.workflow.DefaultScanningWorkflow;
 import com.google.tsunami.workflow.ScanningWorkflowException;
 import io.github.classgraph.ClassGraph;
-import io.github.classgraph.ScanResult;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.SecureRandom;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import javax.inject.Inject;
 
 /** Command line interface for the Tsunami Security Scanner. */
 public final class TsunamiCli {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  // Fakes in this package are shipped with the plugin jar but must never be loaded by the scanner.
+  private static final String[] EXCLUDED_PACKAGES = {"com.google.tsunami.plugin.testing"};
 
   private final DefaultScanningWorkflow scanningWorkflow;
   private final ScanResultsArchiver scanResultsArchiver;
   private final MainCliOptions mainCliOptions;
   private final RemoteServerLoader remoteServerLoader;
+  private final TsunamiDns tsunamiDns;
+  private final CrawlContentStore crawlContentStore;
 
   @Inject
   TsunamiCli(
       DefaultScanningWorkflow scanningWorkflow,
       ScanResultsArchiver scanResultsArchiver,
       MainCliOptions mainCliOptions,
-      RemoteServerLoader remoteServerLoader) {
+      RemoteServerLoader remoteServerLoader,
+      TsunamiDns tsunamiDns,
+      CrawlContentStore crawlContentStore) {
     this.scanningWorkflow = checkNotNull(scanningWorkflow);
     this.scanResultsArchiver = checkNotNull(scanResultsArchiver);
     this.mainCliOptions = checkNotNull(mainCliOptions);
     this.remoteServerLoader = checkNotNull(remoteServerLoader);
+    this.tsunamiDns = checkNotNull(tsunamiDns);
+    this.crawlContentStore = checkNotNull(crawlContentStore);
   }
 
   public boolean run()
       throws ExecutionException, InterruptedException, ScanningWorkflowException, IOException {
+    try {
+      return runScans();
+    } finally {
+      // Deletes the spill file of the crawl contents shared by all the scans of this process.
+      crawlContentStore.close();
+    }
+  }
+
+  private boolean runScans()
+      throws ExecutionException, InterruptedException, ScanningWorkflowException, IOException {
     String logId = (mainCliOptions.logId == null) ? "" : (mainCliOptions.logId + ": ");
     // TODO(b/171405612): Find a way to print the log ID at every log line.
     logger.atInfo().log("%sTsunamiCli starting...", logId);
 
+    if (mainCliOptions.targetsFile != null) {
+      return runBatch();
+    }
+
     ImmutableList<Process> languageServerProcesses = remoteServerLoader.runServerProcesses();
     ScanResults scanResults = scanningWorkflow.run(buildScanTarget());
     languageServerProcesses.forEach(Process::destroy);
@@ -106,6 +142,102 @@ public final class TsunamiCli {
     }
   }
 
+  /**
+   * Scans all targets listed in the targets file within this process, so that the injector, the
+   * scanning workflow, the loaded plugins and the language servers are shared by all scans. At most
+   * {@code --max-concurrent-targets} targets are scanned at the same time.
+   */
+  private boolean runBatch() throws IOException, InterruptedException {
+    ImmutableList<String> targets = readTargets(Paths.get(mainCliOptions.targetsFile));
+    logger.atInfo().log(
+        "Scanning %d target(s) from '%s' with at most %d target(s) in flight.",
+        targets.size(), mainCliOptions.targetsFile, mainCliOptions.maxConcurrentTargets);
+
+    ImmutableList<Process> languageServerProcesses = remoteServerLoader.runServerProcesses();
+    Semaphore targetsInFlight = new Semaphore(mainCliOptions.maxConcurrentTargets);
+    List<ListenableFuture<Boolean>> targetScans = Lists.newArrayList();
+    try {
+      for (String target : targets) {
+        targetsInFlight.acquire();
+        ListenableFuture<Boolean> targetScan = scanAndSaveTarget(target);
+        targetScan.addListener(targetsInFlight::release, directExecutor());
+        targetScans.add(targetScan);
+      }
+
+      int failedTargets = 0;
+      for (int i = 0; i < targetScans.size(); i++) {
+        try {
+          if (!targetScans.get(i).get()) {
+            failedTargets++;
+          }
+        } catch (ExecutionException e) {
+          logger.atWarning().withCause(e).log("Tsunami scan of '%s' failed.", targets.get(i));
+          failedTargets++;
+        }
+      }
+      logger.atInfo().log(
+          "TsunamiCli finished batch scan, %d of %d target(s) failed.",
+          failedTargets, targets.size());
+      return failedTargets == 0;
+    } finally {
+      targetScans.forEach(targetScan -> targetScan.cancel(true));
+      languageServerProcesses.forEach(Process::destroy);
+    }
+  }
+
+  private ListenableFuture<Boolean> scanAndSaveTarget(String target) {
+    ListenableFuture<ScanResults> scanResults;
+    try {
+      scanResults = scanningWorkflow.runAsync(parseScanTarget(target, tsunamiDns));
+    } catch (RuntimeException e) {
+      return immediateFailedFuture(e);
+    }
+    return FluentFuture.from(scanResults)
+        .transform(
+            targetScanResults -> {
+              logger.atInfo().log("Tsunami scan of '%s' finished, saving results.", target);
+              try {
+                scanResultsArchiver.archive(targetScanResults, target);
+              } catch (IOException e) {
+                logger.atWarning().withCause(e).log("Unable to save scan results of '%s'.", target);
+                return false;
+              }
+              if (!hasSuccessfulResults(targetScanResults)) {
+                logger.atInfo().log(
+                    "Tsunami scan of '%s' has failed status, message = %s.",
+                    target, targetScanResults.getStatusMessage());
+                return false;
+              }
+              return true;
+            },
+            directExecutor());
+  }
+
+  private static ImmutableList<String> readTargets(Path targetsFile) throws IOException {
+    return Files.readAllLines(targetsFile, UTF_8).stream()
+        .map(String::trim)
+        .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+        .distinct()
+        .collect(toImmutableList());
+  }
+
+  /**
+   * Builds the {@link ScanTarget} for one line of the targets file. URIs are detected by their
+   * scheme, IP addresses by their format, and everything else is treated as a hostname.
+   */
+  @VisibleForTesting
+  static ScanTarget parseScanTarget(String target, TsunamiDns tsunamiDns) {
+    ScanTarget.Builder scanTargetBuilder = ScanTarget.newBuilder();
+    if (target.contains("://")) {
+      scanTargetBuilder.setNetworkService(buildUriNetworkService(target, tsunamiDns));
+    } else if (InetAddresses.isInetAddress(target)) {
+      scanTargetBuilder.setNetworkEndpoint(forIp(target));
+    } else {
+      scanTargetBuilder.setNetworkEndpoint(forHostname(target));
+    }
+    return scanTargetBuilder.build();
+  }
+
   private static boolean hasSuccessfulResults(ScanResults scanResults) {
     return scanResults.getScanStatus().equals(ScanStatus.SUCCEEDED)
         || scanResults.getScanStatus().equals(ScanStatus.PARTIALLY_SUCCEEDED);
@@ -125,7 +257,8 @@ public final class TsunamiCli {
     } else if (ip != null) {
       scanTargetBuilder.setNetworkEndpoint(forIp(ip));
     } else if (mainCliOptions.uriTarget != null) {
-      scanTargetBuilder.setNetworkService(buildUriNetworkService(mainCliOptions.uriTarget));
+      scanTargetBuilder.setNetworkService(
+          buildUriNetworkService(mainCliOptions.uriTarget, tsunamiDns));
     } else {
       scanTargetBuilder.setNetworkEndpoint(forHostname(mainCliOptions.hostnameTarget));
     }
@@ -138,12 +271,12 @@ public final class TsunamiCli {
   }
 
   private static final class TsunamiCliModule extends AbstractModule {
-    private final ScanResult classScanResult;
+    private final TsunamiClassIndex classIndex;
     private final String[] args;
     private final TsunamiConfig tsunamiConfig;
 
-    TsunamiCliModule(ScanResult classScanResult, String[] args, TsunamiConfig tsunamiConfig) {
-      this.classScanResult = checkNotNull(classScanResult);
+    TsunamiCliModule(TsunamiClassIndex classIndex, String[] args, TsunamiConfig tsunamiConfig) {
+      this.classIndex = checkNotNull(classIndex);
       this.args = checkNotNull(args);
       this.tsunamiConfig = checkNotNull(tsunamiConfig);
     }
@@ -156,16 +289,19 @@ public final class TsunamiCli {
       // TODO(b/241964583): Only use LanguageServerOptions to extract language server args.
       ImmutableList<ServerPortCommand> commands = extractPluginServerArgs(args);
 
-      install(new ClassGraphModule(classScanResult));
-      install(new ConfigModule(classScanResult, tsunamiConfig));
-      install(new CliOptionsModule(classScanResult, "TsunamiCli", args));
+      // The full classpath scan is only performed if a plugin asks for the ClassGraph scan results.
+      install(
+          new ClassGraphModule(
+              () -> new ClassGraph().enableAllInfo().blacklistPackages(EXCLUDED_PACKAGES).scan()));
+      install(new ConfigModule(classIndex, tsunamiConfig));
+      install(new CliOptionsModule(classIndex, "TsunamiCli", args));
       install(new SystemUtcClockModule());
       install(new CommandExecutorModule());
       install(new HttpClientModule.Builder().setLogId(logId).build());
       install(new GoogleCloudStorageArchiverModule());
       install(new ScanResultsArchiverModule());
       install(new PluginExecutionModule());
-      install(new PluginLoadingModule(classScanResult));
+      install(new PluginLoadingModule(classIndex));
       install(new PayloadGeneratorModule(new SecureRandom()));
       install(new RemoteServerLoaderModule(commands));
       install(new RemoteVulnDetectorLoadingModule(commands));
@@ -220,15 +356,13 @@ public final class TsunamiCli {
 
     TsunamiConfig tsunamiConfig = loadConfig();
 
-    try (ScanResult scanResult =
-        new ClassGraph()
-            .enableAllInfo()
-            .blacklistPackages("com.google.tsunami.plugin.testing")
-            .scan()) {
-      logger.atInfo().log("Full classpath scan took %s", stopwatch);
+    try {
+      TsunamiClassIndex classIndex =
+          TsunamiClassIndex.load(TsunamiCli.class.getClassLoader(), EXCLUDED_PACKAGES);
+      logger.atInfo().log("Loading class index took %s", stopwatch);
 
       Injector injector =
-          Guice.createInjector(new TsunamiCliModule(scanResult, args, tsunamiConfig));
+          Guice.createInjector(new TsunamiCliModule(classIndex, args, tsunamiConfig));
 
       // Exit with non-zero code if scan failed.
       if (!injector.getInstance(TsunamiCli.class).run()) {
@@ -245,24 +379,23 @@ public final class TsunamiCli {
   }
 
   private static TsunamiConfig loadConfig() {
-    try (ScanResult scanResult = new ClassGraph().enableAllInfo().scan()) {
-      ConfigLoader configLoader;
-      Optional<String> loaderClass = TsunamiConfig.getSystemProperty("tsunami.config.loader");
-      if (loaderClass.isPresent()
-          && scanResult.getAllClassesAsMap().containsKey(loaderClass.get())) {
+    Optional<String> loaderClass = TsunamiConfig.getSystemProperty("tsunami.config.loader");
+    ConfigLoader configLoader = new YamlConfigLoader();
+    if (loaderClass.isPresent()) {
+      try {
         configLoader =
-            scanResult
-                .getClassInfo(loaderClass.get())
-                .loadClass(ConfigLoader.class)
+            Class.forName(loaderClass.get())
+                .asSubclass(ConfigLoader.class)
                 .getConstructor()
                 .newInstance();
-      } else {
-        configLoader = new YamlConfigLoader();
+      } catch (ClassNotFoundException e) {
+        logger.atWarning().log(
+            "Config loader '%s' not found, falling back to YAML config.", loaderClass.get());
+      } catch (ReflectiveOperationException e) {
+        throw new LinkageError("Error loading config.", e);
       }
-
-      return configLoader.loadConfig();
-    } catch (ReflectiveOperationException e) {
-      throw new LinkageError("Error loading config.", e);
     }
+
+    return configLoader.loadConfig();
   }
 }
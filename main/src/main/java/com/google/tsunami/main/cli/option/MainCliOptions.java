@@ -21,6 +21,8 @@ import com.beust.jcommander.Parameters;
 import com.google.tsunami.common.cli.CliOption;
 import com.google.tsunami.main.cli.option.validator.IpV4Validator;
 import com.google.tsunami.main.cli.option.validator.IpV6Validator;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -53,6 +55,19 @@ public final class MainCliOptions implements CliOption {
               + " parameter is set, port scan is automatically skipped.")
   public String uriTarget;
 
+  @Parameter(
+      names = {"--targets-file", "--ip-list-file"},
+      description =
+          "A file listing the scanning targets, one IP address, hostname or URI per line. Blank"
+              + " lines and lines starting with '#' are ignored. All targets are scanned within the"
+              + " same process.")
+  public String targetsFile;
+
+  @Parameter(
+      names = "--max-concurrent-targets",
+      description = "The maximum number of targets scanned concurrently when using --targets-file.")
+  public int maxConcurrentTargets = 1;
+
   @Override
   public void validate() {
     List<String> portScanEnabledTargets = new ArrayList<>();
@@ -70,10 +85,28 @@ public final class MainCliOptions implements CliOption {
       portScanDisabledTargets.add("--uri-target");
     }
 
+    if (maxConcurrentTargets <= 0) {
+      throw new ParameterException(
+          String.format(
+              "--max-concurrent-targets must be positive, received %d.", maxConcurrentTargets));
+    }
+    if (targetsFile != null) {
+      if (!portScanEnabledTargets.isEmpty() || !portScanDisabledTargets.isEmpty()) {
+        throw new ParameterException(
+            "--targets-file should not be passed along with single target parameters"
+                + " (--ip-v4-target, --ip-v6-target, --hostname-target, --uri-target)");
+      }
+      if (!Files.isReadable(Paths.get(targetsFile))) {
+        throw new ParameterException(
+            String.format("Targets file %s does not exist or is not readable", targetsFile));
+      }
+      return;
+    }
+
     if (portScanEnabledTargets.isEmpty() && portScanDisabledTargets.isEmpty()) {
       throw new ParameterException(
           "One of the following parameters is expected: --ip-v4-target, --ip-v6-target,"
-              + " --hostname-target, --uri-target");
+              + " --hostname-target, --uri-target, --targets-file");
     }
     if (!portScanEnabledTargets.isEmpty() && !portScanDisabledTargets.isEmpty()) {
       throw new ParameterException(
@@ -197,6 +197,31 @@ public final class ScanResultsArchiverTest {
         .isEqualTo(SCAN_RESULTS);
   }
 
+  @Test
+  public void archive_withTargetId_storesDataPerTarget() throws InvalidProtocolBufferException {
+    options.localOutputFilename = "/tmp/result-{target}.json";
+    options.localOutputFormat = OutputDataFormat.JSON;
+    options.gcsOutputFileUrl = "";
+
+    scanResultsArchiver.archive(SCAN_RESULTS, "127.0.0.1");
+
+    assertThat(
+            parseJsonScanResults(
+                fakeRawFileArchiver.getStoredCharSequence("/tmp/result-127.0.0.1.json").toString()))
+        .isEqualTo(SCAN_RESULTS);
+    fakeGoogleCloudStorageArchivers.assertNoDataStored();
+  }
+
+  @Test
+  public void buildPerTargetLocation_withoutPlaceholder_insertsTargetBeforeExtension() {
+    assertThat(ScanResultsArchiver.buildPerTargetLocation("/tmp/result.json", "localhost"))
+        .isEqualTo("/tmp/result-localhost.json");
+    assertThat(ScanResultsArchiver.buildPerTargetLocation("/tmp/result", "localhost"))
+        .isEqualTo("/tmp/result-localhost");
+    assertThat(ScanResultsArchiver.buildPerTargetLocation("/tmp/result.json", "https://a/b"))
+        .isEqualTo("/tmp/result-https___a_b.json");
+  }
+
   private static ScanResults parseJsonScanResults(String jsonScanResults)
       throws InvalidProtocolBufferException {
     ScanResults.Builder scanResultsBuilder = ScanResults.newBuilder();
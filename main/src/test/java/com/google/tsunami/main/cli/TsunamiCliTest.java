@@ -15,18 +15,23 @@
  */
 package com.google.tsunami.main.cli;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.tsunami.common.cli.CliOptionsModule;
 import com.google.tsunami.common.config.ConfigModule;
 import com.google.tsunami.common.config.TsunamiConfig;
 import com.google.tsunami.common.data.NetworkEndpointUtils;
+import com.google.tsunami.common.net.TsunamiDns;
+import com.google.tsunami.common.net.http.HttpClientModule;
 import com.google.tsunami.common.time.testing.FakeUtcClockModule;
 import com.google.tsunami.main.cli.server.RemoteServerLoaderModule;
 import com.google.tsunami.plugin.testing.FailedVulnDetectorBootstrapModule;
@@ -58,6 +63,7 @@ import com.google.tsunami.proto.WebServiceContext;
 import com.google.tsunami.workflow.ScanningWorkflowException;
 import io.github.classgraph.ClassGraph;
 import io.github.classgraph.ScanResult;
+import java.io.File;
 import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
@@ -67,6 +73,7 @@ import java.util.stream.Stream;
 import javax.inject.Inject;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.ArgumentCaptor;
@@ -86,7 +93,10 @@ public final class TsunamiCliTest {
 
   @Mock ScanResultsArchiver scanResultsArchiver;
 
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
+
   @Captor ArgumentCaptor<ScanResults> scanResultsCaptor;
+  @Captor ArgumentCaptor<String> targetIdCaptor;
 
   @Inject private TsunamiCli tsunamiCli;
 
@@ -108,6 +118,7 @@ public final class TsunamiCliTest {
                   install(new FakeVulnDetectorBootstrapModule());
                   install(new FakeVulnDetectorBootstrapModule2());
                   install(new RemoteServerLoaderModule(ImmutableList.of()));
+                  install(new HttpClientModule.Builder().build());
                 }
               })
           .injectMembers(this);
@@ -285,6 +296,7 @@ public final class TsunamiCliTest {
                   install(new FakePortScannerBootstrapModule());
                   install(new FailedVulnDetectorBootstrapModule());
                   install(new RemoteServerLoaderModule(ImmutableList.of()));
+                  install(new HttpClientModule.Builder().build());
                 }
               })
           .injectMembers(this);
@@ -300,6 +312,54 @@ public final class TsunamiCliTest {
     }
   }
 
+  @Test
+  public void run_whenTargetsFile_scansAndArchivesEveryTarget()
+      throws InterruptedException, ExecutionException, ScanningWorkflowException, IOException {
+    File targetsFile = tempFolder.newFile("iplist");
+    Files.asCharSink(targetsFile, UTF_8)
+        .write("# targets below this line\n" + IP_TARGET + "\n\n" + HOSTNAME_TARGET + "\n");
+
+    boolean scanSucceeded =
+        runCli(
+            ImmutableMap.of(),
+            "--targets-file=" + targetsFile.getAbsolutePath(),
+            "--max-concurrent-targets=2");
+
+    assertThat(scanSucceeded).isTrue();
+    verify(scanResultsArchiver, times(2))
+        .archive(scanResultsCaptor.capture(), targetIdCaptor.capture());
+    assertThat(targetIdCaptor.getAllValues()).containsExactly(IP_TARGET, HOSTNAME_TARGET);
+    assertThat(
+            scanResultsCaptor.getAllValues().stream()
+                .map(ScanResults::getReconnaissanceReport)
+                .map(ReconnaissanceReport::getTargetInfo)
+                .collect(toImmutableList()))
+        .containsExactly(
+            TargetInfo.newBuilder()
+                .addNetworkEndpoints(NetworkEndpointUtils.forIp(IP_TARGET))
+                .build(),
+            TargetInfo.newBuilder()
+                .addNetworkEndpoints(NetworkEndpointUtils.forHostname(HOSTNAME_TARGET))
+                .build());
+    assertThat(
+            scanResultsCaptor.getAllValues().stream()
+                .allMatch(scanResults -> scanResults.getScanStatus().equals(ScanStatus.SUCCEEDED)))
+        .isTrue();
+  }
+
+  @Test
+  public void parseScanTarget_always_detectsTargetType() {
+    TsunamiDns dns = TsunamiDns.getDefault();
+
+    assertThat(TsunamiCli.parseScanTarget(IP_TARGET, dns).getNetworkEndpoint())
+        .isEqualTo(NetworkEndpointUtils.forIp(IP_TARGET));
+    assertThat(TsunamiCli.parseScanTarget("::1", dns).getNetworkEndpoint())
+        .isEqualTo(NetworkEndpointUtils.forIp("::1"));
+    assertThat(TsunamiCli.parseScanTarget(HOSTNAME_TARGET, dns).getNetworkEndpoint())
+        .isEqualTo(NetworkEndpointUtils.forHostname(HOSTNAME_TARGET));
+    assertThat(TsunamiCli.parseScanTarget(URI_TARGET, dns).hasNetworkService()).isTrue();
+  }
+
   private static ScanFinding buildScanFindingFromDetectionReport(DetectionReport detectionReport) {
     return ScanFinding.newBuilder()
         .setTargetInfo(detectionReport.getTargetInfo())
@@ -18,13 +18,17 @@ package com.google.tsunami.main.cli.option;
 import static org.junit.Assert.assertThrows;
 
 import com.beust.jcommander.ParameterException;
+import java.io.IOException;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 /** Tests for {@link MainCliOptions}. */
 @RunWith(JUnit4.class)
 public class MainCliOptionsTest {
+  @Rule public TemporaryFolder tempFolder = new TemporaryFolder();
 
   @Test
   public void validate_whenMissingScanTarget_throwsParameterException() {
@@ -42,4 +46,44 @@ public class MainCliOptionsTest {
 
     assertThrows(ParameterException.class, cliOptions::validate);
   }
+
+  @Test
+  public void validate_whenTargetsFilePassedWithIpTarget_throwsParameterException()
+      throws IOException {
+    MainCliOptions cliOptions = new MainCliOptions();
+
+    cliOptions.ipV4Target = "127.0.0.1";
+    cliOptions.targetsFile = tempFolder.newFile().getAbsolutePath();
+
+    assertThrows(ParameterException.class, cliOptions::validate);
+  }
+
+  @Test
+  public void validate_whenTargetsFileDoesNotExist_throwsParameterException() {
+    MainCliOptions cliOptions = new MainCliOptions();
+
+    cliOptions.targetsFile = "/non/existent/targets";
+
+    assertThrows(ParameterException.class, cliOptions::validate);
+  }
+
+  @Test
+  public void validate_whenNonPositiveMaxConcurrentTargets_throwsParameterException()
+      throws IOException {
+    MainCliOptions cliOptions = new MainCliOptions();
+
+    cliOptions.targetsFile = tempFolder.newFile().getAbsolutePath();
+    cliOptions.maxConcurrentTargets = 0;
+
+    assertThrows(ParameterException.class, cliOptions::validate);
+  }
+
+  @Test
+  public void validate_whenOnlyTargetsFile_succeeds() throws IOException {
+    MainCliOptions cliOptions = new MainCliOptions();
+
+    cliOptions.targetsFile = tempFolder.newFile().getAbsolutePath();
+
+    cliOptions.validate();
+  }
 }
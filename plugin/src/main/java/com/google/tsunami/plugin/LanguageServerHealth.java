@@ -0,0 +1,126 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.plugin;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.flogger.GoogleLogger;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.health.v1.HealthCheckResponse;
+import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Serving status of a language server, shared by all the {@link RemoteVulnDetector
+ * RemoteVulnDetectors} talking to it.
+ *
+ * <p>The status is cached from a long-lived {@code Health.Watch} stream, so RPCs to the language
+ * server don't need a health check round trip. A {@code Health.Check} RPC is only sent until the
+ * stream delivers its first status, after the stream broke, or when the server does not implement
+ * {@code Watch}. A broken stream is reopened by the next status request.
+ *
+ * <p>The {@link #getGeneration() generation} changes every time the server may have been restarted
+ * or reconfigured, i.e. when the stream ends or reports the server as no longer serving. A server
+ * rejecting the stream as unimplemented keeps its generation. State derived from the server, like
+ * its plugin definitions, is only valid within one generation.
+ */
+final class LanguageServerHealth {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  private static final HealthCheckRequest HEALTH_CHECK_REQUEST =
+      HealthCheckRequest.getDefaultInstance();
+
+  private final PluginServiceClient service;
+  private volatile ServingStatus cachedStatus;
+  private volatile long generation;
+
+  // Guarded by this.
+  private boolean watching;
+  private boolean watchUnsupported;
+
+  LanguageServerHealth(PluginServiceClient service) {
+    this.service = checkNotNull(service);
+  }
+
+  /**
+   * Gets the serving status of the language server.
+   *
+   * @param checkDeadline the deadline of the health check sent when no status is cached.
+   * @return the cached status, or the status returned by a health check.
+   */
+  ServingStatus getStatus(Deadline checkDeadline)
+      throws InterruptedException, ExecutionException {
+    ServingStatus status = cachedStatus;
+    if (status != null) {
+      return status;
+    }
+    startWatching();
+    return service.checkHealthWithDeadline(HEALTH_CHECK_REQUEST, checkDeadline).get().getStatus();
+  }
+
+  /** Gets the current generation of the language server. */
+  long getGeneration() {
+    return generation;
+  }
+
+  private synchronized void startWatching() {
+    if (watching || watchUnsupported) {
+      return;
+    }
+    watching = true;
+    service.watchHealth(
+        HEALTH_CHECK_REQUEST,
+        new StreamObserver<HealthCheckResponse>() {
+          @Override
+          public void onNext(HealthCheckResponse response) {
+            onStatusChanged(response.getStatus());
+          }
+
+          @Override
+          public void onError(Throwable throwable) {
+            onWatchEnded(throwable);
+          }
+
+          @Override
+          public void onCompleted() {
+            onWatchEnded(null);
+          }
+        });
+  }
+
+  private synchronized void onStatusChanged(ServingStatus status) {
+    if (cachedStatus == ServingStatus.SERVING && status != ServingStatus.SERVING) {
+      generation++;
+    }
+    cachedStatus = status;
+  }
+
+  private synchronized void onWatchEnded(Throwable throwable) {
+    watching = false;
+    cachedStatus = null;
+    if (throwable != null
+        && Status.fromThrowable(throwable).getCode() == Status.Code.UNIMPLEMENTED) {
+      // The server was never watched, so it was not restarted either.
+      logger.atInfo().log("Language server does not support health watch, using health checks.");
+      watchUnsupported = true;
+    } else {
+      logger.atWarning().withCause(throwable).log("Language server health watch ended.");
+      generation++;
+    }
+  }
+}
@@ -19,7 +19,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.flogger.GoogleLogger;
 import com.google.inject.AbstractModule;
+import com.google.inject.Singleton;
+import com.google.inject.binder.ScopedBindingBuilder;
 import com.google.inject.multibindings.MapBinder;
+import com.google.tsunami.plugin.annotations.StatelessPlugin;
 
 /**
  * Base class for bootstrapping a {@link TsunamiPlugin}.
@@ -49,14 +52,20 @@ public abstract class PluginBootstrapModule extends AbstractModule {
   /**
    * Register a {@link TsunamiPlugin} to Tsunami's plugin module using Guice's multibinding feature.
    *
+   * <p>Plugins annotated by {@link StatelessPlugin} are registered as singletons.
+   *
    * @param tsunamiPluginClazz the {@link Class} for the {@link TsunamiPlugin} to be registered.
    */
   protected final void registerPlugin(Class<? extends TsunamiPlugin> tsunamiPluginClazz) {
     checkNotNull(tsunamiPluginClazz);
 
-    tsunamiPluginBinder
-        .addBinding(PluginDefinition.forPlugin(tsunamiPluginClazz))
-        .to(tsunamiPluginClazz);
+    ScopedBindingBuilder pluginBinding =
+        tsunamiPluginBinder
+            .addBinding(PluginDefinition.forPlugin(tsunamiPluginClazz))
+            .to(tsunamiPluginClazz);
+    if (tsunamiPluginClazz.isAnnotationPresent(StatelessPlugin.class)) {
+      pluginBinding.in(Singleton.class);
+    }
     logger.atInfo().log("Plugin %s is registered.", tsunamiPluginClazz);
   }
 }
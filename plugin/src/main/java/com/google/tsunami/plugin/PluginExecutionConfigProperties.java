@@ -0,0 +1,39 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.plugin;
+
+import com.google.tsunami.common.config.annotations.ConfigProperties;
+import com.google.tsunami.plugin.annotations.PluginInfo;
+import java.util.Map;
+
+/**
+ * Configuration properties for executing Tsunami plugins.
+ *
+ * <p>All timeouts are in seconds and a non-positive value means no timeout. For each plugin, the
+ * first value set among {@link #pluginTimeoutSeconds}, {@link PluginInfo#timeoutSeconds}, {@link
+ * #pluginTypeTimeoutSeconds} and {@link #defaultTimeoutSeconds} is used.
+ */
+@ConfigProperties("plugin.execution")
+public final class PluginExecutionConfigProperties {
+  /** Timeout applied to plugins without any more specific timeout. */
+  Integer defaultTimeoutSeconds;
+
+  /** Timeouts keyed by {@link PluginType} name, e.g. {@code VULN_DETECTION}. */
+  Map<String, Integer> pluginTypeTimeoutSeconds;
+
+  /** Timeouts keyed by plugin name, i.e. {@link PluginInfo#name}. */
+  Map<String, Integer> pluginTimeoutSeconds;
+}
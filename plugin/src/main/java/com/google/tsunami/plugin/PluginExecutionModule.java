@@ -16,6 +16,7 @@
 package com.google.tsunami.plugin;
 
 import com.google.inject.AbstractModule;
+import com.google.tsunami.common.concurrent.ScheduledThreadPoolModule;
 import com.google.tsunami.common.concurrent.ThreadPoolModule;
 import java.time.Duration;
 
@@ -37,5 +38,14 @@ public final class PluginExecutionModule extends AbstractModule {
             .setPriority(Thread.NORM_PRIORITY)
             .setAnnotation(PluginExecutionThreadPool.class)
             .build());
+
+    install(
+        new ScheduledThreadPoolModule.Builder()
+            .setName("PluginExecutionDeadline")
+            .setSize(1)
+            .setDaemon(true)
+            .setPriority(Thread.NORM_PRIORITY)
+            .setAnnotation(PluginExecutionDeadlineScheduler.class)
+            .build());
   }
 }
@@ -23,25 +23,45 @@ import com.google.common.flogger.GoogleLogger;
 import com.google.common.util.concurrent.FluentFuture;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.tsunami.plugin.PluginExecutionResult.ExecutionStatus;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.inject.Inject;
 
 class PluginExecutorImpl implements PluginExecutor {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
 
-  // TODO(b/145315535): use ListeningScheduledExecutorService so that deadline can be enforced.
   private final ListeningExecutorService pluginExecutionThreadPool;
+  private final ScheduledExecutorService deadlineScheduler;
+  private final PluginExecutionConfigProperties configProperties;
   private final Stopwatch executionStopwatch;
 
   @Inject
   PluginExecutorImpl(
-      @PluginExecutionThreadPool ListeningExecutorService pluginExecutionThreadPool) {
-    this(pluginExecutionThreadPool, Stopwatch.createUnstarted());
+      @PluginExecutionThreadPool ListeningExecutorService pluginExecutionThreadPool,
+      @PluginExecutionDeadlineScheduler ScheduledExecutorService deadlineScheduler,
+      PluginExecutionConfigProperties configProperties) {
+    this(
+        pluginExecutionThreadPool,
+        deadlineScheduler,
+        configProperties,
+        Stopwatch.createUnstarted());
   }
 
   PluginExecutorImpl(
-      ListeningExecutorService pluginExecutionThreadPool, Stopwatch executionStopwatch) {
+      ListeningExecutorService pluginExecutionThreadPool,
+      ScheduledExecutorService deadlineScheduler,
+      PluginExecutionConfigProperties configProperties,
+      Stopwatch executionStopwatch) {
     this.pluginExecutionThreadPool = checkNotNull(pluginExecutionThreadPool);
+    this.deadlineScheduler = checkNotNull(deadlineScheduler);
+    this.configProperties = checkNotNull(configProperties);
     this.executionStopwatch = checkNotNull(executionStopwatch);
   }
 
@@ -49,21 +69,75 @@ class PluginExecutorImpl implements PluginExecutor {
   public <T> ListenableFuture<PluginExecutionResult<T>> executeAsync(
       PluginExecutorConfig<T> executorConfig) {
     // Executes the core plugin logic within the thread pool.
-    return FluentFuture.from(
-            pluginExecutionThreadPool.submit(
-                () -> {
-                  executionStopwatch.start();
-                  return executorConfig.pluginExecutionLogic().call();
-                }))
+    SettableFuture<Void> executionStarted = SettableFuture.create();
+    ListenableFuture<T> execution =
+        pluginExecutionThreadPool.submit(
+            () -> {
+              executionStopwatch.start();
+              executionStarted.set(null);
+              return executorConfig.pluginExecutionLogic().call();
+            });
+
+    // The deadline only starts once the plugin leaves the queue of the thread pool.
+    Optional<Duration> executionTimeout =
+        getExecutionTimeout(executorConfig.matchedPlugin().pluginDefinition());
+    AtomicBoolean timedOut = new AtomicBoolean(false);
+    executionTimeout.ifPresent(
+        timeout ->
+            executionStarted.addListener(
+                () -> scheduleDeadline(execution, timeout, timedOut), directExecutor()));
+
+    return FluentFuture.from(execution)
         // If execution succeeded, build successful execution result.
         .transform(resultData -> buildSucceededResult(resultData, executorConfig), directExecutor())
-        // If execution failed, build failed execution result.
+        // If execution failed or was cancelled by the deadline, build failed execution result.
         .catching(
             Throwable.class,
-            exception -> buildFailedResult(exception, executorConfig),
+            exception ->
+                timedOut.get()
+                    ? buildTimedOutResult(executionTimeout.get(), executorConfig)
+                    : buildFailedResult(exception, executorConfig),
             directExecutor());
   }
 
+  private void scheduleDeadline(
+      ListenableFuture<?> execution, Duration timeout, AtomicBoolean timedOut) {
+    ScheduledFuture<?> deadline =
+        deadlineScheduler.schedule(
+            () -> {
+              if (!execution.isDone()) {
+                timedOut.set(true);
+                // Interrupts the worker thread so that the plugin stops its work.
+                execution.cancel(true);
+              }
+            },
+            timeout.toMillis(),
+            TimeUnit.MILLISECONDS);
+    execution.addListener(() -> deadline.cancel(false), directExecutor());
+  }
+
+  private Optional<Duration> getExecutionTimeout(PluginDefinition pluginDefinition) {
+    Integer timeoutSeconds =
+        getOrNull(configProperties.pluginTimeoutSeconds, pluginDefinition.name());
+    if (timeoutSeconds == null && pluginDefinition.pluginInfo().timeoutSeconds() > 0) {
+      timeoutSeconds = pluginDefinition.pluginInfo().timeoutSeconds();
+    }
+    if (timeoutSeconds == null) {
+      timeoutSeconds =
+          getOrNull(configProperties.pluginTypeTimeoutSeconds, pluginDefinition.type().name());
+    }
+    if (timeoutSeconds == null) {
+      timeoutSeconds = configProperties.defaultTimeoutSeconds;
+    }
+    return timeoutSeconds == null || timeoutSeconds <= 0
+        ? Optional.empty()
+        : Optional.of(Duration.ofSeconds(timeoutSeconds));
+  }
+
+  private static Integer getOrNull(Map<String, Integer> timeouts, String key) {
+    return timeouts == null ? null : timeouts.get(key);
+  }
+
   private <T> PluginExecutionResult<T> buildSucceededResult(
       T resultData, PluginExecutorConfig<T> executorConfig) {
     if (executionStopwatch.isRunning()) {
@@ -92,6 +166,25 @@ class PluginExecutorImpl implements PluginExecutor {
         .build();
   }
 
+  private <T> PluginExecutionResult<T> buildTimedOutResult(
+      Duration timeout, PluginExecutorConfig<T> executorConfig) {
+    logger.atWarning().log(
+        "Plugin '%s' timed out after %s.", executorConfig.matchedPlugin().pluginId(), timeout);
+    if (executionStopwatch.isRunning()) {
+      executionStopwatch.stop();
+    }
+    return PluginExecutionResult.<T>builder()
+        .setExecutionStatus(ExecutionStatus.TIMED_OUT)
+        .setExecutionStopwatch(executionStopwatch)
+        .setException(
+            new PluginExecutionException(
+                String.format(
+                    "Plugin execution on '%s' timed out after %s.",
+                    executorConfig.matchedPlugin().pluginId(), timeout)))
+        .setExecutorConfig(executorConfig)
+        .build();
+  }
+
   private static <T> PluginExecutionException wrapException(
       Throwable t, PluginExecutorConfig<T> executorConfig) {
     if (t instanceof PluginExecutionException) {
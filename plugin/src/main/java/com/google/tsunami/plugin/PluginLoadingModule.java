@@ -20,87 +20,77 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.flogger.GoogleLogger;
 import com.google.inject.AbstractModule;
-import io.github.classgraph.AnnotationClassRef;
-import io.github.classgraph.ClassInfo;
-import io.github.classgraph.ClassInfoList;
+import com.google.tsunami.common.reflection.TsunamiClassIndex;
+import com.google.tsunami.plugin.annotations.PluginInfo;
 import io.github.classgraph.ScanResult;
 import java.lang.reflect.Constructor;
 
 /**
  * A Guice module that loads all {@link TsunamiPlugin TsunamiPlugins} at runtime.
  *
- * <p>This module relies on the {@link io.github.classgraph.ClassGraph} scan results to identify all
- * installed {@link TsunamiPlugin TsunamiPlugins} and bootstrap each {@link TsunamiPlugin plugin}
- * using the corresponding {@link PluginBootstrapModule} instantiated via reflection.
+ * <p>This module relies on the {@link TsunamiClassIndex} to identify all installed {@link
+ * TsunamiPlugin TsunamiPlugins} and bootstrap each {@link TsunamiPlugin plugin} using the
+ * corresponding {@link PluginBootstrapModule} instantiated via reflection.
  */
 public final class PluginLoadingModule extends AbstractModule {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
-  private static final String TSUNAMI_PLUGIN_INTERFACE = "com.google.tsunami.plugin.TsunamiPlugin";
-  private static final String PLUGIN_INFO_ANNOTATION =
-      "com.google.tsunami.plugin.annotations.PluginInfo";
-  private static final String BOOTSTRAP_MODULE_PARAM_NAME = "bootstrapModule";
 
   private final boolean bootstrapModuleAlwaysAccessible;
-  private final ScanResult classScanResult;
+  private final TsunamiClassIndex classIndex;
 
   public PluginLoadingModule(ScanResult classScanResult) {
     this(false, classScanResult);
   }
 
+  public PluginLoadingModule(TsunamiClassIndex classIndex) {
+    this(false, classIndex);
+  }
+
   @VisibleForTesting
   PluginLoadingModule(boolean bootstrapModuleAlwaysAccessible, ScanResult classScanResult) {
+    this(bootstrapModuleAlwaysAccessible, TsunamiClassIndex.fromScanResult(classScanResult));
+  }
+
+  private PluginLoadingModule(
+      boolean bootstrapModuleAlwaysAccessible, TsunamiClassIndex classIndex) {
     this.bootstrapModuleAlwaysAccessible = bootstrapModuleAlwaysAccessible;
-    this.classScanResult = checkNotNull(classScanResult);
+    this.classIndex = checkNotNull(classIndex);
   }
 
   @Override
   protected void configure() {
-    ClassInfoList tsunamiPluginClasses =
-        classScanResult
-            .getClassesImplementing(TSUNAMI_PLUGIN_INTERFACE)
-            .filter(
-                classInfo ->
-                    !classInfo.isInterface()
-                        && !classInfo.implementsInterface(
-                            "com.google.tsunami.plugin.RemoteVulnDetector"));
-    for (ClassInfo tsunamiPluginClass : tsunamiPluginClasses) {
+    for (Class<?> tsunamiPluginClass : classIndex.getPluginClasses()) {
       logger.atInfo().log("Found plugin class: %s", tsunamiPluginClass.getName());
       // PluginInfo annotation is required for TsunamiPlugin.
-      if (!tsunamiPluginClass.hasAnnotation(PLUGIN_INFO_ANNOTATION)) {
+      PluginInfo pluginInfo = tsunamiPluginClass.getAnnotation(PluginInfo.class);
+      if (pluginInfo == null) {
         throw new IllegalStateException(
             String.format(
                 "Tsunami plugin '%s' must be annotated with PluginInfo",
                 tsunamiPluginClass.getSimpleName()));
-        }
-      install(newPluginBootstrapModule(tsunamiPluginClass));
+      }
+      install(newPluginBootstrapModule(tsunamiPluginClass, pluginInfo));
     }
   }
 
-  private PluginBootstrapModule newPluginBootstrapModule(ClassInfo tsunamiPluginClass) {
+  private PluginBootstrapModule newPluginBootstrapModule(
+      Class<?> tsunamiPluginClass, PluginInfo pluginInfo) {
     // Retrieves the bootstrap module from the PluginInfo annotation.
-    Object bootstrapModuleValue =
-        tsunamiPluginClass
-            .getAnnotationInfo(PLUGIN_INFO_ANNOTATION)
-            .getParameterValues()
-            .getValue(BOOTSTRAP_MODULE_PARAM_NAME);
-    if (!(bootstrapModuleValue instanceof AnnotationClassRef)) {
-      throw new AssertionError(
-          String.format(
-              "Invalid bootstrapModule parameter type for Tsunami plugin '%s'",
-              tsunamiPluginClass.getSimpleName()));
-    }
-    ClassInfo bootstrapModuleClassInfo = ((AnnotationClassRef) bootstrapModuleValue).getClassInfo();
-    if (bootstrapModuleClassInfo == null) {
+    Class<? extends PluginBootstrapModule> bootstrapModuleClass;
+    try {
+      bootstrapModuleClass = pluginInfo.bootstrapModule();
+    } catch (TypeNotPresentException e) {
       throw new AssertionError(
           String.format(
               "bootstrapModule class for plugin '%s' not found in classpath",
-              tsunamiPluginClass.getSimpleName()));
+              tsunamiPluginClass.getSimpleName()),
+          e);
     }
 
     // Instantiate the bootstrap module via reflection.
     try {
       Constructor<? extends PluginBootstrapModule> pluginBootstrapModuleConstructor =
-          bootstrapModuleClassInfo.loadClass(PluginBootstrapModule.class).getDeclaredConstructor();
+          bootstrapModuleClass.getDeclaredConstructor();
       if (bootstrapModuleAlwaysAccessible) {
         pluginBootstrapModuleConstructor.setAccessible(true);
       }
@@ -110,7 +100,7 @@ public final class PluginLoadingModule extends AbstractModule {
           String.format(
               "PluginBootstrapModule '%s' for plugin '%s' must be publicly constructable via a"
                   + " no-argument constructor",
-              bootstrapModuleClassInfo.getSimpleName(), tsunamiPluginClass.getSimpleName()),
+              bootstrapModuleClass.getSimpleName(), tsunamiPluginClass.getSimpleName()),
           e);
     }
   }
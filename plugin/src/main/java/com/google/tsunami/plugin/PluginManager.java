@@ -15,20 +15,20 @@
  */
 package com.google.tsunami.plugin;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.tsunami.common.data.NetworkServiceUtils.isWebService;
-import static java.util.Arrays.stream;
 
 import com.google.auto.value.AutoValue;
-import com.google.common.base.Ascii;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Streams;
+import com.google.tsunami.plugin.PluginMatchingIndex.RemotePluginIndex;
 import com.google.tsunami.proto.MatchedPlugin;
 import com.google.tsunami.proto.NetworkService;
 import com.google.tsunami.proto.ReconnaissanceReport;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Inject;
 import javax.inject.Provider;
 
@@ -38,10 +38,14 @@ import javax.inject.Provider;
  */
 public class PluginManager {
   private final Map<PluginDefinition, Provider<TsunamiPlugin>> tsunamiPlugins;
+  private final PluginMatchingIndex pluginMatchingIndex;
+  private final Map<PluginDefinition, RemotePluginIndex> remotePluginIndexes =
+      new ConcurrentHashMap<>();
 
   @Inject
   PluginManager(Map<PluginDefinition, Provider<TsunamiPlugin>> tsunamiPlugins) {
     this.tsunamiPlugins = tsunamiPlugins;
+    this.pluginMatchingIndex = PluginMatchingIndex.build(tsunamiPlugins.keySet());
   }
 
   /**
@@ -50,13 +54,12 @@ public class PluginManager {
    * @return a list of all the installed {@link PortScanner} plugins.
    */
   public ImmutableList<PluginMatchingResult<PortScanner>> getPortScanners() {
-    return tsunamiPlugins.entrySet().stream()
-        .filter(entry -> entry.getKey().type().equals(PluginType.PORT_SCAN))
+    return pluginMatchingIndex.getPortScanners().stream()
         .map(
-            entry ->
+            pluginDefinition ->
                 PluginMatchingResult.<PortScanner>builder()
-                    .setPluginDefinition(entry.getKey())
-                    .setTsunamiPlugin((PortScanner) entry.getValue().get())
+                    .setPluginDefinition(pluginDefinition)
+                    .setTsunamiPluginProvider(getPluginProvider(pluginDefinition))
                     .build())
         .collect(toImmutableList());
   }
@@ -80,163 +83,100 @@ public class PluginManager {
    */
   public Optional<PluginMatchingResult<ServiceFingerprinter>> getServiceFingerprinter(
       NetworkService networkService) {
-    return tsunamiPlugins.entrySet().stream()
-        .filter(entry -> entry.getKey().type().equals(PluginType.SERVICE_FINGERPRINT))
-        .filter(entry -> hasMatchingServiceName(networkService, entry.getKey()))
+    return pluginMatchingIndex
+        .getServiceFingerprinter(networkService)
         .map(
-            entry ->
+            pluginDefinition ->
                 PluginMatchingResult.<ServiceFingerprinter>builder()
-                    .setPluginDefinition(entry.getKey())
-                    .setTsunamiPlugin((ServiceFingerprinter) entry.getValue().get())
+                    .setPluginDefinition(pluginDefinition)
+                    .setTsunamiPluginProvider(getPluginProvider(pluginDefinition))
                     .addMatchedService(networkService)
-                    .build())
-        .findFirst();
+                    .build());
   }
 
   public ImmutableList<PluginMatchingResult<VulnDetector>> getVulnDetectors(
       ReconnaissanceReport reconnaissanceReport) {
-    return tsunamiPlugins.entrySet().stream()
-        .filter(entry -> isVulnDetector(entry.getKey()))
-        .map(entry -> matchAllVulnDetectors(entry.getKey(), entry.getValue(), reconnaissanceReport))
-        .flatMap(Streams::stream)
+    return pluginMatchingIndex
+        .getVulnDetectors(reconnaissanceReport.getNetworkServicesList())
+        .entrySet()
+        .stream()
+        .map(
+            entry ->
+                entry.getKey().type().equals(PluginType.REMOTE_VULN_DETECTION)
+                    ? matchRemoteVulnDetectors(
+                        entry.getKey(), getPluginProvider(entry.getKey()), reconnaissanceReport)
+                    : PluginMatchingResult.<VulnDetector>builder()
+                        .setPluginDefinition(entry.getKey())
+                        .setTsunamiPluginProvider(getPluginProvider(entry.getKey()))
+                        .addAllMatchedServices(entry.getValue())
+                        .build())
         .collect(toImmutableList());
   }
 
-  private static boolean isVulnDetector(PluginDefinition pluginDefinition) {
-    return pluginDefinition.type().equals(PluginType.VULN_DETECTION)
-        || pluginDefinition.type().equals(PluginType.REMOTE_VULN_DETECTION);
-  }
-
-  private static Optional<PluginMatchingResult<VulnDetector>> matchAllVulnDetectors(
-      PluginDefinition pluginDefinition,
-      Provider<TsunamiPlugin> vulnDetectorProvider,
-      ReconnaissanceReport reconnaissanceReport) {
-    if (pluginDefinition.type().equals(PluginType.REMOTE_VULN_DETECTION)) {
-      return matchRemoteVulnDetectors(pluginDefinition, vulnDetectorProvider, reconnaissanceReport);
-    }
-    return matchVulnDetectors(pluginDefinition, vulnDetectorProvider, reconnaissanceReport);
+  // Plugins are only instantiated when first used, i.e. when the matched plugin gets executed.
+  @SuppressWarnings("unchecked")
+  private <T extends TsunamiPlugin> Provider<T> getPluginProvider(
+      PluginDefinition pluginDefinition) {
+    Provider<TsunamiPlugin> tsunamiPlugin = tsunamiPlugins.get(pluginDefinition);
+    return () -> (T) tsunamiPlugin.get();
   }
 
-  private static Optional<PluginMatchingResult<VulnDetector>> matchVulnDetectors(
+  private PluginMatchingResult<VulnDetector> matchRemoteVulnDetectors(
       PluginDefinition pluginDefinition,
-      Provider<TsunamiPlugin> vulnDetectorProvider,
+      Provider<RemoteVulnDetector> tsunamiPlugin,
       ReconnaissanceReport reconnaissanceReport) {
-    List<NetworkService> matchedNetworkServices;
-    if (!pluginDefinition.targetServiceName().isPresent()
-        && !pluginDefinition.targetSoftware().isPresent()
-        && !pluginDefinition.isForWebService()) {
-      // No filtering annotation applied, just match all network services from reconnaissance.
-      matchedNetworkServices = reconnaissanceReport.getNetworkServicesList();
-    } else {
-      // At least one filtering annotation applied, check services to see if any one matches.
-      matchedNetworkServices =
-          reconnaissanceReport.getNetworkServicesList().stream()
-              .filter(
-                  networkService ->
-                      hasMatchingServiceName(networkService, pluginDefinition)
-                          || hasMatchingSoftware(networkService, pluginDefinition))
-              .collect(toImmutableList());
-    }
-
-    return matchedNetworkServices.isEmpty()
-        ? Optional.empty()
-        : Optional.of(
-            PluginMatchingResult.<VulnDetector>builder()
-                .setPluginDefinition(pluginDefinition)
-                .setTsunamiPlugin((VulnDetector) vulnDetectorProvider.get())
-                .addAllMatchedServices(matchedNetworkServices)
-                .build());
+    return PluginMatchingResult.<VulnDetector>builder()
+        .setTsunamiPluginProvider(
+            () ->
+                addMatchedRemotePlugins(
+                    pluginDefinition, tsunamiPlugin.get(), reconnaissanceReport))
+        // PluginDefinition class for the RemoteVulnDetector.
+        .setPluginDefinition(pluginDefinition)
+        .addAllMatchedServices(reconnaissanceReport.getNetworkServicesList())
+        .build();
   }
 
-  private static Optional<PluginMatchingResult<VulnDetector>> matchRemoteVulnDetectors(
+  private RemoteVulnDetector addMatchedRemotePlugins(
       PluginDefinition pluginDefinition,
-      Provider<TsunamiPlugin> tsunamiPlugin,
+      RemoteVulnDetector remoteVulnDetector,
       ReconnaissanceReport reconnaissanceReport) {
-    var remoteVulnDetector = (RemoteVulnDetector) tsunamiPlugin.get();
-    var builder =
-        PluginMatchingResult.<VulnDetector>builder()
-            .setTsunamiPlugin(remoteVulnDetector)
-            // PluginDefinition class for the RemoteVulnDetector.
-            .setPluginDefinition(pluginDefinition)
-            .addAllMatchedServices(reconnaissanceReport.getNetworkServicesList());
-    for (com.google.tsunami.proto.PluginDefinition remotePluginDefinition :
-        remoteVulnDetector.getAllPlugins()) {
-      var matchedPluginBuilder = MatchedPlugin.newBuilder();
-      if (!remotePluginDefinition.hasTargetServiceName()
-          && !remotePluginDefinition.hasTargetSoftware()
-          && !remotePluginDefinition.getForWebService()) {
-        matchedPluginBuilder
-            .setPlugin(remotePluginDefinition)
-            .addAllServices(reconnaissanceReport.getNetworkServicesList());
-      } else {
-        matchedPluginBuilder
-            .setPlugin(remotePluginDefinition)
-            .addAllServices(
-                reconnaissanceReport.getNetworkServicesList().stream()
-                    .filter(
-                        networkService ->
-                            hasMatchingServiceName(networkService, remotePluginDefinition)
-                                || hasMatchingSoftware(networkService, remotePluginDefinition))
-                    .collect(toImmutableList()));
-      }
-      remoteVulnDetector.addMatchedPluginToDetect(matchedPluginBuilder.build());
+    for (MatchedPlugin matchedPlugin :
+        getRemotePluginIndex(pluginDefinition, remoteVulnDetector)
+            .match(reconnaissanceReport.getNetworkServicesList())) {
+      remoteVulnDetector.addMatchedPluginToDetect(matchedPlugin);
     }
-    return Optional.of(builder.build());
-  }
-
-  private static boolean hasMatchingServiceName(
-      NetworkService networkService, PluginDefinition pluginDefinition) {
-    String serviceName = networkService.getServiceName();
-    boolean hasServiceNameMatch =
-        pluginDefinition.targetServiceName().isPresent()
-            && (serviceName.isEmpty()
-                || stream(pluginDefinition.targetServiceName().get().value())
-                    .anyMatch(
-                        targetServiceName ->
-                            Ascii.equalsIgnoreCase(targetServiceName, serviceName)));
-    boolean hasWebServiceMatch = pluginDefinition.isForWebService() && isWebService(networkService);
-    return hasServiceNameMatch || hasWebServiceMatch;
-  }
-
-  private static boolean hasMatchingServiceName(
-      NetworkService networkService, com.google.tsunami.proto.PluginDefinition pluginDefinition) {
-    String serviceName = networkService.getServiceName();
-    boolean hasServiceNameMatch =
-        pluginDefinition.hasTargetServiceName()
-            && (serviceName.isEmpty()
-                || pluginDefinition.getTargetServiceName().getValueList().stream()
-                    .anyMatch(
-                        targetServiceName ->
-                            Ascii.equalsIgnoreCase(targetServiceName, serviceName)));
-    boolean hasWebServiceMatch =
-        pluginDefinition.getForWebService() && isWebService(networkService);
-    return hasServiceNameMatch || hasWebServiceMatch;
+    return remoteVulnDetector;
   }
 
-  private static boolean hasMatchingSoftware(
-      NetworkService networkService, PluginDefinition pluginDefinition) {
-    String softwareName = networkService.getSoftware().getName();
-    return pluginDefinition.targetSoftware().isPresent()
-        && (softwareName.isEmpty()
-            || Ascii.equalsIgnoreCase(
-                pluginDefinition.targetSoftware().get().name(), softwareName));
+  // Language servers cache their plugin definitions, so the index is only rebuilt when they change.
+  private RemotePluginIndex getRemotePluginIndex(
+      PluginDefinition pluginDefinition, RemoteVulnDetector remoteVulnDetector) {
+    ImmutableList<com.google.tsunami.proto.PluginDefinition> remotePluginDefinitions =
+        remoteVulnDetector.getAllPlugins();
+    return remotePluginIndexes.compute(
+        pluginDefinition,
+        (unused, remotePluginIndex) ->
+            remotePluginIndex != null
+                    && remotePluginIndex.getPluginDefinitions().equals(remotePluginDefinitions)
+                ? remotePluginIndex
+                : RemotePluginIndex.build(remotePluginDefinitions));
   }
 
-  private static boolean hasMatchingSoftware(
-      NetworkService networkService, com.google.tsunami.proto.PluginDefinition pluginDefinition) {
-    String softwareName = networkService.getSoftware().getName();
-    return pluginDefinition.hasTargetSoftware()
-        && (softwareName.isEmpty()
-            || Ascii.equalsIgnoreCase(
-                pluginDefinition.getTargetSoftware().getName(), softwareName));
-  }
-
-  /** Matched {@link TsunamiPlugin}s based on certain criteria. */
+  /**
+   * Matched {@link TsunamiPlugin}s based on certain criteria.
+   *
+   * <p>The matched plugin is instantiated on the first call to {@link #tsunamiPlugin()}, so plugins
+   * that are matched but never executed don't pay for building their object graph.
+   */
   @AutoValue
   public abstract static class PluginMatchingResult<T extends TsunamiPlugin> {
     public abstract PluginDefinition pluginDefinition();
 
-    public abstract T tsunamiPlugin();
+    abstract Supplier<T> tsunamiPluginSupplier();
+
+    public T tsunamiPlugin() {
+      return tsunamiPluginSupplier().get();
+    }
 
     public abstract ImmutableList<NetworkService> matchedServices();
 
@@ -253,7 +193,17 @@ public class PluginManager {
     @AutoValue.Builder
     public abstract static class Builder<T extends TsunamiPlugin> {
       public abstract Builder<T> setPluginDefinition(PluginDefinition value);
-      public abstract Builder<T> setTsunamiPlugin(T value);
+      abstract Builder<T> setTsunamiPluginSupplier(Supplier<T> value);
+
+      public Builder<T> setTsunamiPlugin(T value) {
+        return setTsunamiPluginSupplier(Suppliers.ofInstance(checkNotNull(value)));
+      }
+
+      /** Sets the provider of the plugin, only called once on the first use of the plugin. */
+      public Builder<T> setTsunamiPluginProvider(Provider<? extends T> provider) {
+        checkNotNull(provider);
+        return setTsunamiPluginSupplier(Suppliers.memoize(provider::get));
+      }
 
       abstract ImmutableList.Builder<NetworkService> matchedServicesBuilder();
       public Builder<T> addMatchedService(NetworkService networkService) {
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.plugin;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.tsunami.common.data.NetworkServiceUtils.isWebService;
+
+import com.google.common.base.Ascii;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.tsunami.proto.MatchedPlugin;
+import com.google.tsunami.proto.NetworkService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * An immutable index over the definitions of all installed plugins, used for matching plugins
+ * against {@link NetworkService}s with a few hash lookups per service.
+ *
+ * <p>Matching follows the semantics of the filtering annotations: a plugin matches a service when
+ * the service name or software name is one of its targets (ignoring case), when the plugin targets
+ * web services and the service is a web service, or when the plugin has no filtering annotation at
+ * all. A service without a service (resp. software) name matches every plugin targeting some
+ * service (resp. software). Matched plugins are always returned in installation order.
+ */
+final class PluginMatchingIndex {
+  private final ImmutableList<PluginDefinition> portScanners;
+  private final PluginsByTarget<PluginDefinition> fingerprinters;
+  private final PluginsByTarget<PluginDefinition> vulnDetectors;
+  // Positions of the remote detectors in vulnDetectors, matched against all services.
+  private final ImmutableList<Integer> remoteVulnDetectors;
+
+  private PluginMatchingIndex(
+      ImmutableList<PluginDefinition> portScanners,
+      PluginsByTarget<PluginDefinition> fingerprinters,
+      PluginsByTarget<PluginDefinition> vulnDetectors,
+      ImmutableList<Integer> remoteVulnDetectors) {
+    this.portScanners = portScanners;
+    this.fingerprinters = fingerprinters;
+    this.vulnDetectors = vulnDetectors;
+    this.remoteVulnDetectors = remoteVulnDetectors;
+  }
+
+  /**
+   * Builds the index for the given plugins.
+   *
+   * @param pluginDefinitions definitions of all installed plugins, in installation order.
+   * @return the index over all the given plugins.
+   */
+  static PluginMatchingIndex build(Collection<PluginDefinition> pluginDefinitions) {
+    ImmutableList<PluginDefinition> vulnDetectors =
+        pluginDefinitions.stream()
+            .filter(
+                pluginDefinition ->
+                    pluginDefinition.type().equals(PluginType.VULN_DETECTION)
+                        || pluginDefinition.type().equals(PluginType.REMOTE_VULN_DETECTION))
+            .collect(toImmutableList());
+    ImmutableList.Builder<Integer> remoteVulnDetectors = ImmutableList.builder();
+    for (int i = 0; i < vulnDetectors.size(); i++) {
+      if (vulnDetectors.get(i).type().equals(PluginType.REMOTE_VULN_DETECTION)) {
+        remoteVulnDetectors.add(i);
+      }
+    }
+    return new PluginMatchingIndex(
+        pluginDefinitions.stream()
+            .filter(pluginDefinition -> pluginDefinition.type().equals(PluginType.PORT_SCAN))
+            .collect(toImmutableList()),
+        PluginsByTarget.build(
+            pluginDefinitions.stream()
+                .filter(
+                    pluginDefinition ->
+                        pluginDefinition.type().equals(PluginType.SERVICE_FINGERPRINT))
+                .collect(toImmutableList()),
+            PluginMatchingIndex::getTargets),
+        PluginsByTarget.build(vulnDetectors, PluginMatchingIndex::getTargets),
+        remoteVulnDetectors.build());
+  }
+
+  ImmutableList<PluginDefinition> getPortScanners() {
+    return portScanners;
+  }
+
+  /**
+   * Finds the first installed {@link ServiceFingerprinter} for the given network service. Only the
+   * service name and web service filters apply to fingerprinters.
+   */
+  Optional<PluginDefinition> getServiceFingerprinter(NetworkService networkService) {
+    Set<Integer> matches = new HashSet<>();
+    fingerprinters.addServiceNameMatches(networkService, matches);
+    return matches.stream().min(Integer::compare).map(fingerprinters.plugins::get);
+  }
+
+  /**
+   * Matches all installed VulnDetectors against the given network services.
+   *
+   * @param networkServices the network services to match against, usually from the reconnaissance
+   *     report of a scan.
+   * @return the matched detectors in installation order, mapped to their matched services. Remote
+   *     detectors are always matched against all the given services.
+   */
+  ImmutableMap<PluginDefinition, ImmutableList<NetworkService>> getVulnDetectors(
+      List<NetworkService> networkServices) {
+    SortedMap<Integer, ImmutableList.Builder<NetworkService>> matchedServices = new TreeMap<>();
+    for (NetworkService networkService : networkServices) {
+      Set<Integer> matches = new HashSet<>();
+      vulnDetectors.addServiceNameMatches(networkService, matches);
+      vulnDetectors.addSoftwareMatches(networkService, matches);
+      matches.addAll(vulnDetectors.catchAll);
+      for (int match : matches) {
+        matchedServices
+            .computeIfAbsent(match, unused -> ImmutableList.builder())
+            .add(networkService);
+      }
+    }
+    for (int remoteVulnDetector : remoteVulnDetectors) {
+      matchedServices.putIfAbsent(remoteVulnDetector, ImmutableList.builder());
+    }
+
+    ImmutableMap.Builder<PluginDefinition, ImmutableList<NetworkService>> result =
+        ImmutableMap.builder();
+    matchedServices.forEach(
+        (position, services) -> result.put(vulnDetectors.plugins.get(position), services.build()));
+    return result.build();
+  }
+
+  private static Targets getTargets(PluginDefinition pluginDefinition) {
+    return new Targets(
+        pluginDefinition
+            .targetServiceName()
+            .map(targetServiceName -> ImmutableList.copyOf(targetServiceName.value())),
+        pluginDefinition.targetSoftware().map(targetSoftware -> targetSoftware.name()),
+        pluginDefinition.isForWebService());
+  }
+
+  /**
+   * An immutable index over the plugins of a single language server, following the same matching
+   * semantics as the installed plugins.
+   */
+  static final class RemotePluginIndex {
+    private final PluginsByTarget<com.google.tsunami.proto.PluginDefinition> plugins;
+
+    private RemotePluginIndex(PluginsByTarget<com.google.tsunami.proto.PluginDefinition> plugins) {
+      this.plugins = plugins;
+    }
+
+    /**
+     * Builds the index for the given remote plugins.
+     *
+     * @param pluginDefinitions definitions of all plugins served by a language server.
+     * @return the index over all the given plugins.
+     */
+    static RemotePluginIndex build(
+        ImmutableList<com.google.tsunami.proto.PluginDefinition> pluginDefinitions) {
+      return new RemotePluginIndex(
+          PluginsByTarget.build(pluginDefinitions, RemotePluginIndex::getTargets));
+    }
+
+    ImmutableList<com.google.tsunami.proto.PluginDefinition> getPluginDefinitions() {
+      return plugins.plugins;
+    }
+
+    /**
+     * Matches all the remote plugins against the given network services.
+     *
+     * @param networkServices the network services to match against.
+     * @return every remote plugin in order, including the ones without any matched service.
+     */
+    ImmutableList<MatchedPlugin> match(List<NetworkService> networkServices) {
+      List<MatchedPlugin.Builder> matchedPlugins = new ArrayList<>();
+      for (com.google.tsunami.proto.PluginDefinition pluginDefinition : plugins.plugins) {
+        matchedPlugins.add(MatchedPlugin.newBuilder().setPlugin(pluginDefinition));
+      }
+      for (NetworkService networkService : networkServices) {
+        Set<Integer> matches = new HashSet<>();
+        plugins.addServiceNameMatches(networkService, matches);
+        plugins.addSoftwareMatches(networkService, matches);
+        matches.addAll(plugins.catchAll);
+        for (int match : matches) {
+          matchedPlugins.get(match).addServices(networkService);
+        }
+      }
+      return matchedPlugins.stream().map(MatchedPlugin.Builder::build).collect(toImmutableList());
+    }
+
+    private static Targets getTargets(com.google.tsunami.proto.PluginDefinition pluginDefinition) {
+      return new Targets(
+          pluginDefinition.hasTargetServiceName()
+              ? Optional.of(
+                  ImmutableList.copyOf(pluginDefinition.getTargetServiceName().getValueList()))
+              : Optional.empty(),
+          pluginDefinition.hasTargetSoftware()
+              ? Optional.of(pluginDefinition.getTargetSoftware().getName())
+              : Optional.empty(),
+          pluginDefinition.getForWebService());
+    }
+  }
+
+  /** The matching targets of a single plugin. */
+  private static final class Targets {
+    private final Optional<ImmutableList<String>> serviceNames;
+    private final Optional<String> softwareName;
+    private final boolean forWebService;
+
+    Targets(
+        Optional<ImmutableList<String>> serviceNames,
+        Optional<String> softwareName,
+        boolean forWebService) {
+      this.serviceNames = serviceNames;
+      this.softwareName = softwareName;
+      this.forWebService = forWebService;
+    }
+  }
+
+  /** Plugins of the same type keyed by their matching targets, referenced by position. */
+  private static final class PluginsByTarget<P> {
+    private final ImmutableList<P> plugins;
+    // Keys are lower case target names.
+    private final ImmutableListMultimap<String, Integer> byServiceName;
+    private final ImmutableListMultimap<String, Integer> bySoftwareName;
+    private final ImmutableList<Integer> withServiceName;
+    private final ImmutableList<Integer> withSoftware;
+    private final ImmutableList<Integer> forWebService;
+    private final ImmutableList<Integer> catchAll;
+
+    private PluginsByTarget(
+        ImmutableList<P> plugins,
+        ImmutableListMultimap<String, Integer> byServiceName,
+        ImmutableListMultimap<String, Integer> bySoftwareName,
+        ImmutableList<Integer> withServiceName,
+        ImmutableList<Integer> withSoftware,
+        ImmutableList<Integer> forWebService,
+        ImmutableList<Integer> catchAll) {
+      this.plugins = plugins;
+      this.byServiceName = byServiceName;
+      this.bySoftwareName = bySoftwareName;
+      this.withServiceName = withServiceName;
+      this.withSoftware = withSoftware;
+      this.forWebService = forWebService;
+      this.catchAll = catchAll;
+    }
+
+    static <P> PluginsByTarget<P> build(
+        ImmutableList<P> plugins, Function<P, Targets> targetsFunction) {
+      ImmutableListMultimap.Builder<String, Integer> byServiceName =
+          ImmutableListMultimap.builder();
+      ImmutableListMultimap.Builder<String, Integer> bySoftwareName =
+          ImmutableListMultimap.builder();
+      ImmutableList.Builder<Integer> withServiceName = ImmutableList.builder();
+      ImmutableList.Builder<Integer> withSoftware = ImmutableList.builder();
+      ImmutableList.Builder<Integer> forWebService = ImmutableList.builder();
+      ImmutableList.Builder<Integer> catchAll = ImmutableList.builder();
+      for (int i = 0; i < plugins.size(); i++) {
+        Targets targets = targetsFunction.apply(plugins.get(i));
+        if (targets.serviceNames.isPresent()) {
+          withServiceName.add(i);
+          for (String serviceName : targets.serviceNames.get()) {
+            byServiceName.put(Ascii.toLowerCase(serviceName), i);
+          }
+        }
+        if (targets.softwareName.isPresent()) {
+          withSoftware.add(i);
+          bySoftwareName.put(Ascii.toLowerCase(targets.softwareName.get()), i);
+        }
+        if (targets.forWebService) {
+          forWebService.add(i);
+        }
+        if (!targets.serviceNames.isPresent()
+            && !targets.softwareName.isPresent()
+            && !targets.forWebService) {
+          catchAll.add(i);
+        }
+      }
+      return new PluginsByTarget<>(
+          plugins,
+          byServiceName.build(),
+          bySoftwareName.build(),
+          withServiceName.build(),
+          withSoftware.build(),
+          forWebService.build(),
+          catchAll.build());
+    }
+
+    void addServiceNameMatches(NetworkService networkService, Set<Integer> matches) {
+      String serviceName = networkService.getServiceName();
+      matches.addAll(
+          serviceName.isEmpty()
+              ? withServiceName
+              : byServiceName.get(Ascii.toLowerCase(serviceName)));
+      if (isWebService(networkService)) {
+        matches.addAll(forWebService);
+      }
+    }
+
+    void addSoftwareMatches(NetworkService networkService, Set<Integer> matches) {
+      String softwareName = networkService.getSoftware().getName();
+      matches.addAll(
+          softwareName.isEmpty()
+              ? withSoftware
+              : bySoftwareName.get(Ascii.toLowerCase(softwareName)));
+    }
+  }
+}
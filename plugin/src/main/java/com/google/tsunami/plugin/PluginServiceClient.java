@@ -21,15 +21,20 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.tsunami.proto.ListPluginsRequest;
 import com.google.tsunami.proto.ListPluginsResponse;
 import com.google.tsunami.proto.PluginServiceGrpc;
+import com.google.tsunami.proto.PluginServiceGrpc.PluginServiceBlockingStub;
 import com.google.tsunami.proto.PluginServiceGrpc.PluginServiceFutureStub;
 import com.google.tsunami.proto.RunRequest;
 import com.google.tsunami.proto.RunResponse;
+import com.google.tsunami.proto.RunStreamResponse;
 import io.grpc.Channel;
 import io.grpc.Deadline;
 import io.grpc.health.v1.HealthCheckRequest;
 import io.grpc.health.v1.HealthCheckResponse;
 import io.grpc.health.v1.HealthGrpc;
 import io.grpc.health.v1.HealthGrpc.HealthFutureStub;
+import io.grpc.health.v1.HealthGrpc.HealthStub;
+import io.grpc.stub.StreamObserver;
+import java.util.Iterator;
 
 /**
  * Client side gRPC handler for the PluginService RPC protocol. Main handler for all gRPC calls to
@@ -38,11 +43,15 @@ import io.grpc.health.v1.HealthGrpc.HealthFutureStub;
 public final class PluginServiceClient {
 
   private final HealthFutureStub healthService;
+  private final HealthStub healthWatchService;
   private final PluginServiceFutureStub pluginService;
+  private final PluginServiceBlockingStub pluginStreamService;
 
   PluginServiceClient(Channel channel) {
     this.healthService = HealthGrpc.newFutureStub(checkNotNull(channel));
+    this.healthWatchService = HealthGrpc.newStub(checkNotNull(channel));
     this.pluginService = PluginServiceGrpc.newFutureStub(checkNotNull(channel));
+    this.pluginStreamService = PluginServiceGrpc.newBlockingStub(checkNotNull(channel));
   }
 
   /**
@@ -56,6 +65,19 @@ public final class PluginServiceClient {
     return pluginService.withDeadline(deadline).run(request);
   }
 
+  /**
+   * Sends a run request to the gRPC language server with a specified deadline, streaming the
+   * reports of each plugin as soon as it is done.
+   *
+   * @param request The main request containing plugins to run.
+   * @param deadline The timeout of the whole stream.
+   * @return The blocking iterator over the streamed responses. Iterating throws a {@link
+   *     io.grpc.StatusRuntimeException} when the stream fails.
+   */
+  public Iterator<RunStreamResponse> runStreamWithDeadline(RunRequest request, Deadline deadline) {
+    return pluginStreamService.withDeadline(deadline).runStream(request);
+  }
+
   /**
    * Sends a list plugins request to the gRPC language server with a specified deadline.
    *
@@ -79,4 +101,15 @@ public final class PluginServiceClient {
       HealthCheckRequest request, Deadline deadline) {
     return healthService.withDeadline(deadline).check(request);
   }
+
+  /**
+   * Opens a stream receiving the status of the language server every time it changes.
+   *
+   * @param request The health check request to send to the language server.
+   * @param responseObserver The observer receiving the current status and each later change.
+   */
+  public void watchHealth(
+      HealthCheckRequest request, StreamObserver<HealthCheckResponse> responseObserver) {
+    healthWatchService.watch(request, responseObserver);
+  }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.plugin;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.tsunami.proto.PluginDefinition;
+import com.google.tsunami.proto.RunRequestVersion;
+import java.util.Optional;
+
+/**
+ * The plugin definitions and supported {@link RunRequestVersion} listed by a language server,
+ * shared by all the {@link RemoteVulnDetector RemoteVulnDetectors} talking to it, together with
+ * whether the server implements the streaming run RPC.
+ *
+ * <p>The plugins of a running language server never change, so they are only listed again once
+ * the {@link LanguageServerHealth#getGeneration() generation} of the server changed.
+ */
+final class RemotePluginDefinitionCache {
+  private final LanguageServerHealth health;
+
+  // Guarded by this.
+  private ImmutableList<PluginDefinition> pluginDefinitions;
+  private RunRequestVersion runRequestVersion;
+  private long generation;
+  private boolean runStreamUnsupported;
+  private long runStreamGeneration;
+
+  RemotePluginDefinitionCache(LanguageServerHealth health) {
+    this.health = checkNotNull(health);
+  }
+
+  /** Gets the plugin definitions listed within the current generation of the server, if any. */
+  synchronized Optional<ImmutableList<PluginDefinition>> get() {
+    return pluginDefinitions != null && generation == health.getGeneration()
+        ? Optional.of(pluginDefinitions)
+        : Optional.empty();
+  }
+
+  /**
+   * Gets the run request version supported by the current generation of the server, or {@link
+   * RunRequestVersion#RUN_REQUEST_V1} when the server was not listed within this generation.
+   */
+  synchronized RunRequestVersion getRunRequestVersion() {
+    return pluginDefinitions != null && generation == health.getGeneration()
+        ? runRequestVersion
+        : RunRequestVersion.RUN_REQUEST_V1;
+  }
+
+  /**
+   * Caches the plugin definitions successfully listed by the server.
+   *
+   * @param listedGeneration the generation of the server read before listing the plugins.
+   * @param listedPluginDefinitions the listed plugin definitions.
+   * @param listedRunRequestVersion the run request version supported by the server.
+   */
+  synchronized void put(
+      long listedGeneration,
+      ImmutableList<PluginDefinition> listedPluginDefinitions,
+      RunRequestVersion listedRunRequestVersion) {
+    this.pluginDefinitions = checkNotNull(listedPluginDefinitions);
+    this.runRequestVersion = checkNotNull(listedRunRequestVersion);
+    this.generation = listedGeneration;
+  }
+
+  /**
+   * Returns whether the current generation of the server may implement the streaming run RPC, that
+   * is unless it was found unimplemented within this generation.
+   */
+  synchronized boolean isRunStreamSupported() {
+    return !runStreamUnsupported || runStreamGeneration != health.getGeneration();
+  }
+
+  /**
+   * Caches that the server does not implement the streaming run RPC.
+   *
+   * @param runGeneration the generation of the server read before running the RPC.
+   */
+  synchronized void putRunStreamUnsupported(long runGeneration) {
+    this.runStreamUnsupported = true;
+    this.runStreamGeneration = runGeneration;
+  }
+}
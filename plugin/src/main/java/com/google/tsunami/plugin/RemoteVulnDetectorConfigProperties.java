@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.plugin;
+
+import com.google.tsunami.common.config.annotations.ConfigProperties;
+import java.util.Map;
+
+/**
+ * Configuration properties for the RPCs sent to language servers running remote plugins.
+ *
+ * <p>All deadlines are in seconds and a non-positive value means the default deadline. Each of
+ * them can be overridden for a single language server through {@link #languageServers}.
+ */
+@ConfigProperties("plugin.remote")
+public final class RemoteVulnDetectorConfigProperties {
+  /** Deadline of the health check sent before every other RPC. */
+  Integer healthCheckDeadlineSeconds;
+
+  /** Deadline of the RPC listing the plugins of a language server. */
+  Integer listPluginsDeadlineSeconds;
+
+  /** Base deadline of the RPC running the matched plugins. */
+  Integer runDeadlineSeconds;
+
+  /** Time added to the run deadline for each matched plugin sent in the same RPC. */
+  Integer runDeadlinePerPluginSeconds;
+
+  /**
+   * Deadline overrides keyed by language server port, using the names of the deadline properties
+   * above, e.g. {@code run_deadline_seconds}.
+   */
+  Map<String, Map<String, Integer>> languageServers;
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.plugin;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.base.CaseFormat;
+import io.grpc.Deadline;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Durations of the RPCs sent to a single language server.
+ *
+ * <p>{@link Deadline Deadlines} are absolute points in time, so a new one is created for every RPC
+ * from these durations.
+ */
+@AutoValue
+abstract class RemoteVulnDetectorDeadlines {
+  private static final Duration DEFAULT_HEALTH_CHECK_DEADLINE = Duration.ofSeconds(120);
+  private static final Duration DEFAULT_LIST_PLUGINS_DEADLINE = Duration.ofSeconds(120);
+  private static final Duration DEFAULT_RUN_DEADLINE = Duration.ofSeconds(120);
+  private static final Duration DEFAULT_RUN_DEADLINE_PER_PLUGIN = Duration.ofSeconds(30);
+
+  abstract Duration healthCheck();
+
+  abstract Duration listPlugins();
+
+  abstract Duration run();
+
+  abstract Duration runPerPlugin();
+
+  /** Creates a deadline for a health check sent now. */
+  Deadline healthCheckDeadline() {
+    return after(healthCheck());
+  }
+
+  /** Creates a deadline for a ListPlugins RPC sent now. */
+  Deadline listPluginsDeadline() {
+    return after(listPlugins());
+  }
+
+  /** Creates a deadline for a Run RPC sent now with the given number of matched plugins. */
+  Deadline runDeadline(int pluginCount) {
+    checkArgument(pluginCount >= 0, "Plugin count must not be negative.");
+    return after(run().plus(runPerPlugin().multipliedBy(pluginCount)));
+  }
+
+  static RemoteVulnDetectorDeadlines create(
+      Duration healthCheck, Duration listPlugins, Duration run, Duration runPerPlugin) {
+    return new AutoValue_RemoteVulnDetectorDeadlines(
+        healthCheck, listPlugins, run, runPerPlugin);
+  }
+
+  static RemoteVulnDetectorDeadlines getDefault() {
+    return create(
+        DEFAULT_HEALTH_CHECK_DEADLINE,
+        DEFAULT_LIST_PLUGINS_DEADLINE,
+        DEFAULT_RUN_DEADLINE,
+        DEFAULT_RUN_DEADLINE_PER_PLUGIN);
+  }
+
+  /**
+   * Reads the deadlines of the language server listening on the given port. Values overridden for
+   * the server take precedence over the global ones, which take precedence over the defaults.
+   */
+  static RemoteVulnDetectorDeadlines fromConfig(
+      RemoteVulnDetectorConfigProperties configProperties, String port) {
+    checkNotNull(configProperties);
+    checkNotNull(port);
+    Map<String, Integer> serverOverrides = getServerOverrides(configProperties, port);
+    return create(
+        getDuration(
+            serverOverrides,
+            "healthCheckDeadlineSeconds",
+            configProperties.healthCheckDeadlineSeconds,
+            DEFAULT_HEALTH_CHECK_DEADLINE),
+        getDuration(
+            serverOverrides,
+            "listPluginsDeadlineSeconds",
+            configProperties.listPluginsDeadlineSeconds,
+            DEFAULT_LIST_PLUGINS_DEADLINE),
+        getDuration(
+            serverOverrides,
+            "runDeadlineSeconds",
+            configProperties.runDeadlineSeconds,
+            DEFAULT_RUN_DEADLINE),
+        getDuration(
+            serverOverrides,
+            "runDeadlinePerPluginSeconds",
+            configProperties.runDeadlinePerPluginSeconds,
+            DEFAULT_RUN_DEADLINE_PER_PLUGIN));
+  }
+
+  private static Map<String, Integer> getServerOverrides(
+      RemoteVulnDetectorConfigProperties configProperties, String port) {
+    if (configProperties.languageServers == null) {
+      return null;
+    }
+    // Unquoted ports are parsed as integer keys from the yaml file.
+    Map<?, Map<String, Integer>> languageServers = configProperties.languageServers;
+    for (Map.Entry<?, Map<String, Integer>> entry : languageServers.entrySet()) {
+      if (String.valueOf(entry.getKey()).equals(port)) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static Duration getDuration(
+      Map<String, Integer> serverOverrides,
+      String propertyName,
+      Integer globalSeconds,
+      Duration defaultDuration) {
+    Integer seconds = null;
+    if (serverOverrides != null) {
+      seconds = serverOverrides.get(propertyName);
+      if (seconds == null) {
+        seconds =
+            serverOverrides.get(
+                CaseFormat.LOWER_CAMEL.to(CaseFormat.LOWER_UNDERSCORE, propertyName));
+      }
+    }
+    if (seconds == null) {
+      seconds = globalSeconds;
+    }
+    return seconds == null || seconds <= 0 ? defaultDuration : Duration.ofSeconds(seconds);
+  }
+
+  private static Deadline after(Duration duration) {
+    return Deadline.after(duration.toMillis(), MILLISECONDS);
+  }
+}
@@ -16,35 +16,59 @@
 package com.google.tsunami.plugin;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static java.util.concurrent.TimeUnit.SECONDS;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.stream.Collectors.toCollection;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
 import com.google.common.flogger.GoogleLogger;
+import com.google.tsunami.common.data.CrawlContentStore;
 import com.google.tsunami.proto.DetectionReportList;
 import com.google.tsunami.proto.ListPluginsRequest;
+import com.google.tsunami.proto.ListPluginsResponse;
 import com.google.tsunami.proto.MatchedPlugin;
 import com.google.tsunami.proto.NetworkService;
+import com.google.tsunami.proto.PluginCompletion;
 import com.google.tsunami.proto.PluginDefinition;
+import com.google.tsunami.proto.PluginFailure;
 import com.google.tsunami.proto.RunRequest;
+import com.google.tsunami.proto.RunRequestVersion;
+import com.google.tsunami.proto.RunStreamResponse;
 import com.google.tsunami.proto.TargetInfo;
 import io.grpc.Channel;
 import io.grpc.Deadline;
-import io.grpc.health.v1.HealthCheckRequest;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.health.v1.HealthCheckResponse;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 final class RemoteVulnDetectorImpl implements RemoteVulnDetector {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
-  // Default duration deadline for all RPC calls
-  private static final Deadline DEFAULT_DEADLINE = Deadline.after(120, SECONDS);
 
   private final PluginServiceClient service;
+  private final LanguageServerHealth health;
+  private final RemotePluginDefinitionCache pluginDefinitionCache;
+  private final CrawlContentStore crawlContentStore;
+  private final RemoteVulnDetectorDeadlines deadlines;
   private final Set<MatchedPlugin> pluginsToRun;
 
-  RemoteVulnDetectorImpl(Channel channel) {
+  RemoteVulnDetectorImpl(
+      Channel channel,
+      LanguageServerHealth health,
+      RemotePluginDefinitionCache pluginDefinitionCache,
+      CrawlContentStore crawlContentStore,
+      RemoteVulnDetectorDeadlines deadlines) {
     this.service = new PluginServiceClient(checkNotNull(channel));
+    this.health = checkNotNull(health);
+    this.pluginDefinitionCache = checkNotNull(pluginDefinitionCache);
+    this.crawlContentStore = checkNotNull(crawlContentStore);
+    this.deadlines = checkNotNull(deadlines);
     this.pluginsToRun = Sets.newHashSet();
   }
 
@@ -52,17 +76,14 @@ final class RemoteVulnDetectorImpl implements RemoteVulnDetector {
   public DetectionReportList detect(
       TargetInfo target, ImmutableList<NetworkService> matchedServices) {
     try {
-      if (service
-          .checkHealthWithDeadline(HealthCheckRequest.getDefaultInstance(), DEFAULT_DEADLINE)
-          .get()
-          .getStatus()
+      if (health
+          .getStatus(deadlines.healthCheckDeadline())
           .equals(HealthCheckResponse.ServingStatus.SERVING)) {
-        return service
-            .runWithDeadline(
-                RunRequest.newBuilder().setTarget(target).addAllPlugins(pluginsToRun).build(),
-                DEFAULT_DEADLINE)
-            .get()
-            .getReports();
+        RunRequest runRequest =
+            pluginDefinitionCache.getRunRequestVersion() == RunRequestVersion.RUN_REQUEST_V1
+                ? buildRunRequestV1(target)
+                : buildRunRequestV2(target);
+        return runStream(runRequest, deadlines.runDeadline(pluginsToRun.size()));
       } else {
         logger.atWarning().log(
             "Server health status is not SERVING. Will not run matched plugins.");
@@ -73,19 +94,147 @@ final class RemoteVulnDetectorImpl implements RemoteVulnDetector {
     return DetectionReportList.getDefaultInstance();
   }
 
+  private RunRequest buildRunRequestV1(TargetInfo target) {
+    // Crawled content referenced by several services is sent once with the request.
+    return RunRequest.newBuilder()
+        .setTarget(target)
+        .addAllPlugins(pluginsToRun)
+        .addAllCrawlContents(
+            crawlContentStore.getCrawlContents(
+                pluginsToRun.stream()
+                    .flatMap(plugin -> plugin.getServicesList().stream())
+                    .collect(toImmutableList())))
+        .build();
+  }
+
+  /**
+   * Builds a request sending every matched service once, as most remote plugins are matched with
+   * the same services and would otherwise each carry a copy of them.
+   */
+  private RunRequest buildRunRequestV2(TargetInfo target) {
+    RunRequest.Builder runRequestBuilder = RunRequest.newBuilder().setTarget(target);
+    Map<NetworkService, Integer> serviceIndexes = new LinkedHashMap<>();
+    for (MatchedPlugin plugin : pluginsToRun) {
+      MatchedPlugin.Builder pluginBuilder =
+          MatchedPlugin.newBuilder().setPlugin(plugin.getPlugin());
+      for (NetworkService service : plugin.getServicesList()) {
+        Integer serviceIndex = serviceIndexes.get(service);
+        if (serviceIndex == null) {
+          serviceIndex = serviceIndexes.size();
+          serviceIndexes.put(service, serviceIndex);
+        }
+        pluginBuilder.addServiceIndexes(serviceIndex);
+      }
+      runRequestBuilder.addPlugins(pluginBuilder);
+    }
+    ImmutableList<NetworkService> services = ImmutableList.copyOf(serviceIndexes.keySet());
+    return runRequestBuilder
+        .addAllServices(services)
+        .addAllCrawlContents(crawlContentStore.getCrawlContents(services))
+        .build();
+  }
+
+  /**
+   * Runs the request through the streaming RPC. When the stream breaks, the reports received so far
+   * are kept and every plugin that did not complete is reported as failed, or as timed out when the
+   * deadline was exceeded. Plugins the server never completed are reported as failed as well.
+   *
+   * <p>Servers predating the streaming RPC are remembered for the current generation of the server
+   * and only sent unary requests afterwards.
+   */
+  private DetectionReportList runStream(RunRequest runRequest, Deadline deadline)
+      throws InterruptedException, ExecutionException {
+    if (!pluginDefinitionCache.isRunStreamSupported()) {
+      return service.runWithDeadline(runRequest, deadline).get().getReports();
+    }
+    DetectionReportList.Builder reportsBuilder = DetectionReportList.newBuilder();
+    Set<String> pendingPlugins =
+        runRequest.getPluginsList().stream()
+            .map(plugin -> plugin.getPlugin().getInfo().getName())
+            .collect(toCollection(LinkedHashSet::new));
+    // Read before running, so that a restart during the RPC is not hidden by the cache.
+    long generation = health.getGeneration();
+    try {
+      Iterator<RunStreamResponse> responses = service.runStreamWithDeadline(runRequest, deadline);
+      while (responses.hasNext()) {
+        RunStreamResponse response = responses.next();
+        switch (response.getResponseCase()) {
+          case DETECTION_REPORT:
+            reportsBuilder.addDetectionReports(response.getDetectionReport());
+            break;
+          case PLUGIN_COMPLETION:
+            PluginCompletion completion = response.getPluginCompletion();
+            pendingPlugins.remove(completion.getPluginName());
+            if (completion.hasFailure()) {
+              reportsBuilder.addPluginFailures(completion.getFailure());
+            }
+            break;
+          default:
+            logger.atWarning().log("Ignoring unknown run stream response: %s", response);
+        }
+      }
+    } catch (StatusRuntimeException e) {
+      Status.Code code = e.getStatus().getCode();
+      if (code == Status.Code.UNIMPLEMENTED) {
+        // Language servers predating the streaming RPC.
+        pluginDefinitionCache.putRunStreamUnsupported(generation);
+        return service.runWithDeadline(runRequest, deadline).get().getReports();
+      }
+      boolean timedOut = code == Status.Code.DEADLINE_EXCEEDED;
+      if (!timedOut && pendingPlugins.size() == runRequest.getPluginsCount()) {
+        throw new LanguageServerException("Failed to get response from language server.", e);
+      }
+      logger.atWarning().withCause(e).log(
+          "Run stream ended before plugins %s completed.", pendingPlugins);
+      addPluginFailures(reportsBuilder, pendingPlugins, timedOut, e.getStatus().toString());
+      return reportsBuilder.build();
+    }
+    if (!pendingPlugins.isEmpty()) {
+      logger.atWarning().log(
+          "Run stream completed without completing plugins %s.", pendingPlugins);
+      addPluginFailures(
+          reportsBuilder, pendingPlugins, false, "The language server did not run the plugin.");
+    }
+    return reportsBuilder.build();
+  }
+
+  private static void addPluginFailures(
+      DetectionReportList.Builder reportsBuilder,
+      Set<String> pluginNames,
+      boolean timedOut,
+      String message) {
+    for (String pluginName : pluginNames) {
+      reportsBuilder.addPluginFailures(
+          PluginFailure.newBuilder()
+              .setPluginName(pluginName)
+              .setTimedOut(timedOut)
+              .setMessage(message));
+    }
+  }
+
   @Override
   public ImmutableList<PluginDefinition> getAllPlugins() {
+    Optional<ImmutableList<PluginDefinition>> cachedPluginDefinitions =
+        pluginDefinitionCache.get();
+    if (cachedPluginDefinitions.isPresent()) {
+      return cachedPluginDefinitions.get();
+    }
     try {
-      if (service
-          .checkHealthWithDeadline(HealthCheckRequest.getDefaultInstance(), DEFAULT_DEADLINE)
-          .get()
-          .getStatus()
+      // Read before listing, so that a restart during the RPC is not hidden by the cache.
+      long generation = health.getGeneration();
+      if (health
+          .getStatus(deadlines.healthCheckDeadline())
           .equals(HealthCheckResponse.ServingStatus.SERVING)) {
-        return ImmutableList.copyOf(
+        ListPluginsResponse listPluginsResponse =
             service
-                .listPluginsWithDeadline(ListPluginsRequest.getDefaultInstance(), DEFAULT_DEADLINE)
-                .get()
-                .getPluginsList());
+                .listPluginsWithDeadline(
+                    ListPluginsRequest.getDefaultInstance(), deadlines.listPluginsDeadline())
+                .get();
+        ImmutableList<PluginDefinition> pluginDefinitions =
+            ImmutableList.copyOf(listPluginsResponse.getPluginsList());
+        pluginDefinitionCache.put(
+            generation, pluginDefinitions, listPluginsResponse.getRunRequestVersion());
+        return pluginDefinitions;
       } else {
         logger.atWarning().log("Server health status is not SERVING. Will not retrieve plugins.");
       }
@@ -16,14 +16,15 @@
 package com.google.tsunami.plugin;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.collect.ImmutableList.toImmutableList;
 
 import com.google.auto.value.AutoAnnotation;
 import com.google.auto.value.AutoBuilder;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provider;
 import com.google.inject.multibindings.MapBinder;
+import com.google.tsunami.common.data.CrawlContentStore;
 import com.google.tsunami.common.server.ServerPortCommand;
 import com.google.tsunami.plugin.annotations.PluginInfo;
 import io.grpc.Channel;
@@ -43,26 +44,32 @@ public final class RemoteVulnDetectorLoadingModule extends AbstractModule {
 
   @Override
   protected void configure() {
-    ImmutableList<Channel> availableChannels = getLanguageServerChannels(availableServerPorts);
     MapBinder<PluginDefinition, TsunamiPlugin> tsunamiPluginBinder =
         MapBinder.newMapBinder(binder(), PluginDefinition.class, TsunamiPlugin.class);
-    availableChannels.forEach(
-        channel ->
-            tsunamiPluginBinder
-                .addBinding(getRemoteVulnDetectorPluginDefinition(channel.hashCode()))
-                .toInstance(new RemoteVulnDetectorImpl(channel)));
+    // Matched remote plugins are accumulated on the RemoteVulnDetector instance, so a new instance
+    // is provided for every scan target instead of sharing one instance across scans. The health
+    // and plugin definitions of each language server are tracked once and shared by its instances.
+    for (ServerPortCommand command : availableServerPorts) {
+      Channel channel = getLanguageServerChannel(command);
+      LanguageServerHealth health = new LanguageServerHealth(new PluginServiceClient(channel));
+      tsunamiPluginBinder
+          .addBinding(getRemoteVulnDetectorPluginDefinition(channel.hashCode()))
+          .toProvider(
+              new RemoteVulnDetectorProvider(
+                  channel,
+                  health,
+                  new RemotePluginDefinitionCache(health),
+                  command.port(),
+                  getProvider(CrawlContentStore.class),
+                  getProvider(RemoteVulnDetectorConfigProperties.class)));
+    }
   }
 
-  private ImmutableList<Channel> getLanguageServerChannels(
-      ImmutableList<ServerPortCommand> commands) {
-    return commands.stream()
-        .map(
-            command ->
-                NettyChannelBuilder.forTarget("localhost:" + command.port())
-                    .negotiationType(NegotiationType.PLAINTEXT)
-                    .maxInboundMessageSize(MAX_MESSAGE_SIZE)
-                    .build())
-        .collect(toImmutableList());
+  private static Channel getLanguageServerChannel(ServerPortCommand command) {
+    return NettyChannelBuilder.forTarget("localhost:" + command.port())
+        .negotiationType(NegotiationType.PLAINTEXT)
+        .maxInboundMessageSize(MAX_MESSAGE_SIZE)
+        .build();
   }
 
   // TODO(b/239095108): Change channelIds to something more meaningful to identify
@@ -116,6 +123,40 @@ public final class RemoteVulnDetectorLoadingModule extends AbstractModule {
     return new AutoBuilder_RemoteVulnDetectorLoadingModule_PluginInfoBuilder();
   }
 
+  private static final class RemoteVulnDetectorProvider implements Provider<TsunamiPlugin> {
+    private final Channel channel;
+    private final LanguageServerHealth health;
+    private final RemotePluginDefinitionCache pluginDefinitionCache;
+    private final String port;
+    private final Provider<CrawlContentStore> crawlContentStoreProvider;
+    private final Provider<RemoteVulnDetectorConfigProperties> configPropertiesProvider;
+
+    RemoteVulnDetectorProvider(
+        Channel channel,
+        LanguageServerHealth health,
+        RemotePluginDefinitionCache pluginDefinitionCache,
+        String port,
+        Provider<CrawlContentStore> crawlContentStoreProvider,
+        Provider<RemoteVulnDetectorConfigProperties> configPropertiesProvider) {
+      this.channel = checkNotNull(channel);
+      this.health = checkNotNull(health);
+      this.pluginDefinitionCache = checkNotNull(pluginDefinitionCache);
+      this.port = checkNotNull(port);
+      this.crawlContentStoreProvider = checkNotNull(crawlContentStoreProvider);
+      this.configPropertiesProvider = checkNotNull(configPropertiesProvider);
+    }
+
+    @Override
+    public TsunamiPlugin get() {
+      return new RemoteVulnDetectorImpl(
+          channel,
+          health,
+          pluginDefinitionCache,
+          crawlContentStoreProvider.get(),
+          RemoteVulnDetectorDeadlines.fromConfig(configPropertiesProvider.get(), port));
+    }
+  }
+
   private static class RemoteVulnDetectorBootstrapLoadingModule extends PluginBootstrapModule {
     @Override
     protected void configurePlugin() {}
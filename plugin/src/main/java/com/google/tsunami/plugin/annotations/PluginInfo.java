@@ -98,4 +98,13 @@ public @interface PluginInfo {
    * @return Tsunami plugin's bootstrap module class.
    */
   Class<? extends PluginBootstrapModule> bootstrapModule();
+
+  /**
+   * Execution timeout of this plugin in seconds. When the plugin runs longer than this timeout, its
+   * execution is cancelled and reported as timed out. Timeouts configured for the plugin in {@code
+   * plugin.execution.plugin_timeout_seconds} take precedence over this value.
+   *
+   * @return Tsunami plugin's execution timeout in seconds, 0 if the plugin doesn't set any timeout.
+   */
+  int timeoutSeconds() default 0;
 }
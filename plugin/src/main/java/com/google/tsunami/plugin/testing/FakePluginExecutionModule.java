@@ -17,9 +17,13 @@ package com.google.tsunami.plugin.testing;
 
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.AbstractModule;
+import com.google.tsunami.plugin.PluginExecutionDeadlineScheduler;
 import com.google.tsunami.plugin.PluginExecutionThreadPool;
 import com.google.tsunami.plugin.PluginExecutorModule;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 /** Installs dependencies used for plugin executions in unit tests. */
 public final class FakePluginExecutionModule extends AbstractModule {
@@ -30,5 +34,10 @@ public final class FakePluginExecutionModule extends AbstractModule {
     bind(ListeningExecutorService.class)
         .annotatedWith(PluginExecutionThreadPool.class)
         .toInstance(MoreExecutors.newDirectExecutorService());
+    bind(ScheduledExecutorService.class)
+        .annotatedWith(PluginExecutionDeadlineScheduler.class)
+        .toInstance(
+            Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).build()));
   }
 }
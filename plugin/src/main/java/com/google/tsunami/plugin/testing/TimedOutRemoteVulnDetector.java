@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.plugin.testing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.tsunami.plugin.PluginType;
+import com.google.tsunami.plugin.RemoteVulnDetector;
+import com.google.tsunami.plugin.annotations.PluginInfo;
+import com.google.tsunami.proto.DetectionReportList;
+import com.google.tsunami.proto.MatchedPlugin;
+import com.google.tsunami.proto.NetworkService;
+import com.google.tsunami.proto.PluginDefinition;
+import com.google.tsunami.proto.PluginFailure;
+import com.google.tsunami.proto.TargetInfo;
+import java.util.Set;
+
+/**
+ * Fake {@link RemoteVulnDetector} implementation whose remote plugins all time out on the language
+ * server.
+ */
+@PluginInfo(
+    type = PluginType.REMOTE_VULN_DETECTION,
+    name = "TimedOutRemoteVulnDetector",
+    version = "v0.1",
+    description = "fake description",
+    author = "fake",
+    bootstrapModule = TimedOutRemoteVulnDetectorBootstrapModule.class)
+public final class TimedOutRemoteVulnDetector implements RemoteVulnDetector {
+
+  private final Set<MatchedPlugin> matchedPluginsToRun;
+
+  public TimedOutRemoteVulnDetector() {
+    this.matchedPluginsToRun = Sets.newHashSet();
+  }
+
+  @Override
+  public DetectionReportList detect(TargetInfo target, ImmutableList<NetworkService> services) {
+    var reportListBuilder = DetectionReportList.newBuilder();
+    for (MatchedPlugin plugin : matchedPluginsToRun) {
+      reportListBuilder.addPluginFailures(
+          PluginFailure.newBuilder()
+              .setPluginName(plugin.getPlugin().getInfo().getName())
+              .setTimedOut(true)
+              .setMessage("DEADLINE_EXCEEDED"));
+    }
+    return reportListBuilder.build();
+  }
+
+  @Override
+  public ImmutableList<PluginDefinition> getAllPlugins() {
+    return ImmutableList.of(
+        PluginDefinition.newBuilder()
+            .setInfo(
+                com.google.tsunami.proto.PluginInfo.newBuilder()
+                    .setType(com.google.tsunami.proto.PluginInfo.PluginType.VULN_DETECTION)
+                    .setName("FakeSlowRemotePlugin")
+                    .setVersion("v0.1")
+                    .setDescription("fake description")
+                    .setAuthor("fake"))
+            .build());
+  }
+
+  @Override
+  public void addMatchedPluginToDetect(MatchedPlugin plugin) {
+    this.matchedPluginsToRun.add(plugin);
+  }
+}
@@ -17,16 +17,23 @@ package com.google.tsunami.plugin;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth8.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.testing.FakeTicker;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.tsunami.plugin.PluginExecutionResult.ExecutionStatus;
 import com.google.tsunami.plugin.PluginExecutor.PluginExecutorConfig;
 import com.google.tsunami.plugin.PluginManager.PluginMatchingResult;
 import com.google.tsunami.plugin.testing.FakePortScanner;
 import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.After;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -45,6 +52,15 @@ public final class PluginExecutorImplTest {
 
   private final FakeTicker ticker = new FakeTicker().setAutoIncrementStep(TICK_DURATION);
   private final Stopwatch executionStopWatch = Stopwatch.createUnstarted(ticker);
+  private final PluginExecutionConfigProperties configProperties =
+      new PluginExecutionConfigProperties();
+  private final ScheduledExecutorService deadlineScheduler =
+      Executors.newSingleThreadScheduledExecutor();
+
+  @After
+  public void tearDown() {
+    deadlineScheduler.shutdownNow();
+  }
 
   @Test
   public void executeAsync_whenSucceeded_returnsSucceededResult()
@@ -56,7 +72,7 @@ public final class PluginExecutorImplTest {
             .build();
 
     PluginExecutionResult<String> executionResult =
-        new PluginExecutorImpl(PLUGIN_EXECUTION_THREAD_POOL, executionStopWatch)
+        newPluginExecutor(PLUGIN_EXECUTION_THREAD_POOL)
             .executeAsync(executorConfig)
             .get();
 
@@ -79,7 +95,7 @@ public final class PluginExecutorImplTest {
             .build();
 
     PluginExecutionResult<String> executionResult =
-        new PluginExecutorImpl(PLUGIN_EXECUTION_THREAD_POOL, executionStopWatch)
+        newPluginExecutor(PLUGIN_EXECUTION_THREAD_POOL)
             .executeAsync(executorConfig)
             .get();
 
@@ -104,7 +120,7 @@ public final class PluginExecutorImplTest {
             .build();
 
     PluginExecutionResult<String> executionResult =
-        new PluginExecutorImpl(PLUGIN_EXECUTION_THREAD_POOL, executionStopWatch)
+        newPluginExecutor(PLUGIN_EXECUTION_THREAD_POOL)
             .executeAsync(executorConfig)
             .get();
 
@@ -120,4 +136,73 @@ public final class PluginExecutorImplTest {
     assertThat(executionResult.executionStopwatch().elapsed()).isEqualTo(TICK_DURATION);
     assertThat(executionResult.resultData()).isEmpty();
   }
+
+  @Test
+  public void executeAsync_whenTimedOut_interruptsPluginAndReturnsTimedOutResult()
+      throws ExecutionException, InterruptedException {
+    configProperties.pluginTimeoutSeconds =
+        ImmutableMap.of(FAKE_MATCHING_RESULT.pluginDefinition().name(), 1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    PluginExecutorConfig<String> executorConfig =
+        PluginExecutorConfig.<String>builder()
+            .setMatchedPlugin(FAKE_MATCHING_RESULT)
+            .setPluginExecutionLogic(
+                () -> {
+                  try {
+                    Thread.sleep(Duration.ofMinutes(1).toMillis());
+                  } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                  }
+                  return "result data";
+                })
+            .build();
+    ListeningExecutorService threadPool =
+        MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+
+    try {
+      PluginExecutionResult<String> executionResult =
+          newPluginExecutor(threadPool).executeAsync(executorConfig).get();
+
+      assertThat(executionResult.executionStatus()).isEqualTo(ExecutionStatus.TIMED_OUT);
+      assertThat(executionResult.exception().get()).hasMessageThat().contains("timed out");
+      assertThat(executionResult.resultData()).isEmpty();
+      assertThat(interrupted.await(5, SECONDS)).isTrue();
+    } finally {
+      threadPool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void executeAsync_whenFinishedBeforePluginTypeTimeout_returnsSucceededResult()
+      throws ExecutionException, InterruptedException {
+    configProperties.defaultTimeoutSeconds = 1;
+    configProperties.pluginTypeTimeoutSeconds = ImmutableMap.of(PluginType.PORT_SCAN.name(), 60);
+    PluginExecutorConfig<String> executorConfig =
+        PluginExecutorConfig.<String>builder()
+            .setMatchedPlugin(FAKE_MATCHING_RESULT)
+            .setPluginExecutionLogic(
+                () -> {
+                  Thread.sleep(Duration.ofSeconds(2).toMillis());
+                  return "result data";
+                })
+            .build();
+    ListeningExecutorService threadPool =
+        MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+
+    try {
+      PluginExecutionResult<String> executionResult =
+          newPluginExecutor(threadPool).executeAsync(executorConfig).get();
+
+      assertThat(executionResult.isSucceeded()).isTrue();
+      assertThat(executionResult.resultData()).hasValue("result data");
+    } finally {
+      threadPool.shutdownNow();
+    }
+  }
+
+  private PluginExecutorImpl newPluginExecutor(ListeningExecutorService threadPool) {
+    return new PluginExecutorImpl(
+        threadPool, deadlineScheduler, configProperties, executionStopWatch);
+  }
 }
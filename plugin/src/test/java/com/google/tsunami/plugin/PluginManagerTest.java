@@ -30,6 +30,7 @@ import com.google.tsunami.plugin.annotations.ForServiceName;
 import com.google.tsunami.plugin.annotations.ForSoftware;
 import com.google.tsunami.plugin.annotations.ForWebService;
 import com.google.tsunami.plugin.annotations.PluginInfo;
+import com.google.tsunami.plugin.annotations.StatelessPlugin;
 import com.google.tsunami.plugin.testing.FakePortScanner;
 import com.google.tsunami.plugin.testing.FakePortScanner2;
 import com.google.tsunami.plugin.testing.FakePortScannerBootstrapModule;
@@ -52,6 +53,8 @@ import com.google.tsunami.proto.TargetSoftware;
 import com.google.tsunami.proto.TransportProtocol;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -634,6 +637,110 @@ public class PluginManagerTest {
     assertThat(matchedResult.get(1).getServicesCount()).isEqualTo(0);
   }
 
+  @Test
+  public void getVulnDetectors_always_instantiatesPluginOnFirstUse() {
+    FakeCountingDetector.instanceCount.set(0);
+    PluginManager pluginManager =
+        Guice.createInjector(new FakeCountingDetector.FakeCountingDetectorBootstrapModule())
+            .getInstance(PluginManager.class);
+
+    ImmutableList<PluginMatchingResult<VulnDetector>> vulnDetectors =
+        pluginManager.getVulnDetectors(buildSingleServiceReconnaissanceReport());
+
+    assertThat(vulnDetectors).hasSize(1);
+    assertThat(FakeCountingDetector.instanceCount.get()).isEqualTo(0);
+    assertThat(vulnDetectors.get(0).tsunamiPlugin())
+        .isSameInstanceAs(vulnDetectors.get(0).tsunamiPlugin());
+    assertThat(FakeCountingDetector.instanceCount.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void getVulnDetectors_whenPluginNotStateless_createsNewInstancePerMatch() {
+    PluginManager pluginManager =
+        Guice.createInjector(new FakeCountingDetector.FakeCountingDetectorBootstrapModule())
+            .getInstance(PluginManager.class);
+    ReconnaissanceReport reconnaissanceReport = buildSingleServiceReconnaissanceReport();
+
+    assertThat(pluginManager.getVulnDetectors(reconnaissanceReport).get(0).tsunamiPlugin())
+        .isNotSameInstanceAs(
+            pluginManager.getVulnDetectors(reconnaissanceReport).get(0).tsunamiPlugin());
+  }
+
+  @Test
+  public void getVulnDetectors_whenPluginStateless_sharesPluginInstance() {
+    PluginManager pluginManager =
+        Guice.createInjector(new FakeStatelessDetector.FakeStatelessDetectorBootstrapModule())
+            .getInstance(PluginManager.class);
+    ReconnaissanceReport reconnaissanceReport = buildSingleServiceReconnaissanceReport();
+
+    assertThat(pluginManager.getVulnDetectors(reconnaissanceReport).get(0).tsunamiPlugin())
+        .isSameInstanceAs(
+            pluginManager.getVulnDetectors(reconnaissanceReport).get(0).tsunamiPlugin());
+  }
+
+  private static ReconnaissanceReport buildSingleServiceReconnaissanceReport() {
+    return ReconnaissanceReport.newBuilder()
+        .setTargetInfo(TargetInfo.getDefaultInstance())
+        .addNetworkServices(
+            NetworkService.newBuilder()
+                .setNetworkEndpoint(NetworkEndpointUtils.forIpAndPort("1.1.1.1", 80))
+                .setTransportProtocol(TransportProtocol.TCP)
+                .setServiceName("http"))
+        .build();
+  }
+
+  @PluginInfo(
+      type = PluginType.VULN_DETECTION,
+      name = "FakeCountingDetector",
+      version = "v0.1",
+      description = "A fake VulnDetector counting its instances.",
+      author = "fake",
+      bootstrapModule = FakeCountingDetector.FakeCountingDetectorBootstrapModule.class)
+  private static final class FakeCountingDetector implements VulnDetector {
+    static final AtomicInteger instanceCount = new AtomicInteger();
+
+    @Inject
+    FakeCountingDetector() {
+      instanceCount.incrementAndGet();
+    }
+
+    @Override
+    public DetectionReportList detect(
+        TargetInfo targetInfo, ImmutableList<NetworkService> matchedServices) {
+      return null;
+    }
+
+    private static final class FakeCountingDetectorBootstrapModule extends PluginBootstrapModule {
+      @Override
+      protected void configurePlugin() {
+        registerPlugin(FakeCountingDetector.class);
+      }
+    }
+  }
+
+  @PluginInfo(
+      type = PluginType.VULN_DETECTION,
+      name = "FakeStatelessDetector",
+      version = "v0.1",
+      description = "A fake stateless VulnDetector.",
+      author = "fake",
+      bootstrapModule = FakeStatelessDetector.FakeStatelessDetectorBootstrapModule.class)
+  @StatelessPlugin
+  private static final class FakeStatelessDetector implements VulnDetector {
+    @Override
+    public DetectionReportList detect(
+        TargetInfo targetInfo, ImmutableList<NetworkService> matchedServices) {
+      return null;
+    }
+
+    private static final class FakeStatelessDetectorBootstrapModule extends PluginBootstrapModule {
+      @Override
+      protected void configurePlugin() {
+        registerPlugin(FakeStatelessDetector.class);
+      }
+    }
+  }
+
   @PluginInfo(
       type = PluginType.SERVICE_FINGERPRINT,
       name = "NoAnnotationFingerprinter",
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.plugin;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.tsunami.plugin.annotations.ForServiceName;
+import com.google.tsunami.plugin.annotations.ForSoftware;
+import com.google.tsunami.plugin.annotations.ForWebService;
+import com.google.tsunami.plugin.annotations.PluginInfo;
+import com.google.tsunami.plugin.testing.FakeServiceFingerprinterBootstrapModule;
+import com.google.tsunami.plugin.testing.FakeVulnDetectorBootstrapModule;
+import com.google.tsunami.proto.MatchedPlugin;
+import com.google.tsunami.proto.NetworkService;
+import com.google.tsunami.proto.Software;
+import com.google.tsunami.proto.TargetServiceName;
+import com.google.tsunami.proto.TargetSoftware;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link PluginMatchingIndex}. */
+@RunWith(JUnit4.class)
+public final class PluginMatchingIndexTest {
+  private static final PluginDefinition CATCH_ALL_DETECTOR =
+      PluginDefinition.forPlugin(CatchAllDetector.class);
+  private static final PluginDefinition SERVICE_NAME_DETECTOR =
+      PluginDefinition.forPlugin(ServiceNameDetector.class);
+  private static final PluginDefinition SOFTWARE_DETECTOR =
+      PluginDefinition.forPlugin(SoftwareDetector.class);
+  private static final PluginDefinition WEB_FINGERPRINTER =
+      PluginDefinition.forPlugin(WebFingerprinter.class);
+  private static final PluginDefinition SERVICE_NAME_FINGERPRINTER =
+      PluginDefinition.forPlugin(ServiceNameFingerprinter.class);
+
+  private static final NetworkService HTTP_JENKINS =
+      NetworkService.newBuilder()
+          .setServiceName("HTTP")
+          .setSoftware(Software.newBuilder().setName("jenkins"))
+          .build();
+  private static final NetworkService SSH =
+      NetworkService.newBuilder()
+          .setServiceName("ssh")
+          .setSoftware(Software.newBuilder().setName("OpenSSH"))
+          .build();
+  private static final NetworkService UNKNOWN = NetworkService.getDefaultInstance();
+
+  @Test
+  public void getVulnDetectors_always_matchesInInstallationOrder() {
+    PluginMatchingIndex index =
+        PluginMatchingIndex.build(
+            ImmutableList.of(
+                SOFTWARE_DETECTOR,
+                WEB_FINGERPRINTER,
+                SERVICE_NAME_DETECTOR,
+                CATCH_ALL_DETECTOR));
+
+    ImmutableMap<PluginDefinition, ImmutableList<NetworkService>> matches =
+        index.getVulnDetectors(ImmutableList.of(HTTP_JENKINS, SSH, UNKNOWN));
+
+    assertThat(matches)
+        .containsExactly(
+            SOFTWARE_DETECTOR,
+            ImmutableList.of(HTTP_JENKINS, UNKNOWN),
+            SERVICE_NAME_DETECTOR,
+            ImmutableList.of(HTTP_JENKINS, SSH, UNKNOWN),
+            CATCH_ALL_DETECTOR,
+            ImmutableList.of(HTTP_JENKINS, SSH, UNKNOWN))
+        .inOrder();
+  }
+
+  @Test
+  public void getVulnDetectors_whenNoServiceMatches_returnsEmpty() {
+    PluginMatchingIndex index = PluginMatchingIndex.build(ImmutableList.of(SOFTWARE_DETECTOR));
+
+    assertThat(index.getVulnDetectors(ImmutableList.of(SSH))).isEmpty();
+  }
+
+  @Test
+  public void getServiceFingerprinter_whenMultipleMatches_returnsFirstInstalled() {
+    PluginMatchingIndex index =
+        PluginMatchingIndex.build(
+            ImmutableList.of(SERVICE_NAME_FINGERPRINTER, WEB_FINGERPRINTER, CATCH_ALL_DETECTOR));
+
+    assertThat(index.getServiceFingerprinter(HTTP_JENKINS)).hasValue(SERVICE_NAME_FINGERPRINTER);
+    assertThat(index.getServiceFingerprinter(SSH)).hasValue(SERVICE_NAME_FINGERPRINTER);
+    assertThat(index.getServiceFingerprinter(UNKNOWN)).hasValue(SERVICE_NAME_FINGERPRINTER);
+    assertThat(index.getPortScanners()).isEmpty();
+  }
+
+  @Test
+  public void remotePluginIndex_always_matchesEveryRemotePluginInOrder() {
+    com.google.tsunami.proto.PluginDefinition softwarePlugin =
+        com.google.tsunami.proto.PluginDefinition.newBuilder()
+            .setTargetSoftware(TargetSoftware.newBuilder().setName("Jenkins"))
+            .build();
+    com.google.tsunami.proto.PluginDefinition sshPlugin =
+        com.google.tsunami.proto.PluginDefinition.newBuilder()
+            .setTargetServiceName(TargetServiceName.newBuilder().addValue("SSH"))
+            .build();
+    com.google.tsunami.proto.PluginDefinition ftpPlugin =
+        com.google.tsunami.proto.PluginDefinition.newBuilder()
+            .setTargetServiceName(TargetServiceName.newBuilder().addValue("ftp"))
+            .build();
+    com.google.tsunami.proto.PluginDefinition catchAllPlugin =
+        com.google.tsunami.proto.PluginDefinition.getDefaultInstance();
+    ImmutableList<com.google.tsunami.proto.PluginDefinition> pluginDefinitions =
+        ImmutableList.of(softwarePlugin, sshPlugin, ftpPlugin, catchAllPlugin);
+    PluginMatchingIndex.RemotePluginIndex index =
+        PluginMatchingIndex.RemotePluginIndex.build(pluginDefinitions);
+
+    assertThat(index.getPluginDefinitions()).isSameInstanceAs(pluginDefinitions);
+    assertThat(index.match(ImmutableList.of(HTTP_JENKINS, SSH)))
+        .containsExactly(
+            MatchedPlugin.newBuilder().setPlugin(softwarePlugin).addServices(HTTP_JENKINS).build(),
+            MatchedPlugin.newBuilder().setPlugin(sshPlugin).addServices(SSH).build(),
+            MatchedPlugin.newBuilder().setPlugin(ftpPlugin).build(),
+            MatchedPlugin.newBuilder()
+                .setPlugin(catchAllPlugin)
+                .addServices(HTTP_JENKINS)
+                .addServices(SSH)
+                .build())
+        .inOrder();
+  }
+
+  @PluginInfo(
+      type = PluginType.VULN_DETECTION,
+      name = "CatchAllDetector",
+      version = "v0.1",
+      description = "A VulnDetector without filtering annotations.",
+      author = "fake",
+      bootstrapModule = FakeVulnDetectorBootstrapModule.class)
+  private abstract static class CatchAllDetector implements VulnDetector {}
+
+  @PluginInfo(
+      type = PluginType.VULN_DETECTION,
+      name = "ServiceNameDetector",
+      version = "v0.1",
+      description = "A VulnDetector filtering on service names.",
+      author = "fake",
+      bootstrapModule = FakeVulnDetectorBootstrapModule.class)
+  @ForServiceName({"http", "SSH"})
+  private abstract static class ServiceNameDetector implements VulnDetector {}
+
+  @PluginInfo(
+      type = PluginType.VULN_DETECTION,
+      name = "SoftwareDetector",
+      version = "v0.1",
+      description = "A VulnDetector filtering on software.",
+      author = "fake",
+      bootstrapModule = FakeVulnDetectorBootstrapModule.class)
+  @ForSoftware(name = "Jenkins")
+  private abstract static class SoftwareDetector implements VulnDetector {}
+
+  @PluginInfo(
+      type = PluginType.SERVICE_FINGERPRINT,
+      name = "WebFingerprinter",
+      version = "v0.1",
+      description = "A ServiceFingerprinter for web services.",
+      author = "fake",
+      bootstrapModule = FakeServiceFingerprinterBootstrapModule.class)
+  @ForWebService
+  private abstract static class WebFingerprinter implements ServiceFingerprinter {}
+
+  @PluginInfo(
+      type = PluginType.SERVICE_FINGERPRINT,
+      name = "ServiceNameFingerprinter",
+      version = "v0.1",
+      description = "A ServiceFingerprinter filtering on service names.",
+      author = "fake",
+      bootstrapModule = FakeServiceFingerprinterBootstrapModule.class)
+  @ForServiceName({"http", "ssh"})
+  private abstract static class ServiceNameFingerprinter implements ServiceFingerprinter {}
+}
@@ -47,6 +47,7 @@ import io.grpc.testing.GrpcCleanupRule;
 import io.grpc.util.MutableHandlerRegistry;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -273,6 +274,47 @@ public final class PluginServiceClientTest {
     assertThat(health.get().getStatus()).isEqualTo(ServingStatus.NOT_SERVING);
   }
 
+  @Test
+  public void watchHealth_returnsEachStatusChange() {
+    HealthCheckRequest request = HealthCheckRequest.getDefaultInstance();
+
+    HealthImplBase healthImpl =
+        new HealthImplBase() {
+          @Override
+          public void watch(
+              HealthCheckRequest request, StreamObserver<HealthCheckResponse> responseObserver) {
+            responseObserver.onNext(
+                HealthCheckResponse.newBuilder().setStatus(ServingStatus.SERVING).build());
+            responseObserver.onNext(
+                HealthCheckResponse.newBuilder().setStatus(ServingStatus.NOT_SERVING).build());
+            responseObserver.onCompleted();
+          }
+        };
+    serviceRegistry.addService(healthImpl);
+    List<ServingStatus> statuses = new ArrayList<>();
+    AtomicBoolean completed = new AtomicBoolean();
+
+    pluginService.watchHealth(
+        request,
+        new StreamObserver<HealthCheckResponse>() {
+          @Override
+          public void onNext(HealthCheckResponse response) {
+            statuses.add(response.getStatus());
+          }
+
+          @Override
+          public void onError(Throwable throwable) {}
+
+          @Override
+          public void onCompleted() {
+            completed.set(true);
+          }
+        });
+
+    assertThat(statuses).containsExactly(ServingStatus.SERVING, ServingStatus.NOT_SERVING);
+    assertThat(completed.get()).isTrue();
+  }
+
   private void assertRunResponseContainsAllRunRequestParameters(
       RunResponse response, RunRequest request) throws Exception {
     for (MatchedPlugin plugin : request.getPluginsList()) {
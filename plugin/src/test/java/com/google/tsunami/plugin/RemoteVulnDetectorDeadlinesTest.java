@@ -0,0 +1,85 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.plugin;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Range;
+import java.time.Duration;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link RemoteVulnDetectorDeadlines}. */
+@RunWith(JUnit4.class)
+public final class RemoteVulnDetectorDeadlinesTest {
+
+  @Test
+  public void fromConfig_whenNothingConfigured_returnsDefault() {
+    assertThat(
+            RemoteVulnDetectorDeadlines.fromConfig(
+                new RemoteVulnDetectorConfigProperties(), "34567"))
+        .isEqualTo(RemoteVulnDetectorDeadlines.getDefault());
+  }
+
+  @Test
+  public void fromConfig_withServerOverrides_prefersServerValues() {
+    RemoteVulnDetectorConfigProperties configProperties = new RemoteVulnDetectorConfigProperties();
+    configProperties.healthCheckDeadlineSeconds = 5;
+    configProperties.runDeadlineSeconds = 60;
+    configProperties.languageServers =
+        ImmutableMap.of(
+            "34567", ImmutableMap.of("run_deadline_seconds", 600),
+            "34566", ImmutableMap.of("healthCheckDeadlineSeconds", 1));
+
+    RemoteVulnDetectorDeadlines deadlines =
+        RemoteVulnDetectorDeadlines.fromConfig(configProperties, "34567");
+
+    assertThat(deadlines.healthCheck()).isEqualTo(Duration.ofSeconds(5));
+    assertThat(deadlines.run()).isEqualTo(Duration.ofSeconds(600));
+    assertThat(deadlines.listPlugins())
+        .isEqualTo(RemoteVulnDetectorDeadlines.getDefault().listPlugins());
+  }
+
+  @Test
+  public void runDeadline_always_scalesWithPluginCount() {
+    RemoteVulnDetectorDeadlines deadlines =
+        RemoteVulnDetectorDeadlines.create(
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(100),
+            Duration.ofSeconds(50));
+
+    assertThat(deadlines.runDeadline(0).timeRemaining(SECONDS)).isIn(Range.closed(99L, 100L));
+    assertThat(deadlines.runDeadline(4).timeRemaining(SECONDS)).isIn(Range.closed(299L, 300L));
+  }
+
+  @Test
+  public void healthCheckDeadline_always_startsWhenCreated() throws InterruptedException {
+    RemoteVulnDetectorDeadlines deadlines =
+        RemoteVulnDetectorDeadlines.create(
+            Duration.ofMillis(200),
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(1),
+            Duration.ofSeconds(1));
+
+    Thread.sleep(300);
+
+    assertThat(deadlines.healthCheckDeadline().isExpired()).isFalse();
+  }
+}
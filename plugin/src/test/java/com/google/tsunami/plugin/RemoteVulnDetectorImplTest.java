@@ -15,26 +15,40 @@
  */
 package com.google.tsunami.plugin;
 
+import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.extensions.proto.ProtoTruth.assertThat;
 import static org.junit.Assert.assertThrows;
 
 import com.google.common.collect.ImmutableList;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
+import com.google.protobuf.ByteString;
+import com.google.tsunami.common.data.CrawlContentStore;
 import com.google.tsunami.common.data.NetworkEndpointUtils;
+import com.google.tsunami.proto.CrawlContent;
+import com.google.tsunami.proto.CrawlResult;
 import com.google.tsunami.proto.DetectionReport;
 import com.google.tsunami.proto.DetectionReportList;
+import com.google.tsunami.proto.DetectionStatus;
 import com.google.tsunami.proto.ListPluginsRequest;
 import com.google.tsunami.proto.ListPluginsResponse;
 import com.google.tsunami.proto.MatchedPlugin;
 import com.google.tsunami.proto.NetworkService;
+import com.google.tsunami.proto.PluginCompletion;
 import com.google.tsunami.proto.PluginDefinition;
+import com.google.tsunami.proto.PluginFailure;
 import com.google.tsunami.proto.PluginInfo;
 import com.google.tsunami.proto.PluginServiceGrpc.PluginServiceImplBase;
 import com.google.tsunami.proto.RunRequest;
+import com.google.tsunami.proto.RunRequestVersion;
 import com.google.tsunami.proto.RunResponse;
+import com.google.tsunami.proto.RunStreamResponse;
+import com.google.tsunami.proto.ServiceContext;
 import com.google.tsunami.proto.TargetInfo;
 import com.google.tsunami.proto.TransportProtocol;
+import com.google.tsunami.proto.WebServiceContext;
+import io.grpc.Channel;
+import io.grpc.Status;
 import io.grpc.health.v1.HealthCheckRequest;
 import io.grpc.health.v1.HealthCheckResponse;
 import io.grpc.health.v1.HealthCheckResponse.ServingStatus;
@@ -44,6 +58,9 @@ import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.stub.StreamObserver;
 import io.grpc.testing.GrpcCleanupRule;
 import io.grpc.util.MutableHandlerRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -58,6 +75,7 @@ public final class RemoteVulnDetectorImplTest {
   private static final String PLUGIN_AUTHOR = "tester";
 
   private final MutableHandlerRegistry serviceRegistry = new MutableHandlerRegistry();
+  private final CrawlContentStore crawlContentStore = new CrawlContentStore(1024);
 
   @Rule public final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
 
@@ -109,6 +127,53 @@ public final class RemoteVulnDetectorImplTest {
                 .build());
   }
 
+  @Test
+  public void detect_withCrawlContentReferences_sendsEachContentOnce() throws Exception {
+    registerHealthCheckWithStatus(ServingStatus.SERVING);
+    AtomicReference<RunRequest> runRequest = new AtomicReference<>();
+    serviceRegistry.addService(
+        new PluginServiceImplBase() {
+          @Override
+          public void run(RunRequest request, StreamObserver<RunResponse> responseObserver) {
+            runRequest.set(request);
+            responseObserver.onNext(RunResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+          }
+        });
+    ByteString content = ByteString.copyFromUtf8("<html>shared page</html>");
+    CrawlResult crawlResult =
+        crawlContentStore.toReference(CrawlResult.newBuilder().setContent(content).build());
+    NetworkService serviceToTest =
+        NetworkService.newBuilder()
+            .setNetworkEndpoint(NetworkEndpointUtils.forIpAndPort("1.1.1.1", 80))
+            .setServiceName("http")
+            .setServiceContext(
+                ServiceContext.newBuilder()
+                    .setWebServiceContext(
+                        WebServiceContext.newBuilder().addCrawlResults(crawlResult)))
+            .build();
+
+    RemoteVulnDetector pluginToTest = getNewRemoteVulnDetectorInstance();
+    pluginToTest.addMatchedPluginToDetect(
+        MatchedPlugin.newBuilder()
+            .addServices(serviceToTest)
+            .setPlugin(createSinglePluginDefinitionWithName("test"))
+            .build());
+    pluginToTest.addMatchedPluginToDetect(
+        MatchedPlugin.newBuilder()
+            .addServices(serviceToTest)
+            .setPlugin(createSinglePluginDefinitionWithName("test2"))
+            .build());
+    pluginToTest.detect(TargetInfo.getDefaultInstance(), ImmutableList.of());
+
+    assertThat(runRequest.get().getCrawlContentsList())
+        .containsExactly(
+            CrawlContent.newBuilder()
+                .setHash(crawlResult.getContentHash())
+                .setContent(content)
+                .build());
+  }
+
   @Test
   public void detect_withNonServingServer_returnsEmptyDetectionReportList() throws Exception {
     registerHealthCheckWithStatus(ServingStatus.NOT_SERVING);
@@ -132,6 +197,205 @@ public final class RemoteVulnDetectorImplTest {
         .isEmpty();
   }
 
+  @Test
+  public void detect_withRunStream_returnsReportsAndPluginFailures() throws Exception {
+    registerHealthCheckWithStatus(ServingStatus.SERVING);
+    DetectionReport report =
+        DetectionReport.newBuilder()
+            .setDetectionStatus(DetectionStatus.VULNERABILITY_VERIFIED)
+            .build();
+    PluginFailure failure =
+        PluginFailure.newBuilder().setPluginName("failing").setMessage("Test failure.").build();
+    serviceRegistry.addService(
+        new PluginServiceImplBase() {
+          @Override
+          public void runStream(
+              RunRequest request, StreamObserver<RunStreamResponse> responseObserver) {
+            responseObserver.onNext(
+                RunStreamResponse.newBuilder().setDetectionReport(report).build());
+            responseObserver.onNext(
+                RunStreamResponse.newBuilder()
+                    .setPluginCompletion(PluginCompletion.newBuilder().setPluginName("succeeding"))
+                    .build());
+            responseObserver.onNext(
+                RunStreamResponse.newBuilder()
+                    .setPluginCompletion(
+                        PluginCompletion.newBuilder().setPluginName("failing").setFailure(failure))
+                    .build());
+            responseObserver.onCompleted();
+          }
+        });
+
+    RemoteVulnDetector pluginToTest = getNewRemoteVulnDetectorInstance();
+    addMatchedPlugins(pluginToTest, "succeeding", "failing");
+
+    assertThat(pluginToTest.detect(TargetInfo.getDefaultInstance(), ImmutableList.of()))
+        .isEqualTo(
+            DetectionReportList.newBuilder()
+                .addDetectionReports(report)
+                .addPluginFailures(failure)
+                .build());
+  }
+
+  @Test
+  public void detect_whenRunStreamDeadlineExceeded_reportsPendingPluginsAsTimedOut()
+      throws Exception {
+    registerHealthCheckWithStatus(ServingStatus.SERVING);
+    DetectionReport report =
+        DetectionReport.newBuilder()
+            .setDetectionStatus(DetectionStatus.VULNERABILITY_VERIFIED)
+            .build();
+    serviceRegistry.addService(
+        new PluginServiceImplBase() {
+          @Override
+          public void runStream(
+              RunRequest request, StreamObserver<RunStreamResponse> responseObserver) {
+            // The slow plugin never completes.
+            responseObserver.onNext(
+                RunStreamResponse.newBuilder().setDetectionReport(report).build());
+            responseObserver.onNext(
+                RunStreamResponse.newBuilder()
+                    .setPluginCompletion(PluginCompletion.newBuilder().setPluginName("fast"))
+                    .build());
+          }
+        });
+
+    RemoteVulnDetector pluginToTest =
+        getNewRemoteVulnDetectorInstance(
+            RemoteVulnDetectorDeadlines.create(
+                Duration.ofSeconds(5),
+                Duration.ofSeconds(5),
+                Duration.ofMillis(200),
+                Duration.ZERO));
+    addMatchedPlugins(pluginToTest, "fast", "slow");
+    DetectionReportList reports =
+        pluginToTest.detect(TargetInfo.getDefaultInstance(), ImmutableList.of());
+
+    assertThat(reports.getDetectionReportsList()).containsExactly(report);
+    assertThat(reports.getPluginFailuresList())
+        .comparingExpectedFieldsOnly()
+        .containsExactly(
+            PluginFailure.newBuilder().setPluginName("slow").setTimedOut(true).build());
+  }
+
+  @Test
+  public void detect_whenRunStreamCompletesWithPendingPlugins_reportsThemAsFailed()
+      throws Exception {
+    registerHealthCheckWithStatus(ServingStatus.SERVING);
+    serviceRegistry.addService(
+        new PluginServiceImplBase() {
+          @Override
+          public void runStream(
+              RunRequest request, StreamObserver<RunStreamResponse> responseObserver) {
+            // The skipped plugin is never run by the server.
+            responseObserver.onNext(
+                RunStreamResponse.newBuilder()
+                    .setPluginCompletion(PluginCompletion.newBuilder().setPluginName("run"))
+                    .build());
+            responseObserver.onCompleted();
+          }
+        });
+
+    RemoteVulnDetector pluginToTest = getNewRemoteVulnDetectorInstance();
+    addMatchedPlugins(pluginToTest, "run", "skipped");
+    DetectionReportList reports =
+        pluginToTest.detect(TargetInfo.getDefaultInstance(), ImmutableList.of());
+
+    assertThat(reports.getPluginFailuresList())
+        .comparingExpectedFieldsOnly()
+        .containsExactly(
+            PluginFailure.newBuilder().setPluginName("skipped").setTimedOut(false).build());
+  }
+
+  @Test
+  public void detect_whenRunStreamUnimplemented_fallsBackToRunWithoutRetryingStream()
+      throws Exception {
+    registerHealthCheckWithStatus(ServingStatus.SERVING);
+    AtomicInteger runStreams = new AtomicInteger();
+    AtomicInteger runs = new AtomicInteger();
+    serviceRegistry.addService(
+        new PluginServiceImplBase() {
+          @Override
+          public void run(RunRequest request, StreamObserver<RunResponse> responseObserver) {
+            runs.incrementAndGet();
+            responseObserver.onNext(RunResponse.getDefaultInstance());
+            responseObserver.onCompleted();
+          }
+
+          @Override
+          public void runStream(
+              RunRequest request, StreamObserver<RunStreamResponse> responseObserver) {
+            runStreams.incrementAndGet();
+            responseObserver.onError(Status.UNIMPLEMENTED.asRuntimeException());
+          }
+        });
+
+    RemoteVulnDetector pluginToTest = getNewRemoteVulnDetectorInstance();
+    addMatchedPlugins(pluginToTest, "test");
+    pluginToTest.detect(TargetInfo.getDefaultInstance(), ImmutableList.of());
+    pluginToTest.detect(TargetInfo.getDefaultInstance(), ImmutableList.of());
+
+    assertThat(runStreams.get()).isEqualTo(1);
+    assertThat(runs.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void detect_whenServerSupportsRunRequestV2_sendsEachServiceOnce() throws Exception {
+    AtomicReference<StreamObserver<HealthCheckResponse>> healthWatch = new AtomicReference<>();
+    registerHealthWatchWithStatus(ServingStatus.SERVING, new AtomicInteger(), healthWatch);
+    AtomicReference<RunRequest> runRequest = new AtomicReference<>();
+    serviceRegistry.addService(
+        new PluginServiceImplBase() {
+          @Override
+          public void listPlugins(
+              ListPluginsRequest request, StreamObserver<ListPluginsResponse> responseObserver) {
+            responseObserver.onNext(
+                ListPluginsResponse.newBuilder()
+                    .setRunRequestVersion(RunRequestVersion.RUN_REQUEST_V2)
+                    .build());
+            responseObserver.onCompleted();
+          }
+
+          @Override
+          public void runStream(
+              RunRequest request, StreamObserver<RunStreamResponse> responseObserver) {
+            runRequest.set(request);
+            responseObserver.onCompleted();
+          }
+        });
+    NetworkService httpService = NetworkService.newBuilder().setServiceName("http").build();
+    NetworkService sshService = NetworkService.newBuilder().setServiceName("ssh").build();
+
+    RemoteVulnDetector pluginToTest = getNewRemoteVulnDetectorInstance();
+    pluginToTest.getAllPlugins();
+    pluginToTest.addMatchedPluginToDetect(
+        MatchedPlugin.newBuilder()
+            .setPlugin(createSinglePluginDefinitionWithName("web"))
+            .addServices(httpService)
+            .build());
+    pluginToTest.addMatchedPluginToDetect(
+        MatchedPlugin.newBuilder()
+            .setPlugin(createSinglePluginDefinitionWithName("all"))
+            .addServices(httpService)
+            .addServices(sshService)
+            .build());
+    pluginToTest.detect(TargetInfo.getDefaultInstance(), ImmutableList.of());
+
+    assertThat(runRequest.get().getServicesList()).containsExactly(httpService, sshService);
+    assertThat(runRequest.get().getPluginsList())
+        .containsExactly(
+            MatchedPlugin.newBuilder()
+                .setPlugin(createSinglePluginDefinitionWithName("web"))
+                .addServiceIndexes(runRequest.get().getServicesList().indexOf(httpService))
+                .build(),
+            MatchedPlugin.newBuilder()
+                .setPlugin(createSinglePluginDefinitionWithName("all"))
+                .addServiceIndexes(runRequest.get().getServicesList().indexOf(httpService))
+                .addServiceIndexes(runRequest.get().getServicesList().indexOf(sshService))
+                .build());
+    healthWatch.get().onCompleted();
+  }
+
   @Test
   public void detect_withRpcError_throwsLanguageServerException() throws Exception {
     registerHealthCheckWithError();
@@ -174,7 +438,81 @@ public final class RemoteVulnDetectorImplTest {
     assertThrows(LanguageServerException.class, getNewRemoteVulnDetectorInstance()::getAllPlugins);
   }
 
+  @Test
+  public void detect_withHealthWatch_checksHealthOnce() throws Exception {
+    AtomicInteger healthChecks = new AtomicInteger();
+    AtomicReference<StreamObserver<HealthCheckResponse>> healthWatch = new AtomicReference<>();
+    registerHealthWatchWithStatus(ServingStatus.SERVING, healthChecks, healthWatch);
+    registerSuccessfulRunService();
+
+    RemoteVulnDetector pluginToTest = getNewRemoteVulnDetectorInstance();
+    pluginToTest.detect(TargetInfo.getDefaultInstance(), ImmutableList.of());
+    pluginToTest.detect(TargetInfo.getDefaultInstance(), ImmutableList.of());
+
+    assertThat(healthChecks.get()).isEqualTo(1);
+    healthWatch.get().onCompleted();
+  }
+
+  @Test
+  public void getAllPlugins_withHealthWatch_listsPluginsOncePerGeneration() throws Exception {
+    AtomicInteger healthChecks = new AtomicInteger();
+    AtomicReference<StreamObserver<HealthCheckResponse>> healthWatch = new AtomicReference<>();
+    registerHealthWatchWithStatus(ServingStatus.SERVING, healthChecks, healthWatch);
+    AtomicInteger pluginListings = new AtomicInteger();
+    var plugin = createSinglePluginDefinitionWithName("test");
+    serviceRegistry.addService(
+        new PluginServiceImplBase() {
+          @Override
+          public void listPlugins(
+              ListPluginsRequest request, StreamObserver<ListPluginsResponse> responseObserver) {
+            pluginListings.incrementAndGet();
+            responseObserver.onNext(ListPluginsResponse.newBuilder().addPlugins(plugin).build());
+            responseObserver.onCompleted();
+          }
+        });
+
+    RemoteVulnDetector pluginToTest = getNewRemoteVulnDetectorInstance();
+    pluginToTest.getAllPlugins();
+    assertThat(pluginToTest.getAllPlugins()).containsExactly(plugin);
+    assertThat(pluginListings.get()).isEqualTo(1);
+    // The watch stream ending means the server may have been restarted.
+    healthWatch.get().onCompleted();
+
+    assertThat(pluginToTest.getAllPlugins()).containsExactly(plugin);
+    assertThat(pluginListings.get()).isEqualTo(2);
+    healthWatch.get().onCompleted();
+  }
+
+  @Test
+  public void getAllPlugins_withoutHealthWatch_listsPluginsOnce() throws Exception {
+    // The health service only implements Check, so the watch fails as unimplemented.
+    registerHealthCheckWithStatus(ServingStatus.SERVING);
+    AtomicInteger pluginListings = new AtomicInteger();
+    var plugin = createSinglePluginDefinitionWithName("test");
+    serviceRegistry.addService(
+        new PluginServiceImplBase() {
+          @Override
+          public void listPlugins(
+              ListPluginsRequest request, StreamObserver<ListPluginsResponse> responseObserver) {
+            pluginListings.incrementAndGet();
+            responseObserver.onNext(ListPluginsResponse.newBuilder().addPlugins(plugin).build());
+            responseObserver.onCompleted();
+          }
+        });
+
+    RemoteVulnDetector pluginToTest = getNewRemoteVulnDetectorInstance();
+    pluginToTest.getAllPlugins();
+
+    assertThat(pluginToTest.getAllPlugins()).containsExactly(plugin);
+    assertThat(pluginListings.get()).isEqualTo(1);
+  }
+
   private RemoteVulnDetector getNewRemoteVulnDetectorInstance() throws Exception {
+    return getNewRemoteVulnDetectorInstance(RemoteVulnDetectorDeadlines.getDefault());
+  }
+
+  private RemoteVulnDetector getNewRemoteVulnDetectorInstance(
+      RemoteVulnDetectorDeadlines deadlines) throws Exception {
     String serverName = InProcessServerBuilder.generateName();
     grpcCleanup.register(
         InProcessServerBuilder.forName(serverName)
@@ -183,6 +521,8 @@ public final class RemoteVulnDetectorImplTest {
             .build()
             .start());
 
+    Channel channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+    LanguageServerHealth health = new LanguageServerHealth(new PluginServiceClient(channel));
     return Guice.createInjector(
             new AbstractModule() {
               @Override
@@ -190,12 +530,25 @@ public final class RemoteVulnDetectorImplTest {
                 bind(RemoteVulnDetector.class)
                     .toInstance(
                         new RemoteVulnDetectorImpl(
-                            InProcessChannelBuilder.forName(serverName).directExecutor().build()));
+                            channel,
+                            health,
+                            new RemotePluginDefinitionCache(health),
+                            crawlContentStore,
+                            deadlines));
               }
             })
         .getInstance(RemoteVulnDetector.class);
   }
 
+  private void addMatchedPlugins(RemoteVulnDetector remoteVulnDetector, String... pluginNames) {
+    for (String pluginName : pluginNames) {
+      remoteVulnDetector.addMatchedPluginToDetect(
+          MatchedPlugin.newBuilder()
+              .setPlugin(createSinglePluginDefinitionWithName(pluginName))
+              .build());
+    }
+  }
+
   private void registerHealthCheckWithError() {
     serviceRegistry.addService(
         new HealthImplBase() {
@@ -208,6 +561,29 @@ public final class RemoteVulnDetectorImplTest {
         });
   }
 
+  private void registerHealthWatchWithStatus(
+      ServingStatus status,
+      AtomicInteger healthChecks,
+      AtomicReference<StreamObserver<HealthCheckResponse>> healthWatch) {
+    serviceRegistry.addService(
+        new HealthImplBase() {
+          @Override
+          public void check(
+              HealthCheckRequest request, StreamObserver<HealthCheckResponse> responseObserver) {
+            healthChecks.incrementAndGet();
+            responseObserver.onNext(HealthCheckResponse.newBuilder().setStatus(status).build());
+            responseObserver.onCompleted();
+          }
+
+          @Override
+          public void watch(
+              HealthCheckRequest request, StreamObserver<HealthCheckResponse> responseObserver) {
+            responseObserver.onNext(HealthCheckResponse.newBuilder().setStatus(status).build());
+            healthWatch.set(responseObserver);
+          }
+        });
+  }
+
   private void registerHealthCheckWithStatus(ServingStatus status) {
     serviceRegistry.addService(
         new HealthImplBase() {
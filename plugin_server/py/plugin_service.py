@@ -14,17 +14,21 @@
 """Python gRPC PluginService server adapter to provide communication with the Java client."""
 
 from concurrent import futures
-from typing import cast
+from typing import Iterator, cast
 
 from absl import logging
 
 from tsunami.plugin_server.py import tsunami_plugin
 from tsunami.proto import detection_pb2
+from tsunami.proto import network_service_pb2
 from tsunami.proto import plugin_representation_pb2
 from tsunami.proto import plugin_service_pb2
 from tsunami.proto import plugin_service_pb2_grpc
 
 RunResponse = plugin_service_pb2.RunResponse
+RunStreamResponse = plugin_service_pb2.RunStreamResponse
+PluginCompletion = plugin_service_pb2.PluginCompletion
+PluginFailure = detection_pb2.PluginFailure
 ListPluginsRequest = plugin_service_pb2.ListPluginsRequest
 ListPluginsResponse = plugin_service_pb2.ListPluginsResponse
 _PluginServiceServicer = plugin_service_pb2_grpc.PluginServiceServicer
@@ -51,24 +55,13 @@ class PluginServiceServicer(plugin_service_pb2_grpc.PluginServiceServicer):
       servicer_context: plugin_service_pb2_grpc.PluginServiceServicer
   ) -> RunResponse:
     logging.info('Received Run request = %s', request)
+    _resolve_crawl_contents(request)
     report_list = detection_pb2.DetectionReportList()
 
-    detection_futures = []
-
     with futures.ThreadPoolExecutor(max_workers=self.max_workers) as executor:
-      for matched_plugin in request.plugins:
-        plugin_def = matched_plugin.plugin
-        for plugin in self.py_plugins:
-          if plugin.GetPluginDefinition() == plugin_def:
-            logging.info('Running python plugin %s.', type(plugin).__name__)
-
-            if plugin_def.info.type is _PluginType.VULN_DETECTION:
-              plugin = cast(tsunami_plugin.VulnDetector, plugin)
-              detection_futures.append(
-                  executor.submit(plugin.Detect, request.target,
-                                  matched_plugin.services))
-
-    for detection in detection_futures:
+      detection_futures = self._SubmitDetections(request, executor)
+
+    for detection in detection_futures.values():
       report_list.detection_reports.extend(
           detection.result(timeout=_DETECTION_TIMEOUT).detection_reports)
 
@@ -76,10 +69,127 @@ class PluginServiceServicer(plugin_service_pb2_grpc.PluginServiceServicer):
     response.reports.CopyFrom(report_list)
     return response
 
+  def RunStream(
+      self, request: plugin_service_pb2.RunRequest,
+      servicer_context: plugin_service_pb2_grpc.PluginServiceServicer
+  ) -> Iterator[RunStreamResponse]:
+    """Streams the reports of each plugin as soon as the plugin completes.
+
+    Every matched plugin is followed by a PluginCompletion message, carrying a
+    PluginFailure when the plugin raised or did not complete in time.
+
+    Args:
+      request: the RunRequest listing the plugins to run.
+      servicer_context: the context of the RPC.
+
+    Yields:
+      The detection reports and completion of each plugin.
+    """
+    logging.info('Received RunStream request = %s', request)
+    _resolve_crawl_contents(request)
+
+    executor = futures.ThreadPoolExecutor(max_workers=self.max_workers)
+    detection_futures = self._SubmitDetections(request, executor)
+    pending_plugins = {
+        future: plugin_name for plugin_name, future in detection_futures.items()
+    }
+    try:
+      for detection in futures.as_completed(
+          pending_plugins, timeout=_DETECTION_TIMEOUT):
+        plugin_name = pending_plugins.pop(detection)
+        completion = PluginCompletion(plugin_name=plugin_name)
+        try:
+          for report in detection.result().detection_reports:
+            yield RunStreamResponse(detection_report=report)
+        except Exception as e:  # pylint: disable=broad-except
+          logging.exception('Python plugin %s failed.', plugin_name)
+          completion.failure.CopyFrom(
+              PluginFailure(plugin_name=plugin_name, message=str(e)))
+        yield RunStreamResponse(plugin_completion=completion)
+    except futures.TimeoutError:
+      for plugin_name in pending_plugins.values():
+        logging.warning('Python plugin %s timed out.', plugin_name)
+        yield RunStreamResponse(
+            plugin_completion=PluginCompletion(
+                plugin_name=plugin_name,
+                failure=PluginFailure(
+                    plugin_name=plugin_name,
+                    timed_out=True,
+                    message='Plugin did not complete in %d seconds.' %
+                    _DETECTION_TIMEOUT)))
+    finally:
+      executor.shutdown(wait=False)
+
   def ListPlugins(
       self, request: ListPluginsRequest,
       servicer_context: _PluginServiceServicer) -> ListPluginsResponse:
-    response = ListPluginsResponse()
+    response = ListPluginsResponse(
+        run_request_version=plugin_service_pb2.RUN_REQUEST_V2)
     response.plugins.MergeFrom(
         [plugin.GetPluginDefinition() for plugin in self.py_plugins])
     return response
+
+  def _SubmitDetections(
+      self, request: plugin_service_pb2.RunRequest,
+      executor: futures.Executor) -> dict[str, futures.Future]:
+    """Submits the detection of every matched python plugin, keyed by name."""
+    detection_futures = {}
+    for matched_plugin in request.plugins:
+      plugin_def = matched_plugin.plugin
+      for plugin in self.py_plugins:
+        if plugin.GetPluginDefinition() == plugin_def:
+          logging.info('Running python plugin %s.', type(plugin).__name__)
+
+          if plugin_def.info.type is _PluginType.VULN_DETECTION:
+            plugin = cast(tsunami_plugin.VulnDetector, plugin)
+            detection_futures[plugin_def.info.name] = executor.submit(
+                plugin.Detect, request.target,
+                _get_matched_services(request, matched_plugin))
+    return detection_futures
+
+
+def _get_matched_services(
+    request: plugin_service_pb2.RunRequest,
+    matched_plugin: plugin_service_pb2.MatchedPlugin
+) -> list[network_service_pb2.NetworkService]:
+  """Gets the network services matched by a plugin.
+
+  Requests of RUN_REQUEST_V2 send every service once in request.services and
+  each matched plugin only references them by index.
+
+  Args:
+    request: the RunRequest containing the matched plugin.
+    matched_plugin: the plugin to get the services of.
+
+  Returns:
+    The network services matched by the plugin.
+  """
+  if matched_plugin.service_indexes:
+    return [request.services[index] for index in matched_plugin.service_indexes]
+  return list(matched_plugin.services)
+
+
+def _resolve_crawl_contents(request: plugin_service_pb2.RunRequest) -> None:
+  """Embeds the shared crawl contents into the crawl results referencing them.
+
+  The Java client sends each crawled content once in request.crawl_contents
+  and only its hash in the crawl results, python plugins read the content from
+  the crawl results directly.
+
+  Args:
+    request: the RunRequest to resolve in place.
+  """
+  if not request.crawl_contents:
+    return
+  contents = {
+      crawl_content.hash: crawl_content.content
+      for crawl_content in request.crawl_contents
+  }
+  services = list(request.services)
+  for matched_plugin in request.plugins:
+    services.extend(matched_plugin.services)
+  for service in services:
+    web_service_context = service.service_context.web_service_context
+    for crawl_result in web_service_context.crawl_results:
+      if crawl_result.content_hash and not crawl_result.content:
+        crawl_result.content = contents.get(crawl_result.content_hash, b'')
@@ -38,6 +38,7 @@ _AddressFamily = network_pb2.AddressFamily
 _ServiceDescriptor = plugin_service_pb2.DESCRIPTOR.services_by_name[
     'PluginService']
 _RunMethod = _ServiceDescriptor.methods_by_name['Run']
+_RunStreamMethod = _ServiceDescriptor.methods_by_name['RunStream']
 _ListPluginsMethod = _ServiceDescriptor.methods_by_name['ListPlugins']
 MAX_WORKERS = 1
 
@@ -87,6 +88,32 @@ class PluginServiceTest(absltest.TestCase):
             target=target, network_service=services[0]),
         response.reports.detection_reports[0])
 
+  def test_run_with_service_indexes_returns_valid_response(self):
+    plugin_to_test = FakeVulnDetector()
+    endpoint = _build_network_endpoint('1.1.1.1', 80)
+    service = _NetworkService(
+        network_endpoint=endpoint,
+        transport_protocol=network_pb2.TCP,
+        service_name='http')
+    target = _TargetInfo(network_endpoints=[endpoint])
+    request = plugin_service_pb2.RunRequest(
+        target=target,
+        services=[service],
+        plugins=[
+            plugin_service_pb2.MatchedPlugin(
+                service_indexes=[0],
+                plugin=plugin_to_test.GetPluginDefinition())
+        ])
+
+    rpc = self._server.invoke_unary_unary(_RunMethod, (), request, None)
+    response, _, _, _ = rpc.termination()
+
+    self.assertLen(response.reports.detection_reports, 1)
+    self.assertEqual(
+        plugin_to_test._BuildFakeDetectionReport(
+            target=target, network_service=service),
+        response.reports.detection_reports[0])
+
   def test_run_no_plugins_registered_returns_empty_response(self):
     endpoint = _build_network_endpoint('1.1.1.1', 80)
     target = _TargetInfo(network_endpoints=[endpoint])
@@ -97,13 +124,43 @@ class PluginServiceTest(absltest.TestCase):
 
     self.assertEmpty(response.reports.detection_reports)
 
+  def test_run_stream_plugins_registered_streams_reports_and_completion(self):
+    plugin_to_test = FakeVulnDetector()
+    endpoint = _build_network_endpoint('1.1.1.1', 80)
+    service = _NetworkService(
+        network_endpoint=endpoint,
+        transport_protocol=network_pb2.TCP,
+        service_name='http')
+    target = _TargetInfo(network_endpoints=[endpoint])
+    request = plugin_service_pb2.RunRequest(
+        target=target,
+        plugins=[
+            plugin_service_pb2.MatchedPlugin(
+                services=[service],
+                plugin=plugin_to_test.GetPluginDefinition())
+        ])
+
+    rpc = self._server.invoke_unary_stream(_RunStreamMethod, (), request, None)
+    responses = [rpc.take_response(), rpc.take_response()]
+    rpc.termination()
+
+    self.assertEqual(
+        plugin_to_test._BuildFakeDetectionReport(
+            target=target, network_service=service),
+        responses[0].detection_report)
+    self.assertEqual(
+        plugin_service_pb2.PluginCompletion(
+            plugin_name=plugin_to_test.GetPluginDefinition().info.name),
+        responses[1].plugin_completion)
+
   def test_list_plugins_plugins_registered_returns_valid_response(self):
     request = plugin_service.ListPluginsRequest()
     rpc = self._server.invoke_unary_unary(_ListPluginsMethod, (), request, None)
     response, _, _, _ = rpc.termination()
     self.assertEqual(
         plugin_service.ListPluginsResponse(
-            plugins=[self.test_plugin.GetPluginDefinition()]), response)
+            plugins=[self.test_plugin.GetPluginDefinition()],
+            run_request_version=plugin_service_pb2.RUN_REQUEST_V2), response)
 
 
 def _build_network_endpoint(ip: str, port: int) -> _NetworkEndpoint:
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * An annotation processor that writes an index of the classes Tsunami discovers at runtime into
+ * the {@code META-INF/tsunami/class-index} resource of the compiled jar.
+ *
+ * <p>The index lists all Tsunami plugins, config classes annotated by {@code ConfigProperties} and
+ * {@code CliOption} implementations of the compilation, one {@code <kind> <binary class name>}
+ * entry per line. At runtime Tsunami loads the merged indexes instead of scanning the full
+ * classpath, see {@code com.google.tsunami.common.reflection.TsunamiClassIndex}. Plugin builds
+ * enable the index by adding this processor to their {@code annotationProcessor} dependencies.
+ *
+ * <p>An index is written for every compilation, even an empty one, as its presence tells Tsunami
+ * that the jar doesn't need to be scanned.
+ */
+@SupportedAnnotationTypes("*")
+public final class ClassIndexProcessor extends AbstractProcessor {
+  // Names below must be kept in sync with TsunamiClassIndex.
+  static final String INDEX_RESOURCE = "META-INF/tsunami/class-index";
+  static final String PLUGIN_KIND = "plugin";
+  static final String CONFIG_PROPERTIES_KIND = "config_properties";
+  static final String CLI_OPTION_KIND = "cli_option";
+
+  private static final String TSUNAMI_PLUGIN_INTERFACE = "com.google.tsunami.plugin.TsunamiPlugin";
+  private static final String REMOTE_VULN_DETECTOR_INTERFACE =
+      "com.google.tsunami.plugin.RemoteVulnDetector";
+  private static final String CLI_OPTION_INTERFACE = "com.google.tsunami.common.cli.CliOption";
+  private static final String CONFIG_PROPERTIES_ANNOTATION =
+      "com.google.tsunami.common.config.annotations.ConfigProperties";
+
+  private final Set<String> indexEntries = new TreeSet<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      writeIndex();
+    } else {
+      for (Element rootElement : roundEnv.getRootElements()) {
+        indexElement(rootElement);
+      }
+    }
+    // Never claims any annotations so that other processors still see them.
+    return false;
+  }
+
+  private void indexElement(Element element) {
+    if (!(element instanceof TypeElement)) {
+      return;
+    }
+    TypeElement typeElement = (TypeElement) element;
+    if (typeElement.getKind().equals(ElementKind.CLASS)) {
+      String className = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+      if (isSubtypeOf(typeElement, TSUNAMI_PLUGIN_INTERFACE)
+          && !isSubtypeOf(typeElement, REMOTE_VULN_DETECTOR_INTERFACE)) {
+        indexEntries.add(PLUGIN_KIND + " " + className);
+      }
+      if (isSubtypeOf(typeElement, CLI_OPTION_INTERFACE)) {
+        indexEntries.add(CLI_OPTION_KIND + " " + className);
+      }
+      if (hasAnnotation(typeElement, CONFIG_PROPERTIES_ANNOTATION)
+          && !typeElement.getModifiers().contains(Modifier.ABSTRACT)) {
+        indexEntries.add(CONFIG_PROPERTIES_KIND + " " + className);
+      }
+    }
+    for (Element enclosedElement : typeElement.getEnclosedElements()) {
+      indexElement(enclosedElement);
+    }
+  }
+
+  private boolean isSubtypeOf(TypeElement typeElement, String superTypeName) {
+    // The super type is absent when the compilation doesn't depend on the defining module.
+    TypeElement superType = processingEnv.getElementUtils().getTypeElement(superTypeName);
+    if (superType == null) {
+      return false;
+    }
+    TypeMirror erasedType = processingEnv.getTypeUtils().erasure(typeElement.asType());
+    TypeMirror erasedSuperType = processingEnv.getTypeUtils().erasure(superType.asType());
+    return processingEnv.getTypeUtils().isAssignable(erasedType, erasedSuperType);
+  }
+
+  private static boolean hasAnnotation(TypeElement typeElement, String annotationName) {
+    return typeElement.getAnnotationMirrors().stream()
+        .anyMatch(
+            annotationMirror ->
+                ((TypeElement) annotationMirror.getAnnotationType().asElement())
+                    .getQualifiedName()
+                    .contentEquals(annotationName));
+  }
+
+  private void writeIndex() {
+    try {
+      FileObject indexResource =
+          processingEnv
+              .getFiler()
+              .createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_RESOURCE);
+      try (Writer writer = indexResource.openWriter()) {
+        for (String indexEntry : indexEntries) {
+          writer.write(indexEntry);
+          writer.write('\n');
+        }
+      }
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(
+              Diagnostic.Kind.ERROR,
+              String.format("Unable to write Tsunami class index: %s", e.getMessage()));
+    }
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.processor;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+
+import com.google.common.collect.ImmutableList;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ClassIndexProcessor}. */
+@RunWith(JUnit4.class)
+public final class ClassIndexProcessorTest {
+  // Stand-ins for the Tsunami types, as the processor must not depend on the modules defining them.
+  private static final JavaFileObject TSUNAMI_PLUGIN =
+      JavaFileObjects.forSourceLines(
+          "com.google.tsunami.plugin.TsunamiPlugin",
+          "package com.google.tsunami.plugin;",
+          "public interface TsunamiPlugin {}");
+  private static final JavaFileObject REMOTE_VULN_DETECTOR =
+      JavaFileObjects.forSourceLines(
+          "com.google.tsunami.plugin.RemoteVulnDetector",
+          "package com.google.tsunami.plugin;",
+          "public interface RemoteVulnDetector extends TsunamiPlugin {}");
+  private static final JavaFileObject CLI_OPTION =
+      JavaFileObjects.forSourceLines(
+          "com.google.tsunami.common.cli.CliOption",
+          "package com.google.tsunami.common.cli;",
+          "public interface CliOption {}");
+  private static final JavaFileObject CONFIG_PROPERTIES =
+      JavaFileObjects.forSourceLines(
+          "com.google.tsunami.common.config.annotations.ConfigProperties",
+          "package com.google.tsunami.common.config.annotations;",
+          "public @interface ConfigProperties {}");
+
+  @Test
+  public void process_withPlugins_indexesConcreteAndAbstractPlugins() {
+    // Abstract plugins are indexed just like the classpath scan does.
+    Compilation compilation =
+        compile(
+            JavaFileObjects.forSourceLines(
+                "test.BasePlugin",
+                "package test;",
+                "public abstract class BasePlugin",
+                "    implements com.google.tsunami.plugin.TsunamiPlugin {}"),
+            JavaFileObjects.forSourceLines(
+                "test.FakePlugin",
+                "package test;",
+                "public final class FakePlugin extends BasePlugin {}"));
+
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, ClassIndexProcessor.INDEX_RESOURCE)
+        .contentsAsUtf8String()
+        .isEqualTo("plugin test.BasePlugin\nplugin test.FakePlugin\n");
+  }
+
+  @Test
+  public void process_withNestedClasses_indexesBinaryNames() {
+    Compilation compilation =
+        compile(
+            JavaFileObjects.forSourceLines(
+                "test.Outer",
+                "package test;",
+                "public final class Outer {",
+                "  public static final class Plugin",
+                "      implements com.google.tsunami.plugin.TsunamiPlugin {",
+                "    public static final class Option",
+                "        implements com.google.tsunami.common.cli.CliOption {}",
+                "  }",
+                "  @com.google.tsunami.common.config.annotations.ConfigProperties",
+                "  public static final class Config {}",
+                "}"));
+
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, ClassIndexProcessor.INDEX_RESOURCE)
+        .contentsAsUtf8String()
+        .isEqualTo(
+            "cli_option test.Outer$Plugin$Option\n"
+                + "config_properties test.Outer$Config\n"
+                + "plugin test.Outer$Plugin\n");
+  }
+
+  @Test
+  public void process_withRemoteVulnDetector_excludesIt() {
+    Compilation compilation =
+        compile(
+            JavaFileObjects.forSourceLines(
+                "test.FakeRemoteVulnDetector",
+                "package test;",
+                "public final class FakeRemoteVulnDetector",
+                "    implements com.google.tsunami.plugin.RemoteVulnDetector {}"));
+
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, ClassIndexProcessor.INDEX_RESOURCE)
+        .contentsAsUtf8String()
+        .isEmpty();
+  }
+
+  @Test
+  public void process_withAbstractConfigProperties_excludesIt() {
+    Compilation compilation =
+        compile(
+            JavaFileObjects.forSourceLines(
+                "test.BaseConfig",
+                "package test;",
+                "@com.google.tsunami.common.config.annotations.ConfigProperties",
+                "public abstract class BaseConfig {}"),
+            JavaFileObjects.forSourceLines(
+                "test.FakeConfig",
+                "package test;",
+                "@com.google.tsunami.common.config.annotations.ConfigProperties",
+                "public final class FakeConfig extends BaseConfig {}"));
+
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, ClassIndexProcessor.INDEX_RESOURCE)
+        .contentsAsUtf8String()
+        .isEqualTo("config_properties test.FakeConfig\n");
+  }
+
+  @Test
+  public void process_withNothingToIndex_writesEmptyIndex() {
+    Compilation compilation =
+        javac()
+            .withProcessors(new ClassIndexProcessor())
+            .compile(
+                JavaFileObjects.forSourceLines(
+                    "test.Unrelated", "package test;", "public final class Unrelated {}"));
+
+    assertThat(compilation).succeeded();
+    assertThat(compilation)
+        .generatedFile(StandardLocation.CLASS_OUTPUT, ClassIndexProcessor.INDEX_RESOURCE)
+        .contentsAsUtf8String()
+        .isEmpty();
+  }
+
+  private static Compilation compile(JavaFileObject... sources) {
+    return javac()
+        .withProcessors(new ClassIndexProcessor())
+        .compile(
+            ImmutableList.<JavaFileObject>builder()
+                .add(TSUNAMI_PLUGIN, REMOTE_VULN_DETECTOR, CLI_OPTION, CONFIG_PROPERTIES)
+                .add(sources)
+                .build());
+  }
+}
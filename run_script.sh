@@ -1,12 +1,6 @@
 #!/bin/bash
-ips=$(cat ./config/iplist | sed 1d)
-
-for ip in $ips
-do
-    java -cp "tsunami.jar:plugins/*" "-Dtsunami-config.location=tsunami.yaml" \
-    "com.google.tsunami.main.cli.TsunamiCli" --ip-v4-target=$ip --scan-results-local-output-format=JSON \
-    --scan-results-local-output-filename=logs/tsunami-output-$ip.json
-done            
-
-
-
+# Scans every target listed in config/iplist within a single JVM.
+java -cp "tsunami.jar:plugins/*" "-Dtsunami-config.location=tsunami.yaml" \
+    "com.google.tsunami.main.cli.TsunamiCli" --targets-file=./config/iplist \
+    --max-concurrent-targets=4 --scan-results-local-output-format=JSON \
+    --scan-results-local-output-filename=logs/tsunami-output-{target}.json
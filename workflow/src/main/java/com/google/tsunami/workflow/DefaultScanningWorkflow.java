@@ -22,8 +22,10 @@ import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
 import com.google.common.flogger.GoogleLogger;
 import com.google.common.util.concurrent.FluentFuture;
 import com.google.common.util.concurrent.Futures;
@@ -31,6 +33,10 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.protobuf.util.Durations;
 import com.google.protobuf.util.Timestamps;
 import com.google.tsunami.common.TsunamiException;
+import com.google.tsunami.common.data.CrawlContentStore;
+import com.google.tsunami.common.data.NetworkEndpointUtils;
+import com.google.tsunami.common.data.NetworkServiceUtils;
+import com.google.tsunami.common.net.http.HostCircuitBreaker;
 import com.google.tsunami.common.time.UtcClock;
 import com.google.tsunami.plugin.LanguageServerException;
 import com.google.tsunami.plugin.PluginExecutionException;
@@ -42,11 +48,14 @@ import com.google.tsunami.plugin.PluginManager.PluginMatchingResult;
 import com.google.tsunami.plugin.PortScanner;
 import com.google.tsunami.plugin.ServiceFingerprinter;
 import com.google.tsunami.plugin.VulnDetector;
+import com.google.tsunami.proto.CrawlConfig;
+import com.google.tsunami.proto.CrawlResult;
 import com.google.tsunami.proto.DetectionReport;
 import com.google.tsunami.proto.DetectionReportList;
 import com.google.tsunami.proto.DetectionStatus;
 import com.google.tsunami.proto.FingerprintingReport;
 import com.google.tsunami.proto.FullDetectionReports;
+import com.google.tsunami.proto.NetworkEndpoint;
 import com.google.tsunami.proto.NetworkService;
 import com.google.tsunami.proto.PortScanningReport;
 import com.google.tsunami.proto.ReconnaissanceReport;
@@ -58,6 +67,7 @@ import com.google.tsunami.proto.TargetInfo;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -68,9 +78,9 @@ import javax.inject.Provider;
 /**
  * Default scanning workflow for Tsunami.
  *
- * <p>This workflow is intended to be invoked by Tsunami's command line tool. One {@link
- * DefaultScanningWorkflow} object will be created for one target IP or hostname, and scans for
- * different IP / hostname target will be executed in isolated processes.
+ * <p>This workflow is intended to be invoked by Tsunami's command line tool. All the state of a
+ * scan is kept in a per-invocation {@link ScanContext}, so a single {@link DefaultScanningWorkflow}
+ * object can run scans for many different targets concurrently.
  *
  * <p>Tsunami performs the network scanning in the following steps:
  *
@@ -81,31 +91,64 @@ import javax.inject.Provider;
  *   <li>Vulnerability detection by matching the identified network services to corresponding
  *       detectors.
  * </ol>
+ *
+ * <p>When {@link WorkflowConfigProperties#streamingVulnDetection} is enabled, the last two steps
+ * overlap: detectors for a network service start as soon as that service is fingerprinted.
+ *
+ * <p>When {@link WorkflowConfigProperties#webCrawling} is enabled, web services are crawled by the
+ * {@link WebCrawler} between fingerprinting and vulnerability detection, unless their fingerprinter
+ * already filled their crawl results. The crawled content is held once in the {@link
+ * CrawlContentStore} during the scan and added once to the reconnaissance report of the results.
+ *
+ * <p>Detectors whose matched services are all on hosts that went dark during the scan, as reported
+ * by the {@link HostCircuitBreaker} of the HTTP client, are skipped and reported as failed.
  */
-// TODO(b/145315535): provide a cleaner API to avoid executing the same workflow on different scan
-// target.
 public final class DefaultScanningWorkflow {
   private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  private static final int DEFAULT_WEB_CRAWL_MAX_DEPTH = 2;
 
   private final PluginManager pluginManager;
   private final Clock clock;
   private final Provider<PluginExecutor> pluginExecutorProvider;
+  private final boolean streamingVulnDetection;
+  private final HostCircuitBreaker hostCircuitBreaker;
+  private final WebCrawler webCrawler;
+  private final CrawlContentStore crawlContentStore;
+  private final boolean webCrawling;
+  private final int webCrawlMaxDepth;
 
-  private Instant scanStartTimestamp;
-  private ExecutionTracer executionTracer;
+  // Only used for inspecting the most recent scan, never read by the workflow itself.
+  private volatile ExecutionTracer lastExecutionTracer;
 
   @Inject
   public DefaultScanningWorkflow(
       PluginManager pluginManager,
       @UtcClock Clock clock,
-      Provider<PluginExecutor> pluginExecutorProvider) {
+      Provider<PluginExecutor> pluginExecutorProvider,
+      WorkflowConfigProperties workflowConfigProperties,
+      HostCircuitBreaker hostCircuitBreaker,
+      WebCrawler webCrawler,
+      CrawlContentStore crawlContentStore) {
     this.pluginManager = checkNotNull(pluginManager);
     this.clock = checkNotNull(clock);
     this.pluginExecutorProvider = checkNotNull(pluginExecutorProvider);
+    this.streamingVulnDetection =
+        Boolean.TRUE.equals(checkNotNull(workflowConfigProperties).streamingVulnDetection);
+    this.hostCircuitBreaker = checkNotNull(hostCircuitBreaker);
+    this.webCrawler = checkNotNull(webCrawler);
+    this.crawlContentStore = checkNotNull(crawlContentStore);
+    this.webCrawling = Boolean.TRUE.equals(workflowConfigProperties.webCrawling);
+    this.webCrawlMaxDepth =
+        Optional.ofNullable(workflowConfigProperties.webCrawlMaxDepth)
+            .orElse(DEFAULT_WEB_CRAWL_MAX_DEPTH);
   }
 
+  /**
+   * Gets the {@link ExecutionTracer} of the most recently started scan. When scans run
+   * concurrently, the returned tracer might belong to any of the in-flight scans.
+   */
   public ExecutionTracer getExecutionTracer() {
-    return executionTracer;
+    return lastExecutionTracer;
   }
 
   /**
@@ -128,38 +171,61 @@ public final class DefaultScanningWorkflow {
    */
   public ListenableFuture<ScanResults> runAsync(ScanTarget scanTarget) {
     checkNotNull(scanTarget);
-    scanStartTimestamp = Instant.now(clock);
-    executionTracer = ExecutionTracer.startWorkflow();
+    ScanContext scanContext = new ScanContext(Instant.now(clock), ExecutionTracer.startWorkflow());
+    lastExecutionTracer = scanContext.executionTracer;
     logger.atInfo().log("Staring Tsunami scanning workflow.");
-    FluentFuture<ReconnaissanceReport> reconnaissanceReport;
-
-    if (scanTarget.hasNetworkService()) {
-      PortScanningReport portScanningReport = buildUriPortScanningReport(scanTarget);
-      reconnaissanceReport = FluentFuture.from(fingerprintNetworkServices(portScanningReport));
+    FluentFuture<PortScanningReport> portScanningReport =
+        scanTarget.hasNetworkService()
+            ? FluentFuture.from(
+                immediateFuture(buildUriPortScanningReport(scanContext, scanTarget)))
+            : FluentFuture.from(scanPorts(scanContext, scanTarget));
+    FluentFuture<ScanResults> scanResultsFuture;
+    if (streamingVulnDetection) {
+      scanResultsFuture =
+          portScanningReport.transformAsync(
+              report -> fingerprintAndDetectVulnerabilities(scanContext, report),
+              directExecutor());
     } else {
-      reconnaissanceReport =
-          FluentFuture.from(scanPorts(scanTarget))
-              .transformAsync(this::fingerprintNetworkServices, directExecutor());
+      scanResultsFuture =
+          portScanningReport
+              .transformAsync(
+                  report -> fingerprintNetworkServices(scanContext, report), directExecutor())
+              .transformAsync(
+                  reconnaissance -> crawlWebServices(scanContext, reconnaissance),
+                  directExecutor())
+              .transformAsync(
+                  reconnaissance -> detectVulnerabilities(scanContext, reconnaissance),
+                  directExecutor());
     }
-    return reconnaissanceReport
-        .transformAsync(this::detectVulnerabilities, directExecutor())
+    return scanResultsFuture
         // Unfortunately FluentFuture doesn't support future peeking.
         .transform(
             scanResults -> {
-              logger.atInfo().log("%s", executionTracer.buildLoggableExecutionTrace(scanResults));
+              logger.atInfo().log(
+                  "%s", scanContext.executionTracer.buildLoggableExecutionTrace(scanResults));
               return scanResults;
             },
             directExecutor())
         // Execution errors are handled and reported back in the ScanResults.
-        .catching(PluginExecutionException.class, this::onExecutionError, directExecutor())
-        .catching(LanguageServerException.class, this::onExecutionError, directExecutor())
-        .catching(ScanningWorkflowException.class, this::onExecutionError, directExecutor());
+        .catching(
+            PluginExecutionException.class,
+            exception -> onExecutionError(scanContext, exception),
+            directExecutor())
+        .catching(
+            LanguageServerException.class,
+            exception -> onExecutionError(scanContext, exception),
+            directExecutor())
+        .catching(
+            ScanningWorkflowException.class,
+            exception -> onExecutionError(scanContext, exception),
+            directExecutor());
   }
 
-  private PortScanningReport buildUriPortScanningReport(ScanTarget scanTarget) {
+  private PortScanningReport buildUriPortScanningReport(
+      ScanContext scanContext, ScanTarget scanTarget) {
 
     Optional<PluginMatchingResult<PortScanner>> matchedPortScanner = pluginManager.getPortScanner();
-    executionTracer.startPortScanning(ImmutableList.of(matchedPortScanner.get()));
+    scanContext.executionTracer.startPortScanning(ImmutableList.of(matchedPortScanner.get()));
 
     NetworkService networkService = scanTarget.getNetworkService();
 
@@ -170,13 +236,13 @@ public final class DefaultScanningWorkflow {
         .build();
   }
 
-  private ScanResults onExecutionError(TsunamiException exception) {
+  private ScanResults onExecutionError(ScanContext scanContext, TsunamiException exception) {
     logger.atSevere().withCause(exception).log("Tsunami scan failed, aborting workflow!!!");
-    return buildScanResultForFailure(exception);
+    return buildScanResultForFailure(scanContext, exception);
   }
 
-  private ListenableFuture<PortScanningReport> scanPorts(ScanTarget scanTarget)
-      throws ScanningWorkflowException {
+  private ListenableFuture<PortScanningReport> scanPorts(
+      ScanContext scanContext, ScanTarget scanTarget) {
     Optional<PluginMatchingResult<PortScanner>> matchedPortScanner = pluginManager.getPortScanner();
     if (!matchedPortScanner.isPresent()) {
       return immediateFailedFuture(
@@ -189,7 +255,7 @@ public final class DefaultScanningWorkflow {
             .setPluginExecutionLogic(
                 () -> matchedPortScanner.get().tsunamiPlugin().scan(scanTarget))
             .build();
-    executionTracer.startPortScanning(ImmutableList.of(matchedPortScanner.get()));
+    scanContext.executionTracer.startPortScanning(ImmutableList.of(matchedPortScanner.get()));
     logger.atInfo().log("Starting port scanning phase of the scanning workflow.");
     return FluentFuture.from(pluginExecutorProvider.get().executeAsync(executorConfig))
         .transformAsync(
@@ -201,29 +267,15 @@ public final class DefaultScanningWorkflow {
   }
 
   private ListenableFuture<ReconnaissanceReport> fingerprintNetworkServices(
-      PortScanningReport portScanningReport) {
+      ScanContext scanContext, PortScanningReport portScanningReport) {
     checkNotNull(portScanningReport);
 
     // For each network service, find matching fingerprinting plugin, otherwise directly add to
     // ReconnaissanceReport.
     TargetInfo targetInfo = portScanningReport.getTargetInfo();
-    List<PluginMatchingResult<ServiceFingerprinter>> matchedFingerprinters = Lists.newArrayList();
     List<NetworkService> networkServicesToKeep = Lists.newArrayList();
-    for (NetworkService networkService : portScanningReport.getNetworkServicesList()) {
-      Optional<PluginMatchingResult<ServiceFingerprinter>> matchedFingerprinter =
-          pluginManager.getServiceFingerprinter(networkService);
-      if (matchedFingerprinter.isPresent()) {
-        matchedFingerprinters.add(matchedFingerprinter.get());
-      } else {
-        networkServicesToKeep.add(networkService);
-      }
-    }
-
-    executionTracer.startServiceFingerprinting(ImmutableList.copyOf(matchedFingerprinters));
-    logger.atInfo().log(
-        "Port scanning phase done, moving to service fingerprinting phase with '%d'"
-            + " fingerprinter(s) selected.",
-        matchedFingerprinters.size());
+    ImmutableList<PluginMatchingResult<ServiceFingerprinter>> matchedFingerprinters =
+        matchFingerprinters(scanContext, portScanningReport, networkServicesToKeep);
 
     // Execute matched fingerprinters asynchronously.
     ImmutableList<ListenableFuture<PluginExecutionResult<FingerprintingReport>>>
@@ -243,6 +295,124 @@ public final class DefaultScanningWorkflow {
             directExecutor());
   }
 
+  /**
+   * Fingerprints the network services and starts the vulnerability detection for each group of
+   * services as soon as it is fingerprinted, without waiting for the other fingerprinters.
+   */
+  private ListenableFuture<ScanResults> fingerprintAndDetectVulnerabilities(
+      ScanContext scanContext, PortScanningReport portScanningReport) {
+    checkNotNull(portScanningReport);
+
+    TargetInfo targetInfo = portScanningReport.getTargetInfo();
+    List<NetworkService> networkServicesToKeep = Lists.newArrayList();
+    ImmutableList<PluginMatchingResult<ServiceFingerprinter>> matchedFingerprinters =
+        matchFingerprinters(scanContext, portScanningReport, networkServicesToKeep);
+
+    // Services without a fingerprinter are ready for detection right away, the others once their
+    // fingerprinter finishes. The batch order keeps the ReconnaissanceReport identical to the one
+    // built by fingerprintNetworkServices.
+    List<ListenableFuture<DetectionBatch>> detectionBatches = new ArrayList<>();
+    if (!networkServicesToKeep.isEmpty()) {
+      detectionBatches.add(
+          crawlAndStartDetectionBatch(
+              scanContext, targetInfo, ImmutableList.copyOf(networkServicesToKeep)));
+    }
+    for (PluginMatchingResult<ServiceFingerprinter> fingerprinter : matchedFingerprinters) {
+      detectionBatches.add(
+          FluentFuture.from(
+                  pluginExecutorProvider
+                      .get()
+                      .executeAsync(buildFingerprinterExecutorConfig(targetInfo, fingerprinter)))
+              .transformAsync(
+                  executionResult ->
+                      crawlAndStartDetectionBatch(
+                          scanContext,
+                          targetInfo,
+                          getFingerprintedServices(ImmutableList.of(executionResult))),
+                  directExecutor()));
+    }
+
+    return FluentFuture.from(Futures.allAsList(detectionBatches))
+        .transformAsync(
+            batches -> {
+              scanContext.executionTracer.startVulnerabilityDetecting(
+                  batches.stream()
+                      .flatMap(batch -> batch.matchedVulnDetectors.stream())
+                      .collect(toImmutableList()));
+              logger.atInfo().log(
+                  "Service fingerprinting phase done, waiting for streamed vuln detectors.");
+              ReconnaissanceReport reconnaissanceReport =
+                  ReconnaissanceReport.newBuilder()
+                      .setTargetInfo(targetInfo)
+                      .addAllNetworkServices(
+                          batches.stream()
+                              .flatMap(batch -> batch.networkServices.stream())
+                              .collect(toImmutableList()))
+                      .build();
+              return FluentFuture.from(
+                      Futures.successfulAsList(
+                          batches.stream()
+                              .flatMap(batch -> batch.detectionResultFutures.stream())
+                              .collect(toImmutableList())))
+                  .transform(
+                      detectionResults ->
+                          generateScanResults(scanContext, detectionResults, reconnaissanceReport),
+                      directExecutor());
+            },
+            directExecutor());
+  }
+
+  private ListenableFuture<DetectionBatch> crawlAndStartDetectionBatch(
+      ScanContext scanContext,
+      TargetInfo targetInfo,
+      ImmutableList<NetworkService> networkServices) {
+    return FluentFuture.from(crawlWebServices(scanContext, networkServices))
+        .transform(
+            crawledServices -> startDetectionBatch(targetInfo, crawledServices), directExecutor());
+  }
+
+  private DetectionBatch startDetectionBatch(
+      TargetInfo targetInfo, ImmutableList<NetworkService> networkServices) {
+    ImmutableList<PluginMatchingResult<VulnDetector>> matchedVulnDetectors =
+        pluginManager.getVulnDetectors(
+            ReconnaissanceReport.newBuilder()
+                .setTargetInfo(targetInfo)
+                .addAllNetworkServices(networkServices)
+                .build());
+    return new DetectionBatch(
+        networkServices,
+        matchedVulnDetectors,
+        executeVulnDetectors(targetInfo, matchedVulnDetectors));
+  }
+
+  /**
+   * Finds the matching fingerprinter of each scanned network service and starts the fingerprinting
+   * phase. Services without any matching fingerprinter are added to {@code networkServicesToKeep}.
+   */
+  private ImmutableList<PluginMatchingResult<ServiceFingerprinter>> matchFingerprinters(
+      ScanContext scanContext,
+      PortScanningReport portScanningReport,
+      List<NetworkService> networkServicesToKeep) {
+    List<PluginMatchingResult<ServiceFingerprinter>> matchedFingerprinters = Lists.newArrayList();
+    for (NetworkService networkService : portScanningReport.getNetworkServicesList()) {
+      Optional<PluginMatchingResult<ServiceFingerprinter>> matchedFingerprinter =
+          pluginManager.getServiceFingerprinter(networkService);
+      if (matchedFingerprinter.isPresent()) {
+        matchedFingerprinters.add(matchedFingerprinter.get());
+      } else {
+        networkServicesToKeep.add(networkService);
+      }
+    }
+
+    scanContext.executionTracer.startServiceFingerprinting(
+        ImmutableList.copyOf(matchedFingerprinters));
+    logger.atInfo().log(
+        "Port scanning phase done, moving to service fingerprinting phase with '%d'"
+            + " fingerprinter(s) selected.",
+        matchedFingerprinters.size());
+    return ImmutableList.copyOf(matchedFingerprinters);
+  }
+
   private static PluginExecutorConfig<FingerprintingReport> buildFingerprinterExecutorConfig(
       TargetInfo targetInfo, PluginMatchingResult<ServiceFingerprinter> fingerprinter) {
     return PluginExecutorConfig.<FingerprintingReport>builder()
@@ -269,44 +439,154 @@ public final class DefaultScanningWorkflow {
         .collect(toImmutableList());
   }
 
+  private ListenableFuture<ReconnaissanceReport> crawlWebServices(
+      ScanContext scanContext, ReconnaissanceReport reconnaissanceReport) {
+    if (!webCrawling) {
+      return immediateFuture(reconnaissanceReport);
+    }
+    logger.atInfo().log("Crawling the fingerprinted web services.");
+    return FluentFuture.from(
+            crawlWebServices(
+                scanContext, ImmutableList.copyOf(reconnaissanceReport.getNetworkServicesList())))
+        .transform(
+            crawledServices ->
+                reconnaissanceReport.toBuilder()
+                    .clearNetworkServices()
+                    .addAllNetworkServices(crawledServices)
+                    .build(),
+            directExecutor());
+  }
+
+  private ListenableFuture<ImmutableList<NetworkService>> crawlWebServices(
+      ScanContext scanContext, ImmutableList<NetworkService> networkServices) {
+    if (!webCrawling) {
+      return immediateFuture(networkServices);
+    }
+    return FluentFuture.from(
+            Futures.allAsList(
+                networkServices.stream()
+                    .map(networkService -> crawlWebService(scanContext, networkService))
+                    .collect(toImmutableList())))
+        .transform(ImmutableList::copyOf, directExecutor());
+  }
+
+  /**
+   * Adds the crawl results to the given web service. Services that are not web services or that
+   * were already crawled by their fingerprinter are returned as is, and so are services whose crawl
+   * failed.
+   */
+  private ListenableFuture<NetworkService> crawlWebService(
+      ScanContext scanContext, NetworkService networkService) {
+    if (!NetworkServiceUtils.isWebService(networkService)
+        || networkService.getServiceContext().getWebServiceContext().getCrawlResultsCount() > 0) {
+      return immediateFuture(networkService);
+    }
+    CrawlConfig crawlConfig =
+        CrawlConfig.newBuilder()
+            .addSeedingUrls(NetworkServiceUtils.buildWebApplicationRootUrl(networkService))
+            .setMaxDepth(webCrawlMaxDepth)
+            .setShouldEnforceScopeCheck(true)
+            .setNetworkEndpoint(networkService.getNetworkEndpoint())
+            .build();
+    // Contents are recorded as they are stored, so that they are released even if the crawl fails.
+    return FluentFuture.from(webCrawler.crawl(crawlConfig, scanContext.storedContentHashes))
+        .transform(crawlResults -> addCrawlResults(networkService, crawlResults), directExecutor())
+        .catching(
+            Exception.class,
+            exception -> {
+              logger.atWarning().withCause(exception).log(
+                  "Unable to crawl %s.", ExecutionTracer.formatNetworkService(networkService));
+              return networkService;
+            },
+            directExecutor());
+  }
+
+  private static NetworkService addCrawlResults(
+      NetworkService networkService, ImmutableList<CrawlResult> crawlResults) {
+    NetworkService.Builder networkServiceBuilder = networkService.toBuilder();
+    networkServiceBuilder
+        .getServiceContextBuilder()
+        .getWebServiceContextBuilder()
+        .addAllCrawlResults(crawlResults);
+    return networkServiceBuilder.build();
+  }
+
   private ListenableFuture<ScanResults> detectVulnerabilities(
-      ReconnaissanceReport reconnaissanceReport) {
+      ScanContext scanContext, ReconnaissanceReport reconnaissanceReport) {
     checkNotNull(reconnaissanceReport);
 
     ImmutableList<PluginMatchingResult<VulnDetector>> matchedVulnDetectors =
         pluginManager.getVulnDetectors(reconnaissanceReport);
-    executionTracer.startVulnerabilityDetecting(matchedVulnDetectors);
+    scanContext.executionTracer.startVulnerabilityDetecting(matchedVulnDetectors);
     logger.atInfo().log("Service fingerprinting phase done, moving to vuln detection phase.");
 
-    ImmutableList<ListenableFuture<PluginExecutionResult<DetectionReportList>>>
-        detectionResultFutures =
-            matchedVulnDetectors.stream()
-                .map(
-                    matchedVulnDetector ->
-                        PluginExecutorConfig.<DetectionReportList>builder()
-                            .setMatchedPlugin(matchedVulnDetector)
-                            .setPluginExecutionLogic(
-                                () ->
-                                    matchedVulnDetector
-                                        .tsunamiPlugin()
-                                        .detect(
-                                            reconnaissanceReport.getTargetInfo(),
-                                            matchedVulnDetector.matchedServices()))
-                            .build())
-                .map(
-                    vulnDetectorExecutorConfig ->
-                        pluginExecutorProvider.get().executeAsync(vulnDetectorExecutorConfig))
-                .collect(toImmutableList());
-    return FluentFuture.from(Futures.successfulAsList(detectionResultFutures))
+    return FluentFuture.from(
+            Futures.successfulAsList(
+                executeVulnDetectors(reconnaissanceReport.getTargetInfo(), matchedVulnDetectors)))
         .transform(
-            detectionResult -> generateScanResults(detectionResult, reconnaissanceReport),
+            detectionResult ->
+                generateScanResults(scanContext, detectionResult, reconnaissanceReport),
             directExecutor());
   }
 
+  private ImmutableList<ListenableFuture<PluginExecutionResult<DetectionReportList>>>
+      executeVulnDetectors(
+          TargetInfo targetInfo,
+          ImmutableList<PluginMatchingResult<VulnDetector>> matchedVulnDetectors) {
+    return matchedVulnDetectors.stream()
+        .map(
+            matchedVulnDetector ->
+                PluginExecutorConfig.<DetectionReportList>builder()
+                    .setMatchedPlugin(matchedVulnDetector)
+                    .setPluginExecutionLogic(
+                        () -> {
+                          // Checked once the detector leaves the queue of the thread pool.
+                          Optional<String> unreachableEndpoint =
+                              findUnreachableEndpoint(matchedVulnDetector.matchedServices());
+                          if (unreachableEndpoint.isPresent()) {
+                            throw new PluginExecutionException(
+                                String.format(
+                                    "Skipped, target endpoint '%s' is unreachable.",
+                                    unreachableEndpoint.get()));
+                          }
+                          return matchedVulnDetector
+                              .tsunamiPlugin()
+                              .detect(targetInfo, matchedVulnDetector.matchedServices());
+                        })
+                    .build())
+        .map(
+            vulnDetectorExecutorConfig ->
+                pluginExecutorProvider.get().executeAsync(vulnDetectorExecutorConfig))
+        .collect(toImmutableList());
+  }
+
+  /**
+   * Returns an unreachable endpoint of the given services if the circuit of every service's
+   * endpoint is open, empty otherwise.
+   */
+  private Optional<String> findUnreachableEndpoint(ImmutableList<NetworkService> networkServices) {
+    Optional<String> unreachableEndpoint = Optional.empty();
+    for (NetworkService networkService : networkServices) {
+      NetworkEndpoint networkEndpoint = networkService.getNetworkEndpoint();
+      int port = networkEndpoint.getPort().getPortNumber();
+      boolean open =
+          (networkEndpoint.hasHostname()
+                  && hostCircuitBreaker.isOpen(networkEndpoint.getHostname().getName(), port))
+              || (networkEndpoint.hasIpAddress()
+                  && hostCircuitBreaker.isOpen(networkEndpoint.getIpAddress().getAddress(), port));
+      if (!open) {
+        return Optional.empty();
+      }
+      unreachableEndpoint = Optional.of(NetworkEndpointUtils.toUriAuthority(networkEndpoint));
+    }
+    return unreachableEndpoint;
+  }
+
   private ScanResults generateScanResults(
+      ScanContext scanContext,
       Collection<PluginExecutionResult<DetectionReportList>> detectionResults,
       ReconnaissanceReport reconnaissanceReport) {
-    executionTracer.setDone();
+    scanContext.executionTracer.setDone();
     logger.atInfo().log("Tsunami scanning workflow done. Generating scan results.");
 
     ImmutableList<DetectionReport> succeededDetectionReports =
@@ -316,17 +596,42 @@ public final class DefaultScanningWorkflow {
                 detectionResult ->
                     detectionResult.resultData().get().getDetectionReportsList().stream())
             .collect(toImmutableList());
-    ImmutableList<String> failedPlugins =
+    ImmutableList<String> failedExecutions =
         detectionResults.stream()
             .filter(executionResult -> !executionResult.isSucceeded())
             .map(executionResult -> executionResult.executorConfig().matchedPlugin().pluginId())
             .collect(toImmutableList());
+    // Detectors aggregating several plugins, like remote detectors, report their failures apart.
+    ImmutableList<String> failedPlugins =
+        ImmutableList.<String>builder()
+            .addAll(failedExecutions)
+            .addAll(
+                detectionResults.stream()
+                    .filter(PluginExecutionResult::isSucceeded)
+                    .flatMap(
+                        detectionResult ->
+                            detectionResult.resultData().get().getPluginFailuresList().stream())
+                    .map(
+                        pluginFailure ->
+                            pluginFailure.getTimedOut()
+                                ? pluginFailure.getPluginName() + " (timed out)"
+                                : pluginFailure.getPluginName())
+                    .iterator())
+            .build();
+
+    // Each crawled content is added once to the report, however many services reference it.
+    ReconnaissanceReport reconnaissanceReportWithContents =
+        reconnaissanceReport.toBuilder()
+            .addAllCrawlContents(
+                crawlContentStore.getCrawlContents(reconnaissanceReport.getNetworkServicesList()))
+            .build();
+    releaseCrawlContents(scanContext);
 
     ScanStatus scanStatus;
     String statusMessage = "";
     if (failedPlugins.isEmpty()) {
       scanStatus = ScanStatus.SUCCEEDED;
-    } else if (failedPlugins.size() == detectionResults.size()) {
+    } else if (failedExecutions.size() == detectionResults.size()) {
       scanStatus = ScanStatus.FAILED;
       statusMessage = "All VulnDetectors failed.";
     } else {
@@ -355,25 +660,69 @@ public final class DefaultScanningWorkflow {
                             .setVulnerability(detectionReport.getVulnerability())
                             .build())
                 .collect(toImmutableList()))
-        .setScanStartTimestamp(Timestamps.fromMillis(scanStartTimestamp.toEpochMilli()))
+        .setScanStartTimestamp(
+            Timestamps.fromMillis(scanContext.scanStartTimestamp.toEpochMilli()))
         .setScanDuration(
             Durations.fromMillis(
-                Duration.between(scanStartTimestamp, Instant.now(clock)).toMillis()))
+                Duration.between(scanContext.scanStartTimestamp, Instant.now(clock)).toMillis()))
         .setFullDetectionReports(
             FullDetectionReports.newBuilder().addAllDetectionReports(succeededDetectionReports))
-        .setReconnaissanceReport(reconnaissanceReport)
+        .setReconnaissanceReport(reconnaissanceReportWithContents)
         .build();
   }
 
-  private ScanResults buildScanResultForFailure(TsunamiException exception) {
-    executionTracer.forceDone();
+  private ScanResults buildScanResultForFailure(
+      ScanContext scanContext, TsunamiException exception) {
+    scanContext.executionTracer.forceDone();
+    releaseCrawlContents(scanContext);
     return ScanResults.newBuilder()
         .setScanStatus(ScanStatus.FAILED)
         .setStatusMessage(exception.getMessage())
-        .setScanStartTimestamp(Timestamps.fromMillis(scanStartTimestamp.toEpochMilli()))
+        .setScanStartTimestamp(
+            Timestamps.fromMillis(scanContext.scanStartTimestamp.toEpochMilli()))
         .setScanDuration(
             Durations.fromMillis(
-                Duration.between(scanStartTimestamp, Instant.now(clock)).toMillis()))
+                Duration.between(scanContext.scanStartTimestamp, Instant.now(clock)).toMillis()))
         .build();
   }
+
+  private void releaseCrawlContents(ScanContext scanContext) {
+    for (Multiset.Entry<String> entry : scanContext.storedContentHashes.entrySet()) {
+      for (int i = 0; i < entry.getCount(); i++) {
+        crawlContentStore.release(entry.getElement());
+      }
+    }
+    scanContext.storedContentHashes.clear();
+  }
+
+  /** State of a single scan, passed along the future chain of one {@link #runAsync} call. */
+  private static final class ScanContext {
+    private final Instant scanStartTimestamp;
+    private final ExecutionTracer executionTracer;
+    // One entry per content put in the CrawlContentStore by this scan.
+    private final Multiset<String> storedContentHashes = ConcurrentHashMultiset.create();
+
+    ScanContext(Instant scanStartTimestamp, ExecutionTracer executionTracer) {
+      this.scanStartTimestamp = checkNotNull(scanStartTimestamp);
+      this.executionTracer = checkNotNull(executionTracer);
+    }
+  }
+
+  /** The network services of one fingerprinting result and the detectors running against them. */
+  private static final class DetectionBatch {
+    private final ImmutableList<NetworkService> networkServices;
+    private final ImmutableList<PluginMatchingResult<VulnDetector>> matchedVulnDetectors;
+    private final ImmutableList<ListenableFuture<PluginExecutionResult<DetectionReportList>>>
+        detectionResultFutures;
+
+    DetectionBatch(
+        ImmutableList<NetworkService> networkServices,
+        ImmutableList<PluginMatchingResult<VulnDetector>> matchedVulnDetectors,
+        ImmutableList<ListenableFuture<PluginExecutionResult<DetectionReportList>>>
+            detectionResultFutures) {
+      this.networkServices = checkNotNull(networkServices);
+      this.matchedVulnDetectors = checkNotNull(matchedVulnDetectors);
+      this.detectionResultFutures = checkNotNull(detectionResultFutures);
+    }
+  }
 }
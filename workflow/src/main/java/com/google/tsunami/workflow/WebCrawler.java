@@ -0,0 +1,312 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.workflow;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ascii;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.flogger.GoogleLogger;
+import com.google.common.hash.Hashing;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.FluentFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.tsunami.common.data.CrawlContentStore;
+import com.google.tsunami.common.net.http.HttpClient;
+import com.google.tsunami.common.net.http.HttpClient.ResponseHandler;
+import com.google.tsunami.common.net.http.HttpHeaders;
+import com.google.tsunami.common.net.http.HttpRequest;
+import com.google.tsunami.common.net.http.HttpResponse;
+import com.google.tsunami.proto.CrawlConfig;
+import com.google.tsunami.proto.CrawlConfig.Scope;
+import com.google.tsunami.proto.CrawlResult;
+import com.google.tsunami.proto.CrawlTarget;
+import com.google.tsunami.proto.HttpHeader;
+import com.google.tsunami.proto.NetworkService;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import javax.inject.Inject;
+import okhttp3.HttpUrl;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+/**
+ * A breadth-first web crawler following the links of HTML pages.
+ *
+ * <p>Each depth of a crawl is fetched through {@link HttpClient#sendAllAsync}, so the crawler is
+ * subject to the per-host concurrency and rate limits of the shared HTTP client. Visited URLs are
+ * tracked by their 64-bit fingerprint rather than their full text. The content of the visited
+ * resources is put in the {@link CrawlContentStore}, the crawl results only reference it.
+ *
+ * <p>Only the hostname of the crawled {@link CrawlConfig#getNetworkEndpoint() network endpoint} is
+ * pinned to its IP address, any other host would be resolved and contacted on its own. Links are
+ * therefore only followed when their host and port are the ones of a seeding URL, and when they are
+ * within the domains of the {@link CrawlConfig#getScopesList() scopes}. The paths of the scopes are
+ * only checked when {@link CrawlConfig#getShouldEnforceScopeCheck()} is set.
+ */
+public final class WebCrawler {
+  private static final GoogleLogger logger = GoogleLogger.forEnclosingClass();
+  private static final int MAX_CONCURRENT_REQUESTS = 8;
+  private static final int DEFAULT_MAX_RESULTS = 200;
+  private static final String LINK_SELECTOR =
+      "a[href], area[href], link[href], frame[src], iframe[src], script[src], form[action]";
+
+  private final HttpClient httpClient;
+  private final CrawlContentStore crawlContentStore;
+  private final int maxResults;
+
+  @Inject
+  WebCrawler(
+      HttpClient httpClient,
+      CrawlContentStore crawlContentStore,
+      WorkflowConfigProperties workflowConfigProperties) {
+    this(
+        httpClient,
+        crawlContentStore,
+        Optional.ofNullable(workflowConfigProperties.webCrawlMaxResults)
+            .orElse(DEFAULT_MAX_RESULTS));
+  }
+
+  @VisibleForTesting
+  WebCrawler(HttpClient httpClient, CrawlContentStore crawlContentStore, int maxResults) {
+    checkArgument(maxResults > 0, "Max crawl results must be positive.");
+    this.httpClient = checkNotNull(httpClient);
+    this.crawlContentStore = checkNotNull(crawlContentStore);
+    this.maxResults = maxResults;
+  }
+
+  /**
+   * Crawls the web application described by the given config.
+   *
+   * @param crawlConfig the seeds, depth and scopes of the crawl.
+   * @param storedContentHashes receives the hash of each content as soon as it is put in the {@link
+   *     CrawlContentStore}, even when the crawl fails later on. The caller releases them from the
+   *     store once done with the crawl results.
+   * @return the future for the visited targets in the order they were fetched, at most the
+   *     configured max number of results. Requests that failed are left out.
+   */
+  public ListenableFuture<ImmutableList<CrawlResult>> crawl(
+      CrawlConfig crawlConfig, Collection<String> storedContentHashes) {
+    checkNotNull(crawlConfig);
+    checkNotNull(storedContentHashes);
+    CrawlState crawlState = new CrawlState(crawlConfig, storedContentHashes);
+    ImmutableList<HttpUrl> seeds =
+        crawlConfig.getSeedingUrlsList().stream()
+            .map(HttpUrl::parse)
+            .filter(url -> url != null)
+            .map(WebCrawler::removeFragment)
+            .filter(crawlState::visit)
+            .collect(toImmutableList());
+    return crawlDepth(crawlState, seeds, 0);
+  }
+
+  private ListenableFuture<ImmutableList<CrawlResult>> crawlDepth(
+      CrawlState crawlState, ImmutableList<HttpUrl> urls, int depth) {
+    if (urls.isEmpty() || crawlState.isFull()) {
+      return immediateFuture(ImmutableList.copyOf(crawlState.results));
+    }
+    // Only accessed by the response handler, which is never called concurrently.
+    List<HttpUrl> nextDepthUrls = new ArrayList<>();
+    ResponseHandler responseHandler =
+        new ResponseHandler() {
+          @Override
+          public boolean onResponse(HttpRequest httpRequest, HttpResponse httpResponse) {
+            crawlState.results.add(
+                buildCrawlResult(crawlState, httpRequest, httpResponse, depth));
+            if (depth < crawlState.crawlConfig.getMaxDepth()) {
+              for (HttpUrl link : extractLinks(httpRequest, httpResponse)) {
+                if (crawlState.visit(link)) {
+                  nextDepthUrls.add(link);
+                }
+              }
+            }
+            return !crawlState.isFull();
+          }
+
+          @Override
+          public boolean onFailure(HttpRequest httpRequest, Throwable throwable) {
+            logger.atFine().withCause(throwable).log("Unable to crawl '%s'.", httpRequest.url());
+            return true;
+          }
+        };
+    return FluentFuture.from(
+            httpClient.sendAllAsync(
+                urls.stream()
+                    .map(url -> HttpRequest.get(url).withEmptyHeaders().build())
+                    .collect(toImmutableList()),
+                crawlState.networkService,
+                MAX_CONCURRENT_REQUESTS,
+                responseHandler))
+        .transformAsync(
+            unused -> crawlDepth(crawlState, ImmutableList.copyOf(nextDepthUrls), depth + 1),
+            directExecutor());
+  }
+
+  private CrawlResult buildCrawlResult(
+      CrawlState crawlState, HttpRequest httpRequest, HttpResponse httpResponse, int depth) {
+    CrawlResult.Builder crawlResultBuilder =
+        CrawlResult.newBuilder()
+            .setCrawlTarget(
+                CrawlTarget.newBuilder()
+                    .setUrl(httpRequest.url())
+                    .setHttpMethod(httpRequest.method().toString()))
+            .setCrawlDepth(depth)
+            .setResponseCode(httpResponse.status().code());
+    httpResponse.headers().get(CONTENT_TYPE).ifPresent(crawlResultBuilder::setContentType);
+    if (httpResponse.bodyBytes().isPresent()) {
+      String contentHash = crawlContentStore.put(httpResponse.bodyBytes().get());
+      crawlState.storedContentHashes.add(contentHash);
+      crawlResultBuilder.setContentHash(contentHash);
+    }
+    HttpHeaders headers = httpResponse.headers();
+    for (String name : headers.names()) {
+      for (String value : headers.getAll(name)) {
+        crawlResultBuilder.addResponseHeaders(
+            HttpHeader.newBuilder().setKey(name).setValue(value));
+      }
+    }
+    return crawlResultBuilder.build();
+  }
+
+  private static ImmutableList<HttpUrl> extractLinks(
+      HttpRequest httpRequest, HttpResponse httpResponse) {
+    boolean isHtml =
+        httpResponse
+            .headers()
+            .get(CONTENT_TYPE)
+            .map(contentType -> Ascii.toLowerCase(contentType).contains("html"))
+            .orElse(false);
+    if (!isHtml || !httpResponse.bodyBytes().isPresent()) {
+      return ImmutableList.of();
+    }
+    // Relative links are resolved against the final URL when redirects were followed.
+    String baseUrl = httpResponse.responseUrl().map(HttpUrl::toString).orElse(httpRequest.url());
+    Document document =
+        Jsoup.parse(httpResponse.bodyBytes().get().toString(StandardCharsets.UTF_8), baseUrl);
+    ImmutableList.Builder<HttpUrl> links = ImmutableList.builder();
+    for (Element element : document.select(LINK_SELECTOR)) {
+      String attribute =
+          element.hasAttr("href") ? "href" : element.hasAttr("src") ? "src" : "action";
+      HttpUrl link = HttpUrl.parse(element.absUrl(attribute));
+      if (link != null) {
+        links.add(removeFragment(link));
+      }
+    }
+    return links.build();
+  }
+
+  private static HttpUrl removeFragment(HttpUrl url) {
+    return url.fragment() == null ? url : url.newBuilder().fragment(null).build();
+  }
+
+  /** Whether the given URL is within any of the scopes. */
+  @VisibleForTesting
+  static boolean isInScope(HttpUrl url, List<Scope> scopes, boolean checkPath) {
+    String host = Ascii.toLowerCase(url.host());
+    for (Scope scope : scopes) {
+      HostAndPort domain = HostAndPort.fromString(Ascii.toLowerCase(scope.getDomain()));
+      if (domain.hasPort() && domain.getPort() != url.port()) {
+        continue;
+      }
+      if (!host.equals(domain.getHost()) && !host.endsWith("." + domain.getHost())) {
+        continue;
+      }
+      if (checkPath && !url.encodedPath().startsWith(scope.getPath())) {
+        continue;
+      }
+      return true;
+    }
+    return false;
+  }
+
+  private static HostAndPort endpointOf(HttpUrl url) {
+    return HostAndPort.fromParts(Ascii.toLowerCase(url.host()), url.port());
+  }
+
+  /** Builds the scope covering the directory of the given seeding URL. */
+  @VisibleForTesting
+  static Scope buildScope(HttpUrl seedingUrl) {
+    String domain =
+        seedingUrl.port() == HttpUrl.defaultPort(seedingUrl.scheme())
+            ? seedingUrl.host()
+            : HostAndPort.fromParts(seedingUrl.host(), seedingUrl.port()).toString();
+    String path = seedingUrl.encodedPath();
+    return Scope.newBuilder()
+        .setDomain(domain)
+        .setPath(path.substring(0, path.lastIndexOf('/') + 1))
+        .build();
+  }
+
+  /** State of a single crawl, only mutated by one response handler at a time. */
+  private final class CrawlState {
+    private final CrawlConfig crawlConfig;
+    private final NetworkService networkService;
+    private final ImmutableList<Scope> scopes;
+    private final ImmutableSet<HostAndPort> seedEndpoints;
+    private final Set<Long> visitedUrlFingerprints = new HashSet<>();
+    private final List<CrawlResult> results = new ArrayList<>();
+    private final Collection<String> storedContentHashes;
+
+    CrawlState(CrawlConfig crawlConfig, Collection<String> storedContentHashes) {
+      this.crawlConfig = crawlConfig;
+      this.storedContentHashes = storedContentHashes;
+      this.networkService =
+          NetworkService.newBuilder().setNetworkEndpoint(crawlConfig.getNetworkEndpoint()).build();
+      this.scopes =
+          crawlConfig.getScopesCount() > 0
+              ? ImmutableList.copyOf(crawlConfig.getScopesList())
+              : crawlConfig.getSeedingUrlsList().stream()
+                  .map(HttpUrl::parse)
+                  .filter(url -> url != null)
+                  .map(WebCrawler::buildScope)
+                  .collect(toImmutableList());
+      this.seedEndpoints =
+          crawlConfig.getSeedingUrlsList().stream()
+              .map(HttpUrl::parse)
+              .filter(url -> url != null)
+              .map(WebCrawler::endpointOf)
+              .collect(toImmutableSet());
+    }
+
+    /** Returns whether the URL is in scope and was not visited yet, marking it as visited. */
+    boolean visit(HttpUrl url) {
+      return seedEndpoints.contains(endpointOf(url))
+          && isInScope(url, scopes, crawlConfig.getShouldEnforceScopeCheck())
+          && visitedUrlFingerprints.add(
+              Hashing.farmHashFingerprint64()
+                  .hashString(url.toString(), StandardCharsets.UTF_8)
+                  .asLong());
+    }
+
+    boolean isFull() {
+      return results.size() >= maxResults;
+    }
+  }
+}
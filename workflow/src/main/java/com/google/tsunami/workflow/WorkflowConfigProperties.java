@@ -0,0 +1,44 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.workflow;
+
+import com.google.tsunami.common.config.annotations.ConfigProperties;
+
+/** Configuration properties for {@link DefaultScanningWorkflow}. */
+@ConfigProperties("workflow")
+public final class WorkflowConfigProperties {
+  /**
+   * Whether vulnerability detection should be streamed per fingerprinted network service. When
+   * enabled, the matching VulnDetectors for a network service are scheduled as soon as the service
+   * is fingerprinted (or right away if it needs no fingerprinting), instead of waiting for all
+   * fingerprinters to finish. A VulnDetector might then be invoked once per group of fingerprinted
+   * services instead of once for all matched services.
+   */
+  Boolean streamingVulnDetection;
+
+  /**
+   * Whether fingerprinted web services should be crawled before vulnerability detection. The crawl
+   * results are added to the {@code WebServiceContext} of each service that a fingerprinter did not
+   * crawl already, so that VulnDetectors can reuse them.
+   */
+  Boolean webCrawling;
+
+  /** The maximum depth of the web crawl, 2 by default. */
+  Integer webCrawlMaxDepth;
+
+  /** The maximum number of pages fetched when crawling a web service, 200 by default. */
+  Integer webCrawlMaxResults;
+}
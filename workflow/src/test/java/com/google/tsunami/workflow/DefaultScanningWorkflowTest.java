@@ -15,6 +15,7 @@
  */
 package com.google.tsunami.workflow;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth8.assertThat;
 import static com.google.tsunami.common.data.NetworkEndpointUtils.forIp;
@@ -22,9 +23,19 @@ import static com.google.tsunami.common.data.NetworkServiceUtils.buildUriNetwork
 import static org.junit.Assert.assertThrows;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.tsunami.common.data.CrawlContentStore;
+import com.google.tsunami.common.net.http.HostCircuitBreaker;
+import com.google.tsunami.common.net.http.HttpClientModule;
 import com.google.tsunami.common.time.testing.FakeUtcClockModule;
+import com.google.tsunami.plugin.PluginExecutionDeadlineScheduler;
+import com.google.tsunami.plugin.PluginExecutionThreadPool;
+import com.google.tsunami.plugin.PluginExecutorModule;
 import com.google.tsunami.plugin.testing.FailedPortScannerBootstrapModule;
 import com.google.tsunami.plugin.testing.FailedRemoteVulnDetectorBootstrapModule;
 import com.google.tsunami.plugin.testing.FailedServiceFingerprinterBootstrapModule;
@@ -41,11 +52,20 @@ import com.google.tsunami.plugin.testing.FakeVulnDetector;
 import com.google.tsunami.plugin.testing.FakeVulnDetector2;
 import com.google.tsunami.plugin.testing.FakeVulnDetectorBootstrapModule;
 import com.google.tsunami.plugin.testing.FakeVulnDetectorBootstrapModule2;
+import com.google.tsunami.plugin.testing.TimedOutRemoteVulnDetectorBootstrapModule;
 import com.google.tsunami.proto.ScanResults;
 import com.google.tsunami.proto.ScanStatus;
 import com.google.tsunami.proto.ScanTarget;
+import com.google.tsunami.proto.TargetInfo;
+import java.net.ConnectException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import javax.inject.Inject;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -55,11 +75,13 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public final class DefaultScanningWorkflowTest {
   @Inject private DefaultScanningWorkflow scanningWorkflow;
+  @Inject private HostCircuitBreaker hostCircuitBreaker;
 
   @Before
   public void setUp() {
     Guice.createInjector(
             new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
             new FakePluginExecutionModule(),
             new FakePortScannerBootstrapModule(),
             new FakePortScannerBootstrapModule2(),
@@ -142,6 +164,7 @@ public final class DefaultScanningWorkflowTest {
     Injector injector =
         Guice.createInjector(
             new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
             new FakePluginExecutionModule(),
             new FakeServiceFingerprinterBootstrapModule(),
             new FakeVulnDetectorBootstrapModule());
@@ -161,6 +184,7 @@ public final class DefaultScanningWorkflowTest {
     Injector injector =
         Guice.createInjector(
             new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
             new FakePluginExecutionModule(),
             new FakePortScannerBootstrapModule(),
             new FakeVulnDetectorBootstrapModule(),
@@ -189,6 +213,7 @@ public final class DefaultScanningWorkflowTest {
     Injector injector =
         Guice.createInjector(
             new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
             new FakePluginExecutionModule(),
             new FailedPortScannerBootstrapModule(),
             new FakeServiceFingerprinterBootstrapModule(),
@@ -209,6 +234,7 @@ public final class DefaultScanningWorkflowTest {
     Injector injector =
         Guice.createInjector(
             new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
             new FakePluginExecutionModule(),
             new FakePortScannerBootstrapModule(),
             new FailedServiceFingerprinterBootstrapModule(),
@@ -230,6 +256,7 @@ public final class DefaultScanningWorkflowTest {
     Injector injector =
         Guice.createInjector(
             new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
             new FakePluginExecutionModule(),
             new FakePortScannerBootstrapModule(),
             new FakeServiceFingerprinterBootstrapModule(),
@@ -252,6 +279,7 @@ public final class DefaultScanningWorkflowTest {
     Injector injector =
         Guice.createInjector(
             new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
             new FakePluginExecutionModule(),
             new FakePortScannerBootstrapModule(),
             new FakeServiceFingerprinterBootstrapModule(),
@@ -272,12 +300,35 @@ public final class DefaultScanningWorkflowTest {
     assertThat(scanResults.getScanFindingsList()).hasSize(2);
   }
 
+  @Test
+  public void run_whenRemotePluginTimedOut_returnsPartiallySucceededScanResult()
+      throws ExecutionException, InterruptedException {
+    Injector injector =
+        Guice.createInjector(
+            new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
+            new FakePluginExecutionModule(),
+            new FakePortScannerBootstrapModule(),
+            new FakeServiceFingerprinterBootstrapModule(),
+            new FakeVulnDetectorBootstrapModule(),
+            new TimedOutRemoteVulnDetectorBootstrapModule());
+    scanningWorkflow = injector.getInstance(DefaultScanningWorkflow.class);
+
+    ScanResults scanResults = scanningWorkflow.run(buildScanTarget());
+
+    assertThat(scanResults.getScanStatus()).isEqualTo(ScanStatus.PARTIALLY_SUCCEEDED);
+    assertThat(scanResults.getStatusMessage())
+        .contains("Failed plugins:\nFakeSlowRemotePlugin (timed out)");
+    assertThat(scanResults.getScanFindingsList()).hasSize(1);
+  }
+
   @Test
   public void run_whenAllVulnDetectorFailed_returnsFailedScanResult()
       throws ExecutionException, InterruptedException {
     Injector injector =
         Guice.createInjector(
             new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
             new FakePluginExecutionModule(),
             new FakePortScannerBootstrapModule(),
             new FakeServiceFingerprinterBootstrapModule(),
@@ -297,6 +348,7 @@ public final class DefaultScanningWorkflowTest {
     Injector injector =
         Guice.createInjector(
             new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
             new FakePluginExecutionModule(),
             new FakeServiceFingerprinterBootstrapModule(),
             new FakeVulnDetectorBootstrapModule());
@@ -305,6 +357,181 @@ public final class DefaultScanningWorkflowTest {
     assertThrows(NullPointerException.class, () -> scanningWorkflow.run(null));
   }
 
+  @Test
+  public void runAsync_whenScansRunConcurrentlyOnSameWorkflow_keepsScansIsolated()
+      throws InterruptedException, ExecutionException {
+    ListeningExecutorService pluginExecutionThreadPool =
+        MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(8));
+    ScheduledExecutorService pluginExecutionDeadlineScheduler =
+        Executors.newSingleThreadScheduledExecutor();
+    try {
+      scanningWorkflow =
+          Guice.createInjector(
+                  new FakeUtcClockModule(),
+                  new HttpClientModule.Builder().build(),
+                  new PluginExecutorModule(),
+                  new AbstractModule() {
+                    @Override
+                    protected void configure() {
+                      bind(ListeningExecutorService.class)
+                          .annotatedWith(PluginExecutionThreadPool.class)
+                          .toInstance(pluginExecutionThreadPool);
+                      bind(ScheduledExecutorService.class)
+                          .annotatedWith(PluginExecutionDeadlineScheduler.class)
+                          .toInstance(pluginExecutionDeadlineScheduler);
+                    }
+                  },
+                  new FakePortScannerBootstrapModule(),
+                  new FakeServiceFingerprinterBootstrapModule(),
+                  new FakeVulnDetectorBootstrapModule())
+              .getInstance(DefaultScanningWorkflow.class);
+      ImmutableList<String> targetIps = ImmutableList.of("1.2.3.4", "1.2.3.5", "1.2.3.6");
+
+      ImmutableList<ListenableFuture<ScanResults>> scans =
+          targetIps.stream()
+              .map(ip -> ScanTarget.newBuilder().setNetworkEndpoint(forIp(ip)).build())
+              .map(scanningWorkflow::runAsync)
+              .collect(toImmutableList());
+
+      for (int i = 0; i < targetIps.size(); i++) {
+        ScanResults scanResults = scans.get(i).get();
+        assertThat(scanResults.getScanStatus()).isEqualTo(ScanStatus.SUCCEEDED);
+        assertThat(scanResults.getReconnaissanceReport().getTargetInfo())
+            .isEqualTo(
+                TargetInfo.newBuilder().addNetworkEndpoints(forIp(targetIps.get(i))).build());
+        assertThat(scanResults.getScanFindingsList()).hasSize(1);
+      }
+    } finally {
+      pluginExecutionThreadPool.shutdownNow();
+      pluginExecutionDeadlineScheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void run_whenStreamingVulnDetectionEnabled_generatesSameScanResults()
+      throws InterruptedException, ExecutionException {
+    WorkflowConfigProperties workflowConfigProperties = new WorkflowConfigProperties();
+    workflowConfigProperties.streamingVulnDetection = true;
+    DefaultScanningWorkflow streamingWorkflow =
+        Guice.createInjector(
+                new FakeUtcClockModule(),
+                new HttpClientModule.Builder().build(),
+                new FakePluginExecutionModule(),
+                new FakePortScannerBootstrapModule(),
+                new FakePortScannerBootstrapModule2(),
+                new FakeServiceFingerprinterBootstrapModule(),
+                new FakeVulnDetectorBootstrapModule(),
+                new FakeVulnDetectorBootstrapModule2(),
+                new FakeRemoteVulnDetectorBootstrapModule(),
+                new AbstractModule() {
+                  @Override
+                  protected void configure() {
+                    bind(WorkflowConfigProperties.class).toInstance(workflowConfigProperties);
+                  }
+                })
+            .getInstance(DefaultScanningWorkflow.class);
+
+    ScanResults scanResults = streamingWorkflow.run(buildScanTarget());
+    ExecutionTracer executionTracer = streamingWorkflow.getExecutionTracer();
+
+    assertThat(scanResults.toBuilder().clearScanStartTimestamp().build())
+        .isEqualTo(
+            scanningWorkflow.run(buildScanTarget()).toBuilder().clearScanStartTimestamp().build());
+    assertThat(executionTracer.isDone()).isTrue();
+    assertThat(
+            executionTracer.getSelectedVulnDetectors().stream()
+                .map(selectedVulnDetector -> selectedVulnDetector.tsunamiPlugin().getClass()))
+        .containsExactlyElementsIn(
+            ImmutableList.of(
+                FakeVulnDetector.class, FakeVulnDetector2.class, FakeRemoteVulnDetector.class));
+  }
+
+  @Test
+  public void run_whenWebCrawlingEnabled_addsCrawlResultsToWebServices() throws Exception {
+    MockWebServer mockWebServer = new MockWebServer();
+    mockWebServer.enqueue(
+        new MockResponse()
+            .setHeader("Content-Type", "text/html")
+            .setBody("<a href=\"/page\">page</a>"));
+    mockWebServer.enqueue(new MockResponse().setBody("page"));
+    mockWebServer.start();
+    WorkflowConfigProperties workflowConfigProperties = new WorkflowConfigProperties();
+    workflowConfigProperties.webCrawling = true;
+    Injector injector =
+        Guice.createInjector(
+            new FakeUtcClockModule(),
+            new HttpClientModule.Builder().build(),
+            new FakePluginExecutionModule(),
+            new FakePortScannerBootstrapModule(),
+            new FakeServiceFingerprinterBootstrapModule(),
+            new FakeVulnDetectorBootstrapModule(),
+            new AbstractModule() {
+              @Override
+              protected void configure() {
+                bind(WorkflowConfigProperties.class).toInstance(workflowConfigProperties);
+              }
+            });
+
+    ScanResults scanResults =
+        injector
+            .getInstance(DefaultScanningWorkflow.class)
+            .run(
+                ScanTarget.newBuilder()
+                    .setNetworkService(buildUriNetworkService(mockWebServer.url("/").toString()))
+                    .build());
+    mockWebServer.shutdown();
+
+    assertThat(scanResults.getScanStatus()).isEqualTo(ScanStatus.SUCCEEDED);
+    assertThat(
+            scanResults
+                .getReconnaissanceReport()
+                .getNetworkServices(0)
+                .getServiceContext()
+                .getWebServiceContext()
+                .getCrawlResultsList()
+                .stream()
+                .map(crawlResult -> crawlResult.getCrawlTarget().getUrl()))
+        .containsExactly(
+            mockWebServer.url("/").toString(), mockWebServer.url("/page").toString());
+    assertThat(
+            scanResults.getReconnaissanceReport().getCrawlContentsList().stream()
+                .map(crawlContent -> crawlContent.getContent().toStringUtf8()))
+        .containsExactly("<a href=\"/page\">page</a>", "page");
+    // The content is only held by the store for the duration of the scan.
+    assertThat(
+            injector
+                .getInstance(CrawlContentStore.class)
+                .get(scanResults.getReconnaissanceReport().getCrawlContents(0).getHash()))
+        .isEmpty();
+  }
+
+  @Test
+  public void run_whenTargetHostUnreachable_skipsVulnDetectors()
+      throws InterruptedException, ExecutionException {
+    OkHttpClient unreachableClient =
+        new OkHttpClient.Builder()
+            .addInterceptor(hostCircuitBreaker)
+            .addInterceptor(
+                chain -> {
+                  throw new ConnectException("Connection refused");
+                })
+            .build();
+    for (int i = 0; i < 10; i++) {
+      assertThrows(
+          ConnectException.class,
+          () ->
+              unreachableClient
+                  .newCall(new Request.Builder().url("http://1.2.3.4/").build())
+                  .execute());
+    }
+    assertThat(hostCircuitBreaker.isOpen("1.2.3.4", 80)).isTrue();
+
+    ScanResults scanResults = scanningWorkflow.run(buildScanTarget());
+
+    assertThat(scanResults.getScanStatus()).isNotEqualTo(ScanStatus.SUCCEEDED);
+    assertThat(scanResults.getScanFindingsList()).isEmpty();
+  }
+
   private static ScanTarget buildScanTarget() {
     return ScanTarget.newBuilder().setNetworkEndpoint(forIp("1.2.3.4")).build();
   }
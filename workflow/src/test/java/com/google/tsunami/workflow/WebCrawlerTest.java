@@ -0,0 +1,210 @@
+/*
+ * Copyright 2026 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.tsunami.workflow;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.tsunami.common.data.NetworkEndpointUtils.forIpAndPort;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Guice;
+import com.google.tsunami.common.data.CrawlContentStore;
+import com.google.tsunami.common.net.TsunamiDns;
+import com.google.tsunami.common.net.http.HttpClient;
+import com.google.tsunami.common.net.http.HttpClientModule;
+import com.google.tsunami.proto.CrawlConfig;
+import com.google.tsunami.proto.CrawlConfig.Scope;
+import com.google.tsunami.proto.CrawlResult;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import javax.inject.Inject;
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link WebCrawler}. */
+@RunWith(JUnit4.class)
+public final class WebCrawlerTest {
+  private static final ImmutableMap<String, String> PAGES =
+      ImmutableMap.of(
+          "/app/",
+          "<a href=\"a\">a</a><a href=\"/app/b#top\">b</a><a href=\"a\">a again</a>"
+              + "<a href=\"/other\">other</a><a href=\"http://example.com/app/\">external</a>",
+          "/app/a",
+          "<script src=\"c.js\"></script>",
+          "/app/b",
+          "<form action=\"/app/d\"></form>");
+
+  private final CrawlContentStore crawlContentStore = new CrawlContentStore(1024);
+  @Inject private HttpClient httpClient;
+  @Inject private TsunamiDns tsunamiDns;
+  private MockWebServer mockWebServer;
+
+  @Before
+  public void setUp() throws IOException {
+    Guice.createInjector(new HttpClientModule.Builder().build()).injectMembers(this);
+    mockWebServer = new MockWebServer();
+    mockWebServer.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            String page = PAGES.get(request.getPath());
+            return page == null
+                ? new MockResponse().setResponseCode(404)
+                : new MockResponse()
+                    .setResponseCode(200)
+                    .setHeader("Content-Type", "text/html; charset=utf-8")
+                    .setBody(page);
+          }
+        });
+    mockWebServer.start();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    mockWebServer.shutdown();
+  }
+
+  @Test
+  public void crawl_always_followsLinksUpToMaxDepth() throws Exception {
+    ImmutableList<CrawlResult> crawlResults =
+        crawl(new WebCrawler(httpClient, crawlContentStore, 100), buildCrawlConfig(1, false));
+
+    assertThat(paths(crawlResults)).containsExactly("/app/", "/app/a", "/app/b", "/other");
+    assertThat(crawlResults.get(0).getCrawlDepth()).isEqualTo(0);
+    assertThat(crawlResults.get(0).getResponseCode()).isEqualTo(200);
+    assertThat(crawlResults.get(0).getContentType()).isEqualTo("text/html; charset=utf-8");
+    assertThat(crawlResults.get(0).getContent().isEmpty()).isTrue();
+    assertThat(crawlContentStore.getContent(crawlResults.get(0)).toStringUtf8())
+        .isEqualTo(PAGES.get("/app/"));
+    assertThat(crawlResults.get(0).getCrawlTarget().getHttpMethod()).isEqualTo("GET");
+    assertThat(crawlResults.get(1).getCrawlDepth()).isEqualTo(1);
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(4);
+  }
+
+  @Test
+  public void crawl_whenScopeCheckEnforced_skipsUrlsOutsideScopePath() throws Exception {
+    ImmutableList<CrawlResult> crawlResults =
+        crawl(new WebCrawler(httpClient, crawlContentStore, 100), buildCrawlConfig(2, true));
+
+    assertThat(paths(crawlResults))
+        .containsExactly("/app/", "/app/a", "/app/b", "/app/c.js", "/app/d");
+  }
+
+  @Test
+  public void crawl_whenMaxResultsReached_stopsCrawling() throws Exception {
+    ImmutableList<CrawlResult> crawlResults =
+        crawl(new WebCrawler(httpClient, crawlContentStore, 2), buildCrawlConfig(2, false));
+
+    assertThat(crawlResults).hasSize(2);
+  }
+
+  @Test
+  public void crawl_always_recordsEachStoredContentHash() throws Exception {
+    List<String> storedContentHashes = new ArrayList<>();
+
+    ImmutableList<CrawlResult> crawlResults =
+        new WebCrawler(httpClient, crawlContentStore, 100)
+            .crawl(buildCrawlConfig(1, false), storedContentHashes)
+            .get();
+
+    assertThat(storedContentHashes)
+        .containsExactlyElementsIn(
+            crawlResults.stream().map(CrawlResult::getContentHash).collect(toImmutableList()));
+  }
+
+  @Test
+  public void crawl_withLinkToSubdomain_sendsNoRequestToSubdomain() throws Exception {
+    // Resolves the subdomain to the test server, so that a request to it would be recorded.
+    tsunamiDns.pin("cdn.localhost", ImmutableList.of(InetAddress.getLoopbackAddress()));
+    String subdomainUrl =
+        mockWebServer.url("/app/cdn.js").newBuilder().host("cdn.localhost").build().toString();
+    mockWebServer.setDispatcher(
+        new Dispatcher() {
+          @Override
+          public MockResponse dispatch(RecordedRequest request) {
+            return new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", "text/html; charset=utf-8")
+                .setBody("<script src=\"" + subdomainUrl + "\"></script>");
+          }
+        });
+
+    ImmutableList<CrawlResult> crawlResults =
+        crawl(new WebCrawler(httpClient, crawlContentStore, 100), buildCrawlConfig(1, false));
+
+    assertThat(paths(crawlResults)).containsExactly("/app/");
+    assertThat(mockWebServer.getRequestCount()).isEqualTo(1);
+    assertThat(mockWebServer.takeRequest().getHeader("Host")).doesNotContain("cdn.localhost");
+  }
+
+  @Test
+  public void isInScope_always_matchesSubdomainsPortAndPath() {
+    ImmutableList<Scope> scopes =
+        ImmutableList.of(Scope.newBuilder().setDomain("example.com:8080").setPath("/app/").build());
+
+    assertThat(WebCrawler.isInScope(url("http://www.example.com:8080/app/x"), scopes, true))
+        .isTrue();
+    assertThat(WebCrawler.isInScope(url("http://www.example.com:8080/x"), scopes, true)).isFalse();
+    assertThat(WebCrawler.isInScope(url("http://www.example.com:8080/x"), scopes, false)).isTrue();
+    assertThat(WebCrawler.isInScope(url("http://example.com/app/"), scopes, true)).isFalse();
+    assertThat(WebCrawler.isInScope(url("http://badexample.com:8080/app/"), scopes, true))
+        .isFalse();
+  }
+
+  @Test
+  public void buildScope_always_coversSeedDirectory() {
+    assertThat(WebCrawler.buildScope(url("https://example.com/app/index.html")))
+        .isEqualTo(Scope.newBuilder().setDomain("example.com").setPath("/app/").build());
+    assertThat(WebCrawler.buildScope(url("http://example.com:8080/")))
+        .isEqualTo(Scope.newBuilder().setDomain("example.com:8080").setPath("/").build());
+  }
+
+  private CrawlConfig buildCrawlConfig(int maxDepth, boolean shouldEnforceScopeCheck) {
+    return CrawlConfig.newBuilder()
+        .addSeedingUrls(mockWebServer.url("/app/").toString())
+        .setMaxDepth(maxDepth)
+        .setShouldEnforceScopeCheck(shouldEnforceScopeCheck)
+        .setNetworkEndpoint(forIpAndPort("127.0.0.1", mockWebServer.getPort()))
+        .build();
+  }
+
+  private static ImmutableList<CrawlResult> crawl(WebCrawler webCrawler, CrawlConfig crawlConfig)
+      throws ExecutionException, InterruptedException {
+    return webCrawler.crawl(crawlConfig, new ArrayList<>()).get();
+  }
+
+  private static ImmutableList<String> paths(ImmutableList<CrawlResult> crawlResults) {
+    return crawlResults.stream()
+        .map(crawlResult -> url(crawlResult.getCrawlTarget().getUrl()).encodedPath())
+        .collect(toImmutableList());
+  }
+
+  private static HttpUrl url(String url) {
+    return HttpUrl.parse(url);
+  }
+}